@@ -0,0 +1,113 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raptor.chess.Game;
+import raptor.chess.GameFactory;
+import raptor.chess.Move;
+
+/**
+ * Measures the Game operations the rest of Raptor leans on: replaying SAN,
+ * writing and reading FEN and copying games. Each {@link Perft} position is
+ * used as the starting point so every variant is covered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+	/**
+	 * The number of plies replayed by makeSanMove.
+	 */
+	private static final int SAN_PLIES = 40;
+
+	@Param
+	public Perft position;
+
+	private String fen;
+	private Game game;
+	private String[] sanMoves;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		game = position.createGame();
+		game.addState(Game.UPDATING_SAN_STATE);
+		sanMoves = createSanMoves(game.deepCopy(true));
+		fen = game.toFen();
+	}
+
+	@Benchmark
+	public Game createFromFen() {
+		return GameFactory.createFromFen(fen, position.getVariant());
+	}
+
+	@Benchmark
+	public Game deepCopy() {
+		return game.deepCopy(false);
+	}
+
+	/**
+	 * Replays a random but repeatable game in SAN and then rolls it back.
+	 */
+	@Benchmark
+	public Game makeSanMove() {
+		for (String san : sanMoves) {
+			game.makeSanMove(san);
+		}
+		for (int i = 0; i < sanMoves.length; i++) {
+			game.rollback();
+		}
+		return game;
+	}
+
+	@Benchmark
+	public String toFen() {
+		return game.toFen();
+	}
+
+	private String[] createSanMoves(Game copy) {
+		Random random = new Random(0);
+		List<String> result = new ArrayList<String>(SAN_PLIES);
+		for (int i = 0; i < SAN_PLIES; i++) {
+			Move[] legals = copy.getLegalMoves().asArray();
+			if (legals.length == 0 || !copy.areBothKingsOnBoard()) {
+				break;
+			}
+			Move move = legals[random.nextInt(legals.length)];
+			result.add(move.getSan());
+			copy.move(move);
+		}
+		return result.toArray(new String[result.size()]);
+	}
+}
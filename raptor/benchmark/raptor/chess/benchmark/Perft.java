@@ -0,0 +1,154 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.benchmark;
+
+import raptor.chess.Game;
+import raptor.chess.GameFactory;
+import raptor.chess.PackedMoveStack;
+import raptor.chess.Variant;
+
+/**
+ * Perft positions for every variant along with their node counts. The
+ * classic counts are the published ones from
+ * http://chessprogramming.wikispaces.com/Perft+Results. The counts for the
+ * other variants were recorded from Raptor itself and cross checked against
+ * the older make/unmake legal move generator, so they catch regressions but
+ * are not an independent reference. The suicide count matches the
+ * published antichess count.
+ * 
+ * Running main verifies every position and exits with a non zero status if
+ * a count is wrong. The JMH benchmarks in this package use the same
+ * positions.
+ */
+public enum Perft {
+	classicStart(Variant.classic, null, "", 4, 197281L),
+
+	classicKiwipete(
+			Variant.classic,
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"", 3, 97862L),
+
+	classicEndgame(Variant.classic, "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"", 4, 43238L),
+
+	crazyhouse(Variant.crazyhouse, null, "e4 d5 exd5 Qxd5 Nc3 Qxd2+", 3,
+			18158L),
+
+	bughouse(Variant.bughouse, null, "e4 d5 exd5 Nf6 Nc3 Nxd5 Nxd5", 3,
+			246911L),
+
+	atomic(Variant.atomic, null, "e4 e5 Nf3 Nc6 Bc4 Nf6", 3, 30910L),
+
+	suicide(Variant.suicide, null, "", 4, 153299L),
+
+	losers(Variant.losers, null, "e4 d5 Nf3 Nf6", 5, 10374L),
+
+	wild(Variant.wild, "rnbkqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR w - - 0 1",
+			"", 4, 197281L),
+
+	fischerRandom(
+			Variant.fischerRandom,
+			"bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+			"", 3, 12139L);
+
+	private final int depth;
+	private final String fen;
+	private final long nodes;
+	private final String sanMoves;
+	private final Variant variant;
+
+	private Perft(Variant variant, String fen, String sanMoves, int depth,
+			long nodes) {
+		this.variant = variant;
+		this.fen = fen;
+		this.sanMoves = sanMoves;
+		this.depth = depth;
+		this.nodes = nodes;
+	}
+
+	public static void main(String args[]) {
+		boolean passed = true;
+		for (Perft perft : values()) {
+			long startTime = System.nanoTime();
+			long nodes = perft(perft.createGame(), perft.depth);
+			long millis = (System.nanoTime() - startTime) / 1000000L;
+
+			System.out.println(perft.name() + " depth " + perft.depth + ": "
+					+ nodes + " nodes in " + millis + "ms"
+					+ (nodes == perft.nodes ? "" : " EXPECTED " + perft.nodes));
+			passed &= nodes == perft.nodes;
+		}
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Returns the number of leaf nodes depth plies below the game's position.
+	 */
+	public static long perft(Game game, int depth) {
+		return perft(game, depth, new PackedMoveStack());
+	}
+
+	private static long perft(Game game, int depth, PackedMoveStack moves) {
+		if (depth == 0) {
+			return 1L;
+		}
+
+		long result = 0L;
+		moves.pushPly();
+		try {
+			game.generateLegalMoves(moves);
+			if (depth == 1) {
+				result = moves.getSize();
+			} else {
+				for (int i = 0; i < moves.getSize(); i++) {
+					if (game.move(moves.get(i))) {
+						result += perft(game, depth - 1, moves);
+						game.rollback();
+					}
+				}
+			}
+		} finally {
+			moves.popPly();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new game in this position.
+	 */
+	public Game createGame() {
+		Game result = fen == null ? GameFactory.createStartingPosition(variant)
+				: GameFactory.createFromFen(fen, variant);
+		if (sanMoves.length() > 0) {
+			for (String san : sanMoves.split(" ")) {
+				result.makeSanMove(san);
+			}
+		}
+		return result;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public Variant getVariant() {
+		return variant;
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.connector.ics.benchmark;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import raptor.connector.ics.B1Parser;
+import raptor.connector.ics.G1Parser;
+import raptor.connector.ics.IcsParser;
+import raptor.connector.ics.PromptFramer;
+import raptor.connector.ics.Style12Parser;
+import raptor.connector.ics.chat.ChatEventParserIndex;
+import raptor.connector.ics.game.message.Style12Message;
+import raptor.connector.ics.timeseal.MessageListener;
+import raptor.connector.ics.timeseal.TimesealSocketChannelMessageProducer;
+import raptor.util.LatencyTracker;
+
+/**
+ * Replays a recorded session from an in process IcsReplayServer to a number
+ * of headless clients and reports throughput and latency.
+ * 
+ * Each client reads through the shared socket channel selector, frames
+ * messages with PromptFramer and parses them with the same parsers as
+ * IcsParser. Latencies are measured by LatencyTracker from the moment bytes
+ * are read to the moment a style 12 game event, and the whole message, has
+ * been parsed. Board refresh latency needs the UI, run Raptor with
+ * -Draptor.latencyTracking=true against IcsReplayServer to see it in the
+ * profile dialog.
+ * 
+ * Usage: IcsLoadDriver sessionFile [clients] [speed] [loops]
+ */
+public class IcsLoadDriver {
+	/**
+	 * Exposes the chat event parser index of IcsParser, so the clients try
+	 * the same chat parsers as the connector.
+	 */
+	protected static class ChatParser extends IcsParser {
+		public ChatParser() {
+			super(false);
+		}
+
+		public ChatEventParserIndex getChatEventParserIndex() {
+			return getNonGameEventParserIndex();
+		}
+	}
+
+	/**
+	 * A headless client. It logs in, then parses every message between
+	 * prompts.
+	 */
+	protected class Client implements MessageListener {
+		protected CountDownLatch producerCreated = new CountDownLatch(1);
+		protected boolean isLoggedIn;
+		protected TimesealSocketChannelMessageProducer producer;
+		protected PromptFramer promptFramer = new PromptFramer("\n" + IcsReplayServer.PROMPT);
+		protected B1Parser b1Parser = new B1Parser();
+		protected G1Parser g1Parser = new G1Parser();
+		protected Style12Parser style12Parser = new Style12Parser();
+		protected Style12Message style12Message = new Style12Message();
+		protected ChatEventParserIndex chatEventParserIndex = new ChatParser().getChatEventParserIndex();
+
+		public void connect(int port) {
+			producer = new TimesealSocketChannelMessageProducer("localhost", port, "", false, this);
+			producerCreated.countDown();
+		}
+
+		public void connectionClosed(StringBuilder inboundMessageBuffer) {
+			finished.countDown();
+		}
+
+		public void messageArrived(StringBuilder buffer) {
+			LatencyTracker.messageReceived();
+			bytesRead.addAndGet(buffer.length());
+
+			if (!isLoggedIn) {
+				int loggedInIndex = buffer.indexOf("**** Starting FICS session as ");
+				if (loggedInIndex != -1 && buffer.indexOf(" ****", loggedInIndex + 30) != -1) {
+					isLoggedIn = true;
+					buffer.delete(0, buffer.indexOf(" ****", loggedInIndex + 30) + 5);
+				} else if (buffer.indexOf("login: ") != -1) {
+					buffer.setLength(0);
+					send("guest\n");
+					return;
+				} else if (buffer.indexOf("\":") != -1) {
+					buffer.setLength(0);
+					send("\n");
+					return;
+				} else {
+					return;
+				}
+			}
+
+			int start = 0;
+			int end = -1;
+			try {
+				while ((end = promptFramer.next(buffer)) != -1) {
+					parse(buffer.substring(start, end));
+					start = end;
+				}
+			} finally {
+				if (start > 0) {
+					buffer.delete(0, start);
+					promptFramer.consumed(start);
+				}
+			}
+		}
+
+		public void onError(String message, Throwable t) {
+			System.err.println(message);
+			t.printStackTrace();
+		}
+
+		protected void parse(String message) {
+			long receivedNanos = LatencyTracker.getReceivedNanos();
+			boolean isChat = false;
+			int lineStart = 0;
+			while (lineStart < message.length()) {
+				int lineEnd = message.indexOf('\n', lineStart);
+				if (lineEnd == -1) {
+					lineEnd = message.length();
+				}
+				String line = message.substring(lineStart, lineEnd);
+				lineStart = lineEnd + 1;
+
+				if (line.startsWith("<12> ")) {
+					if (style12Parser.parse(line, style12Message) != null) {
+						style12Count.incrementAndGet();
+						LatencyTracker.record(LatencyTracker.Stage.GAME_EVENT, receivedNanos);
+					}
+				} else if (line.startsWith("<b1> ")) {
+					b1Parser.parse(line);
+				} else if (line.startsWith("<g1> ")) {
+					g1Parser.parse(line);
+				} else if (line.trim().length() > 0 && !line.startsWith(IcsReplayServer.PROMPT)) {
+					isChat = true;
+				}
+			}
+			if (isChat && chatEventParserIndex.parse(message) != null) {
+				chatEventCount.incrementAndGet();
+			}
+			messageCount.incrementAndGet();
+			LatencyTracker.record(LatencyTracker.Stage.MESSAGE_PARSED, receivedNanos);
+		}
+
+		protected void send(String message) {
+			try {
+				producerCreated.await();
+			} catch (InterruptedException ie) {
+			}
+			producer.send(message);
+		}
+	}
+
+	public static void main(String args[]) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: IcsLoadDriver sessionFile [clients] [speed] [loops]");
+			System.exit(1);
+		}
+		List<IcsReplayServer.Message> session = IcsReplayServer.loadSession(new File(args[0]));
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+		int loops = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+		new IcsLoadDriver().run(session, clients, speed, loops);
+	}
+
+	protected AtomicLong bytesRead = new AtomicLong();
+	protected AtomicLong chatEventCount = new AtomicLong();
+	protected CountDownLatch finished;
+	protected AtomicLong messageCount = new AtomicLong();
+	protected AtomicLong style12Count = new AtomicLong();
+
+	/**
+	 * Replays the session to the clients and prints the results. Returns
+	 * false if a client did not finish within a minute of the expected
+	 * replay time.
+	 */
+	public boolean run(List<IcsReplayServer.Message> session, int clients, double speed, int loops)
+			throws Exception {
+		long recordedMillis = 0;
+		for (IcsReplayServer.Message message : session) {
+			recordedMillis += message.getDelayMillis();
+		}
+		long expectedMillis = speed > 0 ? (long) (recordedMillis * loops / speed) : 0;
+
+		IcsReplayServer server = new IcsReplayServer(session, 0, speed, loops);
+		server.start();
+		LatencyTracker.setEnabled(true);
+		LatencyTracker.reset();
+		finished = new CountDownLatch(clients);
+
+		long startNanos = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			new Client().connect(server.getPort());
+		}
+		boolean isFinished = finished.await(expectedMillis + 60000, TimeUnit.MILLISECONDS);
+		long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		server.close();
+
+		System.out.println(clients + " clients, " + session.size() + " messages replayed " + loops + " times at "
+				+ speed + "x in " + elapsedMillis + "ms, expected " + expectedMillis + "ms"
+				+ (isFinished ? "" : ", timed out"));
+		System.out.println("Parsed " + messageCount.get() + " messages, " + style12Count.get() + " style 12 and "
+				+ chatEventCount.get() + " chat events from " + bytesRead.get() + " characters, "
+				+ (messageCount.get() * 1000 / elapsedMillis) + " messages/s");
+		System.out.println(LatencyTracker.getSummary());
+		return isFinished;
+	}
+}
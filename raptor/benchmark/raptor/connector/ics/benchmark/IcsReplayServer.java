@@ -0,0 +1,257 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.connector.ics.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stand in FICS server which replays a recorded session to every client
+ * which connects, so the connector, parsers and boards can be exercised
+ * without a live server. It speaks plain telnet without timeseal, so turn
+ * timeseal off in the profile pointed at it.
+ * 
+ * A client is logged in with whatever name it sends, then the session is
+ * replayed speed times faster than it was recorded, loops times, and the
+ * connection is closed. Anything the client sends after logging in is read
+ * and ignored.
+ * 
+ * Session files are text. A line starting with "@@ " followed by a number
+ * of milliseconds starts a message sent that long after the previous one.
+ * The lines which follow are the message. Lines starting with "@@#" are
+ * comments. Every message is sent with FICS line endings and followed by the
+ * fics% prompt. See benchmark/sessions for an example.
+ * 
+ * Usage: IcsReplayServer sessionFile [port] [speed] [loops]
+ */
+public class IcsReplayServer {
+	/**
+	 * A message of a recorded session and how long after the previous
+	 * message it was received.
+	 */
+	public static class Message {
+		protected long delayMillis;
+		protected byte[] bytes;
+
+		public Message(long delayMillis, String text) {
+			this.delayMillis = delayMillis;
+			try {
+				bytes = ("\n\r" + text.replace("\n", "\n\r") + "\n\r" + PROMPT).getBytes("ISO-8859-1");
+			} catch (IOException ioe) {
+				throw new RuntimeException(ioe);
+			}
+		}
+
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		public long getDelayMillis() {
+			return delayMillis;
+		}
+	}
+
+	public static final String PROMPT = "fics% ";
+
+	/**
+	 * Loads a session file in the format described in the class comment.
+	 */
+	public static List<Message> loadSession(File file) throws IOException {
+		List<Message> result = new ArrayList<Message>(100);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"));
+		try {
+			long delayMillis = -1;
+			StringBuilder text = new StringBuilder(1000);
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("@@#")) {
+					continue;
+				} else if (line.startsWith("@@ ")) {
+					if (delayMillis != -1) {
+						result.add(new Message(delayMillis, text.toString()));
+					}
+					delayMillis = Long.parseLong(line.substring(3).trim());
+					text.setLength(0);
+				} else if (delayMillis != -1) {
+					if (text.length() > 0) {
+						text.append('\n');
+					}
+					text.append(line);
+				}
+			}
+			if (delayMillis != -1) {
+				result.add(new Message(delayMillis, text.toString()));
+			}
+		} finally {
+			reader.close();
+		}
+		return result;
+	}
+
+	public static void main(String args[]) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: IcsReplayServer sessionFile [port] [speed] [loops]");
+			System.exit(1);
+		}
+		List<Message> session = loadSession(new File(args[0]));
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+		int loops = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+		IcsReplayServer server = new IcsReplayServer(session, port, speed, loops);
+		System.out.println("Replaying " + session.size() + " messages at " + speed + "x, " + loops
+				+ " times, on port " + server.getPort());
+		server.run();
+	}
+
+	protected int loops;
+
+	protected ServerSocket serverSocket;
+
+	protected List<Message> session;
+
+	protected double speed;
+
+	/**
+	 * @param port
+	 *            The port to listen on, 0 for any free port.
+	 * @param speed
+	 *            How many times faster than recorded the session is replayed.
+	 *            0 replays it without any delays.
+	 * @param loops
+	 *            How many times the session is replayed to each client.
+	 */
+	public IcsReplayServer(List<Message> session, int port, double speed, int loops) throws IOException {
+		this.session = session;
+		this.speed = speed;
+		this.loops = loops;
+		serverSocket = new ServerSocket(port);
+	}
+
+	public void close() {
+		try {
+			serverSocket.close();
+		} catch (IOException ioe) {
+		}
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts clients until the server is closed. Each client is served on
+	 * its own thread.
+	 */
+	public void run() {
+		while (!serverSocket.isClosed()) {
+			try {
+				final Socket socket = serverSocket.accept();
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						serve(socket);
+					}
+				}, "IcsReplayServer " + socket.getRemoteSocketAddress());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException ioe) {
+				if (!serverSocket.isClosed()) {
+					ioe.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the server on a daemon thread.
+	 */
+	public void start() {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				IcsReplayServer.this.run();
+			}
+		}, "IcsReplayServer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	protected void drain(final BufferedReader reader) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (reader.readLine() != null) {
+					}
+				} catch (IOException ioe) {
+				}
+			}
+		}, "IcsReplayServer drain");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	protected void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			OutputStream out = socket.getOutputStream();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+
+			write(out, "\n\rWelcome to the Raptor replay server.\n\r\n\rlogin: ");
+			String userName = reader.readLine();
+			if (userName == null) {
+				return;
+			}
+			userName = userName.trim();
+			if (userName.length() == 0 || userName.equalsIgnoreCase("guest")) {
+				userName = "GuestRPLY";
+			}
+			write(out, "\n\rPress return to enter the server as \"" + userName + "\":");
+			if (reader.readLine() == null) {
+				return;
+			}
+			write(out, "\n\r**** Starting FICS session as " + userName + " ****\n\r" + PROMPT);
+			drain(reader);
+
+			for (int i = 0; i < loops; i++) {
+				for (Message message : session) {
+					if (speed > 0 && message.getDelayMillis() > 0) {
+						Thread.sleep((long) (message.getDelayMillis() / speed));
+					}
+					out.write(message.getBytes());
+					out.flush();
+				}
+			}
+		} catch (InterruptedException ie) {
+		} catch (IOException ioe) {
+			// The client disconnected.
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException ioe) {
+			}
+		}
+	}
+
+	protected void write(OutputStream out, String text) throws IOException {
+		out.write(text.getBytes("ISO-8859-1"));
+		out.flush();
+	}
+}
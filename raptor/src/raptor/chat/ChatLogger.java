@@ -26,6 +26,7 @@ import raptor.connector.Connector;
 import raptor.connector.fics.FicsConnector;
 import raptor.pref.PreferenceKeys;
 import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
 import raptor.util.RaptorLogger;
 import raptor.util.RaptorRunnable;
 import raptor.util.RaptorStringTokenizer;
@@ -214,7 +215,7 @@ public class ChatLogger {
 	 *            The event to log.
 	 */
 	protected void writeToLogFiles(final ChatEvent event) {
-		ThreadService.getInstance().run(new RaptorRunnable() {
+		ThreadService.getInstance().run(Subsystem.LOGGING, new RaptorRunnable() {
 			@Override
 			public void execute() {
 				if (Raptor.getInstance().getPreferences()
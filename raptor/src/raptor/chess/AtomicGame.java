@@ -15,15 +15,16 @@ package raptor.chess;
 
 import static raptor.chess.util.GameUtils.bitscanClear;
 import static raptor.chess.util.GameUtils.bitscanForward;
-import static raptor.chess.util.GameUtils.diagonalMove;
 import static raptor.chess.util.GameUtils.getBitboard;
 import static raptor.chess.util.GameUtils.getOppositeColor;
 import static raptor.chess.util.GameUtils.kingMove;
 import static raptor.chess.util.GameUtils.knightMove;
 import static raptor.chess.util.GameUtils.moveOne;
-import static raptor.chess.util.GameUtils.orthogonalMove;
 import static raptor.chess.util.GameUtils.pawnCapture;
 import static raptor.chess.util.GameUtils.pawnEpCapture;
+import static raptor.chess.util.MagicBitboards.bishopAttacks;
+import static raptor.chess.util.MagicBitboards.queenAttacks;
+import static raptor.chess.util.MagicBitboards.rookAttacks;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -52,6 +53,17 @@ public class AtomicGame extends ClassicGame {
 		return result;
 	}
 
+	/**
+	 * Explosions make the pin and check masks meaningless, so the legal moves
+	 * come from getLegalMoves. {@inheritDoc}
+	 */
+	@Override
+	public void generateLegalMoves(PackedMoveStack moves) {
+		for (Move move : getLegalMoves().asArray()) {
+			moves.append(PackedMove.pack(move));
+		}
+	}
+
 	/**
 	 * Overridden to allow for moves which explode the enemy king. If you are in
 	 * check yet you can explode the enemy king, then exploding the enemy king
@@ -150,9 +162,9 @@ public class AtomicGame extends ClassicGame {
 
 		boolean result = !(pawnCapture(oppositeColor, getPieceBB(oppositeColor,
 				PAWN), kingBB) == 0L
-				&& (orthogonalMove(kingSquare, getEmptyBB(), getOccupiedBB()) & (getPieceBB(
+				&& (rookAttacks(kingSquare, getOccupiedBB()) & (getPieceBB(
 						oppositeColor, ROOK) | getPieceBB(oppositeColor, QUEEN))) == 0L
-				&& (diagonalMove(kingSquare, getEmptyBB(), getOccupiedBB()) & (getPieceBB(
+				&& (bishopAttacks(kingSquare, getOccupiedBB()) & (getPieceBB(
 						oppositeColor, BISHOP) | getPieceBB(oppositeColor,
 						QUEEN))) == 0L && (knightMove(kingSquare) & getPieceBB(
 				oppositeColor, KNIGHT)) == 0L);
@@ -297,6 +309,22 @@ public class AtomicGame extends ClassicGame {
 		}
 	}
 
+	/**
+	 * Overridden to attach the explosion info to captures.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Move createMove(int move) {
+		Move result = PackedMove.toMove(move);
+		if (result.isCapture()) {
+			result.setAtomicExplosionInfo(getAtomicExplosionInfo(result
+					.getTo(), result.getFrom(), PackedMove
+					.getPieceWithPromoteMask(move), result.getColor()));
+		}
+		return result;
+	}
+
 	/**
 	 * Overridden to handle explosions.
 	 * 
@@ -309,7 +337,7 @@ public class AtomicGame extends ClassicGame {
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
 
-			long toBB = diagonalMove(fromSquare, getEmptyBB(), getOccupiedBB())
+			long toBB = bishopAttacks(fromSquare, getOccupiedBB())
 					& getNotColorToMoveBB();
 
 			while (toBB != 0) {
@@ -443,9 +471,7 @@ public class AtomicGame extends ClassicGame {
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
 
-			long toBB = (orthogonalMove(fromSquare, getEmptyBB(),
-					getOccupiedBB()) | diagonalMove(fromSquare, getEmptyBB(),
-					getOccupiedBB()))
+			long toBB = queenAttacks(fromSquare, getOccupiedBB())
 					& getNotColorToMoveBB();
 
 			while (toBB != 0) {
@@ -472,8 +498,7 @@ public class AtomicGame extends ClassicGame {
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
 
-			long toBB = orthogonalMove(fromSquare, getEmptyBB(),
-					getOccupiedBB())
+			long toBB = rookAttacks(fromSquare, getOccupiedBB())
 					& getNotColorToMoveBB();
 
 			while (toBB != 0) {
@@ -545,6 +570,27 @@ public class AtomicGame extends ClassicGame {
 		return explosionInfo.toArray(new AtomicExplosionInfo[0]);
 	}
 
+	/**
+	 * Atomic overrides the Move based generators, so packed moves are created
+	 * from them instead.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isGeneratingPackedMoves() {
+		return false;
+	}
+
+	/**
+	 * Explosions make the pin and check masks meaningless, so the move is
+	 * made and the position tested. {@inheritDoc}
+	 */
+	@Override
+	protected boolean isLegalMove(int move, int kingSquare, long pinned,
+			long evasionMask) {
+		return isLegalMoveByMaking(move);
+	}
+
 	/**
 	 * Overridden to handle explosions. {@inheritDoc}
 	 */
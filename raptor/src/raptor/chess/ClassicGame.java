@@ -15,7 +15,6 @@ package raptor.chess;
 
 import static raptor.chess.util.GameUtils.bitscanClear;
 import static raptor.chess.util.GameUtils.bitscanForward;
-import static raptor.chess.util.GameUtils.diagonalMove;
 import static raptor.chess.util.GameUtils.getBitboard;
 import static raptor.chess.util.GameUtils.getFile;
 import static raptor.chess.util.GameUtils.getOppositeColor;
@@ -26,11 +25,15 @@ import static raptor.chess.util.GameUtils.getString;
 import static raptor.chess.util.GameUtils.kingMove;
 import static raptor.chess.util.GameUtils.knightMove;
 import static raptor.chess.util.GameUtils.moveOne;
-import static raptor.chess.util.GameUtils.orthogonalMove;
 import static raptor.chess.util.GameUtils.pawnCapture;
 import static raptor.chess.util.GameUtils.pawnDoublePush;
 import static raptor.chess.util.GameUtils.pawnEpCapture;
 import static raptor.chess.util.GameUtils.pawnSinglePush;
+import static raptor.chess.util.MagicBitboards.between;
+import static raptor.chess.util.MagicBitboards.bishopAttacks;
+import static raptor.chess.util.MagicBitboards.line;
+import static raptor.chess.util.MagicBitboards.queenAttacks;
+import static raptor.chess.util.MagicBitboards.rookAttacks;
 import static raptor.chess.util.ZobristUtils.zobrist;
 
 import java.util.ArrayList;
@@ -71,11 +74,24 @@ public class ClassicGame implements Game {
 	protected int initialEpSquare = EMPTY_SQUARE;
 	protected int[] moveRepHash = new int[MOVE_REP_CACHE_SIZE];
 	protected MoveList moves = new MoveList();
+	/**
+	 * Created on first use. Never copied, each game has its own.
+	 */
+	protected PackedMoveStack moveStack;
+	/**
+	 * Scratch list used to pack the castling moves. Created on first use.
+	 */
+	protected PriorityMoveList castlingMoves;
 	//protected long notColorToMoveBB;
 	protected long occupiedBB;
 	protected Map<PgnHeader, String> pgnHeaderMap = new HashMap<PgnHeader, String>();
 	protected long[][] pieceBB = new long[2][7];
 	protected int[][] pieceCounts = new int[2][7];
+	/**
+	 * Index of the first move whose SAN or ECO headers were deferred while in
+	 * REPLAY_STATE, or -1 if nothing is pending.
+	 */
+	protected int replayIndex = -1;
 	protected int state;
 	protected long zobristGameHash;
 	protected long zobristPositionHash;
@@ -149,6 +165,7 @@ public class ClassicGame implements Game {
 		pieceBB = new long[2][7];
 		pieceCounts = new int[2][7];
 		moves = new MoveList();
+		replayIndex = -1;
 		setHeader(PgnHeader.Result, Result.ON_GOING.getDescription());
 	}
 
@@ -174,7 +191,12 @@ public class ClassicGame implements Game {
 	public void forceMove(Move move) {		
 		move.setLastWhiteCastlingState(getCastling(WHITE));
 		move.setLastBlackCastlingState(getCastling(BLACK));
-		setSan(move);
+		boolean isReplaying = isInState(REPLAY_STATE);
+		if (!isReplaying) {
+			setSan(move);
+		} else if (isSettingMoveSan() && move.getSan() == null) {
+			move.setReplayGame(this);
+		}
 		switch (move.getMoveCharacteristic()) {
 		case Move.EN_PASSANT_CHARACTERISTIC:
 			makeEPMove(move);
@@ -221,7 +243,12 @@ public class ClassicGame implements Game {
 		move.setFullMoveCount((halfMoveCount - 1) / 2 + 1);
 		move.setHalfMoveCount(halfMoveCount);
 		
-		if (move.getFullMoveCount() < 19) {
+		if (isReplaying) {
+			if (replayIndex == -1
+					&& (isSettingMoveSan() || isSettingEcoHeaders())) {
+				replayIndex = moves.getSize() - 1;
+			}
+		} else if (replayIndex == -1 && move.getFullMoveCount() < 19) {
 			updateEcoHeaders(move);
 		}
 	}
@@ -230,6 +257,7 @@ public class ClassicGame implements Game {
 	 * {@inheritDoc}
 	 */
 	public PgnHeader[] getAllHeaders() {
+		resolveReplayedEcoHeaders();
 		return pgnHeaderMap.keySet().toArray(new PgnHeader[0]);
 	}
 
@@ -237,6 +265,7 @@ public class ClassicGame implements Game {
 	 * {@inheritDoc}
 	 */
 	public PgnHeader[] getAllNonRequiredHeaders() {
+		resolveReplayedEcoHeaders();
 		List<PgnHeader> result = new ArrayList<PgnHeader>(pgnHeaderMap.size());
 		for (PgnHeader key : pgnHeaderMap.keySet()) {
 			if (!key.isRequired()) {
@@ -332,6 +361,9 @@ public class ClassicGame implements Game {
 	 * {@inheritDoc}
 	 */
 	public String getHeader(PgnHeader header) {
+		if (header == PgnHeader.ECO || header == PgnHeader.Opening) {
+			resolveReplayedEcoHeaders();
+		}
 		return pgnHeaderMap.get(header);
 	}
 
@@ -364,31 +396,20 @@ public class ClassicGame implements Game {
 	 * {@inheritDoc}
 	 */
 	public PriorityMoveList getLegalMoves() {
-		PriorityMoveList result = getPseudoLegalMoves();
-
-		for (int i = 0; i < result.getHighPrioritySize(); i++) {
-			Move move = result.getHighPriority(i);
-			forceMove(move);
-			if (!isLegalPosition()) {
-				result.removeHighPriority(i);
-				i--;
-			}
-
-			rollback();
-		}
-
-		for (int i = 0; i < result.getLowPrioritySize(); i++) {
-			Move move = result.getLowPriority(i);
-			forceMove(move);
-
-			if (!isLegalPosition()) {
-				result.removeLowPriority(i);
-				i--;
+		PriorityMoveList result = new PriorityMoveList();
+		PackedMoveStack legals = getMoveStack();
+		legals.pushPly();
+		try {
+			generateLegalMoves(legals);
+
+			for (int i = 0; i < legals.getSize(); i++) {
+				Move move = createMove(legals.get(i));
+				setSan(move);
+				addMove(move, result);
 			}
-
-			rollback();
+		} finally {
+			legals.popPly();
 		}
-
 		return result;
 	}
 
@@ -506,15 +527,74 @@ public class ClassicGame implements Game {
 	 */
 	public PriorityMoveList getPseudoLegalMoves() {
 		PriorityMoveList result = new PriorityMoveList();
-		generatePseudoQueenMoves(result);
-		generatePseudoKnightMoves(result);
-		generatePseudoBishopMoves(result);
-		generatePseudoRookMoves(result);
-		generatePseudoPawnMoves(result);
-		generatePseudoKingMoves(result);
+		if (isGeneratingPackedMoves()) {
+			getMoveStack().pushPly();
+			generatePseudoLegalMoves(getMoveStack());
+			popPackedMoves(result);
+		} else {
+			generatePseudoQueenMoves(result);
+			generatePseudoKnightMoves(result);
+			generatePseudoBishopMoves(result);
+			generatePseudoRookMoves(result);
+			generatePseudoPawnMoves(result);
+			generatePseudoKingMoves(result);
+		}
 		return result;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The pinned pieces and the check evasion squares are computed once for
+	 * the position and each pseudo legal move is tested against them.
+	 * Castling moves, and positions without both kings, are checked by making
+	 * the move.
+	 */
+	public void generateLegalMoves(PackedMoveStack moves) {
+		long kingBB = getPieceBB(colorToMove, KING);
+		boolean isUsingMasks = kingBB != 0L
+				&& getPieceBB(getOppositeColor(colorToMove), KING) != 0L;
+		int kingSquare = bitscanForward(kingBB);
+		long pinned = 0L;
+		long evasionMask = 0L;
+
+		if (isUsingMasks) {
+			pinned = getPinnedPieces(kingSquare);
+			evasionMask = getEvasionMask(kingSquare, getAttackers(kingSquare,
+					getOppositeColor(colorToMove), occupiedBB));
+		}
+
+		generatePseudoLegalMoves(moves);
+
+		int legalCount = 0;
+		for (int i = 0; i < moves.getSize(); i++) {
+			int move = moves.get(i);
+			if (isUsingMasks ? isLegalMove(move, kingSquare, pinned,
+					evasionMask) : isLegalMoveByMaking(move)) {
+				moves.set(legalCount++, move);
+			}
+		}
+		moves.truncate(legalCount);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void generatePseudoLegalMoves(PackedMoveStack moves) {
+		if (isGeneratingPackedMoves()) {
+			generatePseudoQueenMoves(moves);
+			generatePseudoKnightMoves(moves);
+			generatePseudoBishopMoves(moves);
+			generatePseudoRookMoves(moves);
+			generatePseudoPawnMoves(moves);
+			generatePseudoKingMoves(moves);
+		} else {
+			for (Move move : getPseudoLegalMoves().asArray()) {
+				moves.append(PackedMove.pack(move));
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -617,9 +697,9 @@ public class ClassicGame implements Game {
 
 		return !(pawnCapture(oppositeColor, getPieceBB(oppositeColor, PAWN),
 				kingBB) == 0L
-				&& (orthogonalMove(kingSquare, emptyBB, occupiedBB) & (getPieceBB(
+				&& (rookAttacks(kingSquare, occupiedBB) & (getPieceBB(
 						oppositeColor, ROOK) | getPieceBB(oppositeColor, QUEEN))) == 0L
-				&& (diagonalMove(kingSquare, emptyBB, occupiedBB) & (getPieceBB(
+				&& (bishopAttacks(kingSquare, occupiedBB) & (getPieceBB(
 						oppositeColor, BISHOP) | getPieceBB(oppositeColor,
 						QUEEN))) == 0L
 				&& (kingMove(kingSquare) & getPieceBB(oppositeColor, KING)) == 0L && (knightMove(kingSquare) & getPieceBB(
@@ -724,22 +804,29 @@ public class ClassicGame implements Game {
 			throws IllegalArgumentException {
 		Move move = null;
 
-		Move[] legals = getLegalMoves().asArray();
-
-		for (int i = 0; move == null && i < legals.length; i++) {
-			Move candidate = legals[i];
-			if (candidate.getFrom() == startSquare
-					&& candidate.getTo() == endSquare) {
-				move = candidate;
+		PackedMoveStack pseudoLegals = getMoveStack();
+		pseudoLegals.pushPly();
+		try {
+			generatePseudoLegalMoves(pseudoLegals);
+
+			for (int i = 0; move == null && i < pseudoLegals.getSize(); i++) {
+				int candidate = pseudoLegals.get(i);
+				if (PackedMove.getFrom(candidate) == startSquare
+						&& PackedMove.getTo(candidate) == endSquare) {
+					move = createMove(candidate);
+					if (!move(move)) {
+						move = null;
+					}
+				}
 			}
+		} finally {
+			pseudoLegals.popPly();
 		}
 
 		if (move == null) {
 			throw new IllegalArgumentException("Invalid move: "
 					+ getSan(startSquare) + " " + getSan(endSquare) + " \n"
 					+ toString());
-		} else {
-			forceMove(move);
 		}
 
 		return move;
@@ -764,15 +851,24 @@ public class ClassicGame implements Game {
 			throws IllegalArgumentException {
 		Move move = null;
 
-		Move[] legals = getLegalMoves().asArray();
-
-		for (int i = 0; move == null && i < legals.length; i++) {
-			Move candidate = legals[i];
-			if (candidate.getFrom() == startSquare
-					&& candidate.getTo() == endSquare
-					&& candidate.getPiecePromotedTo() == promotePiece) {
-				move = candidate;
+		PackedMoveStack pseudoLegals = getMoveStack();
+		pseudoLegals.pushPly();
+		try {
+			generatePseudoLegalMoves(pseudoLegals);
+
+			for (int i = 0; move == null && i < pseudoLegals.getSize(); i++) {
+				int candidate = pseudoLegals.get(i);
+				if (PackedMove.getFrom(candidate) == startSquare
+						&& PackedMove.getTo(candidate) == endSquare
+						&& PackedMove.getPiecePromotedTo(candidate) == promotePiece) {
+					move = createMove(candidate);
+					if (!move(move)) {
+						move = null;
+					}
+				}
 			}
+		} finally {
+			pseudoLegals.popPly();
 		}
 
 		if (move == null) {
@@ -780,8 +876,6 @@ public class ClassicGame implements Game {
 					+ getSan(startSquare) + "-" + getSan(endSquare) + "="
 					//+ GameConstants.PIECE_TO_SAN.charAt(promotePiece) + "\n"
 					+ toString());
-		} else {
-			forceMove(move);
 		}
 
 		return move;
@@ -793,193 +887,20 @@ public class ClassicGame implements Game {
 	public Move makeSanMove(String shortAlgebraic)
 			throws IllegalArgumentException {
 		SanValidations validations = SanUtils.getValidations(shortAlgebraic);
-		Move[] pseudoLegals = getPseudoLegalMoves().asArray();
-		
-		Move result = makeSanMoveOverride(shortAlgebraic, validations,
-				pseudoLegals);
-		if (result == null) {
-			// Examples:
-			// e4 (a pawn move to e4).
-			// e8=Q (a pawn promotion without a capture).
-			// de=Q (a pawn promotion from a capture).
-			// ed (e pawn captures d pawn).
-			// Ne3 (a Knight moving to e3).
-			// N5e3 (disambiguity for two knights which can move to e3, the 5th
-			// rank
-			// knight is the one that should move).
-			// Nfe3 (disambiguity for two knights which can move to e3, the
-			// knight
-			// on the f file is the one that should move).
-			// Nf1e3 (disambiguity for three knights which cam move to e3, the
-			// f1
-			// knight is the one that should move).
-			if (!validations.isValidStrict()) {
-				throw new IllegalArgumentException("Invalid short algebraic: "
-						+ shortAlgebraic);
-			}
-
-			int candidatePromotedPiece = EMPTY;
+		PackedMoveStack pseudoLegals = getMoveStack();
+		pseudoLegals.pushPly();
 
-			if (validations.isCastleKSideStrict()) {
-				for (Move move : pseudoLegals) {
-					if (move != null
-							&& (move.getMoveCharacteristic() & Move.SHORT_CASTLING_CHARACTERISTIC) != 0) {
-						result = move;
-						break;
-					}
-				}
-			} else if (validations.isCastleQSideStrict()) {
-				for (Move move : pseudoLegals) {
-					if (move != null
-							&& (move.getMoveCharacteristic() & Move.LONG_CASTLING_CHARACTERISTIC) != 0) {
-						result = move;
-						break;
-					}
-				}
-			} else {
-				MoveList matches = new MoveList(10);
-				if (validations.isPromotion()) {
-					char pieceChar = validations.getStrictSan().charAt(
-							validations.getStrictSan().length() - 1);
-					candidatePromotedPiece = SanUtils.sanToPiece(pieceChar);
-				}
-
-				if (validations.isPawnMove()) {
-					int candidatePieceMoving = PAWN;
-					if (validations.isEpOrAmbigPxStrict()
-							|| validations.isAmbigPxPromotionStrict()) {
-
-						int end = getSquare(GameConstants.RANK_FROM_SAN
-								.indexOf(validations.getStrictSan().charAt(2)),
-								GameConstants.FILE_FROM_SAN.indexOf(validations
-										.getStrictSan().charAt(1)));
-
-						int startRank = getRank(end)
-								+ (colorToMove == WHITE ? -1 : +1);
-
-						if (startRank > 7 || startRank < 0) {
-							throw new IllegalArgumentException(
-									"Invalid short algebraic: "
-											+ shortAlgebraic);
-						}
-
-						int start = getSquare(startRank,
-								GameConstants.FILE_FROM_SAN.indexOf(validations
-										.getStrictSan().charAt(0)));
-
-						for (Move move : pseudoLegals) {
-							if (move != null
-									&& move.getPiece() == candidatePieceMoving
-									&& move.isCapture()
-									&& move.getFrom() == start
-									&& move.getTo() == end
-									&& move.getPiecePromotedTo() == candidatePromotedPiece) {
-								matches.append(move);
-							}
-						}
-					} else {
-						// handle captures
-						if (validations.isPxStrict()
-								|| validations.isPxPPromotionStrict()) {
-							int startFile = GameConstants.FILE_FROM_SAN
-									.indexOf(validations.getStrictSan().charAt(
-											0));
-							int endFile = GameConstants.FILE_FROM_SAN
-									.indexOf(validations.getStrictSan().charAt(
-											1));
-
-							for (Move move : pseudoLegals) {
-								if (move != null
-										&& move.getPiece() == candidatePieceMoving
-										&& getFile(move.getFrom()) == startFile
-										&& getFile(move.getTo()) == endFile
-										&& move.isCapture()
-										&& move.getPiecePromotedTo() == candidatePromotedPiece) {
-									matches.append(move);
-								}
-							}
-						}
-						// handle non captures.
-						else {
-							int end = getSquare(GameConstants.RANK_FROM_SAN
-									.indexOf(validations.getStrictSan().charAt(
-											1)), GameConstants.FILE_FROM_SAN
-									.indexOf(validations.getStrictSan().charAt(
-											0)));
-
-							for (Move move : pseudoLegals) {
-								if (move != null
-										&& move.getPiece() == candidatePieceMoving
-										&& !move.isCapture()
-										&& move.getTo() == end
-										&& move.getPiecePromotedTo() == candidatePromotedPiece) {
-									matches.append(move);
-								}
-							}
-						}
-					}
-				} else {
-					int candidatePieceMoving = SanUtils.sanToPiece(validations
-							.getStrictSan().charAt(0));
-					int end = getSquare(GameConstants.RANK_FROM_SAN
-							.indexOf(validations.getStrictSan().charAt(
-									validations.getStrictSan().length() - 1)),
-							GameConstants.FILE_FROM_SAN
-									.indexOf(validations.getStrictSan()
-											.charAt(
-													validations.getStrictSan()
-															.length() - 2)));
-
-					if (validations.isDisambigPieceRankStrict()) {
-						int startRank = RANK_FROM_SAN.indexOf(validations
-								.getStrictSan().charAt(1));
-						for (Move move : pseudoLegals) {
-							if (move != null
-									&& move.getPiece() == candidatePieceMoving
-									&& move.getTo() == end
-									&& getRank(move.getFrom()) == startRank) {
-								matches.append(move);
-							}
-						}
-					} else if (validations.isDisambigPieceFileStrict()) {
-						int startFile = FILE_FROM_SAN.indexOf(validations
-								.getStrictSan().charAt(1));
-						for (Move move : pseudoLegals) {
-							if (move != null
-									&& move.getPiece() == candidatePieceMoving
-									&& move.getTo() == end
-									&& getFile(move.getFrom()) == startFile) {
-								matches.append(move);
-							}
-						}
-					} else if (validations.isDisambigPieceRankFileStrict()) {
-						int startSquare = getSquare(GameConstants.RANK_FROM_SAN
-								.indexOf(validations.getStrictSan().charAt(2)),
-								GameConstants.FILE_FROM_SAN.indexOf(validations
-										.getStrictSan().charAt(1)));
-						FILE_FROM_SAN.indexOf(validations.getStrictSan()
-								.charAt(1));
-						for (Move move : pseudoLegals) {
-							if (move != null
-									&& move.getPiece() == candidatePieceMoving
-									&& move.getTo() == end
-									&& move.getFrom() == startSquare) {
-								matches.append(move);
-							}
-						}
-					} else {
-						for (Move move : pseudoLegals) {
-							if (move != null
-									&& move.getPiece() == candidatePieceMoving
-									&& move.getTo() == end) {
-								matches.append(move);
-							}
-						}
-					}
-				}
-				result = testForSanDisambiguationFromCheck(shortAlgebraic,
-						matches);
+		Move result = null;
+		try {
+			generatePseudoLegalMoves(pseudoLegals);
+			result = makeSanMoveOverride(shortAlgebraic, validations,
+					pseudoLegals);
+			if (result == null) {
+				result = findSanMove(shortAlgebraic, validations,
+						pseudoLegals);
 			}
+		} finally {
+			pseudoLegals.popPly();
 		}
 
 		if (result == null) {
@@ -994,6 +915,13 @@ public class ClassicGame implements Game {
 		return result;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean move(int move) {
+		return move(createMove(move));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1018,6 +946,7 @@ public class ClassicGame implements Game {
 				pgnHeaderMap);
 
 		gameToOverwrite.moves = moves.deepCopy();
+		gameToOverwrite.replayIndex = replayIndex;
 		gameToOverwrite.halfMoveCount = halfMoveCount;
 		System.arraycopy(colorBB, 0, gameToOverwrite.colorBB, 0,
 				gameToOverwrite.colorBB.length);
@@ -1059,6 +988,42 @@ public class ClassicGame implements Game {
 		pgnHeaderMap.remove(headerName);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The moves are replayed on a copy of this game so the position is never
+	 * disturbed. The copy is rolled back to the first deferred move and the
+	 * moves are made again with SAN and ECO updating turned on.
+	 */
+	public synchronized void resolveReplayedMoves() {
+		if (replayIndex == -1) {
+			return;
+		}
+		int fromIndex = replayIndex;
+		replayIndex = -1;
+
+		Move[] replayedMoves = new Move[moves.getSize() - fromIndex];
+		for (int i = 0; i < replayedMoves.length; i++) {
+			replayedMoves[i] = moves.get(fromIndex + i);
+		}
+
+		ClassicGame replay = deepCopy(false);
+		replay.replayIndex = fromIndex;
+		while (replay.getMoveList().getSize() > fromIndex) {
+			replay.rollback();
+		}
+		replay.clearState(REPLAY_STATE);
+		for (Move move : replayedMoves) {
+			replay.forceMove(move);
+		}
+
+		if (isSettingEcoHeaders()) {
+			setOrRemoveHeader(PgnHeader.ECO, replay.getHeader(PgnHeader.ECO));
+			setOrRemoveHeader(PgnHeader.Opening, replay
+					.getHeader(PgnHeader.Opening));
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1103,7 +1068,12 @@ public class ClassicGame implements Game {
 
 		updateZobristHash();
 
-		rollbackEcoHeaders(move);
+		if (replayIndex == -1 && move.getFullMoveCount() < 19) {
+			rollbackEcoHeaders(move);
+		} else if (replayIndex >= moves.getSize()) {
+			// The headers were never updated for the deferred moves.
+			replayIndex = -1;
+		}
 	}
 
 	/**
@@ -1480,6 +1450,209 @@ public class ClassicGame implements Game {
 		moveRepHash[getRepHash()]--;
 	}
 
+	/**
+	 * Returns the move matching the short algebraic from the packed pseudo
+	 * legal moves. Only the moves which match are created as Move objects.
+	 */
+	protected Move findSanMove(String shortAlgebraic,
+			SanValidations validations, PackedMoveStack pseudoLegals)
+			throws IllegalArgumentException {
+		Move result = null;
+		// Examples:
+		// e4 (a pawn move to e4).
+		// e8=Q (a pawn promotion without a capture).
+		// de=Q (a pawn promotion from a capture).
+		// ed (e pawn captures d pawn).
+		// Ne3 (a Knight moving to e3).
+		// N5e3 (disambiguity for two knights which can move to e3, the 5th
+		// rank
+		// knight is the one that should move).
+		// Nfe3 (disambiguity for two knights which can move to e3, the
+		// knight
+		// on the f file is the one that should move).
+		// Nf1e3 (disambiguity for three knights which cam move to e3, the
+		// f1
+		// knight is the one that should move).
+		if (!validations.isValidStrict()) {
+			throw new IllegalArgumentException("Invalid short algebraic: "
+					+ shortAlgebraic);
+		}
+
+		int candidatePromotedPiece = EMPTY;
+
+		if (validations.isCastleKSideStrict()) {
+			for (int i = 0; i < pseudoLegals.getSize(); i++) {
+				int move = pseudoLegals.get(i);
+				if ((PackedMove.getMoveCharacteristic(move) & Move.SHORT_CASTLING_CHARACTERISTIC) != 0) {
+					result = createMove(move);
+					break;
+				}
+			}
+		} else if (validations.isCastleQSideStrict()) {
+			for (int i = 0; i < pseudoLegals.getSize(); i++) {
+				int move = pseudoLegals.get(i);
+				if ((PackedMove.getMoveCharacteristic(move) & Move.LONG_CASTLING_CHARACTERISTIC) != 0) {
+					result = createMove(move);
+					break;
+				}
+			}
+		} else {
+			MoveList matches = new MoveList(10);
+			if (validations.isPromotion()) {
+				char pieceChar = validations.getStrictSan().charAt(
+						validations.getStrictSan().length() - 1);
+				candidatePromotedPiece = SanUtils.sanToPiece(pieceChar);
+			}
+
+			if (validations.isPawnMove()) {
+				int candidatePieceMoving = PAWN;
+				if (validations.isEpOrAmbigPxStrict()
+						|| validations.isAmbigPxPromotionStrict()) {
+
+					int end = getSquare(GameConstants.RANK_FROM_SAN
+							.indexOf(validations.getStrictSan().charAt(2)),
+							GameConstants.FILE_FROM_SAN.indexOf(validations
+									.getStrictSan().charAt(1)));
+
+					int startRank = getRank(end)
+							+ (colorToMove == WHITE ? -1 : +1);
+
+					if (startRank > 7 || startRank < 0) {
+						throw new IllegalArgumentException(
+								"Invalid short algebraic: "
+										+ shortAlgebraic);
+					}
+
+					int start = getSquare(startRank,
+							GameConstants.FILE_FROM_SAN.indexOf(validations
+									.getStrictSan().charAt(0)));
+
+					for (int i = 0; i < pseudoLegals.getSize(); i++) {
+						int move = pseudoLegals.get(i);
+						if (PackedMove.getPiece(move) == candidatePieceMoving
+								&& PackedMove.isCapture(move)
+								&& PackedMove.getFrom(move) == start
+								&& PackedMove.getTo(move) == end
+								&& PackedMove.getPiecePromotedTo(move) == candidatePromotedPiece) {
+							matches.append(createMove(move));
+						}
+					}
+				} else {
+					// handle captures
+					if (validations.isPxStrict()
+							|| validations.isPxPPromotionStrict()) {
+						int startFile = GameConstants.FILE_FROM_SAN
+								.indexOf(validations.getStrictSan().charAt(
+										0));
+						int endFile = GameConstants.FILE_FROM_SAN
+								.indexOf(validations.getStrictSan().charAt(
+										1));
+
+						for (int i = 0; i < pseudoLegals.getSize(); i++) {
+							int move = pseudoLegals.get(i);
+							if (PackedMove.getPiece(move) == candidatePieceMoving
+									&& getFile(PackedMove.getFrom(move)) == startFile
+									&& getFile(PackedMove.getTo(move)) == endFile
+									&& PackedMove.isCapture(move)
+									&& PackedMove.getPiecePromotedTo(move) == candidatePromotedPiece) {
+								matches.append(createMove(move));
+							}
+						}
+					}
+					// handle non captures.
+					else {
+						int end = getSquare(GameConstants.RANK_FROM_SAN
+								.indexOf(validations.getStrictSan().charAt(
+										1)), GameConstants.FILE_FROM_SAN
+								.indexOf(validations.getStrictSan().charAt(
+										0)));
+
+						for (int i = 0; i < pseudoLegals.getSize(); i++) {
+							int move = pseudoLegals.get(i);
+							if (PackedMove.getPiece(move) == candidatePieceMoving
+									&& !PackedMove.isCapture(move)
+									&& PackedMove.getTo(move) == end
+									&& PackedMove.getPiecePromotedTo(move) == candidatePromotedPiece) {
+								matches.append(createMove(move));
+							}
+						}
+					}
+				}
+			} else {
+				int candidatePieceMoving = SanUtils.sanToPiece(validations
+						.getStrictSan().charAt(0));
+				int end = getSquare(GameConstants.RANK_FROM_SAN
+						.indexOf(validations.getStrictSan().charAt(
+								validations.getStrictSan().length() - 1)),
+						GameConstants.FILE_FROM_SAN
+								.indexOf(validations.getStrictSan()
+										.charAt(
+												validations.getStrictSan()
+														.length() - 2)));
+
+				if (validations.isDisambigPieceRankStrict()) {
+					int startRank = RANK_FROM_SAN.indexOf(validations
+							.getStrictSan().charAt(1));
+					for (int i = 0; i < pseudoLegals.getSize(); i++) {
+						int move = pseudoLegals.get(i);
+						if (PackedMove.getPiece(move) == candidatePieceMoving
+								&& PackedMove.getTo(move) == end
+								&& getRank(PackedMove.getFrom(move)) == startRank) {
+							matches.append(createMove(move));
+						}
+					}
+				} else if (validations.isDisambigPieceFileStrict()) {
+					int startFile = FILE_FROM_SAN.indexOf(validations
+							.getStrictSan().charAt(1));
+					for (int i = 0; i < pseudoLegals.getSize(); i++) {
+						int move = pseudoLegals.get(i);
+						if (PackedMove.getPiece(move) == candidatePieceMoving
+								&& PackedMove.getTo(move) == end
+								&& getFile(PackedMove.getFrom(move)) == startFile) {
+							matches.append(createMove(move));
+						}
+					}
+				} else if (validations.isDisambigPieceRankFileStrict()) {
+					int startSquare = getSquare(GameConstants.RANK_FROM_SAN
+							.indexOf(validations.getStrictSan().charAt(2)),
+							GameConstants.FILE_FROM_SAN.indexOf(validations
+									.getStrictSan().charAt(1)));
+					FILE_FROM_SAN.indexOf(validations.getStrictSan()
+							.charAt(1));
+					for (int i = 0; i < pseudoLegals.getSize(); i++) {
+						int move = pseudoLegals.get(i);
+						if (PackedMove.getPiece(move) == candidatePieceMoving
+								&& PackedMove.getTo(move) == end
+								&& PackedMove.getFrom(move) == startSquare) {
+							matches.append(createMove(move));
+						}
+					}
+				} else {
+					for (int i = 0; i < pseudoLegals.getSize(); i++) {
+						int move = pseudoLegals.get(i);
+						if (PackedMove.getPiece(move) == candidatePieceMoving
+								&& PackedMove.getTo(move) == end) {
+							matches.append(createMove(move));
+						}
+					}
+				}
+			}
+			return testForSanDisambiguationFromCheck(shortAlgebraic,
+					matches);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a Move from a packed move generated in the current position.
+	 * Subclasses which attach additional state to their moves, such as
+	 * explosion info in atomic, should override this method. It must be
+	 * invoked before the move is made.
+	 */
+	protected Move createMove(int move) {
+		return PackedMove.toMove(move);
+	}
+
 	/**
 	 * Generates all of the pseudo legal bishop moves in the position and adds
 	 * them to the specified move list.
@@ -1488,28 +1661,64 @@ public class ClassicGame implements Game {
 	 *            A move list.
 	 */
 	protected void generatePseudoBishopMoves(PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoBishopMoves(getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal bishop moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoBishopMoves(PackedMoveStack moves) {
 		long fromBB = getPieceBB(colorToMove, BISHOP);
 
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
+			int piece = getPieceWithPromoteMask(fromSquare);
 
-			long toBB = diagonalMove(fromSquare, emptyBB, occupiedBB)
+			long toBB = bishopAttacks(fromSquare, occupiedBB)
 					& getNotColorToMoveBB();
 
 			while (toBB != 0) {
 				int toSquare = bitscanForward(toBB);
 
-				int contents = getPieceWithPromoteMask(toSquare);
-
-				addMove(new Move(fromSquare, toSquare,
-						getPieceWithPromoteMask(fromSquare), colorToMove,
-						contents), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, piece,
+						colorToMove, getPieceWithPromoteMask(toSquare)));
 				toBB = bitscanClear(toBB);
 			}
 			fromBB = bitscanClear(fromBB);
 		}
 	}
 
+	/**
+	 * Packs the castling moves generated by
+	 * {@link #generatePseudoKingCastlingMoves(long, PriorityMoveList)} onto the
+	 * move stack. Castling rules vary by variant, so they are always generated
+	 * as Move objects. There are at most two of them.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoKingCastlingMoves(long fromBB,
+			PackedMoveStack moves) {
+		if (castlingMoves == null) {
+			castlingMoves = new PriorityMoveList(4);
+		}
+		castlingMoves.clear();
+		generatePseudoKingCastlingMoves(fromBB, castlingMoves);
+
+		for (int i = 0; i < castlingMoves.getLowPrioritySize(); i++) {
+			moves.append(PackedMove.pack(castlingMoves.getLowPriority(i)));
+		}
+		for (int i = 0; i < castlingMoves.getHighPrioritySize(); i++) {
+			moves.append(PackedMove.pack(castlingMoves.getHighPriority(i)));
+		}
+	}
+
 	/**
 	 * Generates all of the pseudo legal king castling moves in the position and
 	 * adds them to the specified move list.
@@ -1581,6 +1790,19 @@ public class ClassicGame implements Game {
 	 *            A move list.
 	 */
 	protected void generatePseudoKingMoves(PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoKingMoves(getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal king moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoKingMoves(PackedMoveStack moves) {
 		long fromBB = getPieceBB(colorToMove, KING);
 		int fromSquare = bitscanForward(fromBB);
 		long toBB = kingMove(fromSquare) & getNotColorToMoveBB();
@@ -1590,12 +1812,9 @@ public class ClassicGame implements Game {
 		while (toBB != 0) {
 			int toSquare = bitscanForward(toBB);
 
-			int contents = getPieceWithPromoteMask(toSquare);
-
-			addMove(new Move(fromSquare, toSquare, KING, colorToMove,
-					contents), moves);
+			moves.append(PackedMove.create(fromSquare, toSquare, KING,
+					colorToMove, getPieceWithPromoteMask(toSquare)));
 			toBB = bitscanClear(toBB);
-			toSquare = bitscanForward(toBB);
 		}
 	}
 
@@ -1607,24 +1826,33 @@ public class ClassicGame implements Game {
 	 *            A move list.
 	 */
 	protected void generatePseudoKnightMoves(PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoKnightMoves(getMoveStack());
+		popPackedMoves(moves);
+	}
 
+	/**
+	 * Generates all of the pseudo legal knight moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoKnightMoves(PackedMoveStack moves) {
 		long fromBB = getPieceBB(colorToMove, KNIGHT);
 
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
+			int piece = getPieceWithPromoteMask(fromSquare);
 
 			long toBB = knightMove(fromSquare) & getNotColorToMoveBB();
 
 			while (toBB != 0) {
 				int toSquare = bitscanForward(toBB);
-				int contents = getPieceWithPromoteMask(toSquare);
-
-				addMove(new Move(fromSquare, toSquare,
-						getPieceWithPromoteMask(fromSquare), colorToMove,
-						contents), moves);
 
+				moves.append(PackedMove.create(fromSquare, toSquare, piece,
+						colorToMove, getPieceWithPromoteMask(toSquare)));
 				toBB = bitscanClear(toBB);
-				toSquare = bitscanForward(toBB);
 			}
 
 			fromBB = bitscanClear(fromBB);
@@ -1640,28 +1868,44 @@ public class ClassicGame implements Game {
 	 */
 	protected void generatePseudoPawnCaptures(int fromSquare, long fromBB,
 			int oppositeColor, PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoPawnCaptures(fromSquare, fromBB, oppositeColor,
+				getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal pawn captures in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoPawnCaptures(int fromSquare, long fromBB,
+			int oppositeColor, PackedMoveStack moves) {
 
 		long toBB = pawnCapture(colorToMove, fromBB,
 				getColorBB(oppositeColor));
 
 		while (toBB != 0L) {
 			int toSquare = bitscanForward(toBB);
+			int capture = getPieceWithPromoteMask(toSquare);
 			if ((toBB & RANK8_OR_RANK1) != 0L) {
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						getPieceWithPromoteMask(toSquare), KNIGHT,
-						EMPTY_SQUARE, Move.PROMOTION_CHARACTERISTIC), moves);
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						getPieceWithPromoteMask(toSquare), BISHOP,
-						EMPTY_SQUARE, Move.PROMOTION_CHARACTERISTIC), moves);
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						getPieceWithPromoteMask(toSquare), QUEEN, EMPTY_SQUARE,
-						Move.PROMOTION_CHARACTERISTIC), moves);
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						getPieceWithPromoteMask(toSquare), ROOK, EMPTY_SQUARE,
-						Move.PROMOTION_CHARACTERISTIC), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, capture, KNIGHT,
+						Move.PROMOTION_CHARACTERISTIC));
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, capture, BISHOP,
+						Move.PROMOTION_CHARACTERISTIC));
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, capture, QUEEN,
+						Move.PROMOTION_CHARACTERISTIC));
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, capture, ROOK,
+						Move.PROMOTION_CHARACTERISTIC));
 			} else {
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						getPieceWithPromoteMask(toSquare)), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, capture));
 			}
 			toBB = bitscanClear(toBB);
 		}
@@ -1676,14 +1920,30 @@ public class ClassicGame implements Game {
 	 */
 	protected void generatePseudoPawnDoublePush(int fromSquare, long fromBB,
 			int oppositeColor, int epModifier, PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoPawnDoublePush(fromSquare, fromBB, oppositeColor,
+				epModifier, getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal double pawn pushes in the position and
+	 * adds them to the specified move stack. The ep square is implied by the
+	 * packed move, so epModifier is unused here.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoPawnDoublePush(int fromSquare, long fromBB,
+			int oppositeColor, int epModifier, PackedMoveStack moves) {
 
 		long toBB = pawnDoublePush(colorToMove, fromBB, emptyBB);
 
 		while (toBB != 0) {
 			int toSquare = bitscanForward(toBB);
-			addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-					EMPTY, EMPTY, toSquare + epModifier,
-					Move.DOUBLE_PAWN_PUSH_CHARACTERISTIC), moves);
+			moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+					colorToMove, EMPTY, EMPTY,
+					Move.DOUBLE_PAWN_PUSH_CHARACTERISTIC));
 			toBB = bitscanClear(toBB);
 		}
 
@@ -1698,6 +1958,21 @@ public class ClassicGame implements Game {
 	 */
 	protected void generatePseudoPawnEPCaptures(int fromSquare, long fromBB,
 			int oppositeColor, PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoPawnEPCaptures(fromSquare, fromBB, oppositeColor,
+				getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo En-Passant moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoPawnEPCaptures(int fromSquare, long fromBB,
+			int oppositeColor, PackedMoveStack moves) {
 		if (epSquare != EMPTY) {
 
 			long toBB = pawnEpCapture(colorToMove, fromBB, getPieceBB(
@@ -1706,9 +1981,9 @@ public class ClassicGame implements Game {
 			if (toBB != 0) {
 				int toSquare = bitscanForward(toBB);
 
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						PAWN, EMPTY, EMPTY_SQUARE,
-						Move.EN_PASSANT_CHARACTERISTIC), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, PAWN, EMPTY,
+						Move.EN_PASSANT_CHARACTERISTIC));
 			}
 		}
 	}
@@ -1748,6 +2023,41 @@ public class ClassicGame implements Game {
 		}
 	}
 
+	/**
+	 * Generates all of the pseudo legal pawn moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoPawnMoves(PackedMoveStack moves) {
+		long pawnsBB = getPieceBB(colorToMove, PAWN);
+		int oppositeColor, epModifier;
+
+		if (colorToMove == WHITE) {
+			oppositeColor = BLACK;
+			epModifier = -8;
+		} else {
+			oppositeColor = WHITE;
+			epModifier = +8;
+		}
+
+		while (pawnsBB != 0) {
+			int fromSquare = bitscanForward(pawnsBB);
+			long fromBB = getBitboard(fromSquare);
+
+			generatePseudoPawnEPCaptures(fromSquare, fromBB, oppositeColor,
+					moves);
+			generatePseudoPawnCaptures(fromSquare, fromBB, oppositeColor, moves);
+			generatePseudoPawnSinglePush(fromSquare, fromBB, oppositeColor,
+					moves);
+			generatePseudoPawnDoublePush(fromSquare, fromBB, oppositeColor,
+					epModifier, moves);
+
+			pawnsBB = bitscanClear(pawnsBB);
+		}
+	}
+
 	/**
 	 * Generates all of the pseudo legal single push pawn moves in the position
 	 * and adds them to the specified move list.
@@ -1757,6 +2067,21 @@ public class ClassicGame implements Game {
 	 */
 	protected void generatePseudoPawnSinglePush(int fromSquare, long fromBB,
 			int oppositeColor, PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoPawnSinglePush(fromSquare, fromBB, oppositeColor,
+				getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal single push pawn moves in the position
+	 * and adds them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoPawnSinglePush(int fromSquare, long fromBB,
+			int oppositeColor, PackedMoveStack moves) {
 
 		long toBB = pawnSinglePush(colorToMove, fromBB, emptyBB);
 
@@ -1764,21 +2089,21 @@ public class ClassicGame implements Game {
 			int toSquare = bitscanForward(toBB);
 
 			if ((toBB & RANK8_OR_RANK1) != 0L) {
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						EMPTY, KNIGHT, EMPTY_SQUARE,
-						Move.PROMOTION_CHARACTERISTIC), moves);
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						EMPTY, BISHOP, EMPTY_SQUARE,
-						Move.PROMOTION_CHARACTERISTIC), moves);
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						EMPTY, QUEEN, EMPTY_SQUARE,
-						Move.PROMOTION_CHARACTERISTIC), moves);
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						EMPTY, ROOK, EMPTY_SQUARE,
-						Move.PROMOTION_CHARACTERISTIC), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, EMPTY, KNIGHT,
+						Move.PROMOTION_CHARACTERISTIC));
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, EMPTY, BISHOP,
+						Move.PROMOTION_CHARACTERISTIC));
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, EMPTY, QUEEN,
+						Move.PROMOTION_CHARACTERISTIC));
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, EMPTY, ROOK,
+						Move.PROMOTION_CHARACTERISTIC));
 			} else {
-				addMove(new Move(fromSquare, toSquare, PAWN, colorToMove,
-						EMPTY), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, PAWN,
+						colorToMove, EMPTY));
 			}
 
 			toBB = bitscanClear(toBB);
@@ -1793,23 +2118,33 @@ public class ClassicGame implements Game {
 	 *            A move list.
 	 */
 	protected void generatePseudoQueenMoves(PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoQueenMoves(getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal queen moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoQueenMoves(PackedMoveStack moves) {
 		long fromBB = getPieceBB(colorToMove, QUEEN);
 
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
+			int piece = getPieceWithPromoteMask(fromSquare);
 
-			long toBB = (orthogonalMove(fromSquare, emptyBB,
-                    occupiedBB) | diagonalMove(fromSquare, emptyBB,
-                    occupiedBB))
+			long toBB = queenAttacks(fromSquare, occupiedBB)
 					& getNotColorToMoveBB();
 
 			while (toBB != 0) {
 				int toSquare = bitscanForward(toBB);
 
-				int contents = getPieceWithPromoteMask(toSquare);
-				addMove(new Move(fromSquare, toSquare,
-						getPieceWithPromoteMask(fromSquare), colorToMove,
-						contents), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, piece,
+						colorToMove, getPieceWithPromoteMask(toSquare)));
 				toBB = bitscanClear(toBB);
 			}
 
@@ -1825,22 +2160,33 @@ public class ClassicGame implements Game {
 	 *            A move list.
 	 */
 	protected void generatePseudoRookMoves(PriorityMoveList moves) {
+		getMoveStack().pushPly();
+		generatePseudoRookMoves(getMoveStack());
+		popPackedMoves(moves);
+	}
+
+	/**
+	 * Generates all of the pseudo legal rook moves in the position and adds
+	 * them to the specified move stack.
+	 * 
+	 * @param moves
+	 *            A packed move stack.
+	 */
+	protected void generatePseudoRookMoves(PackedMoveStack moves) {
 		long fromBB = getPieceBB(colorToMove, ROOK);
 
 		while (fromBB != 0) {
 			int fromSquare = bitscanForward(fromBB);
+			int piece = getPieceWithPromoteMask(fromSquare);
 
-			long toBB = orthogonalMove(fromSquare, emptyBB,
-                    occupiedBB)
+			long toBB = rookAttacks(fromSquare, occupiedBB)
 					& getNotColorToMoveBB();
 
 			while (toBB != 0) {
 				int toSquare = bitscanForward(toBB);
 
-				int contents = getPieceWithPromoteMask(toSquare);
-				addMove(new Move(fromSquare, toSquare,
-						getPieceWithPromoteMask(fromSquare), colorToMove,
-						contents), moves);
+				moves.append(PackedMove.create(fromSquare, toSquare, piece,
+						colorToMove, getPieceWithPromoteMask(toSquare)));
 				toBB = bitscanClear(toBB);
 			}
 
@@ -1863,6 +2209,73 @@ public class ClassicGame implements Game {
 				+ getDropCount(BLACK, KING) + "]";
 	}
 
+	/**
+	 * Returns a bitboard of the pieces of the specified color which attack the
+	 * square, using occupied for the sliding pieces.
+	 */
+	protected long getAttackers(int square, int color, long occupied) {
+		return pawnCapture(getOppositeColor(color), getBitboard(square),
+				getPieceBB(color, PAWN))
+				| knightMove(square) & getPieceBB(color, KNIGHT)
+				| kingMove(square) & getPieceBB(color, KING)
+				| rookAttacks(square, occupied)
+				& (getPieceBB(color, ROOK) | getPieceBB(color, QUEEN))
+				| bishopAttacks(square, occupied)
+				& (getPieceBB(color, BISHOP) | getPieceBB(color, QUEEN));
+	}
+
+	/**
+	 * Returns the squares a piece other than the king can move to when the
+	 * king on kingSquare is attacked by checkers. All squares if there is no
+	 * check, the checker and the squares between it and the king on a single
+	 * check, and no squares on a double check.
+	 */
+	protected long getEvasionMask(int kingSquare, long checkers) {
+		if (checkers == 0L) {
+			return -1L;
+		} else if ((checkers & checkers - 1) == 0L) {
+			return checkers | between(kingSquare, bitscanForward(checkers));
+		} else {
+			return 0L;
+		}
+	}
+
+	/**
+	 * Returns the pieces of the color to move which are pinned to the king on
+	 * kingSquare.
+	 */
+	protected long getPinnedPieces(int kingSquare) {
+		int oppositeColor = getOppositeColor(colorToMove);
+		long result = 0L;
+		long snipersBB = rookAttacks(kingSquare, 0L)
+				& (getPieceBB(oppositeColor, ROOK) | getPieceBB(oppositeColor,
+						QUEEN))
+				| bishopAttacks(kingSquare, 0L)
+				& (getPieceBB(oppositeColor, BISHOP) | getPieceBB(
+						oppositeColor, QUEEN));
+
+		while (snipersBB != 0L) {
+			long blockersBB = between(kingSquare, bitscanForward(snipersBB))
+					& occupiedBB;
+			if (blockersBB != 0L && (blockersBB & blockersBB - 1) == 0L) {
+				result |= blockersBB & getColorBB(colorToMove);
+			}
+			snipersBB = bitscanClear(snipersBB);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the scratch move stack used by move generation. It is created
+	 * lazily and is never copied or overwritten, so each game owns its own.
+	 */
+	protected PackedMoveStack getMoveStack() {
+		if (moveStack == null) {
+			moveStack = new PackedMoveStack();
+		}
+		return moveStack;
+	}
+
 	protected String getPieceCountsString() {
 		return "Piece counts [WP=" + getPieceCount(WHITE, PAWN) + " WN="
 				+ getPieceCount(WHITE, KNIGHT) + " WB="
@@ -1928,6 +2341,66 @@ public class ClassicGame implements Game {
 		pieceCounts[color][piece]++;
 	}
 
+	/**
+	 * Returns true if the packed pseudo legal move leaves the king of the
+	 * color to move safe. kingSquare, pinned and evasionMask are computed once
+	 * per position by generateLegalMoves. Variants with other rules should
+	 * override this method or generateLegalMoves.
+	 */
+	protected boolean isLegalMove(int move, int kingSquare, long pinned,
+			long evasionMask) {
+		if ((PackedMove.getCaptureWithPromoteMask(move) & NOT_PROMOTED_MASK) == KING) {
+			return false;
+		}
+
+		int oppositeColor = getOppositeColor(colorToMove);
+		long fromBB = getBitboard(PackedMove.getFrom(move));
+		long toBB = getBitboard(PackedMove.getTo(move));
+
+		switch (PackedMove.getMoveCharacteristic(move)) {
+		case Move.SHORT_CASTLING_CHARACTERISTIC:
+		case Move.LONG_CASTLING_CHARACTERISTIC:
+			return isLegalMoveByMaking(move);
+		case Move.EN_PASSANT_CHARACTERISTIC:
+			// Two pieces leave the rank so just look at the board afterwards.
+			long capturedBB = colorToMove == WHITE ? toBB >>> 8 : toBB << 8;
+			return (getAttackers(kingSquare, oppositeColor,
+					occupiedBB ^ fromBB ^ capturedBB | toBB) & ~capturedBB) == 0L;
+		}
+
+		if (PackedMove.getPiece(move) == KING) {
+			return getAttackers(PackedMove.getTo(move), oppositeColor,
+					occupiedBB ^ fromBB) == 0L;
+		} else {
+			return (toBB & evasionMask) != 0L
+					&& ((pinned & fromBB) == 0L || (line(kingSquare,
+							PackedMove.getFrom(move)) & toBB) != 0L);
+		}
+	}
+
+	/**
+	 * Returns true if the position is legal after the packed move is made.
+	 * Slower than isLegalMove, it is used where the masks do not apply.
+	 */
+	protected boolean isLegalMoveByMaking(int move) {
+		Move candidate = createMove(move);
+		forceMove(candidate);
+		boolean result = isLegalPosition();
+		rollback();
+		return result;
+	}
+
+	/**
+	 * Returns true if this game generates its pseudo legal moves with the
+	 * packed generators. Variants which override the Move based generators
+	 * with rules the packed generators do not know about should return
+	 * false, in which case packed moves are created from
+	 * {@link #getPseudoLegalMoves()}.
+	 */
+	protected boolean isGeneratingPackedMoves() {
+		return true;
+	}
+
 	protected void makeCastlingMove(Move move) {
 		long kingFromBB, kingToBB, rookFromBB, rookToBB;
 
@@ -2082,13 +2555,28 @@ public class ClassicGame implements Game {
 	 * subclasses can enhance utilize the SanValidations without having to
 	 * override makeSanMove and run the SAN validations again.
 	 * 
-	 * This method may also set certain pseudoLegals to ignore to null.
+	 * This method may also remove pseudoLegals which should be ignored.
 	 */
 	protected Move makeSanMoveOverride(String shortAlgebraic,
-			SanValidations validations, Move[] pseudoLegals) {
+			SanValidations validations, PackedMoveStack pseudoLegals) {
 		return null;
 	}
 
+	/**
+	 * Adds Moves created from the packed moves in the current ply of the move
+	 * stack to the specified move list and pops the ply.
+	 */
+	protected void popPackedMoves(PriorityMoveList moves) {
+		PackedMoveStack stack = getMoveStack();
+		try {
+			for (int i = 0; i < stack.getSize(); i++) {
+				addMove(createMove(stack.get(i)), moves);
+			}
+		} finally {
+			stack.popPly();
+		}
+	}
+
 	protected void rollbackCastlingMove(Move move) {
 		long kingFromBB, kingToBB, rookFromBB, rookToBB;
 
@@ -2157,6 +2645,15 @@ public class ClassicGame implements Game {
 		setEpSquareFromPreviousMove();
 	}
 
+	/**
+	 * Resolves the replayed moves if the ECO headers were deferred.
+	 */
+	protected void resolveReplayedEcoHeaders() {
+		if (replayIndex != -1 && isSettingEcoHeaders()) {
+			resolveReplayedMoves();
+		}
+	}
+
 	protected void rollbackEcoHeaders(Move move) {
 		if (isSettingEcoHeaders()) {
 			if (StringUtils.isNotBlank(move.getPreviousEcoHeader())) {
@@ -2255,6 +2752,14 @@ public class ClassicGame implements Game {
 		}
 	}
 
+	protected void setOrRemoveHeader(PgnHeader header, String value) {
+		if (StringUtils.isNotBlank(value)) {
+			setHeader(header, value);
+		} else {
+			removeHeader(header);
+		}
+	}
+
 	/**
 	 * Should be called before the move is made to update the san field.
 	 */
@@ -2264,8 +2769,8 @@ public class ClassicGame implements Game {
 			String shortAlgebraic = null;
 
 			if (move.isDrop()) {
-				move.setSan(PIECE_TO_SAN.charAt(move.getPiece()) + "@"
-						+ getSan(move.getTo()));
+				shortAlgebraic = PIECE_TO_SAN.charAt(move.getPiece()) + "@"
+						+ getSan(move.getTo());
 			} else if (move.isCastleShort()) {
 				shortAlgebraic = "O-O";
 			} else if (move.isCastleLong()) {
@@ -2352,22 +2857,18 @@ public class ClassicGame implements Game {
 							resultBB = knightMove(fromSquare) & toBB;
 							break;
 						case BISHOP:
-							resultBB = diagonalMove(fromSquare, emptyBB,
-                                    occupiedBB)
+							resultBB = bishopAttacks(fromSquare, occupiedBB)
 									& getNotColorToMoveBB() & toBB;
 							break;
 						case ROOK:
-							resultBB = orthogonalMove(fromSquare, emptyBB,
-                                    occupiedBB)
+							resultBB = rookAttacks(fromSquare, occupiedBB)
 									& getNotColorToMoveBB() & toBB;
 							break;
 						case QUEEN:
-							resultBB = orthogonalMove(fromSquare, emptyBB,
-                                    occupiedBB)
+							resultBB = rookAttacks(fromSquare, occupiedBB)
 									& getNotColorToMoveBB()
 									& toBB
-									| diagonalMove(fromSquare, emptyBB,
-                                    occupiedBB)
+									| bishopAttacks(fromSquare, occupiedBB)
 									& getNotColorToMoveBB() & toBB;
 							break;
 						}
@@ -2432,11 +2933,14 @@ public class ClassicGame implements Game {
 			result = matches.get(0);
 		} else {
 			// now do legality checking on whats left.
-			int kingSquare = bitscanForward(getPieceBB(colorToMove, KING));
-			int cachedColorToMove = colorToMove;
+			long kingBB = getPieceBB(colorToMove, KING);
+			int kingSquare = bitscanForward(kingBB);
+			long pinned = getPinnedPieces(kingSquare);
+			long evasionMask = getEvasionMask(kingSquare, getAttackers(
+					kingSquare, getOppositeColor(colorToMove), occupiedBB));
 			int matchesCount = 0;
 
-			if (kingSquare != EMPTY_SQUARE) { // Now trim illegals
+			if (kingBB != 0L) { // Now trim illegals
 				for (int i = 0; i < matches.getSize(); i++) {
 					Move current = matches.get(i);
 
@@ -2444,30 +2948,10 @@ public class ClassicGame implements Game {
 					if (current.isCastleLong() || current.isCastleShort()) {
 						continue;
 					}
-					synchronized (this) {
-						try {
-							forceMove(current);
-							if (current.getPiece() == KING) {
-								int newKingCoordinates = GameUtils
-										.bitscanForward(getPieceBB(
-												cachedColorToMove, KING));
-								if (!isInCheck(cachedColorToMove, GameUtils
-										.getBitboard(newKingCoordinates))) {
-									result = current;
-									matchesCount++;
-								} else {
-								}
-							} else {
-								if (!isInCheck(cachedColorToMove,
-										getBitboard(kingSquare))) {
-									result = current;
-									matchesCount++;
-								} else {
-								}
-							}
-							rollback();
-						} catch (IllegalArgumentException ie) {
-						}
+					if (isLegalMove(PackedMove.pack(current), kingSquare,
+							pinned, evasionMask)) {
+						result = current;
+						matchesCount++;
 					}
 				}
 			}
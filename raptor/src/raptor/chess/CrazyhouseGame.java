@@ -44,16 +44,15 @@ public class CrazyhouseGame extends ClassicGame {
 	}
 
 	/**
-	 * Overridden to invoke genDropMoves as well as super.getPseudoLegalMoves.
-	 * 
+	 * Overridden to invoke generatePseudoDropMoves as well as
+	 * super.generatePseudoLegalMoves.
 	 * 
 	 * {@inheritDoc}
 	 */
 	@Override
-	public PriorityMoveList getPseudoLegalMoves() {
-		PriorityMoveList result = super.getPseudoLegalMoves();
-		generatePseudoDropMoves(result);
-		return result;
+	public void generatePseudoLegalMoves(PackedMoveStack moves) {
+		super.generatePseudoLegalMoves(moves);
+		generatePseudoDropMoves(moves);
 	}
 
 	/**
@@ -66,12 +65,12 @@ public class CrazyhouseGame extends ClassicGame {
 
 	/**
 	 * Generates all of the pseudo legal drop moves in the position and adds
-	 * them to the specified move list.
+	 * them to the specified move stack.
 	 * 
 	 * @param moves
-	 *            A move list.
+	 *            A packed move stack.
 	 */
-	protected void generatePseudoDropMoves(PriorityMoveList moves) {
+	protected void generatePseudoDropMoves(PackedMoveStack moves) {
 
 		if (getDropCount(getColorToMove(), PAWN) > 0) {
 
@@ -79,7 +78,8 @@ public class CrazyhouseGame extends ClassicGame {
 			while (emptyBB != 0) {
 				int toSquare = bitscanForward(emptyBB);
 
-				addMove(new Move(toSquare, PAWN, getColorToMove()), moves);
+				moves.append(PackedMove.createDrop(toSquare, PAWN,
+						getColorToMove()));
 				emptyBB = bitscanClear(emptyBB);
 			}
 		}
@@ -90,7 +90,8 @@ public class CrazyhouseGame extends ClassicGame {
 			while (emptyBB != 0) {
 				int toSquare = bitscanForward(emptyBB);
 
-				addMove(new Move(toSquare, KNIGHT, getColorToMove()), moves);
+				moves.append(PackedMove.createDrop(toSquare, KNIGHT,
+						getColorToMove()));
 				emptyBB = bitscanClear(emptyBB);
 			}
 		}
@@ -101,7 +102,8 @@ public class CrazyhouseGame extends ClassicGame {
 			while (emptyBB != 0) {
 				int toSquare = bitscanForward(emptyBB);
 
-				addMove(new Move(toSquare, BISHOP, getColorToMove()), moves);
+				moves.append(PackedMove.createDrop(toSquare, BISHOP,
+						getColorToMove()));
 				emptyBB = bitscanClear(emptyBB);
 			}
 		}
@@ -112,7 +114,8 @@ public class CrazyhouseGame extends ClassicGame {
 			while (emptyBB != 0) {
 				int toSquare = bitscanForward(emptyBB);
 
-				addMove(new Move(toSquare, ROOK, getColorToMove()), moves);
+				moves.append(PackedMove.createDrop(toSquare, ROOK,
+						getColorToMove()));
 				emptyBB = bitscanClear(emptyBB);
 			}
 		}
@@ -123,12 +126,29 @@ public class CrazyhouseGame extends ClassicGame {
 			while (emptyBB != 0) {
 				int toSquare = bitscanForward(emptyBB);
 
-				addMove(new Move(toSquare, QUEEN, getColorToMove()), moves);
+				moves.append(PackedMove.createDrop(toSquare, QUEEN,
+						getColorToMove()));
 				emptyBB = bitscanClear(emptyBB);
 			}
 		}
 	}
 
+	/**
+	 * Overridden to handle drops. A drop can never expose the king, so it is
+	 * legal if it is not in check or if it blocks a single sliding check.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isLegalMove(int move, int kingSquare, long pinned,
+			long evasionMask) {
+		if (PackedMove.isDrop(move)) {
+			return (GameUtils.getBitboard(PackedMove.getTo(move)) & evasionMask) != 0L;
+		} else {
+			return super.isLegalMove(move, kingSquare, pinned, evasionMask);
+		}
+	}
+
 	/**
 	 * Overridden to add in drops and remove all drop moves from pseudoLegals.
 	 * 
@@ -136,26 +156,28 @@ public class CrazyhouseGame extends ClassicGame {
 	 */
 	@Override
 	protected Move makeSanMoveOverride(String shortAlgebraic,
-			SanValidations validations, Move[] pseudoLegals) {
+			SanValidations validations, PackedMoveStack pseudoLegals) {
 		Move result = null;
 		if (SanUtils.isValidDropStrict(validations.getStrictSan())) {
-			for (Move move : getPseudoLegalMoves().asArray()) {
-				if ((move.getMoveCharacteristic() & Move.DROP_CHARACTERISTIC) != 0
-						&& move.getPiece() == SanUtils.sanToPiece(validations
-								.getStrictSan().charAt(0))
-						&& move.getTo() == GameUtils.getSquare(RANK_FROM_SAN
-								.indexOf(validations.getStrictSan().charAt(3)),
-								FILE_FROM_SAN.indexOf(validations
-										.getStrictSan().charAt(2)))) {
-					result = move;
-					move.setSan(shortAlgebraic);
+			int piece = SanUtils.sanToPiece(validations.getStrictSan()
+					.charAt(0));
+			int toSquare = GameUtils.getSquare(RANK_FROM_SAN
+					.indexOf(validations.getStrictSan().charAt(3)),
+					FILE_FROM_SAN.indexOf(validations.getStrictSan().charAt(2)));
+			for (int i = 0; i < pseudoLegals.getSize(); i++) {
+				int move = pseudoLegals.get(i);
+				if (PackedMove.isDrop(move)
+						&& PackedMove.getPiece(move) == piece
+						&& PackedMove.getTo(move) == toSquare) {
+					result = createMove(move);
+					result.setSan(shortAlgebraic);
 					break;
 				}
 			}
 		} else {
-			for (int i = 0; i < pseudoLegals.length; i++) {
-				if (pseudoLegals[i].isDrop()) {
-					pseudoLegals[i] = null;
+			for (int i = pseudoLegals.getSize() - 1; i >= 0; i--) {
+				if (PackedMove.isDrop(pseudoLegals.get(i))) {
+					pseudoLegals.remove(i);
 				}
 			}
 		}
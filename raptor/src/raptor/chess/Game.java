@@ -77,6 +77,14 @@ public interface Game extends GameConstants {
 	 */
 	public static final int PLAYING_STATE = ACTIVE_STATE << 3;
 
+	/**
+	 * The replay state bitmask. Set while a large number of moves are being
+	 * made in bulk, e.g. loading a pgn game. Move SAN and ECO headers are not
+	 * computed as moves are made, they are computed the first time they are
+	 * accessed. Should be cleared once the bulk replay is done.
+	 */
+	public static final int REPLAY_STATE = ACTIVE_STATE << 13;
+
 	/**
 	 * The setup bitmask. Set when the game is in a setup state e.g. the
 	 * position is being set up.
@@ -141,6 +149,20 @@ public interface Game extends GameConstants {
 	 */
 	public void forceMove(Move move);
 
+	/**
+	 * Appends all legal moves in the current position to the move stack as
+	 * packed ints. This is faster than getLegalMoves since no Move objects
+	 * are created.
+	 */
+	public void generateLegalMoves(PackedMoveStack moves);
+
+	/**
+	 * Appends all pseudo legal moves in the current position to the move
+	 * stack as packed ints. Moves made from the stack with move(int) must be
+	 * made in the position they were generated in.
+	 */
+	public void generatePseudoLegalMoves(PackedMoveStack moves);
+
 	/**
 	 * Returns an array of all of the pgn headers set for this game.
 	 */
@@ -525,6 +547,16 @@ public interface Game extends GameConstants {
 	public Move makeSanMove(String shortAlgebraic)
 			throws IllegalArgumentException;
 
+	/**
+	 * Makes a packed move generated by generatePseudoLegalMoves. If the move
+	 * is illegal false is returned.
+	 * 
+	 * @param move
+	 *            The packed move to make.
+	 * @return true if the move was legal, false otherwise.
+	 */
+	public boolean move(int move);
+
 	/**
 	 * Makes a move. If the move is illegal false is returned.
 	 * 
@@ -544,6 +576,13 @@ public interface Game extends GameConstants {
 	 */
 	public void removeHeader(PgnHeader headerName);
 
+	/**
+	 * Computes the move SAN and ECO headers which were deferred while the game
+	 * was in REPLAY_STATE. This is invoked lazily the first time either is
+	 * accessed and does nothing if no work is pending.
+	 */
+	public void resolveReplayedMoves();
+
 	/**
 	 * Rolls back the last move made.
 	 */
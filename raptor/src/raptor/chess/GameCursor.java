@@ -13,6 +13,9 @@
  */
 package raptor.chess;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import raptor.chess.pgn.PgnHeader;
 import raptor.util.RaptorLogger;
 
@@ -37,6 +40,12 @@ import raptor.util.RaptorLogger;
  * <p>
  * Cursor position 1 is the position after the first move is made.
  * </p>
+ * <p>
+ * Seeking keeps a snapshot of the master game every SNAPSHOT_INTERVAL half
+ * moves. The cursor is positioned by stepping from the current cursor game
+ * when it is close, otherwise from a copy of the nearest snapshot, so a seek
+ * never makes more than SNAPSHOT_INTERVAL moves or rollbacks.
+ * </p>
  */
 public class GameCursor implements Game {
 
@@ -65,6 +74,11 @@ public class GameCursor implements Game {
 
 	static final RaptorLogger LOG = RaptorLogger.getLog(GameCursor.class);
 
+	/**
+	 * The number of half moves between snapshots.
+	 */
+	public static final int SNAPSHOT_INTERVAL = 16;
+
 	protected Game cursor;
 	protected int cursorPosition;
 	protected int cursorPositionBeforeCursorMoves;
@@ -72,6 +86,17 @@ public class GameCursor implements Game {
 	protected Game master;
 	protected Game masterBackup;
 	protected Mode mode;
+	/**
+	 * The master game the snapshots were taken from and its first move. Used
+	 * to detect when the snapshots no longer apply.
+	 */
+	protected Move snapshotFirstMove;
+	protected Game snapshotMaster;
+	/**
+	 * The snapshot at index i is the position after i * SNAPSHOT_INTERVAL
+	 * half moves. Snapshots are never handed out, the cursor is always a copy.
+	 */
+	protected List<Game> snapshots = new ArrayList<Game>();
 
 	public GameCursor(Game master, Mode mode) {
 		this.master = master;
@@ -162,6 +187,14 @@ public class GameCursor implements Game {
 		}
 	}
 
+	public void generateLegalMoves(PackedMoveStack moves) {
+		cursor.generateLegalMoves(moves);
+	}
+
+	public void generatePseudoLegalMoves(PackedMoveStack moves) {
+		cursor.generatePseudoLegalMoves(moves);
+	}
+
 	public PgnHeader[] getAllHeaders() {
 		return master.getAllHeaders();
 	}
@@ -480,6 +513,23 @@ public class GameCursor implements Game {
 		}
 	}
 
+	public boolean move(int move) {
+		switch (mode) {
+		case MakeMovesOnMaster:
+			return master.move(move);
+		case MakeMovesOnMasterSetCursorToLast:
+			boolean result = master.move(move);
+			setCursorMasterLast();
+			return result;
+		case MakeMovesOnCursor:
+			boolean cursorResult = cursor.move(move);
+			adjustToCursorMove();
+			return cursorResult;
+		default:
+			throw new IllegalStateException("Invalid mode: " + mode);
+		}
+	}
+
 	public boolean move(Move move) {
 		switch (mode) {
 		case MakeMovesOnMaster:
@@ -507,6 +557,13 @@ public class GameCursor implements Game {
 				"This operation is not supported in GameCursor");
 	}
 
+	public void resolveReplayedMoves() {
+		master.resolveReplayedMoves();
+		if (cursor != master) {
+			cursor.resolveReplayedMoves();
+		}
+	}
+
 	/**
 	 * Behavior depends on the mode.
 	 */
@@ -592,10 +649,18 @@ public class GameCursor implements Game {
 		}
 
 		if (cursorPosition != halfMoveIndex) {
-			cursor = master.deepCopy(true);
-			while (cursor.getMoveList().getSize() > halfMoveIndex) {
-				cursor.rollback();
+			if (getMoveList().getSize() == 0) {
+				cursor = master.deepCopy(true);
+			} else if (isCursorOnMasterLine()
+					&& Math.abs(cursor.getMoveList().getSize()
+							- halfMoveIndex) <= SNAPSHOT_INTERVAL) {
+				stepTo(cursor, halfMoveIndex);
+			} else {
+				cursor = getSnapshot(halfMoveIndex / SNAPSHOT_INTERVAL)
+						.deepCopy(true);
+				stepTo(cursor, halfMoveIndex);
 			}
+			updateCursorHeaders();
 		}
 		cursorPosition = halfMoveIndex;
 
@@ -740,4 +805,82 @@ public class GameCursor implements Game {
 		cursorPosition = cursor.getMoveList().getSize();
 		isInCursorSubline = true;
 	}
+
+	/**
+	 * Returns the snapshot after index * SNAPSHOT_INTERVAL half moves of the
+	 * master game. Snapshots the master no longer agrees with, e.g. after a
+	 * take back, are dropped and missing ones are built from the one before.
+	 */
+	protected Game getSnapshot(int index) {
+		MoveList moves = getMoveList();
+		if (snapshotMaster != master || snapshots.isEmpty()
+				|| moves.get(0) != snapshotFirstMove) {
+			snapshots.clear();
+			snapshotMaster = master;
+			snapshotFirstMove = moves.get(0);
+			Game initialPosition = master.deepCopy(true);
+			stepTo(initialPosition, 0);
+			snapshots.add(initialPosition);
+		}
+
+		for (int i = 1; i < snapshots.size(); i++) {
+			int halfMoveIndex = i * SNAPSHOT_INTERVAL;
+			if (halfMoveIndex > moves.getSize()
+					|| snapshots.get(i).getMoveList().getLast() != moves
+							.get(halfMoveIndex - 1)) {
+				snapshots.subList(i, snapshots.size()).clear();
+				break;
+			}
+		}
+
+		while (snapshots.size() <= index) {
+			Game snapshot = snapshots.get(snapshots.size() - 1).deepCopy(true);
+			stepTo(snapshot, snapshots.size() * SNAPSHOT_INTERVAL);
+			snapshots.add(snapshot);
+		}
+		return snapshots.get(index);
+	}
+
+	/**
+	 * Returns true if the cursor game is a copy of the master game positioned
+	 * on one of the master games moves, in which case it can be stepped to
+	 * another move.
+	 */
+	protected boolean isCursorOnMasterLine() {
+		if (cursor == master || cursor == masterBackup) {
+			return false;
+		}
+		MoveList cursorMoves = cursor.getMoveList();
+		MoveList moves = getMoveList();
+		return cursorMoves.getSize() > 0
+				&& cursorMoves.getSize() <= moves.getSize()
+				&& cursorMoves.getLast() == moves
+						.get(cursorMoves.getSize() - 1);
+	}
+
+	/**
+	 * Copies the masters headers onto the cursor game, which may be an older
+	 * copy. The ECO headers are left alone since they depend on the position.
+	 */
+	protected void updateCursorHeaders() {
+		for (PgnHeader header : master.getAllHeaders()) {
+			if (header != PgnHeader.ECO && header != PgnHeader.Opening) {
+				cursor.setHeader(header, master.getHeader(header));
+			}
+		}
+	}
+
+	/**
+	 * Makes or rolls back moves on the game until it is at the half move index
+	 * of the master game. The game must be on the master games line.
+	 */
+	protected void stepTo(Game game, int halfMoveIndex) {
+		MoveList moves = getMoveList();
+		while (game.getMoveList().getSize() > halfMoveIndex) {
+			game.rollback();
+		}
+		while (game.getMoveList().getSize() < halfMoveIndex) {
+			game.forceMove(moves.get(game.getMoveList().getSize()));
+		}
+	}
 }
@@ -46,41 +46,25 @@ public class LosersGame extends ClassicGame {
 	 * 
 	 */
 	@Override
-	public PriorityMoveList getLegalMoves() {
-		PriorityMoveList result = super.getLegalMoves();
+	public void generateLegalMoves(PackedMoveStack moves) {
+		super.generateLegalMoves(moves);
+
 		boolean hasCapture = false;
-		for (int i = 0; i < result.getHighPrioritySize(); i++) {
-			setSan(result.getHighPriority(i));
-			if (result.getHighPriority(i).isCapture()) {
+		for (int i = 0; i < moves.getSize(); i++) {
+			if (PackedMove.isCapture(moves.get(i))) {
 				hasCapture = true;
 				break;
 			}
 		}
-		if (!hasCapture) {
-			for (int i = 0; i < result.getLowPrioritySize(); i++) {
-				setSan(result.getLowPriority(i));
-				if (result.getLowPriority(i).isCapture()) {
-					hasCapture = true;
-					break;
-				}
-			}
-		}
 
 		if (hasCapture) {
-			PriorityMoveList onlyCaptures = new PriorityMoveList();
-			for (int i = 0; i < result.getHighPrioritySize(); i++) {
-				if (result.getHighPriority(i).isCapture()) {
-					onlyCaptures.appendHighPriority(result.getHighPriority(i));
-				}
-			}
-			for (int i = 0; i < result.getLowPrioritySize(); i++) {
-				if (result.getLowPriority(i).isCapture()) {
-					onlyCaptures.appendHighPriority(result.getHighPriority(i));
+			int captureCount = 0;
+			for (int i = 0; i < moves.getSize(); i++) {
+				if (PackedMove.isCapture(moves.get(i))) {
+					moves.set(captureCount++, moves.get(i));
 				}
 			}
-			return onlyCaptures;
-		} else {
-			return result;
+			moves.truncate(captureCount);
 		}
 	}
 }
@@ -78,6 +78,12 @@ public class Move implements GameConstants {
 	 */
 	protected String previousOpeningHeader;
 
+	/**
+	 * The game which deferred setting the san of this move while it was in
+	 * REPLAY_STATE. Cleared once the san is set.
+	 */
+	protected Game replayGame;
+
 	/**
 	 * Used only for atomic.
 	 * 
@@ -325,6 +331,9 @@ public class Move implements GameConstants {
 	}
 
 	public String getSan() {
+		if (san == null && replayGame != null) {
+			replayGame.resolveReplayedMoves();
+		}
 		return san;
 	}
 
@@ -500,8 +509,17 @@ public class Move implements GameConstants {
 		this.previousOpeningHeader = previousOpeningHeader;
 	}
 
+	/**
+	 * Sets the game which will lazily compute the san of this move the first
+	 * time it is accessed.
+	 */
+	public void setReplayGame(Game replayGame) {
+		this.replayGame = replayGame;
+	}
+
 	public void setSan(String san) {
 		this.san = san;
+		replayGame = null;
 	}
 
 	public void setTo(int to) {
@@ -0,0 +1,160 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess;
+
+import raptor.chess.util.GameUtils;
+
+/**
+ * Static helpers for moves packed into a single int. Move generation uses
+ * packed moves so no objects are created for moves which are never made. A
+ * full {@link Move} is only created when a move is actually made or handed
+ * back to a caller.
+ * 
+ * <pre>
+ * bits  0-6   from square (drop squares included)
+ * bits  7-12  to square
+ * bits 13-16  piece moving with its promote mask
+ * bits 17-20  piece captured with its promote mask
+ * bits 21-24  piece promoted to
+ * bit  25     color moving
+ * bits 26-31  move characteristic
+ * </pre>
+ * 
+ * The ep square is not stored. It is always the square between the from and
+ * to squares of a double pawn push.
+ */
+public final class PackedMove implements GameConstants {
+	private static final int CAPTURE_SHIFT = 17;
+	private static final int CHARACTERISTIC_SHIFT = 26;
+	private static final int COLOR_SHIFT = 25;
+	private static final int PIECE_SHIFT = 13;
+	private static final int PROMOTED_SHIFT = 21;
+	private static final int TO_SHIFT = 7;
+
+	/**
+	 * Returns a packed drop move.
+	 */
+	public static int createDrop(int to, int piece, int color) {
+		return create(GameUtils.getDropSquareFromColoredPiece(GameUtils
+				.getColoredPiece(piece, color)), to, piece, color, EMPTY,
+				EMPTY, Move.DROP_CHARACTERISTIC);
+	}
+
+	/**
+	 * Returns a packed non promotion move with no special characteristic.
+	 */
+	public static int create(int from, int to, int piece, int color,
+			int capture) {
+		return from | to << TO_SHIFT | piece << PIECE_SHIFT
+				| capture << CAPTURE_SHIFT | color << COLOR_SHIFT;
+	}
+
+	/**
+	 * Returns a packed move.
+	 */
+	public static int create(int from, int to, int piece, int color,
+			int capture, int piecePromotedTo, int moveCharacteristic) {
+		return from | to << TO_SHIFT | piece << PIECE_SHIFT
+				| capture << CAPTURE_SHIFT | piecePromotedTo << PROMOTED_SHIFT
+				| color << COLOR_SHIFT
+				| moveCharacteristic << CHARACTERISTIC_SHIFT;
+	}
+
+	/**
+	 * Returns the capture with its promote mask.
+	 */
+	public static int getCaptureWithPromoteMask(int move) {
+		return move >>> CAPTURE_SHIFT & 15;
+	}
+
+	public static int getColor(int move) {
+		return move >>> COLOR_SHIFT & 1;
+	}
+
+	public static int getEpSquare(int move) {
+		return (getMoveCharacteristic(move) & Move.DOUBLE_PAWN_PUSH_CHARACTERISTIC) != 0 ? getFrom(move)
+				+ getTo(move) >> 1
+				: EMPTY_SQUARE;
+	}
+
+	public static int getFrom(int move) {
+		return move & 127;
+	}
+
+	public static int getMoveCharacteristic(int move) {
+		return move >>> CHARACTERISTIC_SHIFT;
+	}
+
+	/**
+	 * Returns the piece moving without its promote mask.
+	 */
+	public static int getPiece(int move) {
+		return move >>> PIECE_SHIFT & NOT_PROMOTED_MASK;
+	}
+
+	public static int getPiecePromotedTo(int move) {
+		return move >>> PROMOTED_SHIFT & 15;
+	}
+
+	/**
+	 * Returns the piece moving with its promote mask.
+	 */
+	public static int getPieceWithPromoteMask(int move) {
+		return move >>> PIECE_SHIFT & 15;
+	}
+
+	public static int getTo(int move) {
+		return move >>> TO_SHIFT & 63;
+	}
+
+	public static boolean isCapture(int move) {
+		return (move >>> CAPTURE_SHIFT & NOT_PROMOTED_MASK) != EMPTY;
+	}
+
+	public static boolean isCastle(int move) {
+		return (getMoveCharacteristic(move) & (Move.SHORT_CASTLING_CHARACTERISTIC | Move.LONG_CASTLING_CHARACTERISTIC)) != 0;
+	}
+
+	public static boolean isDrop(int move) {
+		return (getMoveCharacteristic(move) & Move.DROP_CHARACTERISTIC) != 0;
+	}
+
+	public static boolean isPromotion(int move) {
+		return getPiecePromotedTo(move) != EMPTY;
+	}
+
+	/**
+	 * Packs the move. Annotations, SAN and any variant specific information
+	 * are not packed.
+	 */
+	public static int pack(Move move) {
+		return create(move.getFrom(), move.getTo(), move
+				.getPieceWithPromoteMask(), move.getColor(), move
+				.getCaptureWithPromoteMask(), move.getPiecePromotedTo(), move
+				.getMoveCharacteristic());
+	}
+
+	/**
+	 * Creates a new Move from the packed move.
+	 */
+	public static Move toMove(int move) {
+		return new Move(getFrom(move), getTo(move),
+				getPieceWithPromoteMask(move), getColor(move),
+				getCaptureWithPromoteMask(move), getPiecePromotedTo(move),
+				getEpSquare(move), getMoveCharacteristic(move));
+	}
+
+	private PackedMove() {
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess;
+
+import java.util.Arrays;
+
+/**
+ * A reusable stack of packed moves (see {@link PackedMove}) divided into
+ * plies. Move generation pushes a ply, appends the moves it generates and
+ * pops the ply when it is done with them, so walking a tree of moves reuses
+ * the same int array instead of creating move lists per node.
+ * 
+ * Indexes passed to get, set and remove are relative to the current ply.
+ * This class is not thread safe.
+ */
+public final class PackedMoveStack {
+	private int[] moves;
+	private int ply = -1;
+	private int[] plyStarts = new int[16];
+	private int size;
+
+	public PackedMoveStack() {
+		this(256);
+	}
+
+	public PackedMoveStack(int initialCapacity) {
+		moves = new int[initialCapacity];
+	}
+
+	/**
+	 * Appends a move to the current ply.
+	 */
+	public void append(int move) {
+		if (size == moves.length) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		moves[size++] = move;
+	}
+
+	/**
+	 * Returns the move at the index in the current ply.
+	 */
+	public int get(int index) {
+		return moves[plyStarts[ply] + index];
+	}
+
+	/**
+	 * Returns the current ply, -1 if no ply has been pushed.
+	 */
+	public int getPly() {
+		return ply;
+	}
+
+	/**
+	 * Returns the number of moves in the current ply.
+	 */
+	public int getSize() {
+		return size - plyStarts[ply];
+	}
+
+	/**
+	 * Discards the current ply and all of its moves.
+	 */
+	public void popPly() {
+		size = plyStarts[ply--];
+	}
+
+	/**
+	 * Starts a new empty ply on top of the stack.
+	 */
+	public void pushPly() {
+		if (++ply == plyStarts.length) {
+			plyStarts = Arrays.copyOf(plyStarts, plyStarts.length * 2);
+		}
+		plyStarts[ply] = size;
+	}
+
+	/**
+	 * Removes the move at the index in the current ply. The last move in the
+	 * ply takes its place so the order of the moves is not preserved.
+	 */
+	public void remove(int index) {
+		moves[plyStarts[ply] + index] = moves[--size];
+	}
+
+	/**
+	 * Replaces the move at the index in the current ply.
+	 */
+	public void set(int index, int move) {
+		moves[plyStarts[ply] + index] = move;
+	}
+
+	/**
+	 * Discards the moves in the current ply from the index on.
+	 */
+	public void truncate(int index) {
+		size = plyStarts[ply] + index;
+	}
+}
@@ -18,12 +18,24 @@ import java.util.Arrays;
 import java.util.List;
 
 public final class PriorityMoveList implements GameConstants {
-	private Move[] highPriorityMoves = new Move[MAX_LEGAL_MOVES];
+	private Move[] highPriorityMoves;
 	int highPrioritySize;
 
-	private Move[] lowPriorityMoves = new Move[MAX_LEGAL_MOVES];
+	private Move[] lowPriorityMoves;
 	int lowPrioritySize;
 
+	public PriorityMoveList() {
+		this(MAX_LEGAL_MOVES);
+	}
+
+	/**
+	 * Creates a list which can hold maxSize moves of each priority.
+	 */
+	public PriorityMoveList(int maxSize) {
+		highPriorityMoves = new Move[maxSize];
+		lowPriorityMoves = new Move[maxSize];
+	}
+
 	public void appendHighPriority(Move move) {
 		highPriorityMoves[highPrioritySize++] = move;
 	}
@@ -53,6 +65,11 @@ public final class PriorityMoveList implements GameConstants {
 		return result;
 	}
 
+	public void clear() {
+		highPrioritySize = 0;
+		lowPrioritySize = 0;
+	}
+
 	public Move getHighPriority(int index) {
 		return highPriorityMoves[index];
 	}
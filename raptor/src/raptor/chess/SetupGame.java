@@ -31,6 +31,18 @@ public class SetupGame extends ClassicGame {
 		return result;
 	}
 
+	/**
+	 * Overridden to allow every move while in the setup state.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isLegalMove(int move, int kingSquare, long pinned,
+			long evasionMask) {
+		return isInState(Game.SETUP_STATE)
+				|| super.isLegalMove(move, kingSquare, pinned, evasionMask);
+	}
+
 	/**
 	 * Overridden to always return true.
 	 * 
@@ -132,41 +132,25 @@ public class SuicideGame extends ClassicGame {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public PriorityMoveList getLegalMoves() {
-		PriorityMoveList result = getPseudoLegalMoves();
+	public void generateLegalMoves(PackedMoveStack moves) {
+		generatePseudoLegalMoves(moves);
+
 		boolean hasCapture = false;
-		for (int i = 0; i < result.getHighPrioritySize(); i++) {
-			setSan(result.getHighPriority(i));
-			if (result.getHighPriority(i).isCapture()) {
+		for (int i = 0; i < moves.getSize(); i++) {
+			if (PackedMove.isCapture(moves.get(i))) {
 				hasCapture = true;
 				break;
 			}
 		}
-		if (!hasCapture) {
-			for (int i = 0; i < result.getLowPrioritySize(); i++) {
-				setSan(result.getLowPriority(i));
-				if (result.getLowPriority(i).isCapture()) {
-					hasCapture = true;
-					break;
-				}
-			}
-		}
 
 		if (hasCapture) {
-			PriorityMoveList onlyCaptures = new PriorityMoveList();
-			for (int i = 0; i < result.getHighPrioritySize(); i++) {
-				if (result.getHighPriority(i).isCapture()) {
-					onlyCaptures.appendHighPriority(result.getHighPriority(i));
+			int captureCount = 0;
+			for (int i = 0; i < moves.getSize(); i++) {
+				if (PackedMove.isCapture(moves.get(i))) {
+					moves.set(captureCount++, moves.get(i));
 				}
 			}
-			for (int i = 0; i < result.getLowPrioritySize(); i++) {
-				if (result.getLowPriority(i).isCapture()) {
-					onlyCaptures.appendHighPriority(result.getHighPriority(i));
-				}
-			}
-			return onlyCaptures;
-		} else {
-			return result;
+			moves.truncate(captureCount);
 		}
 	}
 
@@ -187,7 +171,7 @@ public class SuicideGame extends ClassicGame {
 	 */
 	@Override
 	public Move makeSanMoveOverride(String shortAlgebraic,
-			SanValidations validations, Move[] pseudoLegals) {
+			SanValidations validations, PackedMoveStack pseudoLegals) {
 		String san = validations.getStrictSan();
 
 		Move result = null;
@@ -199,35 +183,38 @@ public class SuicideGame extends ClassicGame {
 				int toSquare = GameUtils.getSquare(RANK_FROM_SAN.indexOf(san
 						.charAt(1)), FILE_FROM_SAN.indexOf(san.charAt(0)));
 
-				for (Move move : pseudoLegals) {
-					if (move.getTo() == toSquare && move.getPiece() == PAWN
-							&& move.isPromotion()
-							&& move.getPiecePromotedTo() == KING) {
-						matches.append(move);
+				for (int i = 0; i < pseudoLegals.getSize(); i++) {
+					int move = pseudoLegals.get(i);
+					if (PackedMove.getTo(move) == toSquare
+							&& PackedMove.getPiece(move) == PAWN
+							&& PackedMove.getPiecePromotedTo(move) == KING) {
+						matches.append(createMove(move));
 					}
 				}
 			} else if (SanUtils.isValidSuicidePxPromotionStrict(san)) {
 				int fromFile = FILE_FROM_SAN.indexOf(san.charAt(0));
 				int toFile = FILE_FROM_SAN.indexOf(san.charAt(1));
 
-				for (Move move : pseudoLegals) {
-					if (GameUtils.getFile(move.getTo()) == toFile
-							&& GameUtils.getFile(move.getFrom()) == fromFile
-							&& move.getPiece() == PAWN && move.isPromotion()
-							&& move.getPiecePromotedTo() == KING) {
-						matches.append(move);
+				for (int i = 0; i < pseudoLegals.getSize(); i++) {
+					int move = pseudoLegals.get(i);
+					if (GameUtils.getFile(PackedMove.getTo(move)) == toFile
+							&& GameUtils.getFile(PackedMove.getFrom(move)) == fromFile
+							&& PackedMove.getPiece(move) == PAWN
+							&& PackedMove.getPiecePromotedTo(move) == KING) {
+						matches.append(createMove(move));
 					}
 				}
 			} else if (SanUtils.isValidSuicideAmbigPxPromotion(san)) {
 				int fromFile = FILE_FROM_SAN.indexOf(san.charAt(0));
 				int toSquare = GameUtils.getSquare(RANK_FROM_SAN.indexOf(san
 						.charAt(2)), FILE_FROM_SAN.indexOf(san.charAt(1)));
-				for (Move move : pseudoLegals) {
-					if (move.getTo() == toSquare
-							&& GameUtils.getFile(move.getFrom()) == fromFile
-							&& move.getPiece() == PAWN && move.isPromotion()
-							&& move.getPiecePromotedTo() == KING) {
-						matches.append(move);
+				for (int i = 0; i < pseudoLegals.getSize(); i++) {
+					int move = pseudoLegals.get(i);
+					if (PackedMove.getTo(move) == toSquare
+							&& GameUtils.getFile(PackedMove.getFrom(move)) == fromFile
+							&& PackedMove.getPiece(move) == PAWN
+							&& PackedMove.getPiecePromotedTo(move) == KING) {
+						matches.append(createMove(move));
 					}
 				}
 			}
@@ -283,6 +270,17 @@ public class SuicideGame extends ClassicGame {
 		}
 	}
 
+	/**
+	 * Suicide overrides the Move based generators, so packed moves are created
+	 * from them instead.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isGeneratingPackedMoves() {
+		return false;
+	}
+
 	/**
 	 * There is no disambiguation from check in suicide. So just throw an
 	 * exception on more than 1 match.
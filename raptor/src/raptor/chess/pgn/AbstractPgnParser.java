@@ -21,12 +21,25 @@ import raptor.chess.Result;
 public abstract class AbstractPgnParser implements PgnParser {
 
 	protected boolean parseCancelled = false;
+	protected boolean headerOnly = false;
 	public List<PgnParserListener> listeners = new ArrayList<PgnParserListener>(3);
 
+	/**
+	 * Returns true if only game starts, headers and game ends are fired. The
+	 * move text is skipped without firing any move events.
+	 */
+	public boolean isHeaderOnly() {
+		return headerOnly;
+	}
+
 	public boolean isParseCancelled() {
 		return parseCancelled;
 	}
 
+	public void setHeaderOnly(boolean headerOnly) {
+		this.headerOnly = headerOnly;
+	}
+
 	public void setParseCancelled(boolean parseCancelled) {
 		this.parseCancelled = parseCancelled;
 	}
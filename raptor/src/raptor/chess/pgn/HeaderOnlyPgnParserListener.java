@@ -0,0 +1,92 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.pgn;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import raptor.chess.Result;
+
+/**
+ * A PgnParserListener which only collects the headers of each game. Use it
+ * with a parser in header only mode to list the games in a file without
+ * replaying their moves.
+ */
+public abstract class HeaderOnlyPgnParserListener implements PgnParserListener {
+
+	protected Map<String, String> currentHeaders = new HashMap<String, String>();
+
+	protected boolean isParsingGame;
+
+	protected int lastStartLineNumber = 0;
+
+	public HeaderOnlyPgnParserListener() {
+	}
+
+	/**
+	 * Invoked when the end of a game is reached. Returns true to cancel the
+	 * parse.
+	 * 
+	 * @param headers
+	 *            The games headers keyed by header name.
+	 * @param result
+	 *            The result from the games game end indicator.
+	 * @param lineNumber
+	 *            The line number of the games Event header.
+	 */
+	public abstract boolean headersParsed(Map<String, String> headers,
+			Result result, int lineNumber);
+
+	public void onAnnotation(PgnParser parser, String annotation) {
+	}
+
+	public boolean onGameEnd(PgnParser parser, Result result) {
+		if (isParsingGame) {
+			isParsingGame = false;
+			return headersParsed(currentHeaders, result, lastStartLineNumber);
+		}
+		return false;
+	}
+
+	public void onGameStart(PgnParser parser) {
+		currentHeaders = new HashMap<String, String>();
+		isParsingGame = true;
+		lastStartLineNumber = parser.getLineNumber();
+	}
+
+	public void onHeader(PgnParser parser, String headerName,
+			String headerValue) {
+		if (isParsingGame) {
+			currentHeaders.put(headerName, headerValue);
+		}
+	}
+
+	public void onMoveNag(PgnParser parser, Nag nag) {
+	}
+
+	public void onMoveNumber(PgnParser parser, int moveNumber) {
+	}
+
+	public void onMoveSublineEnd(PgnParser parser) {
+	}
+
+	public void onMoveSublineStart(PgnParser parser) {
+	}
+
+	public void onMoveWord(PgnParser parser, String word) {
+	}
+
+	public void onUnknown(PgnParser parser, String unknown) {
+	}
+}
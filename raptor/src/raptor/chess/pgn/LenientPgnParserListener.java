@@ -74,46 +74,45 @@ public abstract class LenientPgnParserListener implements PgnParserListener {
 	public LenientPgnParserListener() {
 	}
 
-	public Game createGameFromDescription() {
-		String fen = null;
+	/**
+	 * Returns the variant of a game from its Variant header, or from keywords
+	 * in its Event header if it does not have one. Returns classic if neither
+	 * identifies the variant.
+	 */
+	public static Variant getVariant(Map<String, String> headers) {
 		Variant variant = null;
-		Game result = null;
-
-		if (currentHeaders.get(PgnHeader.FEN.name()) != null) {
-			fen = currentHeaders.get(PgnHeader.FEN.name());
-		}
 
 		// Check for the Variant header.
-		if (currentHeaders.get(PgnHeader.Variant.name()) != null) {
+		if (headers.get(PgnHeader.Variant.name()) != null) {
 			try {
-				variant = Variant.valueOf(currentHeaders.get(PgnHeader.Variant.name()));
+				variant = Variant.valueOf(headers.get(PgnHeader.Variant.name()));
 			} catch (IllegalArgumentException iae) {
 			}
 		}
 
 		// Couldn't find it now check for keywords in event.
-		if (variant == null && currentHeaders.get(PgnHeader.Event.name()) != null) {
-			if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "crazyhouse")) {
+		if (variant == null && headers.get(PgnHeader.Event.name()) != null) {
+			if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "crazyhouse")) {
 				variant = Variant.crazyhouse;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "standard")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "standard")) {
 				variant = Variant.standard;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "blitz")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "blitz")) {
 				variant = Variant.blitz;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "lightning")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "lightning")) {
 				variant = Variant.lightning;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "bullet")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "bullet")) {
 				variant = Variant.lightning;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "atomic")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "atomic")) {
 				variant = Variant.atomic;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "suicide")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "suicide")) {
 				variant = Variant.suicide;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "losers")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "losers")) {
 				variant = Variant.losers;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "wild/fr")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "wild/fr")) {
 				variant = Variant.fischerRandom;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "bughouse")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "bughouse")) {
 				variant = Variant.bughouse;
-			} else if (StringUtils.containsIgnoreCase(currentHeaders.get(PgnHeader.Event.name()), "wild")) {
+			} else if (StringUtils.containsIgnoreCase(headers.get(PgnHeader.Event.name()), "wild")) {
 				variant = Variant.wild;
 			}
 		}
@@ -122,6 +121,18 @@ public abstract class LenientPgnParserListener implements PgnParserListener {
 		if (variant == null) {
 			variant = Variant.classic;
 		}
+		return variant;
+	}
+
+	public Game createGameFromDescription() {
+		String fen = null;
+		Game result = null;
+
+		if (currentHeaders.get(PgnHeader.FEN.name()) != null) {
+			fen = currentHeaders.get(PgnHeader.FEN.name());
+		}
+
+		Variant variant = getVariant(currentHeaders);
 
 		if (fen != null) {
 			result = GameFactory.createFromFen(fen, variant);
@@ -188,6 +199,7 @@ public abstract class LenientPgnParserListener implements PgnParserListener {
 				// add the game
 				currentGame.setHeader(PgnHeader.Result, result.getDescription());
 				currentGame.addState(Game.INACTIVE_STATE);
+				currentGame.clearState(Game.REPLAY_STATE);
 				returnResult = gameParsed(currentGame, lastStartLineNumber);
 			} else {
 				errorEncountered(new PgnParserError(PgnParserError.Type.UNEXPECTED_GAME_END,
@@ -562,6 +574,7 @@ public abstract class LenientPgnParserListener implements PgnParserListener {
 			currentGame = createGameFromDescription();
 			currentGame.addState(Game.UPDATING_SAN_STATE);
 			currentGame.addState(Game.UPDATING_ECO_HEADERS_STATE);
+			currentGame.addState(Game.REPLAY_STATE);
 
 			// Set all of the headers.
 			for (Map.Entry<String, String> stringStringEntry : currentHeaders.entrySet()) {
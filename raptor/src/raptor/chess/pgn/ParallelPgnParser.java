@@ -0,0 +1,458 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.pgn;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import raptor.chess.Game;
+import raptor.chess.Result;
+
+/**
+ * A PGN parser which parses the games in a file on several threads.
+ *
+ * The file is split into games at the Event headers found by PgnDatabase.
+ * Batches of games are parsed on a pool with one thread per processor, and
+ * for LenientPgnParserListeners the moves are also replayed and validated on
+ * the pool. The results are delivered to the listeners on the thread calling
+ * parse(), either in file order or in the order the batches finish.
+ *
+ * LenientPgnParserListeners receive errorEncountered and gameParsed calls
+ * directly. The same Game is passed to each of them. Any other listener
+ * receives the full sequence of events for each game, and getLineNumber()
+ * returns the line of the event being delivered.
+ *
+ * Line numbers are physical line numbers in the file, the same as the ones
+ * reported by StreamingPgnParser. In header only mode each game is scanned
+ * the same way SimplePgnParser scans it.
+ */
+public class ParallelPgnParser extends AbstractPgnParser {
+
+	/**
+	 * A SimplePgnParser for the text of a single game which counts physical
+	 * lines starting at the game's line in the file.
+	 */
+	protected static class GameTextParser extends SimplePgnParser {
+		protected BufferedReader reader;
+
+		public GameTextParser(String pgn, int firstLineNumber) {
+			super(pgn);
+			reader = new BufferedReader(new StringReader(pgn));
+			lineNumber = firstLineNumber - 1;
+		}
+
+		@Override
+		protected void readNextLine() {
+			try {
+				currentLine = reader.readLine();
+				if (currentLine != null) {
+					lineNumber++;
+				}
+			} catch (IOException ioe) {
+				throw new RuntimeException(ioe);
+			}
+		}
+	}
+
+	/**
+	 * The result of parsing one game on the pool.
+	 */
+	protected static class ParsedGame {
+		protected List<PgnParserError> errors = new ArrayList<PgnParserError>(
+				2);
+		protected List<Object> eventArguments;
+		protected List<Integer> eventLineNumbers;
+		protected List<Integer> eventTypes;
+		protected List<Game> games = new ArrayList<Game>(1);
+		protected List<Integer> gameLineNumbers = new ArrayList<Integer>(1);
+	}
+
+	/**
+	 * Parses a batch of consecutive games.
+	 */
+	protected class ParseTask implements Callable<List<ParsedGame>> {
+		protected int fromIndex;
+		protected int toIndex;
+
+		public ParseTask(int fromIndex, int toIndex) {
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+		}
+
+		public List<ParsedGame> call() {
+			List<ParsedGame> result = new ArrayList<ParsedGame>(toIndex
+					- fromIndex);
+			for (int i = fromIndex; i < toIndex && !isParseCancelled(); i++) {
+				result.add(parseGame(database.getPgn(i), database
+						.getLineNumber(i)));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Records the events fired while parsing a game so they can be replayed to
+	 * the listeners which are not LenientPgnParserListeners.
+	 */
+	protected static class RecordingPgnParserListener implements
+			PgnParserListener {
+		protected ParsedGame parsedGame;
+
+		public RecordingPgnParserListener(ParsedGame parsedGame) {
+			this.parsedGame = parsedGame;
+			parsedGame.eventTypes = new ArrayList<Integer>(100);
+			parsedGame.eventLineNumbers = new ArrayList<Integer>(100);
+			parsedGame.eventArguments = new ArrayList<Object>(100);
+		}
+
+		public void onAnnotation(PgnParser parser, String annotation) {
+			record(parser, ANNOTATION_EVENT, annotation);
+		}
+
+		public boolean onGameEnd(PgnParser parser, Result result) {
+			record(parser, GAME_END_EVENT, result);
+			return false;
+		}
+
+		public void onGameStart(PgnParser parser) {
+			record(parser, GAME_START_EVENT, null);
+		}
+
+		public void onHeader(PgnParser parser, String headerName,
+				String headerValue) {
+			record(parser, HEADER_EVENT, new String[] { headerName,
+					headerValue });
+		}
+
+		public void onMoveNag(PgnParser parser, Nag nag) {
+			record(parser, MOVE_NAG_EVENT, nag);
+		}
+
+		public void onMoveNumber(PgnParser parser, int moveNumber) {
+			record(parser, MOVE_NUMBER_EVENT, moveNumber);
+		}
+
+		public void onMoveSublineEnd(PgnParser parser) {
+			record(parser, SUBLINE_END_EVENT, null);
+		}
+
+		public void onMoveSublineStart(PgnParser parser) {
+			record(parser, SUBLINE_START_EVENT, null);
+		}
+
+		public void onMoveWord(PgnParser parser, String word) {
+			record(parser, MOVE_WORD_EVENT, word);
+		}
+
+		public void onUnknown(PgnParser parser, String unknown) {
+			record(parser, UNKNOWN_EVENT, unknown);
+		}
+
+		protected void record(PgnParser parser, int type, Object argument) {
+			parsedGame.eventTypes.add(type);
+			parsedGame.eventLineNumbers.add(parser.getLineNumber());
+			parsedGame.eventArguments.add(argument);
+		}
+	}
+
+	/**
+	 * The number of games parsed by each task.
+	 */
+	public static final int BATCH_SIZE = 16;
+
+	protected static final int ANNOTATION_EVENT = 0;
+	protected static final int GAME_END_EVENT = 1;
+	protected static final int GAME_START_EVENT = 2;
+	protected static final int HEADER_EVENT = 3;
+	protected static final int MOVE_NAG_EVENT = 4;
+	protected static final int MOVE_NUMBER_EVENT = 5;
+	protected static final int MOVE_WORD_EVENT = 6;
+	protected static final int SUBLINE_END_EVENT = 7;
+	protected static final int SUBLINE_START_EVENT = 8;
+	protected static final int UNKNOWN_EVENT = 9;
+
+	protected PgnDatabase database;
+	protected File file;
+	protected boolean isOrdered;
+	protected boolean isRecordingEvents;
+	protected boolean isValidatingGames;
+	protected int lineNumber;
+	protected long maxBytes;
+	protected int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates a parser for the file.
+	 *
+	 * @param file
+	 *            The PGN file.
+	 * @param maxBytes
+	 *            Only the games starting in the first maxBytes of the file are
+	 *            parsed.
+	 * @param isOrdered
+	 *            True if games should be delivered in the order they appear in
+	 *            the file, false if they should be delivered as soon as they
+	 *            are parsed.
+	 */
+	public ParallelPgnParser(File file, long maxBytes, boolean isOrdered) {
+		this.file = file;
+		this.maxBytes = maxBytes;
+		this.isOrdered = isOrdered;
+	}
+
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public boolean isOrdered() {
+		return isOrdered;
+	}
+
+	/**
+	 * Parses the file. Runtime exceptions thrown by listeners stop the parse
+	 * and are rethrown.
+	 */
+	public void parse() {
+		isValidatingGames = false;
+		isRecordingEvents = false;
+		for (PgnParserListener listener : listeners) {
+			if (listener instanceof LenientPgnParserListener) {
+				isValidatingGames = true;
+			} else {
+				isRecordingEvents = true;
+			}
+		}
+
+		try {
+			database = PgnDatabase.open(file);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+
+		int gameCount = 0;
+		while (gameCount < database.getGameCount()
+				&& database.getOffset(gameCount) < maxBytes) {
+			gameCount++;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable runnable) {
+						Thread result = new Thread(runnable,
+								"ParallelPgnParser-" + count.incrementAndGet());
+						result.setDaemon(true);
+						return result;
+					}
+				});
+		CompletionService<List<ParsedGame>> completionService = new ExecutorCompletionService<List<ParsedGame>>(
+				executor);
+		LinkedList<Future<List<ParsedGame>>> pending = new LinkedList<Future<List<ParsedGame>>>();
+
+		try {
+			// Keep a few batches per thread queued so the pool never starves,
+			// without holding the parsed games of the whole file in memory.
+			int maxPending = threads * 4;
+			int nextIndex = 0;
+			while (!isParseCancelled()
+					&& (nextIndex < gameCount || !pending.isEmpty())) {
+				while (nextIndex < gameCount && pending.size() < maxPending) {
+					int toIndex = Math.min(nextIndex + BATCH_SIZE, gameCount);
+					ParseTask task = new ParseTask(nextIndex, toIndex);
+					// Ordered results are not taken from the completion
+					// service, so they must not be queued on it.
+					pending.add(isOrdered ? executor.submit(task)
+							: completionService.submit(task));
+					nextIndex = toIndex;
+				}
+
+				Future<List<ParsedGame>> future;
+				if (isOrdered) {
+					future = pending.removeFirst();
+				} else {
+					future = completionService.take();
+					pending.remove(future);
+				}
+				for (ParsedGame parsedGame : future.get()) {
+					deliver(parsedGame);
+					if (isParseCancelled()) {
+						break;
+					}
+				}
+			}
+		} catch (InterruptedException ie) {
+			setParseCancelled(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ee) {
+			throw new RuntimeException(ee.getCause());
+		} finally {
+			executor.shutdownNow();
+			database.close();
+			database = null;
+		}
+	}
+
+	/**
+	 * Sets the number of threads used to parse. Defaults to the number of
+	 * available processors.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Delivers a parsed game to the listeners.
+	 */
+	protected void deliver(ParsedGame parsedGame) {
+		if (isRecordingEvents) {
+			for (int i = 0; i < parsedGame.eventTypes.size(); i++) {
+				lineNumber = parsedGame.eventLineNumbers.get(i);
+				replay(parsedGame.eventTypes.get(i), parsedGame.eventArguments
+						.get(i));
+				if (isParseCancelled()) {
+					return;
+				}
+			}
+		}
+
+		if (isValidatingGames) {
+			// Each ParsedGame is the text following one Event header, so its
+			// errors all come before its game as in a sequential parse.
+			for (PgnParserError error : parsedGame.errors) {
+				for (PgnParserListener listener : listeners) {
+					if (listener instanceof LenientPgnParserListener) {
+						((LenientPgnParserListener) listener)
+								.errorEncountered(error);
+					}
+				}
+			}
+			for (int i = 0; i < parsedGame.games.size() && !isParseCancelled(); i++) {
+				deliverGame(parsedGame, i);
+			}
+		}
+	}
+
+	protected void deliverGame(ParsedGame parsedGame, int gameIndex) {
+		lineNumber = parsedGame.gameLineNumbers.get(gameIndex);
+		for (PgnParserListener listener : listeners) {
+			if (listener instanceof LenientPgnParserListener
+					&& ((LenientPgnParserListener) listener).gameParsed(
+							parsedGame.games.get(gameIndex), lineNumber)) {
+				setParseCancelled(true);
+			}
+		}
+	}
+
+	/**
+	 * Parses and validates the text of one game. Called on the pool.
+	 */
+	protected ParsedGame parseGame(String pgn, int firstLineNumber) {
+		final ParsedGame result = new ParsedGame();
+		GameTextParser parser = new GameTextParser(pgn, firstLineNumber);
+		parser.setHeaderOnly(isHeaderOnly());
+		if (isRecordingEvents) {
+			parser.addPgnParserListener(new RecordingPgnParserListener(result));
+		}
+		if (isValidatingGames) {
+			parser.addPgnParserListener(new LenientPgnParserListener() {
+				@Override
+				public void errorEncountered(PgnParserError error) {
+					result.errors.add(error);
+				}
+
+				@Override
+				public boolean gameParsed(Game game, int lineNumber) {
+					result.games.add(game);
+					result.gameLineNumbers.add(lineNumber);
+					return false;
+				}
+			});
+		}
+
+		try {
+			parser.parse();
+		} catch (RuntimeException re) {
+			result.errors.add(new PgnParserError(
+					PgnParserError.Type.UNKNWON_ERROR,
+					PgnParserError.Action.IGNORING_CURRENT_GAME, parser
+							.getLineNumber(), String.valueOf(re)));
+		}
+		return result;
+	}
+
+	/**
+	 * Fires a recorded event to the listeners which are not
+	 * LenientPgnParserListeners.
+	 */
+	protected void replay(int type, Object argument) {
+		for (PgnParserListener listener : listeners) {
+			if (listener instanceof LenientPgnParserListener) {
+				continue;
+			}
+			switch (type) {
+			case ANNOTATION_EVENT:
+				listener.onAnnotation(this, (String) argument);
+				break;
+			case GAME_END_EVENT:
+				if (listener.onGameEnd(this, (Result) argument)) {
+					setParseCancelled(true);
+				}
+				break;
+			case GAME_START_EVENT:
+				listener.onGameStart(this);
+				break;
+			case HEADER_EVENT:
+				String[] header = (String[]) argument;
+				listener.onHeader(this, header[0], header[1]);
+				break;
+			case MOVE_NAG_EVENT:
+				listener.onMoveNag(this, (Nag) argument);
+				break;
+			case MOVE_NUMBER_EVENT:
+				listener.onMoveNumber(this, (Integer) argument);
+				break;
+			case MOVE_WORD_EVENT:
+				listener.onMoveWord(this, (String) argument);
+				break;
+			case SUBLINE_END_EVENT:
+				listener.onMoveSublineEnd(this);
+				break;
+			case SUBLINE_START_EVENT:
+				listener.onMoveSublineStart(this);
+				break;
+			case UNKNOWN_EVENT:
+				listener.onUnknown(this, (String) argument);
+				break;
+			}
+		}
+	}
+}
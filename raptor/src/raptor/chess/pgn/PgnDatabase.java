@@ -0,0 +1,450 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.pgn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import raptor.chess.Game;
+import raptor.util.RaptorLogger;
+
+/**
+ * Random access to the games in a PGN file.
+ *
+ * The PGN file is memory mapped and scanned once for the lines starting a game
+ * with an Event header. The byte offset and line number of each game, and the
+ * values of the INDEXED_HEADERS, are kept in a side-car index file next to the
+ * PGN (the PGN path plus ".idx"). The index is memory mapped when the PGN is
+ * opened again and rebuilt if the PGN length or modification time changed.
+ * Games are only parsed when they are requested.
+ *
+ * The index file is laid out as:
+ *
+ * <pre>
+ * int    magic
+ * int    number of games
+ * long   length of the PGN file
+ * long   last modified time of the PGN file
+ * long[] offset of each game, followed by the PGN length
+ * int[]  line number of each game
+ * int[]  for each game the offset of each indexed header value in the string
+ *        area, -1 if the game does not have the header
+ * the strings, each an unsigned short byte length followed by UTF-8 bytes.
+ * </pre>
+ *
+ * If the index file can not be written it is only kept in memory.
+ */
+public class PgnDatabase {
+	private static final RaptorLogger LOG = RaptorLogger
+			.getLog(PgnDatabase.class);
+
+	/**
+	 * The headers whose values are stored in the index.
+	 */
+	public static final PgnHeader[] INDEXED_HEADERS = { PgnHeader.Event,
+			PgnHeader.Site, PgnHeader.Date, PgnHeader.White,
+			PgnHeader.WhiteElo, PgnHeader.Black, PgnHeader.BlackElo,
+			PgnHeader.Result, PgnHeader.ECO, PgnHeader.Opening,
+			PgnHeader.Variant };
+
+	public static final String INDEX_EXTENSION = ".idx";
+
+	private static final int MAGIC = 0x50474931;
+	private static final int HEADER_SIZE = 24;
+	private static final int SEGMENT_SHIFT = 30;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Opens the PGN file, loading its index or building it if it is missing or
+	 * stale.
+	 */
+	public static PgnDatabase open(File file) throws IOException {
+		PgnDatabase result = new PgnDatabase(file);
+		File indexFile = getIndexFile(file);
+		if (!result.loadIndex(indexFile)) {
+			long startTime = System.currentTimeMillis();
+			result.buildIndex();
+			try {
+				result.writeIndex(indexFile);
+			} catch (IOException ioe) {
+				LOG.warn("Could not write pgn index " + indexFile
+						+ ". It will only be kept in memory.", ioe);
+				indexFile.delete();
+			}
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Indexed " + result.getGameCount() + " games in "
+						+ file + " in "
+						+ (System.currentTimeMillis() - startTime) + "ms");
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the side-car index file for the PGN file.
+	 */
+	public static File getIndexFile(File file) {
+		return new File(file.getPath() + INDEX_EXTENSION);
+	}
+
+	private final File file;
+	private final Charset pgnCharset = Charset.defaultCharset();
+	private ByteBuffer[] segments;
+	private long length;
+	private ByteBuffer index;
+	private int gameCount;
+	private int linesOffset;
+	private int headersOffset;
+	private int stringsOffset;
+
+	private PgnDatabase(File file) throws IOException {
+		this.file = file;
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			length = channel.size();
+			segments = new ByteBuffer[(int) (length >>> SEGMENT_SHIFT) + 1];
+			for (int i = 0; i < segments.length; i++) {
+				long position = (long) i << SEGMENT_SHIFT;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						position, Math.min(length - position,
+								SEGMENT_MASK + 1L));
+			}
+		} finally {
+			// The mappings stay valid after the file is closed.
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Releases the mapped buffers. The database can not be used after it is
+	 * closed.
+	 */
+	public void close() {
+		segments = null;
+		index = null;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Parses and returns the game at the specified index. Errors are handled
+	 * leniently, and null is returned if the game could not be parsed.
+	 */
+	public Game getGame(int gameIndex) {
+		final Game[] result = new Game[1];
+		SimplePgnParser parser = new SimplePgnParser(getPgn(gameIndex));
+		parser.addPgnParserListener(new LenientPgnParserListener() {
+			@Override
+			public void errorEncountered(PgnParserError error) {
+			}
+
+			@Override
+			public boolean gameParsed(Game game, int lineNumber) {
+				result[0] = game;
+				return true;
+			}
+		});
+		try {
+			parser.parse();
+		} catch (RuntimeException re) {
+			LOG.warn("Error parsing game " + gameIndex + " in " + file, re);
+		}
+		return result[0];
+	}
+
+	/**
+	 * Returns the number of games in the file.
+	 */
+	public int getGameCount() {
+		return gameCount;
+	}
+
+	/**
+	 * Returns the index of the game containing the specified line, -1 if the
+	 * line is before the first game.
+	 */
+	public int getGameIndexAtLine(int lineNumber) {
+		int low = 0;
+		int high = gameCount - 1;
+		while (low <= high) {
+			int middle = low + high >>> 1;
+			int middleLine = getLineNumber(middle);
+			if (middleLine < lineNumber) {
+				low = middle + 1;
+			} else if (middleLine > lineNumber) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Returns the value of the header for the game at the specified index.
+	 * Returns null if the game does not have the header or the header is not
+	 * one of the INDEXED_HEADERS.
+	 */
+	public String getHeader(int gameIndex, PgnHeader header) {
+		for (int i = 0; i < INDEXED_HEADERS.length; i++) {
+			if (INDEXED_HEADERS[i] == header) {
+				int offset = index.getInt(headersOffset
+						+ (gameIndex * INDEXED_HEADERS.length + i) * 4);
+				return offset == -1 ? null : readString(stringsOffset
+						+ offset);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the line number of the Event header starting the game at the
+	 * specified index. Line numbers start at 1 and are the same as the ones
+	 * reported by StreamingPgnParser.
+	 */
+	public int getLineNumber(int gameIndex) {
+		return index.getInt(linesOffset + gameIndex * 4);
+	}
+
+	/**
+	 * Returns the byte offset in the file of the game at the specified index.
+	 */
+	public long getOffset(int gameIndex) {
+		return index.getLong(HEADER_SIZE + gameIndex * 8);
+	}
+
+	/**
+	 * Returns the PGN text of the game at the specified index.
+	 */
+	public String getPgn(int gameIndex) {
+		long start = getOffset(gameIndex);
+		byte[] bytes = new byte[(int) (getOffset(gameIndex + 1) - start)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = get(start + i);
+		}
+		return new String(bytes, pgnCharset);
+	}
+
+	/**
+	 * Scans the PGN file and builds the index in memory.
+	 */
+	protected void buildIndex() {
+		List<Long> offsets = new ArrayList<Long>();
+		List<Integer> lines = new ArrayList<Integer>();
+		List<String[]> headers = new ArrayList<String[]>();
+		String[] currentHeaders = null;
+
+		long position = 0;
+		int lineNumber = 0;
+		while (position < length) {
+			lineNumber++;
+			long lineStart = position;
+			long lineEnd = position;
+			byte current = 0;
+			while (lineEnd < length && (current = get(lineEnd)) != '\n'
+					&& current != '\r') {
+				lineEnd++;
+			}
+			position = lineEnd + 1;
+			if (current == '\r' && position < length && get(position) == '\n') {
+				position++;
+			}
+
+			long textStart = lineStart;
+			while (textStart < lineEnd
+					&& Character.isWhitespace((char) get(textStart))) {
+				textStart++;
+			}
+			if (textStart == lineEnd) {
+				continue;
+			}
+
+			if (get(textStart) != '[') {
+				currentHeaders = null;
+				continue;
+			}
+
+			// A game starts on a line with an Event header, the same as in
+			// SimplePgnParser. Other headers like EventDate do not count.
+			String line = readLine(textStart, lineEnd);
+			int openBracketIndex;
+			int closeBracketIndex;
+			while ((openBracketIndex = line.indexOf('[')) != -1
+					&& (closeBracketIndex = line.indexOf(']',
+							openBracketIndex)) != -1) {
+				String[] header = SimplePgnParser.parseHeader(line.substring(
+						openBracketIndex, closeBracketIndex + 1));
+				if (header != null) {
+					if (header[0].equals(PgnHeader.Event.name())
+							&& (offsets.isEmpty() || offsets.get(
+									offsets.size() - 1).longValue() != lineStart)) {
+						offsets.add(lineStart);
+						lines.add(lineNumber);
+						currentHeaders = new String[INDEXED_HEADERS.length];
+						headers.add(currentHeaders);
+					}
+					if (currentHeaders != null) {
+						setHeader(currentHeaders, header);
+					}
+				}
+				line = line.substring(closeBracketIndex + 1);
+			}
+		}
+
+		// The text before the first game, if any, does not belong to a game.
+		gameCount = offsets.size();
+		ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		int[] headerOffsets = new int[gameCount * INDEXED_HEADERS.length];
+		for (int i = 0; i < gameCount; i++) {
+			String[] values = headers.get(i);
+			for (int j = 0; j < values.length; j++) {
+				if (values[j] == null) {
+					headerOffsets[i * values.length + j] = -1;
+				} else {
+					headerOffsets[i * values.length + j] = strings.size();
+					byte[] bytes = values[j].getBytes(UTF8);
+					int stringLength = Math.min(bytes.length, 0xffff);
+					strings.write(stringLength >>> 8);
+					strings.write(stringLength);
+					strings.write(bytes, 0, stringLength);
+				}
+			}
+		}
+
+		setIndex(ByteBuffer.allocate(HEADER_SIZE + (gameCount + 1) * 8
+				+ gameCount * 4 + headerOffsets.length * 4 + strings.size()),
+				gameCount);
+		index.putInt(0, MAGIC);
+		index.putInt(4, gameCount);
+		index.putLong(8, length);
+		index.putLong(16, file.lastModified());
+		for (int i = 0; i < gameCount; i++) {
+			index.putLong(HEADER_SIZE + i * 8, offsets.get(i));
+			index.putInt(linesOffset + i * 4, lines.get(i));
+		}
+		index.putLong(HEADER_SIZE + gameCount * 8, length);
+		for (int i = 0; i < headerOffsets.length; i++) {
+			index.putInt(headersOffset + i * 4, headerOffsets[i]);
+		}
+		byte[] stringBytes = strings.toByteArray();
+		for (int i = 0; i < stringBytes.length; i++) {
+			index.put(stringsOffset + i, stringBytes[i]);
+		}
+	}
+
+	/**
+	 * Memory maps the index file. Returns false if it does not exist or is
+	 * stale.
+	 */
+	protected boolean loadIndex(File indexFile) throws IOException {
+		if (!indexFile.exists()) {
+			return false;
+		}
+		RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile,
+				"r");
+		try {
+			// The header is checked before mapping so a stale index is never
+			// mapped, which would keep it from being rewritten on Windows.
+			if (randomAccessFile.length() < HEADER_SIZE
+					|| randomAccessFile.readInt() != MAGIC) {
+				return false;
+			}
+			int count = randomAccessFile.readInt();
+			if (randomAccessFile.readLong() != length
+					|| randomAccessFile.readLong() != file.lastModified()) {
+				return false;
+			}
+			setIndex(randomAccessFile.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length()),
+					count);
+			return true;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Writes the index to the file.
+	 */
+	protected void writeIndex(File indexFile) throws IOException {
+		FileOutputStream out = new FileOutputStream(indexFile);
+		try {
+			ByteBuffer source = index.duplicate();
+			source.clear();
+			FileChannel channel = out.getChannel();
+			while (source.hasRemaining()) {
+				channel.write(source);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private byte get(long position) {
+		return segments[(int) (position >>> SEGMENT_SHIFT)]
+				.get((int) (position & SEGMENT_MASK));
+	}
+
+	private String readLine(long start, long end) {
+		byte[] bytes = new byte[(int) (end - start)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = get(start + i);
+		}
+		return new String(bytes, pgnCharset);
+	}
+
+	private String readString(int offset) {
+		byte[] bytes = new byte[(index.get(offset) & 0xff) << 8
+				| index.get(offset + 1) & 0xff];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = index.get(offset + 2 + i);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Stores the header value if the header is one of the INDEXED_HEADERS and
+	 * the game does not already have a value for it.
+	 */
+	private void setHeader(String[] values, String[] header) {
+		for (int i = 0; i < INDEXED_HEADERS.length; i++) {
+			if (INDEXED_HEADERS[i].name().equals(header[0])) {
+				if (values[i] == null) {
+					values[i] = header[1];
+				}
+				return;
+			}
+		}
+	}
+	private void setIndex(ByteBuffer index, int gameCount) {
+		this.index = index;
+		this.gameCount = gameCount;
+		linesOffset = HEADER_SIZE + (gameCount + 1) * 8;
+		headersOffset = linesOffset + gameCount * 4;
+		stringsOffset = headersOffset + gameCount * INDEXED_HEADERS.length
+				* 4;
+	}
+}
@@ -13,9 +13,7 @@
  */
 package raptor.chess.pgn;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -111,28 +109,19 @@ public class PgnUtils {
 	}
 
 	/**
-	 * Returns the approximate number of games in the specified file.
+	 * Returns the approximate number of games in the specified file. The
+	 * count comes from the files PgnDatabase index, which is built if needed.
 	 */
 	public static int getApproximateGameCount(String file) {
-		int result = 0;
-		BufferedReader reader = null;
 		try {
-			reader = new BufferedReader(new FileReader(file));
-			String currentLine = null;
-			while ((currentLine = reader.readLine()) != null) {
-				if (StringUtils.startsWithIgnoreCase(currentLine, "[Event")) {
-					result++;
-				}
-			}
+			PgnDatabase database = PgnDatabase.open(new File(file));
+			int result = database.getGameCount();
+			database.close();
+			return result;
 		} catch (IOException ioe) {
 			LOG.error("Error reading game count" + file, ioe);
-		} finally {
-			try {
-				reader.close();
-			} catch (IOException ioe) {
-			}
+			return 0;
 		}
-		return result;
 	}
 
 	/**
@@ -61,6 +61,10 @@ public class SimplePgnParser extends AbstractPgnParser {
 	}
 
 	public void parse() {
+		if (isHeaderOnly()) {
+			parseHeadersOnly();
+			return;
+		}
 
 		boolean isSearchingForHeaders = true;
 
@@ -284,6 +288,14 @@ public class SimplePgnParser extends AbstractPgnParser {
 	 * fast and does'nt use REGEX for parsing.
 	 */
 	public String[] parseForHeader(String string) {
+		return parseHeader(string);
+	}
+
+	/**
+	 * The static form of parseForHeader, shared with PgnDatabase which scans
+	 * headers without a parser.
+	 */
+	static String[] parseHeader(String string) {
 		if (string.length() >= 7 && string.startsWith("[") && string.endsWith("]")) {
 			int quoteIndex = string.indexOf('\"');
 			if (quoteIndex != -1) {
@@ -302,6 +314,74 @@ public class SimplePgnParser extends AbstractPgnParser {
 		return null;
 	}
 
+	/**
+	 * Fires the game starts, headers and game ends without tokenizing the move
+	 * text. Only comments are tracked in the move text, so a game end
+	 * indicator inside a comment is not mistaken for the end of a game. A game
+	 * ends at the last word of a move text line if it is a game end indicator.
+	 */
+	protected void parseHeadersOnly() {
+		boolean isInComment = false;
+
+		readNextLine();
+		while (currentLine != null) {
+			String moveText = currentLine;
+
+			if (!isInComment && currentLine.trim().startsWith("[")) {
+				int openBracketIndex;
+				int closeBracketIndex;
+				while ((openBracketIndex = moveText.indexOf('[')) != -1
+						&& (closeBracketIndex = moveText.indexOf(']')) > openBracketIndex
+						&& StringUtils.isBlank(moveText.substring(0, openBracketIndex))) {
+					String[] headers = parseForHeader(moveText.substring(openBracketIndex, closeBracketIndex + 1));
+					if (headers == null) {
+						break;
+					}
+					if (headers[0].equals("Event")) {
+						fireGameStart();
+					}
+					fireHeader(headers[0], headers[1]);
+					moveText = moveText.substring(closeBracketIndex + 1);
+				}
+			}
+
+			String lastWord = null;
+			int wordStart = -1;
+			for (int i = 0; i <= moveText.length(); i++) {
+				char character = i == moveText.length() ? ' ' : moveText.charAt(i);
+				if (isInComment) {
+					if (character == '}') {
+						isInComment = false;
+					}
+				} else if (character == '{' || character == ';' || Character.isWhitespace(character)) {
+					if (wordStart != -1) {
+						lastWord = moveText.substring(wordStart, i);
+						wordStart = -1;
+					}
+					if (character == '{') {
+						isInComment = true;
+					} else if (character == ';') {
+						// A comment to the end of the line.
+						break;
+					}
+				} else if (wordStart == -1) {
+					wordStart = i;
+				}
+			}
+
+			if (!isInComment && lastWord != null) {
+				String[] gameEndSplit = splitOutGameEnd(lastWord);
+				if (gameEndSplit != null && gameEndSplit.length == 1) {
+					fireGameEnd(Result.get(gameEndSplit[0]));
+					if (isParseCancelled()) {
+						return;
+					}
+				}
+			}
+			readNextLine();
+		}
+	}
+
 	protected void readNextLine() {
 		currentLine = lineTokenizer.nextToken();
 		lineNumber++;
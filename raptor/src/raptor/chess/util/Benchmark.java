@@ -16,7 +16,7 @@ package raptor.chess.util;
 import static raptor.chess.GameFactory.createFromFen;
 
 import raptor.chess.Game;
-import raptor.chess.Move;
+import raptor.chess.PackedMoveStack;
 import raptor.chess.Variant;
 
 public class Benchmark {
@@ -51,8 +51,13 @@ public class Benchmark {
 	// moveWalk: mean(nps): 889397 stdv 89598 2559200 (ep bug fix).
 	// moveWalk: mean(nps): 1287302 stdv 102786 2623180 (reboot).
 	// moveWalk: mean(nps): 1324255 stdv 40644 2623180 (adding drops).
+	// moveWalk: mean(nps): 1910151 stdv 1609999 2627895
+	// moveWalk: mean(nps): 4448588 stdv 2434247 2627895 (magic bitboards).
+	// moveWalk: mean(nps): 11371445 stdv 6415137 2627895 (packed move generation).
 	private static long counter = 0;
 
+	private static final PackedMoveStack moveStack = new PackedMoveStack();
+
 	public static void main(String args[]) {
 		// Prime:
 		for (int i = 0; i < 5; i++) {
@@ -110,14 +115,16 @@ public class Benchmark {
 		long result = 1;
 
 		if (depth < maxDepth) {
-			Move[] moves = game.getPseudoLegalMoves().asArray();
+			moveStack.pushPly();
+			game.generatePseudoLegalMoves(moveStack);
 
-			for (Move move : moves) {
-				if (game.move(move)) {
+			for (int i = 0; i < moveStack.getSize(); i++) {
+				if (game.move(moveStack.get(i))) {
 					result += moveWalk(game, depth + 1, maxDepth);
 					game.rollback();
 				}
 			}
+			moveStack.popPly();
 
 			// PriorityMoveList moves = game.getPseudoLegalMoves();
 			//
@@ -0,0 +1,306 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import raptor.chess.GameFactory;
+import raptor.chess.Variant;
+import raptor.util.RaptorLogger;
+import raptor.util.RaptorStringTokenizer;
+
+/**
+ * An open addressing hash table of ECO codes and opening names keyed by the
+ * zobrist game hash of the position.
+ *
+ * The table lives in a single ByteBuffer laid out exactly as it is stored on
+ * disk, so the binary form is memory mapped and used without any parsing:
+ *
+ * <pre>
+ * int    magic
+ * int    capacity, a power of 2
+ * long   fingerprint, the zobrist hash of the starting position
+ * long   length of the text file the index was built from
+ * long[] keys, 0 for an empty slot
+ * int[]  offsets of each slots strings in the string area
+ * the strings, each an unsigned short byte length followed by UTF-8 bytes.
+ *        Every slot has the ECO code followed by the opening name.
+ * </pre>
+ *
+ * The keys depend on the values in ZobristUtils. The fingerprint is used to
+ * detect a stale index if they ever change.
+ */
+public final class EcoIndex {
+	private static final RaptorLogger LOG = RaptorLogger
+			.getLog(EcoIndex.class);
+
+	private static final int MAGIC = 0x45434f31;
+	private static final int HEADER_SIZE = 24;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Builds the binary index for a text file.
+	 *
+	 * <pre>
+	 * java raptor.chess.util.EcoIndex resources/scidECO.txt resources/scidECO.bin
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		EcoIndex index = parse(new File(args[0]));
+		index.write(new File(args[1]));
+		System.err.println("Wrote " + index.size() + " positions to "
+				+ args[1]);
+	}
+
+	/**
+	 * Memory maps a binary index. Returns null if the file does not exist or
+	 * was not built with the current zobrist keys.
+	 */
+	public static EcoIndex load(File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			ByteBuffer buffer = randomAccessFile.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+					|| buffer.getLong(8) != getFingerprint()) {
+				return null;
+			}
+			return new EcoIndex(buffer);
+		} finally {
+			// The mapping stays valid after the file is closed.
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Parses a scid ECO file. Each line contains the ECO code, the opening
+	 * name and the FEN of the position.
+	 */
+	public static EcoIndex parse(File file) throws IOException {
+		Map<Long, String[]> entries = new LinkedHashMap<Long, String[]>();
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String currentLine = null;
+			List<String> tokens = new ArrayList<String>(16);
+			while ((currentLine = reader.readLine()) != null) {
+				if (StringUtils.isNotBlank(currentLine)) {
+					RaptorStringTokenizer tok = new RaptorStringTokenizer(
+							currentLine, " ", true);
+					tokens.clear();
+					while (tok.hasMoreTokens()) {
+						tokens.add(tok.nextToken());
+					}
+
+					// The fen is always the last 6 tokens. Opening names can
+					// contain a '/' so they can not be used to find it.
+					int fenStart = tokens.size() - 6;
+					if (fenStart < 2) {
+						LOG.warn("Skipping invalid ECO line " + currentLine);
+						continue;
+					}
+					String eco = tokens.get(0);
+					String description = StringUtils.join(tokens.subList(1,
+							fenStart), ' ');
+					String fen = StringUtils.join(tokens.subList(fenStart,
+							fenStart + 4), ' ')
+							+ " 0 1";
+
+					try {
+						long key = GameFactory.createFromFen(fen,
+								Variant.classic).getZobristGameHash();
+						entries.put(key, new String[] { eco.toUpperCase(),
+								description });
+					} catch (RuntimeException re) {
+						LOG.warn("Skipping invalid ECO line " + currentLine, re);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return build(entries, file.length());
+	}
+
+	private static EcoIndex build(Map<Long, String[]> entries,
+			long sourceLength) {
+		int capacity = Integer.highestOneBit(Math.max(entries.size(), 1)) << 2;
+
+		byte[][] strings = new byte[entries.size() * 2][];
+		int stringsLength = 0;
+		int i = 0;
+		for (String[] value : entries.values()) {
+			for (String string : value) {
+				strings[i] = string.getBytes(UTF8);
+				stringsLength += 2 + strings[i].length;
+				i++;
+			}
+		}
+
+		int stringsOffset = HEADER_SIZE + capacity * 12;
+		ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + stringsLength);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, capacity);
+		buffer.putLong(8, getFingerprint());
+		buffer.putLong(16, sourceLength);
+
+		buffer.position(stringsOffset);
+		i = 0;
+		for (Long key : entries.keySet()) {
+			int slot = (int) key.longValue() & capacity - 1;
+			while (buffer.getLong(HEADER_SIZE + slot * 8) != 0L) {
+				slot = slot + 1 & capacity - 1;
+			}
+			buffer.putLong(HEADER_SIZE + slot * 8, key);
+			buffer.putInt(HEADER_SIZE + capacity * 8 + slot * 4, buffer
+					.position()
+					- stringsOffset);
+			for (int j = 0; j < 2; j++, i++) {
+				buffer.putShort((short) strings[i].length);
+				buffer.put(strings[i]);
+			}
+		}
+		buffer.clear();
+		return new EcoIndex(buffer);
+	}
+
+	private static long getFingerprint() {
+		return GameFactory.createStartingPosition(Variant.classic)
+				.getZobristGameHash();
+	}
+
+	private final ByteBuffer buffer;
+	private final int capacity;
+	private final String[] ecoCodes;
+	private final String[] openings;
+	private final int offsetsOffset;
+	private final int stringsOffset;
+
+	private EcoIndex(ByteBuffer buffer) {
+		this.buffer = buffer;
+		capacity = buffer.getInt(4);
+		offsetsOffset = HEADER_SIZE + capacity * 8;
+		stringsOffset = offsetsOffset + capacity * 4;
+		ecoCodes = new String[capacity];
+		openings = new String[capacity];
+	}
+
+	/**
+	 * Returns the ECO code of the position with the specified zobrist game
+	 * hash, null if there is none.
+	 */
+	public String getEco(long key) {
+		int slot = getSlot(key);
+		if (slot == -1) {
+			return null;
+		}
+		if (ecoCodes[slot] == null) {
+			ecoCodes[slot] = readString(stringsOffset
+					+ buffer.getInt(offsetsOffset + slot * 4));
+		}
+		return ecoCodes[slot];
+	}
+
+	/**
+	 * Returns the opening name of the position with the specified zobrist game
+	 * hash, null if there is none.
+	 */
+	public String getOpening(long key) {
+		int slot = getSlot(key);
+		if (slot == -1) {
+			return null;
+		}
+		if (openings[slot] == null) {
+			int offset = stringsOffset
+					+ buffer.getInt(offsetsOffset + slot * 4);
+			openings[slot] = readString(offset + 2
+					+ (buffer.getShort(offset) & 0xffff));
+		}
+		return openings[slot];
+	}
+
+	/**
+	 * Returns the length of the text file this index was built from.
+	 */
+	public long getSourceLength() {
+		return buffer.getLong(16);
+	}
+
+	/**
+	 * Returns the number of positions in the index.
+	 */
+	public int size() {
+		int result = 0;
+		for (int i = 0; i < capacity; i++) {
+			if (buffer.getLong(HEADER_SIZE + i * 8) != 0L) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the binary form of this index to the file.
+	 */
+	public void write(File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			ByteBuffer source = buffer.duplicate();
+			source.clear();
+			FileChannel channel = out.getChannel();
+			while (source.hasRemaining()) {
+				channel.write(source);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private int getSlot(long key) {
+		int slot = (int) key & capacity - 1;
+		long current;
+		while ((current = buffer.getLong(HEADER_SIZE + slot * 8)) != 0L) {
+			if (current == key) {
+				return slot;
+			}
+			slot = slot + 1 & capacity - 1;
+		}
+		return -1;
+	}
+
+	private String readString(int offset) {
+		byte[] bytes = new byte[buffer.getShort(offset) & 0xffff];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		return new String(bytes, UTF8);
+	}
+}
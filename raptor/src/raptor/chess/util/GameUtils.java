@@ -114,8 +114,21 @@ public class GameUtils implements GameConstants {
 
 	}
 
+	/**
+	 * Returns the diagonal attacks from square. Delegates to the magic tables
+	 * in {@link MagicBitboards}, emptySquares is expected to be ~occupied.
+	 */
 	public static final long diagonalMove(int square, long emptySquares,
 			long occupied) {
+		return MagicBitboards.bishopAttacks(square, occupied);
+	}
+
+	/**
+	 * Kogge-Stone version of diagonalMove. Kept as a reference implementation
+	 * for testing the magic tables.
+	 */
+	public static final long diagonalMoveKoggeStone(int square,
+			long emptySquares) {
 		long seed = getBitboard(square);
 		return shiftUpRight(fillUpRightOccluded(seed, emptySquares))
 				| shiftUpLeft(fillUpLeftOccluded(seed, emptySquares))
@@ -724,8 +737,21 @@ public class GameUtils implements GameConstants {
 		return bitboard << 8;
 	}
 
+	/**
+	 * Returns the orthogonal attacks from square. Delegates to the magic tables
+	 * in {@link MagicBitboards}, emptySquares is expected to be ~occupied.
+	 */
 	public static final long orthogonalMove(int square, long emptySquares,
 			long occupied) {
+		return MagicBitboards.rookAttacks(square, occupied);
+	}
+
+	/**
+	 * Kogge-Stone version of orthogonalMove. Kept as a reference
+	 * implementation for testing the magic tables.
+	 */
+	public static final long orthogonalMoveKoggeStone(int square,
+			long emptySquares) {
 		long seed = getBitboard(square);
 		return shiftRight(fillRightOccluded(seed, emptySquares))
 				| shiftLeft(fillLeftOccluded(seed, emptySquares))
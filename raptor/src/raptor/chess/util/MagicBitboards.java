@@ -0,0 +1,246 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.chess.util;
+
+/**
+ * Fancy magic bitboard attack tables for the sliding pieces.
+ *
+ * For each square the relevant blockers (the ray squares excluding the board
+ * edge) are multiplied by a magic number and shifted down to produce a dense
+ * index into a precomputed attack table. The magics are found at class load
+ * with a fixed seeded generator, so the tables are identical on every run and
+ * take only a few milliseconds to build.
+ *
+ * http://chessprogramming.wikispaces.com/Magic+Bitboards
+ */
+public final class MagicBitboards {
+
+	private static final long[][] BETWEEN = new long[64][64];
+	private static final long[][] LINE = new long[64][64];
+
+	private static final long[] BISHOP_MAGICS = new long[64];
+	private static final long[] BISHOP_MASKS = new long[64];
+	private static final int[] BISHOP_OFFSETS = new int[64];
+	private static final int[] BISHOP_SHIFTS = new int[64];
+	private static final long[] BISHOP_TABLE;
+
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 },
+			{ -1, 1 }, { -1, -1 } };
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 },
+			{ 0, 1 }, { 0, -1 } };
+
+	/**
+	 * Seeds per rank which are known to converge quickly with the xorshift
+	 * generator below.
+	 */
+	private static final long[] SEEDS = { 728, 10316, 55013, 32803, 12281,
+			15100, 16645, 255 };
+
+	private static final long[] ROOK_MAGICS = new long[64];
+	private static final long[] ROOK_MASKS = new long[64];
+	private static final int[] ROOK_OFFSETS = new int[64];
+	private static final int[] ROOK_SHIFTS = new int[64];
+	private static final long[] ROOK_TABLE;
+
+	static {
+		BISHOP_TABLE = init(BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS,
+				BISHOP_OFFSETS, BISHOP_SHIFTS);
+		ROOK_TABLE = init(ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS,
+				ROOK_OFFSETS, ROOK_SHIFTS);
+
+		for (int from = 0; from < 64; from++) {
+			for (int to = 0; to < 64; to++) {
+				long fromBB = 1L << from;
+				long toBB = 1L << to;
+				if (from == to) {
+					continue;
+				} else if ((rookAttacks(from, 0L) & toBB) != 0L) {
+					LINE[from][to] = rookAttacks(from, 0L)
+							& rookAttacks(to, 0L) | fromBB | toBB;
+					BETWEEN[from][to] = rookAttacks(from, toBB)
+							& rookAttacks(to, fromBB);
+				} else if ((bishopAttacks(from, 0L) & toBB) != 0L) {
+					LINE[from][to] = bishopAttacks(from, 0L)
+							& bishopAttacks(to, 0L) | fromBB | toBB;
+					BETWEEN[from][to] = bishopAttacks(from, toBB)
+							& bishopAttacks(to, fromBB);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the squares strictly between the two squares if they share a
+	 * rank, file or diagonal, otherwise 0.
+	 */
+	public static final long between(int square1, int square2) {
+		return BETWEEN[square1][square2];
+	}
+
+	/**
+	 * Returns the squares a bishop on square attacks given the occupied
+	 * bitboard. The result includes the first blocker in each direction
+	 * regardless of its color.
+	 */
+	public static final long bishopAttacks(int square, long occupied) {
+		return BISHOP_TABLE[BISHOP_OFFSETS[square]
+				+ (int) ((occupied & BISHOP_MASKS[square])
+						* BISHOP_MAGICS[square] >>> BISHOP_SHIFTS[square])];
+	}
+
+	/**
+	 * Returns the whole rank, file or diagonal running through both squares,
+	 * including the edges of the board, or 0 if they are not aligned.
+	 */
+	public static final long line(int square1, int square2) {
+		return LINE[square1][square2];
+	}
+
+	/**
+	 * Returns the squares a queen on square attacks given the occupied
+	 * bitboard.
+	 */
+	public static final long queenAttacks(int square, long occupied) {
+		return bishopAttacks(square, occupied) | rookAttacks(square, occupied);
+	}
+
+	/**
+	 * Returns the squares a rook on square attacks given the occupied
+	 * bitboard. The result includes the first blocker in each direction
+	 * regardless of its color.
+	 */
+	public static final long rookAttacks(int square, long occupied) {
+		return ROOK_TABLE[ROOK_OFFSETS[square]
+				+ (int) ((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square] >>> ROOK_SHIFTS[square])];
+	}
+
+	/**
+	 * Builds the masks, magics and attack table for one slider type and
+	 * returns the attack table.
+	 */
+	private static long[] init(int[][] directions, long[] magics,
+			long[] masks, int[] offsets, int[] shifts) {
+		int tableSize = 0;
+		for (int square = 0; square < 64; square++) {
+			masks[square] = slowAttacks(square, 0L, directions)
+					& ~edges(square);
+			shifts[square] = 64 - Long.bitCount(masks[square]);
+			offsets[square] = tableSize;
+			tableSize += 1 << Long.bitCount(masks[square]);
+		}
+
+		long[] table = new long[tableSize];
+		long[] occupancy = new long[4096];
+		long[] reference = new long[4096];
+		int[] epoch = new int[4096];
+		int currentEpoch = 0;
+
+		for (int square = 0; square < 64; square++) {
+			long mask = masks[square];
+			int size = 0;
+
+			// Carry-Rippler enumeration of every subset of the mask.
+			long subset = 0L;
+			do {
+				occupancy[size] = subset;
+				reference[size] = slowAttacks(square, subset, directions);
+				size++;
+				subset = subset - mask & mask;
+			} while (subset != 0L);
+
+			long[] random = { SEEDS[GameUtils.getRank(square)] };
+			long magic;
+			boolean found;
+			do {
+				do {
+					magic = sparseRandom(random);
+				} while (Long.bitCount(magic * mask >>> 56) < 6);
+
+				currentEpoch++;
+				found = true;
+				for (int i = 0; i < size; i++) {
+					int index = offsets[square]
+							+ (int) (occupancy[i] * magic >>> shifts[square]);
+					int local = index - offsets[square];
+					if (epoch[local] < currentEpoch) {
+						epoch[local] = currentEpoch;
+						table[index] = reference[i];
+					} else if (table[index] != reference[i]) {
+						found = false;
+						break;
+					}
+				}
+			} while (!found);
+
+			magics[square] = magic;
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the board edges which are not on the same rank or file as the
+	 * square. These never affect the attack set and are left out of the mask.
+	 */
+	private static long edges(int square) {
+		long rank1 = 0xFFL;
+		long rank8 = 0xFFL << 56;
+		long fileA = 0x0101010101010101L;
+		long fileH = fileA << 7;
+
+		int rank = GameUtils.getRank(square);
+		int file = GameUtils.getFile(square);
+
+		return (rank1 | rank8) & ~(rank1 << 8 * rank)
+				| (fileA | fileH) & ~(fileA << file);
+	}
+
+	private static long nextRandom(long[] seed) {
+		seed[0] ^= seed[0] >>> 12;
+		seed[0] ^= seed[0] << 25;
+		seed[0] ^= seed[0] >>> 27;
+		return seed[0] * 2685821657736338717L;
+	}
+
+	/**
+	 * Ray walk used to build the tables. Too slow for move generation.
+	 */
+	private static long slowAttacks(int square, long occupied,
+			int[][] directions) {
+		long result = 0L;
+		int rank = GameUtils.getRank(square);
+		int file = GameUtils.getFile(square);
+
+		for (int[] direction : directions) {
+			int r = rank + direction[0];
+			int f = file + direction[1];
+			while (GameUtils.isInBounds(r, f)) {
+				long squareBB = 1L << GameUtils.getSquare(r, f);
+				result |= squareBB;
+				if ((occupied & squareBB) != 0L) {
+					break;
+				}
+				r += direction[0];
+				f += direction[1];
+			}
+		}
+		return result;
+	}
+
+	private static long sparseRandom(long[] seed) {
+		return nextRandom(seed) & nextRandom(seed) & nextRandom(seed);
+	}
+
+	private MagicBitboards() {
+	}
+}
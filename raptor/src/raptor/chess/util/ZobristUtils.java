@@ -16,7 +16,6 @@ package raptor.chess.util;
 import static raptor.chess.util.GameUtils.bitscanClear;
 import static raptor.chess.util.GameUtils.bitscanForward;
 
-import java.security.SecureRandom;
 import java.util.Random;
 
 import raptor.chess.Game;
@@ -24,6 +23,8 @@ import raptor.chess.GameConstants;
 
 public final class ZobristUtils implements GameConstants {
 
+	private static final long ZOBRIST_SEED = 0x5241505430524150L;
+
 	private static long[][] ZOBRIST_CASTLE = new long[2][4];
 	private static long[][][] ZOBRIST_DROP_COUNT = new long[2][7][18];
 	private static long[] ZOBRIST_EP = new long[65];
@@ -89,7 +90,9 @@ public final class ZobristUtils implements GameConstants {
 	}
 
 	private static void initZobrist() {
-		Random random = new SecureRandom();
+		// Seeded so the keys are the same on every run. Tables keyed by hash,
+		// e.g. the ECO index, are written to disk.
+		Random random = new Random(ZOBRIST_SEED);
 
 		for (int i = 0; i < ZOBRIST_DROP_COUNT.length; i++) {
 			for (int j = 0; j < ZOBRIST_DROP_COUNT[i].length; j++) {
@@ -123,7 +126,7 @@ public final class ZobristUtils implements GameConstants {
 	}
 
 	private static long zobristPiece(int color, int piece, Game game) {
-		int result = 0;
+		long result = 0L;
 		long current = game.getPieceBB(color, piece);
 		while (current != 0L) {
 			result ^= zobrist(color, piece, bitscanForward(current));
@@ -45,6 +45,9 @@ public class FicsPage extends FieldEditorPreferencePage {
 		addField(new BooleanFieldEditor(PreferenceKeys.FICS_KEEP_ALIVE_ENABLED, local.getString("ficsKeepAliveEnabled"),
 				getFieldEditorParent()));
 
+		addField(new BooleanFieldEditor(PreferenceKeys.FICS_SHARED_IO_THREAD, local.getString("ficsSharedIoThread"),
+				getFieldEditorParent()));
+
 		IntegerFieldEditor pingWidgetDelay = new IntegerFieldEditor(PreferenceKeys.FICS_PING_INTERVAL_SEC,
 				local.getString("ficsPingWidgetDelaySec"), getFieldEditorParent());
 		addField(pingWidgetDelay);
@@ -49,6 +49,7 @@ import raptor.connector.ConnectorListener;
 import raptor.connector.MessageCallback;
 import raptor.connector.ics.timeseal.MessageListener;
 import raptor.connector.ics.timeseal.MessageProducer;
+import raptor.connector.ics.timeseal.TimesealSocketChannelMessageProducer;
 import raptor.connector.ics.timeseal.TimesealSocketMessageProducer;
 import raptor.international.L10n;
 import raptor.pref.PreferenceKeys;
@@ -73,6 +74,7 @@ import raptor.service.SeekService;
 import raptor.service.SeekService.SeekType;
 import raptor.service.SoundService;
 import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
 import raptor.service.UserTagService;
 import raptor.swt.BugButtonsWindowItem;
 import raptor.swt.BugWhoWindowItem;
@@ -85,6 +87,7 @@ import raptor.swt.chat.controller.ChannelController;
 import raptor.swt.chat.controller.MainController;
 import raptor.swt.chat.controller.RegExController;
 import raptor.swt.chess.ChessBoardUtils;
+import raptor.util.LatencyTracker;
 import raptor.util.RaptorLogger;
 import raptor.util.RaptorStringTokenizer;
 import raptor.util.RaptorStringUtils;
@@ -109,6 +112,11 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	// max mmessage size is 400 on fics right now.
 	private static final int MAX_MESSAGE_MESSAGE_LENGTH = 800;
 
+	// The rate messages other than moves are sent at once the burst is used.
+	private static final int OUTBOUND_MESSAGES_PER_SECOND = 10;
+
+	private static final int OUTBOUND_MESSAGE_BURST = 20;
+
 	private static final RaptorLogger LOG = RaptorLogger.getLog(IcsConnector.class);
 	public static final String LOGIN_CHARACTERS_TO_FILTER = "\uefbf\ubdef\ubfbd\uefbf\ubdef\ubfbd\ud89e\u0001\ufffd\ufffd";
 
@@ -134,6 +142,10 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	protected TreeMap<String, String> autoCompleteList = new TreeMap<String, String>();
 	protected List<Pattern> patternsToBlock = new ArrayList<Pattern>(20);
 	protected MessageProducer messageProducer;
+	protected OutboundMessageQueue outboundMessageQueue = new OutboundMessageQueue(OUTBOUND_MESSAGES_PER_SECOND,
+			OUTBOUND_MESSAGE_BURST);
+	protected boolean isOutboundFlushScheduled;
+	protected PromptFramer promptFramer;
 
 	/**
 	 * Adds the game windows to the RaptorAppWindow.
@@ -240,6 +252,9 @@ public abstract class IcsConnector implements Connector, MessageListener {
 
 	@Override
 	public void connectionClosed(StringBuilder buffer) {
+		if (promptFramer != null) {
+			promptFramer.reset();
+		}
 		parseMessage(drainInboundMessageBuffer(buffer));
 		disconnect();
 	}
@@ -475,6 +490,7 @@ public abstract class IcsConnector implements Connector, MessageListener {
 				LOG.error("Error disconencting from ICSConnector.", t);
 			} finally {
 				messageProducer = null;
+				outboundMessageQueue.clear();
 				isSimulBugConnector = false;
 				simulBugPartnerName = null;
 				peopleToSpeakTellsFrom.clear();
@@ -745,7 +761,7 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	}
 
 	public void makeMove(Game game, Move move) {
-		sendMessage(move.getLan(), true);
+		sendMessage(move.getLan(), true, null, true);
 	}
 
 	public void matchBughouse(String playerName, boolean isRated, int time, int inc) {
@@ -903,7 +919,7 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	}
 
 	public void processMessageCallbacks(final ChatEvent event) {
-		ThreadService.getInstance().run(new Runnable() {
+		ThreadService.getInstance().run(Subsystem.NETWORK, new Runnable() {
 			public void run() {
 				synchronized (messageCallbackEntries) {
 					for (int i = 0; i < messageCallbackEntries.size(); i++) {
@@ -946,90 +962,29 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	 * are published on separate threads via ThreadService.
 	 */
 	public void publishEvent(final ChatEvent event) {
-		// System.err.println("In publish event: " + event);
+		publishEvents(new ChatEvent[] { event });
+	}
 
+	/**
+	 * Publishes the events to the chat service in a single ThreadService task.
+	 * parseMessage uses this so all of the events parsed from one message are
+	 * dispatched together rather than as a task per event.
+	 */
+	public void publishEvents(final ChatEvent[] events) {
 		if (chatService != null) { // Could have been disposed.
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Publishing event : " + event);
-			}
-
-			updateAutoComplete(event);
-
-			if (isBlockedByExtendedCensor(event)) {
-				return;
-			}
-			if (isBlockedByRegularExpressionBlocks(event)) {
-				return;
-			}
-
-			event.setMessage(substituteTitles(event.getMessage(), event.getType()));
-			handleOpeningTabs(event);
-			processChatEventScripts(event);
-
-			if (event.getType() == ChatType.PARTNERSHIP_DESTROYED) {
-				isSimulBugConnector = false;
-				simulBugPartnerName = null;
-			}
-
-			// Sets the user following. This is used in the IcsParser to
-			// determine if white is on top or not.
-			if (event.getType() == ChatType.FOLLOWING) {
-				userFollowing = event.getSource();
-			} else if (event.getType() == ChatType.NOT_FOLLOWING) {
-				userFollowing = null;
-			}
-
-			if (event.getType() == ChatType.PARTNER_TELL) {
-				playBughouseSounds(event);
-				if (!event.hasSoundBeenHandled()
-						&& getPreferences().getBoolean(PreferenceKeys.BUGHOUSE_SPEAK_PARTNER_TELLS)) {
-					event.setHasSoundBeenHandled(speak(getTextAfterColon(event.getMessage())));
-				}
-			}
-
-			if (event.getType() == ChatType.CHANNEL_TELL) {
-				if (!event.getSource().equals(userName) && channelToSpeakTellsFrom.contains(event.getChannel())) {
-					event.setHasSoundBeenHandled(speak(IcsUtils.stripTitles(event.getSource())
-							// + " "
-							// + event.getChannel()
-							// + " "
-							+ getTextAfterColon(event.getMessage())));
-				}
-			}
-
-			if (event.getType() == ChatType.TELL) {
-				if (isSpeakingAllPersonTells || peopleToSpeakTellsFrom.contains(event.getSource())) {
-					event.setHasSoundBeenHandled(speak(
-							IcsUtils.stripTitles(event.getSource()) + " " + getTextAfterColon(event.getMessage())));
-				}
-			}
-
-			if (event.getType() == ChatType.WHISPER || event.getType() == ChatType.KIBITZ) {
-				if (!event.getSource().equals(userName) && gamesToSpeakTellsFrom.contains(event.getGameId())) {
-					event.setHasSoundBeenHandled(
-							speak(IcsUtils.stripTitles(event.getSource()) + getTextAfterColon(event.getMessage())));
-				}
-			}
-
-			if (event.getType() == ChatType.PING_RESPONSE) {
-				if (event.getSource().equals(userName)) {
-					firePingInfo(event.getPingTime());
+			List<ChatEvent> eventsToPublish = new ArrayList<ChatEvent>(events.length);
+			for (ChatEvent event : events) {
+				if (prepareEventForPublishing(event)) {
+					eventsToPublish.add(event);
+					processMessageCallbacks(event);
 				}
 			}
 
-			int ignoreIndex = ignoringChatTypes.indexOf(event.getType());
-			if (ignoreIndex != -1) {
-				try {
-					ignoringChatTypes.remove(ignoreIndex);
-				} catch (ArrayIndexOutOfBoundsException aiobe) {
-					// Eat it there could be a synchronization problem.
-				}
-			} else {
-				// It is interesting to note messages are handled sequentially
-				// up to this point. chatService will publish the event
-				// asynchronously.
-				chatService.publishChatEvent(event);
-				processMessageCallbacks(event);
+			// It is interesting to note messages are handled sequentially
+			// up to this point. chatService will publish the events
+			// asynchronously.
+			if (!eventsToPublish.isEmpty()) {
+				chatService.publishChatEvents(eventsToPublish.toArray(new ChatEvent[eventsToPublish.size()]));
 			}
 		}
 	}
@@ -1158,6 +1113,16 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	 * should not be published to the ChatService.
 	 */
 	public void sendMessage(String message, boolean isHidingFromUser, ChatType hideNextChatType) {
+		sendMessage(message, isHidingFromUser, hideNextChatType, false);
+	}
+
+	/**
+	 * Sends a message to the connector. Messages are written through the
+	 * outboundMessageQueue. Priority messages, which should only be moves, are
+	 * sent ahead of any queued messages and are not rate limited.
+	 */
+	protected void sendMessage(String message, boolean isHidingFromUser, ChatType hideNextChatType,
+			boolean isPriority) {
 		// long start = System.currentTimeMillis();
 		if (isConnected()) {
 
@@ -1174,34 +1139,34 @@ public abstract class IcsConnector implements Connector, MessageListener {
 				LOG.debug(context.getShortName() + "Connector Sending: " + builder.toString().trim());
 			}
 
+			boolean isQueued = false;
+			String[] messages = breakUpMessage(builder);
+			for (String current : messages) {
+				if (!current.endsWith("\n")) {
+					current += "\n";
+				}
+				isQueued |= outboundMessageQueue.add(current, isPriority);
+			}
+
+			if (!isQueued) {
+				// The same polling message is already waiting to be sent.
+				return;
+			}
+
 			if (hideNextChatType != null) {
 				ignoringChatTypes.add(hideNextChatType);
 			}
 
-			try {
-				String[] messages = breakUpMessage(builder);
-				for (String current : messages) {
-					if (!current.endsWith("\n")) {
-						current += "\n";
-					}
-					messageProducer.send(current);
-				}
-				if (message.startsWith("$$")) {
-					// Don't update last send time on a $$ since idle time
-					// isn't effected on the server.
-					lastSendPingTime = System.currentTimeMillis();
-				} else {
-					lastSendTime = lastSendPingTime = System.currentTimeMillis();
-				}
-
-			} catch (Throwable t) {
-				t.printStackTrace(); // Used to track down issues when
-										// developing. Dont remove.
-				publishEvent(
-						new ChatEvent(null, ChatType.INTERNAL, L10n.getInstance().getString("err") + t.getMessage()));
-				disconnect();
+			if (message.startsWith("$$")) {
+				// Don't update last send time on a $$ since idle time
+				// isn't effected on the server.
+				lastSendPingTime = System.currentTimeMillis();
+			} else {
+				lastSendTime = lastSendPingTime = System.currentTimeMillis();
 			}
 
+			flushOutboundMessages();
+
 			if (!isHidingFromUser) {
 				publishEvent(new ChatEvent(null, ChatType.OUTBOUND, message.trim()));
 			}
@@ -1417,10 +1382,17 @@ public abstract class IcsConnector implements Connector, MessageListener {
 
 					boolean isTimesealEnabled = getPreferences().getBoolean(profilePrefix + "timeseal-enabled");
 
-					messageProducer = new TimesealSocketMessageProducer(
-							getPreferences().getString(profilePrefix + "server-url"),
-							getPreferences().getInt(profilePrefix + "port"), getInitialTimesealString(),
-							isTimesealEnabled, IcsConnector.this);
+					if (getPreferences().getBoolean(context.getPreferencePrefix() + PreferenceKeys.SHARED_IO_THREAD)) {
+						messageProducer = new TimesealSocketChannelMessageProducer(
+								getPreferences().getString(profilePrefix + "server-url"),
+								getPreferences().getInt(profilePrefix + "port"), getInitialTimesealString(),
+								isTimesealEnabled, IcsConnector.this);
+					} else {
+						messageProducer = new TimesealSocketMessageProducer(
+								getPreferences().getString(profilePrefix + "server-url"),
+								getPreferences().getInt(profilePrefix + "port"), getInitialTimesealString(),
+								isTimesealEnabled, IcsConnector.this);
+					}
 
 					publishEvent(new ChatEvent(null, ChatType.INTERNAL,
 							L10n.getInstance().getString("timesString") + getInitialTimesealString()));
@@ -1506,6 +1478,47 @@ public abstract class IcsConnector implements Connector, MessageListener {
 		return text;
 	}
 
+	/**
+	 * Writes every message the outboundMessageQueue releases in one send, and
+	 * schedules another flush on the NETWORK executor if rate limited messages
+	 * remain. Sending is done while holding the queue lock so batches are
+	 * never written out of order.
+	 */
+	protected void flushOutboundMessages() {
+		try {
+			synchronized (outboundMessageQueue) {
+				if (messageProducer == null) {
+					outboundMessageQueue.clear();
+					return;
+				}
+
+				long now = System.currentTimeMillis();
+				String batch = outboundMessageQueue.poll(now);
+				if (batch != null) {
+					messageProducer.send(batch);
+				}
+
+				long delay = outboundMessageQueue.getDelay(now);
+				if (delay > 0 && !isOutboundFlushScheduled) {
+					isOutboundFlushScheduled = true;
+					ThreadService.getInstance().scheduleOneShot(Subsystem.NETWORK, delay, new Runnable() {
+						public void run() {
+							synchronized (outboundMessageQueue) {
+								isOutboundFlushScheduled = false;
+							}
+							flushOutboundMessages();
+						}
+					});
+				}
+			}
+		} catch (Throwable t) {
+			t.printStackTrace(); // Used to track down issues when
+									// developing. Dont remove.
+			publishEvent(new ChatEvent(null, ChatType.INTERNAL, L10n.getInstance().getString("err") + t.getMessage()));
+			disconnect();
+		}
+	}
+
 	protected void fireConnected() {
 		ThreadService.getInstance().run(new Runnable() {
 			public void run() {
@@ -1757,6 +1770,7 @@ public abstract class IcsConnector implements Connector, MessageListener {
 	 * This method also handles login logic which is tricky.
 	 */
 	public void messageArrived(StringBuilder buffer) {
+		LatencyTracker.messageReceived();
 
 		// System.err.println("Message arrived (buffer): " + buffer);
 
@@ -1764,13 +1778,29 @@ public abstract class IcsConnector implements Connector, MessageListener {
 			isLoggingIn = false;
 
 			// If we are logged in. Then parse out all the text between the
-			// prompts.
-			int promptIndex = -1;
-			while ((promptIndex = buffer.indexOf(context.getRawPrompt())) != -1) {
-				String message = drainInboundMessageBuffer(buffer, promptIndex + context.getRawPrompt().length());
-				parseMessage(message);
+			// prompts. The framer only scans the text which arrived since the
+			// last call, and the parsed text is removed once at the end.
+			if (promptFramer == null || !promptFramer.getPrompt().equals(context.getRawPrompt())) {
+				promptFramer = new PromptFramer(context.getRawPrompt());
+			}
+			int start = 0;
+			int end = -1;
+			try {
+				while ((end = promptFramer.next(buffer)) != -1) {
+					String message = buffer.substring(start, end);
+					start = end;
+					parseMessage(message);
+				}
+			} finally {
+				if (start > 0) {
+					buffer.delete(0, start);
+					promptFramer.consumed(start);
+				}
 			}
 		} else {
+			if (promptFramer != null) {
+				promptFramer.reset();
+			}
 
 			// We are not logged in.
 			// There are several complex cases here depending on the prompt
@@ -1859,14 +1889,15 @@ public abstract class IcsConnector implements Connector, MessageListener {
 			// This call will handle all game events, and return back a list of
 			// ChatEvents to process.
 			final ChatEvent[] events = context.getParser().parse(filteredMessage);
+			LatencyTracker.record(LatencyTracker.Stage.MESSAGE_PARSED, LatencyTracker.getReceivedNanos());
 
-			ThreadService.getInstance().run(new Runnable() {
+			ThreadService.getInstance().run(Subsystem.NETWORK, new Runnable() {
 				public void run() {
 
 					for (ChatEvent event : events) {
 						event.setMessage(IcsUtils.maciejgFormatToUnicode(event.getMessage()));
-						publishEvent(event);
 					}
+					publishEvents(events);
 				}
 			});
 		} catch (RuntimeException re) {
@@ -1874,6 +1905,92 @@ public abstract class IcsConnector implements Connector, MessageListener {
 		}
 	}
 
+	/**
+	 * Runs the censors, scripts, sounds and other side effects of an event
+	 * before it is published. Returns false if the event should not be
+	 * published.
+	 */
+	protected boolean prepareEventForPublishing(ChatEvent event) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Publishing event : " + event);
+		}
+
+		updateAutoComplete(event);
+
+		if (isBlockedByExtendedCensor(event)) {
+			return false;
+		}
+		if (isBlockedByRegularExpressionBlocks(event)) {
+			return false;
+		}
+
+		event.setMessage(substituteTitles(event.getMessage(), event.getType()));
+		handleOpeningTabs(event);
+		processChatEventScripts(event);
+
+		if (event.getType() == ChatType.PARTNERSHIP_DESTROYED) {
+			isSimulBugConnector = false;
+			simulBugPartnerName = null;
+		}
+
+		// Sets the user following. This is used in the IcsParser to
+		// determine if white is on top or not.
+		if (event.getType() == ChatType.FOLLOWING) {
+			userFollowing = event.getSource();
+		} else if (event.getType() == ChatType.NOT_FOLLOWING) {
+			userFollowing = null;
+		}
+
+		if (event.getType() == ChatType.PARTNER_TELL) {
+			playBughouseSounds(event);
+			if (!event.hasSoundBeenHandled()
+					&& getPreferences().getBoolean(PreferenceKeys.BUGHOUSE_SPEAK_PARTNER_TELLS)) {
+				event.setHasSoundBeenHandled(speak(getTextAfterColon(event.getMessage())));
+			}
+		}
+
+		if (event.getType() == ChatType.CHANNEL_TELL) {
+			if (!event.getSource().equals(userName) && channelToSpeakTellsFrom.contains(event.getChannel())) {
+				event.setHasSoundBeenHandled(speak(IcsUtils.stripTitles(event.getSource())
+						// + " "
+						// + event.getChannel()
+						// + " "
+						+ getTextAfterColon(event.getMessage())));
+			}
+		}
+
+		if (event.getType() == ChatType.TELL) {
+			if (isSpeakingAllPersonTells || peopleToSpeakTellsFrom.contains(event.getSource())) {
+				event.setHasSoundBeenHandled(speak(
+						IcsUtils.stripTitles(event.getSource()) + " " + getTextAfterColon(event.getMessage())));
+			}
+		}
+
+		if (event.getType() == ChatType.WHISPER || event.getType() == ChatType.KIBITZ) {
+			if (!event.getSource().equals(userName) && gamesToSpeakTellsFrom.contains(event.getGameId())) {
+				event.setHasSoundBeenHandled(
+						speak(IcsUtils.stripTitles(event.getSource()) + getTextAfterColon(event.getMessage())));
+			}
+		}
+
+		if (event.getType() == ChatType.PING_RESPONSE) {
+			if (event.getSource().equals(userName)) {
+				firePingInfo(event.getPingTime());
+			}
+		}
+
+		int ignoreIndex = ignoringChatTypes.indexOf(event.getType());
+		if (ignoreIndex != -1) {
+			try {
+				ignoringChatTypes.remove(ignoreIndex);
+			} catch (ArrayIndexOutOfBoundsException aiobe) {
+				// Eat it there could be a synchronization problem.
+			}
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Plays the bughouse sound for the specified ptell. Sets hasBeenHandled to
 	 * true on the event if a bughouse sound is played.
@@ -47,6 +47,7 @@ import raptor.connector.ics.chat.CShoutEventParser;
 import raptor.connector.ics.chat.ChallengeEventParser;
 import raptor.connector.ics.chat.ChannelTellEventParser;
 import raptor.connector.ics.chat.ChatEventParser;
+import raptor.connector.ics.chat.ChatEventParserIndex;
 import raptor.connector.ics.chat.DrawOfferedEventParser;
 import raptor.connector.ics.chat.FingerEventParser;
 import raptor.connector.ics.chat.FollowingEventParser;
@@ -98,9 +99,16 @@ public class IcsParser implements GameConstants {
 	protected NoLongerExaminingGameParser noLongerExaminingParser;
 	protected List<ChatEventParser> nonGameEventParsers = new ArrayList<ChatEventParser>(
 			30);
+	protected ChatEventParserIndex nonGameEventParserIndex;
 	protected RemovingObsGameParser removingObsGameParser;
 	protected FollowingEventParser followingParser;
 	protected Style12Parser style12Parser;
+
+	/**
+	 * Every style 12 line is parsed into this message. Anything which keeps a
+	 * message past the processing of its line must store a copy.
+	 */
+	protected Style12Message reusableStyle12Message = new Style12Message();
 	protected SoughtParser soughtParser;
 
 	protected BugWhoGParser bugWhoGParser;
@@ -241,13 +249,11 @@ public class IcsParser implements GameConstants {
 						ChatEvent gameInfoEvent = processGameInfo(afterGameEvents);
 						if (gameInfoEvent == null) {
 							// Its not a game,gameInfo,bugwho,or sought event so
-							// now try the other parsers.
-							for (ChatEventParser parser : nonGameEventParsers) {
-								ChatEvent event = parser.parse(afterGameEvents);
-								if (event != null) {
-									events.add(event);
-									break;
-								}
+							// now try the parsers whose keywords it contains.
+							ChatEvent event = getNonGameEventParserIndex()
+									.parse(afterGameEvents);
+							if (event != null) {
+								events.add(event);
 							}
 							// Its an unhandled event
 							if (events.isEmpty()) {
@@ -422,6 +428,20 @@ public class IcsParser implements GameConstants {
 		}
 	}
 
+	/**
+	 * Returns the index over nonGameEventParsers, rebuilding it if parsers
+	 * were added since it was built.
+	 */
+	protected ChatEventParserIndex getNonGameEventParserIndex() {
+		if (nonGameEventParserIndex == null
+				|| nonGameEventParserIndex.getParserCount() != nonGameEventParsers
+						.size()) {
+			nonGameEventParserIndex = new ChatEventParserIndex(
+					nonGameEventParsers);
+		}
+		return nonGameEventParserIndex;
+	}
+
 	protected boolean isBughouse(Game game) {
 		return game.getVariant() == Variant.bughouse
 				|| game.getVariant() == Variant.fischerRandomBughouse;
@@ -501,7 +521,8 @@ public class IcsParser implements GameConstants {
 					continue;
 				}
 
-				Style12Message style12Message = style12Parser.parse(line);
+				Style12Message style12Message = style12Parser.parse(line,
+						reusableStyle12Message);
 				if (style12Message != null) {
 					process(style12Message, connector.getGameService(),
 							inboundMessage);
@@ -1242,7 +1263,7 @@ public class IcsParser implements GameConstants {
 
 		if (message.relation == Style12Message.EXAMINING_GAME_RELATION
 				&& !game.isInState(Game.SETUP_STATE)) {
-			examineGamesWaitingOnMoves.put(game.getId(), message);
+			examineGamesWaitingOnMoves.put(game.getId(), message.copy());
 			connector.sendMessage("moves " + message.gameId, true,
 					ChatType.MOVES);
 		} else {
@@ -1278,7 +1299,7 @@ public class IcsParser implements GameConstants {
 			// The transition will take place when the moves are received.
 
 			// Send the moves message.
-			examineGamesWaitingOnMoves.put(game.getId(), message);
+			examineGamesWaitingOnMoves.put(game.getId(), message.copy());
 			connector.sendMessage("moves " + message.gameId, true,
 					ChatType.MOVES);
 		} else if (entireMessage.contains("- entering examine mode.")
@@ -1291,7 +1312,7 @@ public class IcsParser implements GameConstants {
 			Game examineGame = IcsUtils.createGame(message, entireMessage);
 			if (message.relation == Style12Message.EXAMINING_GAME_RELATION
 					&& !examineGame.isInState(Game.SETUP_STATE)) {
-				examineGamesWaitingOnMoves.put(game.getId(), message);
+				examineGamesWaitingOnMoves.put(game.getId(), message.copy());
 				connector.sendMessage("moves " + message.gameId, true,
 						ChatType.MOVES);
 			}
@@ -1308,7 +1329,7 @@ public class IcsParser implements GameConstants {
 			// Add this game to the games waiting on moves.
 			// Send a moves message.
 			// Transition from BSETUP to EXAMINE when moves arrives.
-			examineGamesWaitingOnMoves.put(game.getId(), message);
+			examineGamesWaitingOnMoves.put(game.getId(), message.copy());
 			connector.sendMessage("moves " + message.gameId, true,
 					ChatType.MOVES);
 		} else {
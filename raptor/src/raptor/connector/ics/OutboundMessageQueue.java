@@ -0,0 +1,151 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.connector.ics;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+/**
+ * Queues the messages an IcsConnector sends so they can be written in
+ * batches at a controlled rate.
+ *
+ * Priority messages, such as moves, are ahead of everything else and are
+ * never rate limited. Other messages are released by a token bucket, so a
+ * burst from a script or a timer is spread out instead of stalling the
+ * connection. Polling messages like $$games, $$sought and $$bugwho are only
+ * queued once; a repeat of one which has not been sent yet is dropped.
+ *
+ * Times are passed in by the caller, which keeps the class free of threads
+ * and clocks.
+ */
+public class OutboundMessageQueue {
+	protected static final String[] POLLING_MESSAGE_PREFIXES = { "$$games", "$$sought", "$$bugwho" };
+
+	/**
+	 * Returns true if the message is a refresh which gives the same result if
+	 * it is sent once or several times in a row.
+	 */
+	public static boolean isPollingMessage(String message) {
+		for (String prefix : POLLING_MESSAGE_PREFIXES) {
+			if (message.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected int burst;
+
+	protected long lastRefillTime = -1;
+
+	protected double messagesPerMilli;
+
+	protected LinkedList<String> messages = new LinkedList<String>();
+
+	protected LinkedList<String> priorityMessages = new LinkedList<String>();
+
+	protected Set<String> queuedPollingMessages = new HashSet<String>();
+
+	protected double tokens;
+
+	/**
+	 * @param messagesPerSecond
+	 *            The rate messages which are not priority messages are sent at
+	 *            once the burst has been used.
+	 * @param burst
+	 *            The number of messages which can be sent at once after the
+	 *            queue has been idle.
+	 */
+	public OutboundMessageQueue(int messagesPerSecond, int burst) {
+		this.messagesPerMilli = messagesPerSecond / 1000.0;
+		this.burst = burst;
+		tokens = burst;
+	}
+
+	/**
+	 * Adds a message to the queue. Returns false if it was dropped because
+	 * the same polling message is already waiting to be sent.
+	 */
+	public synchronized boolean add(String message, boolean isPriority) {
+		if (isPriority) {
+			priorityMessages.add(message);
+		} else {
+			if (isPollingMessage(message) && !queuedPollingMessages.add(message)) {
+				return false;
+			}
+			messages.add(message);
+		}
+		return true;
+	}
+
+	public synchronized void clear() {
+		messages.clear();
+		priorityMessages.clear();
+		queuedPollingMessages.clear();
+	}
+
+	/**
+	 * Returns the number of milliseconds until poll will release another
+	 * message, 0 if it would now, or -1 if the queue is empty.
+	 */
+	public synchronized long getDelay(long now) {
+		if (!priorityMessages.isEmpty()) {
+			return 0;
+		} else if (messages.isEmpty()) {
+			return -1;
+		}
+		refill(now);
+		return tokens >= 1.0 ? 0 : (long) Math.ceil((1.0 - tokens) / messagesPerMilli);
+	}
+
+	public synchronized boolean isEmpty() {
+		return messages.isEmpty() && priorityMessages.isEmpty();
+	}
+
+	/**
+	 * Removes every message which may be sent now and returns them
+	 * concatenated, priority messages first, so they can be written at once.
+	 * Returns null if nothing may be sent.
+	 */
+	public synchronized String poll(long now) {
+		refill(now);
+		if (priorityMessages.isEmpty() && (messages.isEmpty() || tokens < 1.0)) {
+			return null;
+		}
+
+		StringBuilder result = new StringBuilder(100);
+		while (!priorityMessages.isEmpty()) {
+			result.append(priorityMessages.removeFirst());
+		}
+		while (!messages.isEmpty() && tokens >= 1.0) {
+			String message = messages.removeFirst();
+			queuedPollingMessages.remove(message);
+			result.append(message);
+			tokens--;
+		}
+		return result.toString();
+	}
+
+	public synchronized int size() {
+		return messages.size() + priorityMessages.size();
+	}
+
+	protected void refill(long now) {
+		if (lastRefillTime != -1 && now > lastRefillTime) {
+			tokens = Math.min(burst, tokens + (now - lastRefillTime) * messagesPerMilli);
+		}
+		lastRefillTime = now;
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.connector.ics;
+
+/**
+ * Finds prompt boundaries in the inbound message buffer incrementally.
+ *
+ * The framer remembers how far into the buffer it has scanned and how much of
+ * the prompt it had matched there, so each call only looks at the characters
+ * appended since the last one. Matching is Knuth-Morris-Pratt, so a prompt
+ * split across two reads is found without rescanning.
+ *
+ * The caller removes consumed text from the front of the buffer once per
+ * read with consumed() rather than once per message.
+ */
+public class PromptFramer {
+	protected int[] failure;
+
+	protected int matched;
+
+	protected String prompt;
+
+	protected int scanned;
+
+	public PromptFramer(String prompt) {
+		this.prompt = prompt;
+		failure = new int[prompt.length()];
+		for (int i = 1, k = 0; i < prompt.length(); i++) {
+			while (k > 0 && prompt.charAt(i) != prompt.charAt(k)) {
+				k = failure[k - 1];
+			}
+			if (prompt.charAt(i) == prompt.charAt(k)) {
+				k++;
+			}
+			failure[i] = k;
+		}
+	}
+
+	/**
+	 * Must be invoked after count characters have been deleted from the front
+	 * of the buffer.
+	 */
+	public void consumed(int count) {
+		scanned = Math.max(0, scanned - count);
+	}
+
+	public String getPrompt() {
+		return prompt;
+	}
+
+	/**
+	 * Returns the index just past the next prompt in the buffer, or -1 if
+	 * there is not a complete one yet. Only the characters after the end of the
+	 * previous call are examined.
+	 */
+	public int next(CharSequence buffer) {
+		int length = buffer.length();
+		while (scanned < length) {
+			char c = buffer.charAt(scanned++);
+			while (matched > 0 && c != prompt.charAt(matched)) {
+				matched = failure[matched - 1];
+			}
+			if (c == prompt.charAt(matched)) {
+				matched++;
+			}
+			if (matched == prompt.length()) {
+				matched = 0;
+				return scanned;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Forgets all scanning state. Must be invoked when the buffer is modified
+	 * by anything other than appends and consumed().
+	 */
+	public void reset() {
+		matched = 0;
+		scanned = 0;
+	}
+}
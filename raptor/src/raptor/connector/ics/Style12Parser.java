@@ -103,6 +103,14 @@ public class Style12Parser implements GameConstants {
 	private static final RaptorLogger LOG = RaptorLogger.getLog(Style12Parser.class);
 	public static final String STYLE_12 = "<12>";
 
+	/**
+	 * The characters which separate style 12 fields, as in the tokenizer
+	 * delimiters " <>\n".
+	 */
+	private static boolean isDelimiter(char c) {
+		return c == ' ' || c == '<' || c == '>' || c == '\n';
+	}
+
 	/**
 	 * Parses a string in (0:00.000) format into a long.
 	 */
@@ -118,6 +126,22 @@ public class Style12Parser implements GameConstants {
 
 	// protected boolean isBicsStyle = false;
 
+	/**
+	 * The position in message of the next character to scan.
+	 */
+	protected int index;
+
+	/**
+	 * The line being parsed.
+	 */
+	protected String message;
+
+	/**
+	 * Recently parsed strings by the hash of their characters. Observed games
+	 * repeat the same names, game ids and moves in every message.
+	 */
+	protected String[] stringCache = new String[256];
+
 	/**
 	 * BICS always sends the positions in the style 12 with white on the bottom
 	 * even if it says it does'nt. If is white on bottom is set on fics then the
@@ -130,65 +154,96 @@ public class Style12Parser implements GameConstants {
 		// this.isBicsStyle = isBicsStyle;
 	}
 
+	/**
+	 * Parses a style 12 line into a new Style12Message. Returns null if the
+	 * line is not a style 12 message.
+	 */
 	public Style12Message parse(String message) {
-		Style12Message result = null;
 		if (message.startsWith(STYLE_12)) {
-			result = new Style12Message();
-			RaptorStringTokenizer tok = new RaptorStringTokenizer(message,
-					" <>\n", true);
-
-			// parse past <12>.
-			tok.nextToken();
+			return parse(message, new Style12Message());
+		}
+		return null;
+	}
 
-			StringBuilder positionString = new StringBuilder(64);
-			for (int i = 0; i < 8; i++) {
-				positionString.append(tok.nextToken());
+	/**
+	 * Parses a style 12 line into result, which may be a message reused from
+	 * an earlier call. Returns result, or null if the line is not a style 12
+	 * message.
+	 * 
+	 * The line is scanned once without tokenizing it. The board is decoded
+	 * straight into result's position arrays, and the names, game id and moves
+	 * are shared with earlier messages holding the same text, so a typical
+	 * observed move allocates only the strings that changed.
+	 */
+	public Style12Message parse(String message, Style12Message result) {
+		if (!message.startsWith(STYLE_12)) {
+			return null;
+		}
+		index = STYLE_12.length();
+		this.message = message;
+		try {
+			if (result.position == null) {
+				result.position = new int[8][8];
+			}
+			int squares = 0;
+			for (int rank = 0; rank < 8; rank++) {
+				int end = nextToken();
+				for (; index < end; index++, squares++) {
+					if (squares == 64) {
+						throw new IllegalArgumentException(
+								"Too many squares in position " + message);
+					}
+					result.position[7 - squares / 8][squares % 8] = pieceFromChar(message
+							.charAt(index));
+				}
+			}
+			if (squares != 64) {
+				throw new IllegalArgumentException(
+						"Too few squares in position " + message);
 			}
 
-			result.isWhitesMoveAfterMoveIsMade = tok.nextToken().equals("W");
-
-			result.doublePawnPushFile = Integer.parseInt(tok.nextToken());
+			result.isWhitesMoveAfterMoveIsMade = nextEquals('W');
 
-			result.canWhiteCastleKSide = tok.nextToken().equals("1");
-			result.canWhiteCastleQSide = tok.nextToken().equals("1");
-			result.canBlackCastleKSide = tok.nextToken().equals("1");
-			result.canBlackCastleQSide = tok.nextToken().equals("1");
+			result.doublePawnPushFile = (int) nextLong();
 
-			result.numberOfMovesSinceLastIrreversible = Integer.parseInt(tok
-					.nextToken());
+			result.canWhiteCastleKSide = nextEquals('1');
+			result.canWhiteCastleQSide = nextEquals('1');
+			result.canBlackCastleKSide = nextEquals('1');
+			result.canBlackCastleQSide = nextEquals('1');
 
-			result.gameId = tok.nextToken();
+			result.numberOfMovesSinceLastIrreversible = (int) nextLong();
 
-			result.whiteName = tok.nextToken();
-			result.blackName = tok.nextToken();
+			result.gameId = nextString();
 
-			result.relation = Integer.parseInt(tok.nextToken());
+			result.whiteName = nextString();
+			result.blackName = nextString();
 
-			result.initialTimeMillis = Integer.parseInt(tok.nextToken()) * 1000L * 60;
-			result.initialIncMillis = Integer.parseInt(tok.nextToken()) * 1000L * 60;
+			result.relation = (int) nextLong();
 
-			result.whiteStrength = Integer.parseInt(tok.nextToken());
-			result.blackStrength = Integer.parseInt(tok.nextToken());
+			result.initialTimeMillis = nextLong() * 1000L * 60;
+			result.initialIncMillis = nextLong() * 1000L * 60;
 
-			result.whiteRemainingTimeMillis = Long.parseLong(tok.nextToken());
-			result.blackRemainingTimeMillis = Long.parseLong(tok.nextToken());
+			result.whiteStrength = (int) nextLong();
+			result.blackStrength = (int) nextLong();
 
-			result.fullMoveNumber = Integer.parseInt(tok.nextToken());
+			result.whiteRemainingTimeMillis = nextLong();
+			result.blackRemainingTimeMillis = nextLong();
 
-			result.lan = tok.nextToken();
+			result.fullMoveNumber = (int) nextLong();
 
-			result.timeTakenForLastMoveMillis = timeTakenStringToInt(tok
-					.nextToken());
+			result.lan = nextString();
 
-			result.san = tok.nextToken();
+			result.timeTakenForLastMoveMillis = nextTimeTaken();
 
-			result.isWhiteOnTop = tok.nextToken().equals("1");
+			result.san = nextString();
 
-			result.position = parsePosition(positionString, result.isWhiteOnTop);
+			result.isWhiteOnTop = nextEquals('1');
 
-			result.isClockTicking = tok.nextToken().equals("1");
+			result.isClockTicking = nextEquals('1');
 
-			result.lagInMillis = Integer.parseInt(tok.nextToken());
+			result.lagInMillis = (int) nextLong();
+		} finally {
+			this.message = null;
 		}
 		return result;
 	}
@@ -269,4 +324,150 @@ public class Style12Parser implements GameConstants {
 		}
 		return result;
 	}
+
+	/**
+	 * Returns the colored piece constant for a style 12 board character.
+	 */
+	protected int pieceFromChar(char c) {
+		switch (c) {
+		case '-':
+			return EMPTY;
+		case 'p':
+			return BP;
+		case 'n':
+			return BN;
+		case 'b':
+			return BB;
+		case 'r':
+			return BR;
+		case 'q':
+			return BQ;
+		case 'k':
+			return BK;
+		case 'P':
+			return WP;
+		case 'N':
+			return WN;
+		case 'B':
+			return WB;
+		case 'R':
+			return WR;
+		case 'Q':
+			return WQ;
+		case 'K':
+			return WK;
+		default:
+			throw new IllegalArgumentException("Invalid piece encountered. '"
+					+ c + "' " + message);
+		}
+	}
+
+	/**
+	 * Returns true if the next field is the single character c.
+	 */
+	private boolean nextEquals(char c) {
+		int end = nextToken();
+		boolean result = end - index == 1 && message.charAt(index) == c;
+		index = end;
+		return result;
+	}
+
+	private long nextLong() {
+		int end = nextToken();
+		if (index == end) {
+			throw new NumberFormatException("Missing field in " + message);
+		}
+		boolean isNegative = message.charAt(index) == '-';
+		int i = isNegative ? index + 1 : index;
+		if (i == end) {
+			throw new NumberFormatException("Invalid number in " + message);
+		}
+		long result = 0;
+		for (; i < end; i++) {
+			char c = message.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException("Invalid number in " + message);
+			}
+			result = result * 10 + c - '0';
+		}
+		index = end;
+		return isNegative ? -result : result;
+	}
+
+	private String nextString() {
+		int end = nextToken();
+		if (index == end) {
+			throw new IllegalArgumentException("Missing field in " + message);
+		}
+		int hash = 0;
+		for (int i = index; i < end; i++) {
+			hash = 31 * hash + message.charAt(i);
+		}
+		int slot = (hash ^ hash >>> 16) & stringCache.length - 1;
+		String result = stringCache[slot];
+		if (result == null || result.length() != end - index
+				|| !message.regionMatches(index, result, 0, end - index)) {
+			result = message.substring(index, end);
+			stringCache[slot] = result;
+		}
+		index = end;
+		return result;
+	}
+
+	/**
+	 * Parses a (min:sec.millis) field the way timeTakenStringToInt does.
+	 */
+	private long nextTimeTaken() {
+		int end = nextToken();
+		long minutes = 0;
+		long seconds = 0;
+		long millis = 0;
+		int count = 0;
+		boolean inNumber = false;
+		for (int i = index; i < end; i++) {
+			char c = message.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (!inNumber) {
+					if (count == 3) {
+						break;
+					}
+					count++;
+					inNumber = true;
+				}
+				if (count == 1) {
+					minutes = minutes * 10 + c - '0';
+				} else if (count == 2) {
+					seconds = seconds * 10 + c - '0';
+				} else {
+					millis = millis * 10 + c - '0';
+				}
+			} else if (c == ':' || c == '(' || c == ')' || c == '.') {
+				inNumber = false;
+			} else {
+				throw new NumberFormatException("Invalid time taken in "
+						+ message);
+			}
+		}
+		if (count != 3) {
+			throw new NumberFormatException("Invalid time taken in " + message);
+		}
+		index = end;
+		return (minutes * 60 + seconds) * 1000 + millis;
+	}
+
+	/**
+	 * Skips the delimiters before the next field and returns the index just
+	 * past its end. index is left at the start of the field.
+	 */
+	private int nextToken() {
+		int length = message.length();
+		while (index < length && isDelimiter(message.charAt(index))) {
+			index++;
+		}
+		int end = index;
+		while (end < length && !isDelimiter(message.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
 }
@@ -24,6 +24,11 @@ public class BugWhoAllEventParser extends ChatEventParser {
 		super();
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { START_MESSAGE };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
@@ -23,6 +23,11 @@ public class ChallengeEventParser extends ChatEventParser {
 		super();
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { IDENTIFIER };
+	}
+
 	@Override
 	public ChatEvent parse(String text) {
 		if (text.length() < 600 && text.indexOf(IDENTIFIER) != -1) {
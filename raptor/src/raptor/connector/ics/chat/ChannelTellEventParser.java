@@ -26,6 +26,11 @@ public class ChannelTellEventParser extends ChatEventParser {
 		super();
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { "): " };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
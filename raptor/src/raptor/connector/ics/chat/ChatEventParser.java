@@ -19,6 +19,15 @@ public abstract class ChatEventParser {
 	public ChatEventParser() {
 	}
 
+	/**
+	 * Returns strings at least one of which appears in every text this parser
+	 * accepts. ChatEventParserIndex only tries the parser on text containing
+	 * one of them. Returns null if the parser should be tried on all text.
+	 */
+	public String[] getKeywords() {
+		return null;
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
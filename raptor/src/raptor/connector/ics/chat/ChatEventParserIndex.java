@@ -0,0 +1,167 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.connector.ics.chat;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import raptor.chat.ChatEvent;
+
+/**
+ * Routes text to the ChatEventParsers which could accept it.
+ *
+ * The keywords of every parser are compiled into an Aho-Corasick automaton
+ * over ASCII. One pass over the text yields a bit mask of the parsers whose
+ * keywords it contains, and only those are tried, still in their original
+ * order. Since a keyword is a necessary condition for its parser the result
+ * is the same as trying every parser, but the cost no longer grows with the
+ * number of parsers.
+ *
+ * At most 64 parsers are supported.
+ */
+public class ChatEventParserIndex {
+	private static final int ALPHABET_SIZE = 128;
+
+	protected long alwaysTriedMask;
+
+	protected int[] failure;
+
+	protected int nodeCount;
+
+	protected long[] outputs;
+
+	protected ChatEventParser[] parsers;
+
+	protected int[][] transitions;
+
+	public ChatEventParserIndex(List<ChatEventParser> parsers) {
+		if (parsers.size() > 64) {
+			throw new IllegalArgumentException("At most 64 parsers are supported.");
+		}
+		this.parsers = parsers.toArray(new ChatEventParser[0]);
+
+		List<int[]> transitionList = new ArrayList<int[]>();
+		List<Long> outputList = new ArrayList<Long>();
+		transitionList.add(new int[ALPHABET_SIZE]);
+		outputList.add(0L);
+
+		for (int i = 0; i < this.parsers.length; i++) {
+			String[] keywords = this.parsers[i].getKeywords();
+			if (keywords == null || keywords.length == 0) {
+				alwaysTriedMask |= 1L << i;
+				continue;
+			}
+			for (String keyword : keywords) {
+				if (!isIndexable(keyword)) {
+					alwaysTriedMask |= 1L << i;
+					continue;
+				}
+				int node = 0;
+				for (int j = 0; j < keyword.length(); j++) {
+					char c = keyword.charAt(j);
+					if (transitionList.get(node)[c] == 0) {
+						transitionList.get(node)[c] = transitionList.size();
+						transitionList.add(new int[ALPHABET_SIZE]);
+						outputList.add(0L);
+					}
+					node = transitionList.get(node)[c];
+				}
+				outputList.set(node, outputList.get(node) | 1L << i);
+			}
+		}
+
+		nodeCount = transitionList.size();
+		transitions = transitionList.toArray(new int[nodeCount][]);
+		outputs = new long[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			outputs[i] = outputList.get(i);
+		}
+		failure = new int[nodeCount];
+
+		// Breadth first so each node's failure link is final before its
+		// children use it. Missing transitions are filled in with the
+		// failure node's, so matching never has to follow failure links.
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		for (int c = 0; c < ALPHABET_SIZE; c++) {
+			if (transitions[0][c] != 0) {
+				queue.add(transitions[0][c]);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.removeFirst();
+			outputs[node] |= outputs[failure[node]];
+			for (int c = 0; c < ALPHABET_SIZE; c++) {
+				int child = transitions[node][c];
+				if (child != 0) {
+					failure[child] = transitions[failure[node]][c];
+					queue.add(child);
+				} else {
+					transitions[node][c] = transitions[failure[node]][c];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a bit mask of the indexes of the parsers which could accept the
+	 * text.
+	 */
+	public long getCandidates(String text) {
+		long result = alwaysTriedMask;
+		int node = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			node = c < ALPHABET_SIZE ? transitions[node][c] : 0;
+			result |= outputs[node];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of parsers in the index.
+	 */
+	public int getParserCount() {
+		return parsers.length;
+	}
+
+	/**
+	 * Returns the event produced by the first candidate parser which accepts
+	 * the text, or null if none do.
+	 */
+	public ChatEvent parse(String text) {
+		long candidates = getCandidates(text);
+		while (candidates != 0L) {
+			int i = Long.numberOfTrailingZeros(candidates);
+			ChatEvent event = parsers[i].parse(text);
+			if (event != null) {
+				return event;
+			}
+			candidates &= candidates - 1;
+		}
+		return null;
+	}
+
+	private static boolean isIndexable(String keyword) {
+		if (keyword.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < keyword.length(); i++) {
+			if (keyword.charAt(i) >= ALPHABET_SIZE) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
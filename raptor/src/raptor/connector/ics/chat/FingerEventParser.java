@@ -25,6 +25,11 @@ public class FingerEventParser extends ChatEventParser {
 		super();
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { BEGINING_MESSAGE };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
@@ -29,6 +29,11 @@ public class FollowingEventParser extends ChatEventParser {
 	public FollowingEventParser() {
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { IDENTIFIER, IDENTIFIER2 };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
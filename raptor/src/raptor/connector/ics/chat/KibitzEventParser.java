@@ -23,6 +23,11 @@ public class KibitzEventParser extends ChatEventParser {
 		super();
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { "kibitzes:" };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
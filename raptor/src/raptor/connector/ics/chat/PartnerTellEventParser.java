@@ -24,6 +24,11 @@ public class PartnerTellEventParser extends ChatEventParser {
 	public PartnerTellEventParser() {
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { "(your" };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
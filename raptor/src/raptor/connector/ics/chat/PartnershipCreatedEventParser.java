@@ -26,6 +26,11 @@ public class PartnershipCreatedEventParser extends ChatEventParser {
 	public PartnershipCreatedEventParser() {
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { IDENTIFIER, IDENTIFIER_2 };
+	}
+
 	@Override
 	public ChatEvent parse(String text) {
 		if (text.length() < 100) {
@@ -24,6 +24,11 @@ public class PartnershipEndedEventParser extends ChatEventParser {
 	public PartnershipEndedEventParser() {
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { ID_1, ID_2 };
+	}
+
 	@Override
 	public ChatEvent parse(String text) {
 		if (text.length() < 100) {
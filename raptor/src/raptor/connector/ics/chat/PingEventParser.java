@@ -18,6 +18,11 @@ public class PingEventParser extends ChatEventParser {
 		super();
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { IDENTIFIER };
+	}
+
 	@Override
 	public ChatEvent parse(String text) {
 		ChatEvent result = null;
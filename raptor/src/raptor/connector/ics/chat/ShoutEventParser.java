@@ -28,6 +28,11 @@ public class ShoutEventParser extends ChatEventParser {
 	public ShoutEventParser() {
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { SHOUT_1, SHOUT_2 };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
@@ -23,6 +23,11 @@ public class TellEventParser extends ChatEventParser {
 
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { "says:", "tells" };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
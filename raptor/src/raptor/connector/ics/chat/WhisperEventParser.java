@@ -24,6 +24,11 @@ public class WhisperEventParser extends ChatEventParser {
 	public WhisperEventParser() {
 	}
 
+	@Override
+	public String[] getKeywords() {
+		return new String[] { IDENTIFIER };
+	}
+
 	/**
 	 * Returns null if text does not match the event this class produces.
 	 */
@@ -50,6 +50,45 @@ public class Style12Message {
 	public Style12Message() {
 	}
 
+	/**
+	 * Returns a copy which does not share its position with this message.
+	 * Used to keep a message parsed into a reused instance.
+	 */
+	public Style12Message copy() {
+		Style12Message result = new Style12Message();
+		result.blackName = blackName;
+		result.blackRemainingTimeMillis = blackRemainingTimeMillis;
+		result.blackStrength = blackStrength;
+		result.canBlackCastleKSide = canBlackCastleKSide;
+		result.canBlackCastleQSide = canBlackCastleQSide;
+		result.canWhiteCastleKSide = canWhiteCastleKSide;
+		result.canWhiteCastleQSide = canWhiteCastleQSide;
+		result.doublePawnPushFile = doublePawnPushFile;
+		result.fullMoveNumber = fullMoveNumber;
+		result.gameId = gameId;
+		result.initialIncMillis = initialIncMillis;
+		result.initialTimeMillis = initialTimeMillis;
+		result.isClockTicking = isClockTicking;
+		result.isWhiteOnTop = isWhiteOnTop;
+		result.isWhitesMoveAfterMoveIsMade = isWhitesMoveAfterMoveIsMade;
+		result.lagInMillis = lagInMillis;
+		result.lan = lan;
+		result.numberOfMovesSinceLastIrreversible = numberOfMovesSinceLastIrreversible;
+		if (position != null) {
+			result.position = new int[position.length][];
+			for (int i = 0; i < position.length; i++) {
+				result.position[i] = position[i].clone();
+			}
+		}
+		result.relation = relation;
+		result.san = san;
+		result.timeTakenForLastMoveMillis = timeTakenForLastMoveMillis;
+		result.whiteName = whiteName;
+		result.whiteRemainingTimeMillis = whiteRemainingTimeMillis;
+		result.whiteStrength = whiteStrength;
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		return "Style12: gameId=" + gameId + " " + san;
@@ -0,0 +1,152 @@
+package raptor.connector.ics.timeseal;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import raptor.util.RaptorLogger;
+
+/**
+ * A single daemon thread which services the non blocking socket channels of
+ * every connector. Channels are registered with a Handler which is invoked on
+ * this thread when the channel is readable or writable.
+ *
+ * Interest ops are only ever changed on the selector thread. Other threads
+ * queue the change with invokeLater, which also wakes up the selector.
+ */
+public class SocketChannelSelector {
+	/**
+	 * Receives the events for a registered channel. All of the methods are
+	 * invoked on the selector thread.
+	 */
+	public static interface Handler {
+		public void onError(Throwable t);
+
+		public void onReadable() throws IOException;
+
+		public void onWritable() throws IOException;
+	}
+
+	private static final RaptorLogger LOG = RaptorLogger.getLog(SocketChannelSelector.class);
+
+	private static SocketChannelSelector singletonInstance;
+
+	public static synchronized SocketChannelSelector getInstance() {
+		if (singletonInstance == null) {
+			try {
+				singletonInstance = new SocketChannelSelector();
+			} catch (IOException ioe) {
+				throw new RuntimeException(ioe);
+			}
+		}
+		return singletonInstance;
+	}
+
+	protected Thread daemonThread;
+
+	protected ConcurrentLinkedQueue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+	protected Selector selector;
+
+	private SocketChannelSelector() throws IOException {
+		selector = Selector.open();
+		daemonThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				selectLoop();
+			}
+		});
+		daemonThread.setDaemon(true);
+		daemonThread.setName("SocketChannelSelector Thread");
+		daemonThread.setPriority(Thread.MAX_PRIORITY);
+		daemonThread.start();
+	}
+
+	/**
+	 * Runs the runnable on the selector thread. If invoked from the selector
+	 * thread it is run immediately.
+	 */
+	public void invokeLater(Runnable runnable) {
+		if (isSelectorThread()) {
+			runnable.run();
+		} else {
+			pendingTasks.add(runnable);
+			selector.wakeup();
+		}
+	}
+
+	public boolean isSelectorThread() {
+		return Thread.currentThread() == daemonThread;
+	}
+
+	/**
+	 * Registers a non blocking channel for reads. The registration happens on
+	 * the selector thread, in order with any setWriteInterest calls made
+	 * after it.
+	 */
+	public void register(final SelectableChannel channel, final Handler handler) {
+		invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					channel.register(selector, SelectionKey.OP_READ, handler);
+				} catch (Throwable t) {
+					handler.onError(t);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sets whether the selector should report the channel as writable. Used
+	 * when a write could not be completed without blocking.
+	 */
+	public void setWriteInterest(final SelectableChannel channel, final boolean isInterested) {
+		invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				SelectionKey key = channel.keyFor(selector);
+				if (key != null && key.isValid()) {
+					key.interestOps(isInterested ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+							: SelectionKey.OP_READ);
+				}
+			}
+		});
+	}
+
+	protected void selectLoop() {
+		while (true) {
+			try {
+				selector.select();
+
+				Runnable task = null;
+				while ((task = pendingTasks.poll()) != null) {
+					task.run();
+				}
+
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while (iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					Handler handler = (Handler) key.attachment();
+					try {
+						if (key.isValid() && key.isWritable()) {
+							handler.onWritable();
+						}
+						if (key.isValid() && key.isReadable()) {
+							handler.onReadable();
+						}
+					} catch (Throwable t) {
+						key.cancel();
+						handler.onError(t);
+					}
+				}
+			} catch (Throwable t) {
+				LOG.error("Error in SocketChannelSelector select loop", t);
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package raptor.connector.ics.timeseal;
+
+/**
+ * The timeseal line encryption shared by the message producers.
+ */
+public final class TimesealCrypt {
+	private static final byte TIMESEAL_KEY[] = "Timestamp (FICS) v1.0 - programmed by Henrik Gram.".getBytes();
+
+	private static final byte KEY_STREAM[] = createKeyStream();
+
+	/**
+	 * The most bytes crypt adds to a line: the timestamp, its delimiters, the
+	 * padding and the trailer.
+	 */
+	public static final int MAX_OVERHEAD = 40;
+
+	/**
+	 * Crypts length bytes of a line, without its line feed, stamped with the
+	 * milliseconds since the connection started. The result is written to the
+	 * start of buffer, which must have room for length + MAX_OVERHEAD bytes.
+	 * Returns the number of bytes written.
+	 */
+	public static int crypt(byte stringToWriteBytes[], int length, long timestamp, byte buffer[]) {
+		return crypt(stringToWriteBytes, 0, length, timestamp, buffer);
+	}
+
+	/**
+	 * Crypts the length bytes of a line starting at offset. Otherwise the same
+	 * as crypt(byte[], int, long, byte[]).
+	 *
+	 * The line is stamped, padded to a multiple of 12 bytes and then
+	 * scrambled one 12 byte block at a time: each block is swapped, has its
+	 * high bits set, is XORed with the key and has 32 subtracted in a single
+	 * pass. KEY_STREAM holds the key unrolled past its end so a block never
+	 * wraps in the middle. Nothing is allocated.
+	 */
+	public static int crypt(byte stringToWriteBytes[], int offset, int length, long timestamp, byte buffer[]) {
+		System.arraycopy(stringToWriteBytes, offset, buffer, 0, length);
+		int bytesInLength = length;
+		buffer[bytesInLength++] = 24;
+		bytesInLength = writeTimestamp(timestamp, buffer, bytesInLength);
+		buffer[bytesInLength++] = 25;
+		for (int end = bytesInLength + 12 - bytesInLength % 12; bytesInLength < end;) {
+			buffer[bytesInLength++] = 49;
+		}
+
+		int keyIndex = 0;
+		for (int i = 0; i < bytesInLength; i += 12) {
+			byte b0 = buffer[i];
+			byte b1 = buffer[i + 1];
+			byte b2 = buffer[i + 2];
+			byte b3 = buffer[i + 3];
+			byte b4 = buffer[i + 4];
+			byte b5 = buffer[i + 5];
+			byte b6 = buffer[i + 6];
+			byte b7 = buffer[i + 7];
+			byte b8 = buffer[i + 8];
+			byte b9 = buffer[i + 9];
+			byte b10 = buffer[i + 10];
+			byte b11 = buffer[i + 11];
+
+			buffer[i] = scramble(b11, KEY_STREAM[keyIndex]);
+			buffer[i + 1] = scramble(b1, KEY_STREAM[keyIndex + 1]);
+			buffer[i + 2] = scramble(b9, KEY_STREAM[keyIndex + 2]);
+			buffer[i + 3] = scramble(b3, KEY_STREAM[keyIndex + 3]);
+			buffer[i + 4] = scramble(b7, KEY_STREAM[keyIndex + 4]);
+			buffer[i + 5] = scramble(b5, KEY_STREAM[keyIndex + 5]);
+			buffer[i + 6] = scramble(b6, KEY_STREAM[keyIndex + 6]);
+			buffer[i + 7] = scramble(b4, KEY_STREAM[keyIndex + 7]);
+			buffer[i + 8] = scramble(b8, KEY_STREAM[keyIndex + 8]);
+			buffer[i + 9] = scramble(b2, KEY_STREAM[keyIndex + 9]);
+			buffer[i + 10] = scramble(b10, KEY_STREAM[keyIndex + 10]);
+			buffer[i + 11] = scramble(b0, KEY_STREAM[keyIndex + 11]);
+
+			keyIndex += 12;
+			if (keyIndex >= TIMESEAL_KEY.length) {
+				keyIndex -= TIMESEAL_KEY.length;
+			}
+		}
+
+		buffer[bytesInLength++] = -128;
+		buffer[bytesInLength++] = 10;
+		return bytesInLength;
+	}
+
+	private static byte[] createKeyStream() {
+		byte result[] = new byte[TIMESEAL_KEY.length + 12];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = TIMESEAL_KEY[i % TIMESEAL_KEY.length];
+		}
+		return result;
+	}
+
+	private static byte scramble(byte b, byte key) {
+		return (byte) (((b | 0x80) ^ key) - 32);
+	}
+
+	/**
+	 * Writes the decimal digits of the timestamp, as Long.toString would, at
+	 * index. Returns the index after the last digit.
+	 */
+	private static int writeTimestamp(long timestamp, byte buffer[], int index) {
+		if (timestamp < 0) {
+			// Never happens in practice. Long.MIN_VALUE can not be negated.
+			byte digits[] = Long.toString(timestamp).getBytes();
+			System.arraycopy(digits, 0, buffer, index, digits.length);
+			return index + digits.length;
+		}
+
+		int digitCount = 1;
+		for (long remaining = timestamp / 10; remaining != 0; remaining /= 10) {
+			digitCount++;
+		}
+		long remaining = timestamp;
+		for (int i = index + digitCount - 1; i >= index; i--) {
+			buffer[i] = (byte) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+		return index + digitCount;
+	}
+
+	private TimesealCrypt() {
+	}
+}
@@ -0,0 +1,303 @@
+package raptor.connector.ics.timeseal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import raptor.util.RaptorLogger;
+
+/**
+ * A MessageProducer which uses a non blocking SocketChannel serviced by the
+ * shared SocketChannelSelector thread, so any number of connections can be
+ * open without a thread each.
+ *
+ * Reads go into a direct buffer and the timeseal acks are stripped out with a
+ * byte level state machine, so an ack split across two reads is still found.
+ * The remaining bytes are decoded incrementally into a reused CharBuffer and
+ * appended to the inbound message buffer without creating a String per read.
+ */
+public class TimesealSocketChannelMessageProducer implements MessageProducer, SocketChannelSelector.Handler {
+	private static final RaptorLogger LOG = RaptorLogger.getLog(TimesealSocketChannelMessageProducer.class);
+
+	private static final byte ACK_REQUEST[] = { '[', 'G', ']', 0 };
+
+	private static final byte ACK_RESPONSE[] = "\0029\n".getBytes();
+
+	private static final int READ_BUFFER_SIZE = 40000;
+
+	/**
+	 * The number of bytes of ACK_REQUEST matched so far. They are held back
+	 * from the payload until the request either completes or is broken.
+	 */
+	private int ackState;
+
+	private SocketChannel channel;
+
+	private CharBuffer charBuffer;
+
+	private byte cryptBuffer[] = new byte[1024 + TimesealCrypt.MAX_OVERHEAD];
+
+	private CharsetDecoder decoder;
+
+	private long initialTime = -1;
+
+	private boolean isClosed;
+
+	private boolean isWaitingToWrite;
+
+	private byte lineBuffer[] = new byte[1024];
+
+	private int lineLength;
+
+	private MessageListener listener;
+
+	private ByteBuffer payloadBuffer;
+
+	private ByteBuffer readBuffer;
+
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(4096);
+
+	private Lock writeLock = new ReentrantLock(true);
+
+	protected StringBuilder inboundMessageBuffer = new StringBuilder(25000);
+
+	protected boolean isTimesealOn;
+
+	public TimesealSocketChannelMessageProducer(String address, int port, String initialTimestampString,
+			boolean isTimesealOn, MessageListener listener) {
+		try {
+			this.isTimesealOn = isTimesealOn;
+			this.listener = listener;
+
+			readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			payloadBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE + 16);
+			decoder = Charset.defaultCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			charBuffer = CharBuffer.allocate((int) (payloadBuffer.capacity() * decoder.maxCharsPerByte()) + 1);
+
+			channel = SocketChannel.open(new InetSocketAddress(address, port));
+			channel.configureBlocking(false);
+			initialTime = System.currentTimeMillis();
+
+			if (isTimesealOn) {
+				send(initialTimestampString + "\n");
+			}
+			SocketChannelSelector.getInstance().register(channel, this);
+		} catch (IOException ioe) {
+			// The connector reports the failure itself, so it is not told the
+			// connection closed.
+			this.listener = null;
+			close();
+			throw new RuntimeException(ioe);
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (isClosed) {
+				return;
+			}
+			isClosed = true;
+		}
+
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException ioe) {
+		}
+
+		if (listener != null) {
+			MessageListener tempListener = listener;
+			listener = null;
+			try {
+				tempListener.connectionClosed(inboundMessageBuffer);
+			} catch (Throwable t) {
+			}
+		}
+	}
+
+	public boolean isConnected() {
+		return !isClosed && channel != null && channel.isOpen();
+	}
+
+	public boolean isTimeseal2On() {
+		return isTimesealOn;
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		if (t instanceof IOException) {
+			LOG.debug("TimesealSocketChannelMessageProducer "
+					+ "IOException occured (These are common when disconnecting and ignorable)", t);
+		} else if (listener != null) {
+			listener.onError("TimesealSocketChannelMessageProducer Error in selector thread", t);
+		}
+		close();
+	}
+
+	@Override
+	public void onReadable() throws IOException {
+		int numRead = channel.read(readBuffer);
+		if (numRead == -1) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("TimesealSocketChannelMessageProducer end of stream disconnecting.");
+			}
+			close();
+			return;
+		} else if (numRead == 0) {
+			return;
+		}
+
+		readBuffer.flip();
+		if (isTimesealOn) {
+			while (readBuffer.hasRemaining()) {
+				byte b = readBuffer.get();
+				if (b == ACK_REQUEST[ackState]) {
+					if (++ackState == ACK_REQUEST.length) {
+						/**
+						 * You have to ack each [G]\0! Not all were acked in
+						 * older versions.
+						 */
+						ackState = 0;
+						sendAck();
+					}
+				} else {
+					payloadBuffer.put(ACK_REQUEST, 0, ackState);
+					ackState = b == ACK_REQUEST[0] ? 1 : 0;
+					if (ackState == 0) {
+						payloadBuffer.put(b);
+					}
+				}
+			}
+		} else {
+			payloadBuffer.put(readBuffer);
+		}
+		readBuffer.clear();
+
+		payloadBuffer.flip();
+		decoder.decode(payloadBuffer, charBuffer, false);
+		// Keeps the start of a multi byte character for the next read.
+		payloadBuffer.compact();
+		charBuffer.flip();
+
+		int start = inboundMessageBuffer.length();
+		boolean isBlank = true;
+		while (charBuffer.hasRemaining()) {
+			char c = charBuffer.get();
+			if (c != '\r') {
+				inboundMessageBuffer.append(c);
+				isBlank = isBlank && Character.isWhitespace(c);
+			}
+		}
+		charBuffer.clear();
+
+		if (isBlank) {
+			inboundMessageBuffer.setLength(start);
+		} else if (listener != null) {
+			listener.messageArrived(inboundMessageBuffer);
+		}
+	}
+
+	@Override
+	public void onWritable() throws IOException {
+		try {
+			writeLock.lock();
+			if (flush()) {
+				isWaitingToWrite = false;
+				SocketChannelSelector.getInstance().setWriteInterest(channel, false);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void send(String message) {
+		try {
+			write(message.getBytes());
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
+	/**
+	 * Writes as much of the pending output as the channel will take without
+	 * blocking. Returns true if all of it was written. Must be invoked with the
+	 * write lock held.
+	 */
+	private boolean flush() throws IOException {
+		writeBuffer.flip();
+		try {
+			while (writeBuffer.hasRemaining()) {
+				if (channel.write(writeBuffer) == 0) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			writeBuffer.compact();
+		}
+	}
+
+	private void queue(byte bytes[], int offset, int length) {
+		if (writeBuffer.remaining() < length) {
+			ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2,
+					writeBuffer.position() + length));
+			writeBuffer.flip();
+			newBuffer.put(writeBuffer);
+			writeBuffer = newBuffer;
+		}
+		writeBuffer.put(bytes, offset, length);
+	}
+
+	private void sendAck() throws IOException {
+		write(ACK_RESPONSE);
+	}
+
+	/**
+	 * Queues the bytes and writes what can be written without blocking. When
+	 * timeseal is on each line is crypted when its line feed is written, as
+	 * the stream based producer does.
+	 */
+	private void write(byte bytes[]) throws IOException {
+		try {
+			writeLock.lock();
+			if (isTimesealOn) {
+				for (byte b : bytes) {
+					if (b == '\n') {
+						int length = TimesealCrypt.crypt(lineBuffer, lineLength, System.currentTimeMillis()
+								- initialTime, cryptBuffer);
+						queue(cryptBuffer, 0, length);
+						lineLength = 0;
+					} else {
+						if (lineLength == lineBuffer.length) {
+							byte newLineBuffer[] = new byte[lineBuffer.length * 2];
+							System.arraycopy(lineBuffer, 0, newLineBuffer, 0, lineLength);
+							lineBuffer = newLineBuffer;
+							cryptBuffer = new byte[newLineBuffer.length + TimesealCrypt.MAX_OVERHEAD];
+						}
+						lineBuffer[lineLength++] = b;
+					}
+				}
+			} else {
+				queue(bytes, 0, bytes.length);
+			}
+
+			if (!isWaitingToWrite && !flush()) {
+				isWaitingToWrite = true;
+				SocketChannelSelector.getInstance().setWriteInterest(channel, true);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+}
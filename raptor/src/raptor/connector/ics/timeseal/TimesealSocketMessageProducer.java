@@ -10,14 +10,15 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.lang.StringUtils;
 
 import raptor.connector.ics.IcsUtils;
+import raptor.service.ThreadService;
 import raptor.util.RaptorLogger;
 
 public class TimesealSocketMessageProducer implements MessageProducer {
 	private class CryptOutputStream extends OutputStream {
 		private byte buffer[];
+		private final ByteArrayOutputStream batchOutputStream = new ByteArrayOutputStream();
 		private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 		private OutputStream outputStreamToDecorate;
-		private final byte timesealKey[] = "Timestamp (FICS) v1.0 - programmed by Henrik Gram.".getBytes();
 
 		public CryptOutputStream(OutputStream outputstream) {
 			buffer = new byte[10000];
@@ -42,48 +43,52 @@ public class TimesealSocketMessageProducer implements MessageProducer {
 			}
 		}
 
-		private int crypt(byte stringToWriteBytes[], long timestamp) {
-			int bytesInLength = stringToWriteBytes.length;
-			System.arraycopy(stringToWriteBytes, 0, buffer, 0, stringToWriteBytes.length);
-			buffer[bytesInLength++] = 24;
-			byte abyte1[] = Long.toString(timestamp).getBytes();
-			System.arraycopy(abyte1, 0, buffer, bytesInLength, abyte1.length);
-			bytesInLength += abyte1.length;
-			buffer[bytesInLength++] = 25;
-			int j = bytesInLength;
-			for (bytesInLength += 12 - bytesInLength % 12; j < bytesInLength;) {
-				buffer[j++] = 49;
-			}
-
-			for (int k = 0; k < bytesInLength; k++) {
-				buffer[k] |= 0x80;
-			}
+		/**
+		 * Crypts every complete line in the bytes and writes them to the
+		 * socket with a single write and flush. A trailing partial line is
+		 * kept until its line feed arrives.
+		 */
+		@Override
+		public void write(byte bytes[], int offset, int length) throws IOException {
+			synchronized (socket) {
+				if (initialTime == -1) {
+					initialTime = System.currentTimeMillis();
+				}
+				long timestamp = System.currentTimeMillis() - initialTime;
+				int lineStart = offset;
+				for (int i = offset; i < offset + length; i++) {
+					if (bytes[i] == 10) {
+						int resultLength = 0;
+						if (byteArrayOutputStream.size() == 0) {
+							resultLength = crypt(bytes, lineStart, i - lineStart, timestamp);
+						} else {
+							byteArrayOutputStream.write(bytes, lineStart, i - lineStart);
+							resultLength = crypt(byteArrayOutputStream.toByteArray(), timestamp);
+							byteArrayOutputStream.reset();
+						}
+						batchOutputStream.write(buffer, 0, resultLength);
+						lineStart = i + 1;
+					}
+				}
+				byteArrayOutputStream.write(bytes, lineStart, offset + length - lineStart);
 
-			for (int i1 = 0; i1 < bytesInLength; i1 += 12) {
-				byte byte0 = buffer[i1 + 11];
-				buffer[i1 + 11] = buffer[i1];
-				buffer[i1] = byte0;
-				byte0 = buffer[i1 + 9];
-				buffer[i1 + 9] = buffer[i1 + 2];
-				buffer[i1 + 2] = byte0;
-				byte0 = buffer[i1 + 7];
-				buffer[i1 + 7] = buffer[i1 + 4];
-				buffer[i1 + 4] = byte0;
+				if (batchOutputStream.size() > 0) {
+					batchOutputStream.writeTo(outputStreamToDecorate);
+					outputStreamToDecorate.flush();
+					batchOutputStream.reset();
+				}
 			}
+		}
 
-			int l1 = 0;
-			for (int j1 = 0; j1 < bytesInLength; j1++) {
-				buffer[j1] ^= timesealKey[l1];
-				l1 = (l1 + 1) % timesealKey.length;
-			}
+		private int crypt(byte stringToWriteBytes[], long timestamp) {
+			return crypt(stringToWriteBytes, 0, stringToWriteBytes.length, timestamp);
+		}
 
-			for (int k1 = 0; k1 < bytesInLength; k1++) {
-				buffer[k1] -= 32;
+		private int crypt(byte stringToWriteBytes[], int offset, int length, long timestamp) {
+			if (buffer.length < length + TimesealCrypt.MAX_OVERHEAD) {
+				buffer = new byte[length + TimesealCrypt.MAX_OVERHEAD];
 			}
-
-			buffer[bytesInLength++] = -128;
-			buffer[bytesInLength++] = 10;
-			return bytesInLength;
+			return TimesealCrypt.crypt(stringToWriteBytes, offset, length, timestamp, buffer);
 		}
 	}
 
@@ -280,14 +285,13 @@ public class TimesealSocketMessageProducer implements MessageProducer {
 			}
 		}
 
-		daemonThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				messageLoop();
-			}
-		});
-		daemonThread.setDaemon(true);
-		daemonThread.setName("TimesealSocketMessageProducer Thread");
+		daemonThread = ThreadService.getInstance().newBlockingThread("TimesealSocketMessageProducer Thread",
+				new Runnable() {
+					@Override
+					public void run() {
+						messageLoop();
+					}
+				});
 		daemonThread.setPriority(Thread.MAX_PRIORITY);
 		daemonThread.start();
 	}
@@ -0,0 +1,203 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.engine.uci;
+
+import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
+
+/**
+ * Sits between a UCIEngine and a UI which displays its analysis, so the UI
+ * is refreshed at a fixed rate no matter how many info lines the engine
+ * sends.
+ * 
+ * The engine thread merges each snapshot into the latest state of its MultiPV
+ * line and into the search status (depth, time, nodes), then returns. The
+ * first change after an update schedules the updater to run once the update
+ * interval has passed since the last one. Later changes are merged into the
+ * same pending update, so there is at most one update per interval. The
+ * updater, typically an asyncExec onto the UI thread, calls drainTo to copy
+ * out what changed.
+ * 
+ * The engine thread only ever holds the lock long enough to merge a snapshot,
+ * so it is never blocked on the UI.
+ * 
+ * If a UCIAnalysisCache is set, clear(long) names the position being searched
+ * and every line the engine completes is offered to the cache under it.
+ */
+public class UCIAnalysisAggregator implements UCIInfoSnapshotListener {
+	protected UCIInfoSnapshot[] lines;
+	protected boolean[] changedLines;
+	protected int lineCount;
+	protected UCIInfoSnapshot status = new UCIInfoSnapshot();
+	protected boolean isStatusChanged;
+	protected boolean isUpdateScheduled;
+	protected long lastUpdateTime;
+	protected long updateIntervalMillis;
+	protected Runnable updater;
+	protected UCIAnalysisCache cache;
+	protected long positionKey;
+	protected boolean isCaching;
+
+	/**
+	 * @param updater
+	 *            Invoked, on a ThreadService ENGINE thread, when an update is
+	 *            due. It should call drainTo.
+	 * @param updatesPerSecond
+	 *            The most times per second the updater is invoked.
+	 * @param maxLines
+	 *            The number of MultiPV lines kept. Lines with a higher id are
+	 *            ignored.
+	 */
+	public UCIAnalysisAggregator(Runnable updater, int updatesPerSecond, int maxLines) {
+		this.updater = updater;
+		lines = new UCIInfoSnapshot[maxLines];
+		changedLines = new boolean[maxLines];
+		for (int i = 0; i < maxLines; i++) {
+			lines[i] = new UCIInfoSnapshot();
+		}
+		setUpdatesPerSecond(updatesPerSecond);
+	}
+
+	/**
+	 * Discards all of the analysis, e.g. when the engine is started on a new
+	 * position.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < lines.length; i++) {
+			lines[i].clear();
+			changedLines[i] = false;
+		}
+		lineCount = 0;
+		status.clear();
+		isStatusChanged = false;
+		isUpdateScheduled = false;
+		isCaching = false;
+	}
+
+	/**
+	 * Discards all of the analysis and caches the lines the engine sends from
+	 * now on under positionKey, the Zobrist game hash of the position the
+	 * engine is about to search.
+	 */
+	public synchronized void clear(long positionKey) {
+		clear();
+		this.positionKey = positionKey;
+		isCaching = cache != null;
+	}
+
+	/**
+	 * Copies the lines which changed since the last call into lineRecords and
+	 * sets their entries in changed. The other entries are left as they were.
+	 * The search status is copied into statusRecord. Both arrays must have
+	 * maxLines entries.
+	 * 
+	 * Returns the number of lines the engine has sent since the last clear.
+	 * Returns -1 if nothing changed.
+	 */
+	public synchronized int drainTo(UCIInfoSnapshot[] lineRecords, boolean[] changed, UCIInfoSnapshot statusRecord) {
+		isUpdateScheduled = false;
+		lastUpdateTime = System.currentTimeMillis();
+
+		boolean isAnythingChanged = isStatusChanged;
+		for (int i = 0; i < lineCount; i++) {
+			changed[i] = changedLines[i];
+			if (changedLines[i]) {
+				lineRecords[i].copyFrom(lines[i]);
+				changedLines[i] = false;
+				isAnythingChanged = true;
+			}
+		}
+		for (int i = lineCount; i < changed.length; i++) {
+			changed[i] = false;
+		}
+		if (!isAnythingChanged) {
+			return -1;
+		}
+		statusRecord.copyFrom(status);
+		isStatusChanged = false;
+		return lineCount;
+	}
+
+	/** {@inheritDoc} */
+	public void engineSentBestMove(UCIBestMove uciBestMove) {
+	}
+
+	/**
+	 * The engine sends snapshots, see engineSentInfo(UCIInfoSnapshot).
+	 */
+	public void engineSentInfo(UCIInfo[] infos) {
+	}
+
+	/** {@inheritDoc} */
+	public void engineSentInfo(UCIInfoSnapshot snapshot) {
+		long delay = -1;
+		try {
+			synchronized (this) {
+				if (snapshot.has(UCIInfoSnapshot.SCORE) || snapshot.has(UCIInfoSnapshot.PV)) {
+					int index = snapshot.has(UCIInfoSnapshot.MULTI_PV) ? snapshot.getMultiPv() - 1 : 0;
+					if (index < 0 || index >= lines.length) {
+						return;
+					}
+					lines[index].mergeFrom(snapshot);
+					changedLines[index] = true;
+					if (isCaching && snapshot.has(UCIInfoSnapshot.PV)) {
+						cache.put(positionKey, index, lines[index]);
+					}
+					if (index >= lineCount) {
+						lineCount = index + 1;
+					}
+				}
+				status.mergeFrom(snapshot);
+				isStatusChanged = true;
+
+				if (!isUpdateScheduled) {
+					isUpdateScheduled = true;
+					delay = Math.max(0, lastUpdateTime + updateIntervalMillis - System.currentTimeMillis());
+				}
+			}
+			if (delay != -1) {
+				scheduleUpdate(delay);
+			}
+		} finally {
+			snapshot.release();
+		}
+	}
+
+	public synchronized UCIAnalysisCache getCache() {
+		return cache;
+	}
+
+	public int getUpdatesPerSecond() {
+		return (int) (1000 / updateIntervalMillis);
+	}
+
+	/**
+	 * Sets the cache lines are offered to, null for none. Takes effect at the
+	 * next clear(long).
+	 */
+	public synchronized void setCache(UCIAnalysisCache cache) {
+		this.cache = cache;
+	}
+
+	public synchronized void setUpdatesPerSecond(int updatesPerSecond) {
+		updateIntervalMillis = 1000 / Math.max(1, Math.min(1000, updatesPerSecond));
+	}
+
+	/**
+	 * Runs the updater after delay milliseconds.
+	 */
+	protected void scheduleUpdate(long delay) {
+		ThreadService.getInstance().scheduleOneShot(Subsystem.ENGINE, delay, updater);
+	}
+}
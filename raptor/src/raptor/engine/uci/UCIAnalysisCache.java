@@ -0,0 +1,326 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.engine.uci;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the deepest analysis seen for each position so it can be shown
+ * again without searching, e.g. when stepping back and forth through a game or
+ * when the same opening comes up in another game.
+ * 
+ * Positions are keyed by Game.getZobristGameHash(), which includes the side to
+ * move, castling rights and the en passant square. For each MultiPV line the
+ * depth, score and pv of the deepest exact evaluation are kept, packed into an
+ * int array. The least recently used positions are evicted when the estimated
+ * size of the cache passes its cap.
+ * 
+ * The cache can be saved to and loaded from a file. All methods are thread
+ * safe.
+ */
+public class UCIAnalysisCache {
+	/**
+	 * The first int of a cache file.
+	 */
+	public static final int FILE_MAGIC = 0x52414331;
+
+	/**
+	 * An estimate of the bytes used by an entry apart from its lines: the map
+	 * entry, the boxed key and the line array.
+	 */
+	protected static final int ENTRY_OVERHEAD = 96;
+
+	/**
+	 * An estimate of the bytes used by a line apart from its ints.
+	 */
+	protected static final int LINE_OVERHEAD = 24;
+
+	/**
+	 * The most lines and pv moves a position in a cache file can have before
+	 * the file is treated as corrupt.
+	 */
+	protected static final int MAX_SAVED_LINES = 256;
+	protected static final int MAX_SAVED_PV = 1024;
+
+	protected static final int FLAGS_INDEX = 0;
+	protected static final int DEPTH_INDEX = 1;
+	protected static final int SELECTIVE_DEPTH_INDEX = 2;
+	protected static final int CENTIPAWNS_INDEX = 3;
+	protected static final int MATE_INDEX = 4;
+	protected static final int PV_INDEX = 5;
+
+	/**
+	 * The flags of a snapshot which are cached.
+	 */
+	protected static final int CACHED_FLAGS = UCIInfoSnapshot.DEPTH | UCIInfoSnapshot.SELECTIVE_DEPTH
+			| UCIInfoSnapshot.SCORE | UCIInfoSnapshot.PV;
+
+	protected LinkedHashMap<Long, int[][]> entries = new LinkedHashMap<Long, int[][]>(1024, 0.75f, true);
+	protected long maxBytes;
+	protected long bytes;
+	protected long hits;
+	protected long misses;
+
+	/**
+	 * @param maxBytes
+	 *            The most memory, estimated, the cache uses.
+	 */
+	public UCIAnalysisCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Copies the cached lines of the position into lineRecords, line i into
+	 * lineRecords[i] with its multipv set, and returns how many were copied.
+	 * Lines which were never cached are cleared. Returns 0 if the position is
+	 * not cached.
+	 */
+	public synchronized int get(long key, UCIInfoSnapshot[] lineRecords) {
+		int[][] lines = entries.get(key);
+		if (lines == null) {
+			misses++;
+			return 0;
+		}
+		hits++;
+
+		int count = Math.min(lines.length, lineRecords.length);
+		for (int i = 0; i < count; i++) {
+			UCIInfoSnapshot record = lineRecords[i];
+			record.clear();
+			int[] packed = lines[i];
+			if (packed != null) {
+				record.flags = packed[FLAGS_INDEX] | UCIInfoSnapshot.MULTI_PV;
+				record.depth = packed[DEPTH_INDEX];
+				record.selectiveDepth = packed[SELECTIVE_DEPTH_INDEX];
+				record.valueInCentipawns = packed[CENTIPAWNS_INDEX];
+				record.mateInMoves = packed[MATE_INDEX];
+				record.multiPv = i + 1;
+				for (int j = PV_INDEX; j < packed.length; j++) {
+					record.addPvMove(packed[j] & 0xff, packed[j] >> 8 & 0xff, packed[j] >> 16 & 0xff);
+				}
+			}
+		}
+		return count;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the depth of the first cached line of the position, -1 if it is
+	 * not cached.
+	 */
+	public synchronized int getDepth(long key) {
+		int[][] lines = entries.get(key);
+		return lines == null || lines[0] == null ? -1 : lines[0][DEPTH_INDEX];
+	}
+
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized String getSummary() {
+		return entries.size() + " positions, " + bytes / 1024 + "K of " + maxBytes / 1024 + "K, " + hits
+				+ " hits, " + misses + " misses";
+	}
+
+	/**
+	 * Loads the positions saved in the file. Where the cache already has a
+	 * deeper line it is kept. A truncated file is loaded up to where it ends.
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+		try {
+			if (in.readInt() != FILE_MAGIC) {
+				throw new IOException(file + " is not an analysis cache.");
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				long key = in.readLong();
+				int lineCount = in.readInt();
+				if (lineCount < 1 || lineCount > MAX_SAVED_LINES) {
+					throw new IOException(file + " is corrupt.");
+				}
+				int[][] lines = new int[lineCount][];
+				for (int j = 0; j < lines.length; j++) {
+					int length = in.readInt();
+					if (length < 0 || length > PV_INDEX + MAX_SAVED_PV) {
+						throw new IOException(file + " is corrupt.");
+					} else if (length > 0) {
+						lines[j] = new int[length];
+						for (int k = 0; k < length; k++) {
+							lines[j][k] = in.readInt();
+						}
+					}
+				}
+				synchronized (this) {
+					for (int j = 0; j < lines.length; j++) {
+						int[][] cached = entries.get(key);
+						if (lines[j] != null && (cached == null || j >= cached.length || cached[j] == null
+								|| cached[j][DEPTH_INDEX] <= lines[j][DEPTH_INDEX])) {
+							put(key, j, lines[j]);
+						}
+					}
+				}
+			}
+		} catch (EOFException eofe) {
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Caches a line of the position's analysis if it has a pv and an exact
+	 * score and is at least as deep as the line cached for its index. Returns
+	 * true if it was cached.
+	 */
+	public synchronized boolean put(long key, int index, UCIInfoSnapshot line) {
+		if (!line.has(UCIInfoSnapshot.SCORE) || !line.has(UCIInfoSnapshot.PV) || line.isLowerBoundScore()
+				|| line.isUpperBoundScore()) {
+			return false;
+		}
+
+		int[][] lines = entries.get(key);
+		if (lines != null && index < lines.length && lines[index] != null
+				&& lines[index][DEPTH_INDEX] > line.getDepth()) {
+			return false;
+		}
+
+		int[] packed = new int[PV_INDEX + line.getPvLength()];
+		packed[FLAGS_INDEX] = line.flags & CACHED_FLAGS;
+		packed[DEPTH_INDEX] = line.depth;
+		packed[SELECTIVE_DEPTH_INDEX] = line.selectiveDepth;
+		packed[CENTIPAWNS_INDEX] = line.valueInCentipawns;
+		packed[MATE_INDEX] = line.mateInMoves;
+		for (int i = 0; i < line.getPvLength(); i++) {
+			packed[PV_INDEX + i] = line.getPvStartSquare(i) | line.getPvEndSquare(i) << 8
+					| line.getPvPromotedPiece(i) << 16;
+		}
+		put(key, index, packed);
+		return true;
+	}
+
+	/**
+	 * Writes the cache to the file, least recently used position first so a
+	 * load restores the order. The file is written beside the target and then
+	 * renamed over it.
+	 */
+	public synchronized void save(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Could not create " + parent);
+		}
+
+		File temp = new File(parent, file.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+		try {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(entries.size());
+			for (Map.Entry<Long, int[][]> entry : entries.entrySet()) {
+				int[][] lines = entry.getValue();
+				out.writeLong(entry.getKey());
+				out.writeInt(lines.length);
+				for (int[] packed : lines) {
+					if (packed == null) {
+						out.writeInt(0);
+					} else {
+						out.writeInt(packed.length);
+						for (int value : packed) {
+							out.writeInt(value);
+						}
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+			throw new IOException("Could not replace " + file);
+		}
+	}
+
+	/**
+	 * Sets the cap, evicting positions if the cache is over it.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes the least recently used positions until the cache is under its
+	 * cap. Must be invoked holding the lock.
+	 */
+	protected void evict() {
+		Iterator<int[][]> iterator = entries.values().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			bytes -= getBytes(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Stores a packed line, replacing the one at index. Must be invoked
+	 * holding the lock.
+	 */
+	protected void put(long key, int index, int[] packed) {
+		int[][] lines = entries.get(key);
+		if (lines == null) {
+			lines = new int[index + 1][];
+		} else {
+			bytes -= getBytes(lines);
+			if (index >= lines.length) {
+				int[][] newLines = new int[index + 1][];
+				System.arraycopy(lines, 0, newLines, 0, lines.length);
+				lines = newLines;
+			}
+		}
+		lines[index] = packed;
+		entries.put(key, lines);
+		bytes += getBytes(lines);
+		evict();
+	}
+
+	private static long getBytes(int[][] lines) {
+		long result = ENTRY_OVERHEAD + 8 * lines.length;
+		for (int[] packed : lines) {
+			if (packed != null) {
+				result += LINE_OVERHEAD + 4 * packed.length;
+			}
+		}
+		return result;
+	}
+}
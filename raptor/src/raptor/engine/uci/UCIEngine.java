@@ -21,24 +21,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 
 import raptor.Raptor;
 import raptor.chess.Move;
-import raptor.engine.uci.info.BestLineFoundInfo;
-import raptor.engine.uci.info.CPULoadInfo;
-import raptor.engine.uci.info.CurrentMoveInfo;
-import raptor.engine.uci.info.DepthInfo;
-import raptor.engine.uci.info.MultiPV;
-import raptor.engine.uci.info.NodesPerSecondInfo;
-import raptor.engine.uci.info.NodesSearchedInfo;
-import raptor.engine.uci.info.ScoreInfo;
-import raptor.engine.uci.info.SelectiveSearchDepthInfo;
-import raptor.engine.uci.info.StringInfo;
-import raptor.engine.uci.info.TableBaseHitsInfo;
-import raptor.engine.uci.info.TimeInfo;
 import raptor.engine.uci.options.UCIButton;
 import raptor.engine.uci.options.UCICheck;
 import raptor.engine.uci.options.UCICombo;
@@ -46,6 +39,7 @@ import raptor.engine.uci.options.UCISpinner;
 import raptor.engine.uci.options.UCIString;
 import raptor.pref.PreferenceKeys;
 import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
 import raptor.util.RaptorLogger;
 import raptor.util.RaptorStringTokenizer;
 
@@ -58,10 +52,45 @@ import raptor.util.RaptorStringTokenizer;
  */
 public class UCIEngine {
 	private static final RaptorLogger LOG = RaptorLogger.getLog(UCIEngine.class);
-	protected static final String[] SUPPORTED_INFO_TYPES = { "depth", "seldepth", "time", "nodes", "pv", "multipv",
-			"score", "currmove", "currentmovenumber", "hashfull", "nps", "tbhits", "cpuload", "string" };
 	protected static final long CONNECTION_TIMEOUT = 5000;
 
+	/**
+	 * Runs the go loops of engines which are not using the ThreadService, such
+	 * as the ones in the batch tools which run without the GUI.
+	 */
+	private static ExecutorService standaloneExecutor;
+
+	/**
+	 * Runs the connection timeouts of engines which are not using the
+	 * ThreadService.
+	 */
+	private static ScheduledExecutorService standaloneScheduler;
+
+	protected static synchronized ExecutorService getStandaloneExecutor() {
+		if (standaloneExecutor == null) {
+			standaloneExecutor = Executors.newCachedThreadPool(createDaemonThreadFactory("UCIEngine go"));
+		}
+		return standaloneExecutor;
+	}
+
+	protected static synchronized ScheduledExecutorService getStandaloneScheduler() {
+		if (standaloneScheduler == null) {
+			standaloneScheduler = Executors
+					.newSingleThreadScheduledExecutor(createDaemonThreadFactory("UCIEngine timeout"));
+		}
+		return standaloneScheduler;
+	}
+
+	private static ThreadFactory createDaemonThreadFactory(final String name) {
+		return new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, name);
+				result.setDaemon(true);
+				return result;
+			}
+		};
+	}
+
 	protected Process process;
 	protected boolean isUsingThreadService = true;
 	protected BufferedReader in;
@@ -71,7 +100,7 @@ public class UCIEngine {
 	protected String processPath;
 	protected String engineName;
 	protected String engineAuthor;
-	protected Runnable goRunnable;
+	protected volatile Runnable goRunnable;
 	protected boolean cancelGo;
 	protected boolean multiplyBlackScoreByMinus1 = true;
 	protected UCIBestMove lastBestMove;
@@ -80,6 +109,7 @@ public class UCIEngine {
 	protected boolean isDefault;
 	protected Object stopSynch = new Object();
 	protected String goAnalysisParameters = "infinite";
+	protected UCIInfoParser infoParser = new UCIInfoParser();
 	private boolean supportsFischerRandom;
 	private String lastSetFen;
 
@@ -95,12 +125,14 @@ public class UCIEngine {
 		}
 
 		resetConnectionState();
-		Future<?> connectionTimeoutFuture = ThreadService.getInstance().scheduleOneShot(CONNECTION_TIMEOUT,
-				new Runnable() {
-					public void run() {
-						disconnect();
-					}
-				});
+		Runnable timeout = new Runnable() {
+			public void run() {
+				disconnect();
+			}
+		};
+		Future<?> connectionTimeoutFuture = isUsingThreadService ? ThreadService.getInstance().scheduleOneShot(
+				Subsystem.ENGINE, CONNECTION_TIMEOUT, timeout) : getStandaloneScheduler().schedule(timeout,
+				CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
 
 		try {
 			long startTime = System.currentTimeMillis();
@@ -136,11 +168,13 @@ public class UCIEngine {
 				}
 			}
 
-			UCIOption multiPv = new UCISpinner();
-			multiPv.setName("MultiPV");
-			multiPv.setValue(
-					Raptor.getInstance().getPreferences().getString(PreferenceKeys.STOCKFISH_MOVES_TO_SUGGEST));
-			setOption(multiPv);
+			if (Raptor.getInstance() != null) {
+				UCIOption multiPv = new UCISpinner();
+				multiPv.setName("MultiPV");
+				multiPv.setValue(
+						Raptor.getInstance().getPreferences().getString(PreferenceKeys.STOCKFISH_MOVES_TO_SUGGEST));
+				setOption(multiPv);
+			}
 			isReady();
 
 			if (LOG.isDebugEnabled()) {
@@ -149,7 +183,9 @@ public class UCIEngine {
 						+ (System.currentTimeMillis() - startTime));
 			}
 
-			connectionTimeoutFuture.cancel(true);
+			if (connectionTimeoutFuture != null) {
+				connectionTimeoutFuture.cancel(true);
+			}
 			return true;
 		} catch (Throwable t) {
 			LOG.error("Error connecting to UCI Engine " + this, t);
@@ -164,7 +200,11 @@ public class UCIEngine {
 		result.setParameters(parameters);
 		result.setUserName(userName);
 		result.setGoAnalysisParameters(goAnalysisParameters);
-		result.nameToOptions = nameToOptions;
+		result.setMultiplyBlackScoreByMinus1(multiplyBlackScoreByMinus1);
+		result.setSupportsFischerRandom(supportsFischerRandom);
+		result.setUsingThreadService(isUsingThreadService);
+		// Copied so engines connecting at the same time do not share the map.
+		result.nameToOptions = new HashMap<String, UCIOption>(nameToOptions);
 		result.isDefault = isDefault;
 		return result;
 	}
@@ -289,21 +329,26 @@ public class UCIEngine {
 								parseInfoLine(line, listener);
 							} else if (line.startsWith("bestmove")) {
 								lastBestMove = parseBestMove(line);
+								// Cleared first so the listener can start the
+								// next search.
+								goRunnable = null;
 								listener.engineSentBestMove(lastBestMove);
 								break;
 							}
 							line = readLine();
 						}
-						goRunnable = null;
+						if (goRunnable == this) {
+							goRunnable = null;
+						}
 					} catch (Throwable t) {
 						LOG.error("Error occured executng go ", t);
 					}
 				}
 			};
 			if (isUsingThreadService) {
-				ThreadService.getInstance().run(runnable);
+				ThreadService.getInstance().run(Subsystem.ENGINE, runnable);
 			} else {
-				new Thread(runnable).start();
+				getStandaloneExecutor().execute(runnable);
 			}
 		} else {
 			if (LOG.isDebugEnabled()) {
@@ -689,17 +734,6 @@ public class UCIEngine {
 		quit();
 	}
 
-	protected boolean isSupportedInfoType(String type) {
-		boolean result = false;
-		for (String currentType : SUPPORTED_INFO_TYPES) {
-			if (currentType.equalsIgnoreCase(type)) {
-				result = true;
-				break;
-			}
-		}
-		return result;
-	}
-
 	protected UCIBestMove parseBestMove(String bestMove) {
 
 		if (LOG.isDebugEnabled())
@@ -827,121 +861,13 @@ public class UCIEngine {
 		if (LOG.isDebugEnabled())
 			LOG.debug("Entering parseInfoLine(" + info + ",...)");
 
-		RaptorStringTokenizer tok = new RaptorStringTokenizer(info, " ", true);
-		tok.nextToken();
-
-		int currentMoveNumber = 0;
-
-		List<UCIInfo> infos = new ArrayList<UCIInfo>(10);
-
-		String nextType = null;
-		while (tok.hasMoreTokens()) {
-			String type = null;
-			if (nextType != null) {
-				type = nextType;
-				nextType = null;
-			} else {
-				type = tok.nextToken();
-			}
-
-			while (!isSupportedInfoType(type) && tok.hasMoreTokens()) {
-				type = tok.nextToken();
-			}
-
-			if (!isSupportedInfoType(type)) {
-				break;
-			}
-
-			if (type.equalsIgnoreCase("depth")) {
-				DepthInfo depthInfo = new DepthInfo();
-				depthInfo.setSearchDepthPlies(Integer.parseInt(tok.nextToken()));
-				infos.add(depthInfo);
-			} else if (type.equalsIgnoreCase("seldepth")) {
-				SelectiveSearchDepthInfo ssDepthInfo = new SelectiveSearchDepthInfo();
-				ssDepthInfo.setDepthInPlies(Integer.parseInt(tok.nextToken()));
-				infos.add(ssDepthInfo);
-			} else if (type.equalsIgnoreCase("time")) {
-				TimeInfo timeInfo = new TimeInfo();
-				timeInfo.setTimeMillis(Integer.parseInt(tok.nextToken()));
-				infos.add(timeInfo);
-			} else if (type.equalsIgnoreCase("nodes")) {
-				NodesSearchedInfo nodesSearched = new NodesSearchedInfo();
-				nodesSearched.setNodesSearched(Long.parseLong(tok.nextToken()));
-				infos.add(nodesSearched);
-			} else if (type.equalsIgnoreCase("pv")) {
-				BestLineFoundInfo bestLineFoundInfo = new BestLineFoundInfo();
-				String currentMove = tok.nextToken();
-				List<UCIMove> currentLine = new ArrayList<UCIMove>(10);
-				while (true) {
-					currentLine.add(new UCIMove(currentMove));
-					if (tok.hasMoreTokens()) {
-						currentMove = tok.nextToken();
-						if (isSupportedInfoType(currentMove)) {
-							nextType = currentMove;
-							break;
-						}
-					} else {
-						break;
-					}
-				}
-				bestLineFoundInfo.setMoves(currentLine.toArray(new UCIMove[0]));
-				infos.add(bestLineFoundInfo);
-			} else if (type.equalsIgnoreCase("multipv")) {
-				infos.add(new MultiPV(tok.nextToken()));
-			} else if (type.equalsIgnoreCase("score")) {
-				ScoreInfo scoreInfo = new ScoreInfo();
-				String nextToken = tok.nextToken();
-
-				while (true) {
-					if (nextToken.equalsIgnoreCase("cp")) {
-						scoreInfo.setValueInCentipawns(Integer.parseInt(tok.nextToken()));
-					} else if (nextToken.equalsIgnoreCase("mate")) {
-						scoreInfo.setMateInMoves(Integer.parseInt(tok.nextToken()));
-					} else if (nextToken.equalsIgnoreCase("lowerbound")) {
-						scoreInfo.setLowerBoundScore(true);
-					} else if (nextToken.equalsIgnoreCase("upperbound")) {
-						scoreInfo.setUpperBoundScore(true);
-					} else {
-						nextType = nextToken;
-						break;
-					}
-					if (tok.hasMoreTokens()) {
-						nextToken = tok.nextToken();
-					} else {
-						break;
-					}
-				}
-				infos.add(scoreInfo);
-			} else if (type.equalsIgnoreCase("currmove")) {
-				CurrentMoveInfo currentMoveInfo = new CurrentMoveInfo();
-				currentMoveInfo.setMove(parseUCIMove(tok.nextToken()));
-				currentMoveInfo.setMoveNumber(currentMoveNumber);
-				infos.add(currentMoveInfo);
-			} else if (type.equalsIgnoreCase("currentmovenumber")) {
-				currentMoveNumber = Integer.parseInt(tok.nextToken());
-			} else if (type.equalsIgnoreCase("hashfull")) {
-				tok.nextToken();
-			} else if (type.equalsIgnoreCase("nps")) {
-				NodesPerSecondInfo nodesPerSecInfo = new NodesPerSecondInfo();
-				nodesPerSecInfo.setNodesPerSecond(Long.parseLong(tok.nextToken()));
-				infos.add(nodesPerSecInfo);
-			} else if (type.equalsIgnoreCase("tbhits")) {
-				TableBaseHitsInfo tbInfo = new TableBaseHitsInfo();
-				tbInfo.setNumberOfHits(Integer.parseInt(tok.nextToken()));
-				infos.add(tbInfo);
-			} else if (type.equalsIgnoreCase("cpuload")) {
-				CPULoadInfo cpuInfo = new CPULoadInfo();
-				cpuInfo.setCpuUsage(Integer.parseInt(tok.nextToken()));
-				infos.add(cpuInfo);
-			} else if (type.equalsIgnoreCase("string")) {
-				StringInfo stringInfo = new StringInfo();
-				stringInfo.setValue(tok.getWhatsLeft().trim());
-				infos.add(stringInfo);
-			} else {
-				LOG.warn("Unkown type: " + type);
-			}
+		UCIInfoSnapshot snapshot = infoParser.parse(info, infoParser.acquire());
+		if (listener instanceof UCIInfoSnapshotListener) {
+			((UCIInfoSnapshotListener) listener).engineSentInfo(snapshot);
+		} else {
+			listener.engineSentInfo(snapshot.toInfos());
+			snapshot.release();
 		}
-		listener.engineSentInfo(infos.toArray(new UCIInfo[0]));
 	}
 
 	protected void parseOptionLine(String optionLine) {
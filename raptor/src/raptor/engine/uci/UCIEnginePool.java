@@ -0,0 +1,280 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.engine.uci;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import raptor.util.RaptorLogger;
+
+/**
+ * Keeps engine processes running between uses so a new analysis does not pay
+ * for starting the process, the uci handshake and setting its options again.
+ * 
+ * An engine is leased for a configuration, an unconnected UCIEngine whose
+ * process path and parameters identify it. A warm idle engine with the same
+ * configuration is handed out if there is one, otherwise a copy of the
+ * configuration is connected. Released engines are stopped, sent ucinewgame
+ * and kept idle, up to maxIdleEngines in all. The rest are quit.
+ * 
+ * Each lease reserves a number of search threads, which the engine is told
+ * through its Threads option. The threads of all leased engines never exceed
+ * maxThreads, normally the number of cores, so lease waits until enough
+ * threads are released.
+ */
+public class UCIEnginePool {
+	private static final RaptorLogger LOG = RaptorLogger.getLog(UCIEnginePool.class);
+
+	protected int maxThreads;
+	protected int maxIdleEngines;
+	protected int leasedThreads;
+	protected int idleCount;
+	protected boolean isDisposed;
+	protected Map<String, LinkedList<UCIEngine>> idleEngines = new HashMap<String, LinkedList<UCIEngine>>();
+	protected Map<UCIEngine, Integer> leases = new IdentityHashMap<UCIEngine, Integer>();
+	protected Map<UCIEngine, String> leaseKeys = new IdentityHashMap<UCIEngine, String>();
+
+	public UCIEnginePool(int maxThreads, int maxIdleEngines) {
+		this.maxThreads = Math.max(1, maxThreads);
+		this.maxIdleEngines = Math.max(0, maxIdleEngines);
+	}
+
+	/**
+	 * Quits every engine, leased or idle. Leases made afterwards return null
+	 * and released engines are quit.
+	 */
+	public void dispose() {
+		List<UCIEngine> engines = new ArrayList<UCIEngine>();
+		synchronized (this) {
+			isDisposed = true;
+			for (LinkedList<UCIEngine> idle : idleEngines.values()) {
+				engines.addAll(idle);
+			}
+			engines.addAll(leases.keySet());
+			idleEngines.clear();
+			leases.clear();
+			leaseKeys.clear();
+			idleCount = 0;
+			leasedThreads = 0;
+			notifyAll();
+		}
+		for (UCIEngine engine : engines) {
+			quitEngine(engine);
+		}
+	}
+
+	public synchronized int getIdleCount() {
+		return idleCount;
+	}
+
+	public synchronized int getLeasedCount() {
+		return leases.size();
+	}
+
+	public synchronized int getLeasedThreads() {
+		return leasedThreads;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	/**
+	 * Returns a short description of the pool for the profile dialog and logs.
+	 */
+	public synchronized String getSummary() {
+		return "engines leased=" + leases.size() + " idle=" + idleCount + " threads=" + leasedThreads + "/"
+				+ maxThreads;
+	}
+
+	/**
+	 * Leases a connected engine which is ready to search.
+	 * 
+	 * @param configuration
+	 *            The engine to copy if a new process is needed. It is not
+	 *            connected itself.
+	 * @param threads
+	 *            The search threads the engine may use. Clipped to 1 through
+	 *            maxThreads.
+	 * @param timeoutMillis
+	 *            How long to wait for threads to become available.
+	 * @return The engine, or null if the threads did not become available in
+	 *         time, the engine could not be connected or the pool is
+	 *         disposed.
+	 */
+	public UCIEngine lease(UCIEngine configuration, int threads, long timeoutMillis) {
+		threads = Math.max(1, Math.min(maxThreads, threads));
+		String key = getKey(configuration);
+		UCIEngine result = null;
+
+		synchronized (this) {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			while (!isDisposed && leasedThreads + threads > maxThreads) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return null;
+				}
+				try {
+					wait(remaining);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			if (isDisposed) {
+				return null;
+			}
+
+			leasedThreads += threads;
+			LinkedList<UCIEngine> idle = idleEngines.get(key);
+			if (idle != null && !idle.isEmpty()) {
+				result = idle.removeFirst();
+				idleCount--;
+			}
+		}
+
+		boolean isLeased = false;
+		try {
+			if (result != null && !result.isConnected()) {
+				result = null;
+			}
+			if (result == null) {
+				result = configuration.getDeepCopy();
+				if (!connectEngine(result)) {
+					return null;
+				}
+			}
+			setThreads(result, threads);
+
+			synchronized (this) {
+				if (!isDisposed) {
+					leases.put(result, threads);
+					leaseKeys.put(result, key);
+					isLeased = true;
+				}
+			}
+			if (!isLeased) {
+				quitEngine(result);
+				return null;
+			}
+			return result;
+		} finally {
+			if (!isLeased) {
+				synchronized (this) {
+					if (!isDisposed) {
+						leasedThreads -= threads;
+					}
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a leased engine to the pool. The engine must not be used by the
+	 * caller afterwards. Engines which were not leased from this pool are
+	 * ignored.
+	 */
+	public void release(UCIEngine engine) {
+		Integer threads = null;
+		String key = null;
+		synchronized (this) {
+			threads = leases.remove(engine);
+			key = leaseKeys.remove(engine);
+		}
+		if (threads == null) {
+			return;
+		}
+
+		boolean isReusable = resetEngine(engine);
+		boolean isPooled = false;
+		synchronized (this) {
+			if (!isDisposed) {
+				leasedThreads -= threads;
+				if (isReusable && idleCount < maxIdleEngines) {
+					LinkedList<UCIEngine> idle = idleEngines.get(key);
+					if (idle == null) {
+						idle = new LinkedList<UCIEngine>();
+						idleEngines.put(key, idle);
+					}
+					idle.addLast(engine);
+					idleCount++;
+					isPooled = true;
+				}
+			}
+			notifyAll();
+		}
+		if (!isPooled) {
+			quitEngine(engine);
+		}
+	}
+
+	/**
+	 * Connects a new engine. Returns true if it is ready to use.
+	 */
+	protected boolean connectEngine(UCIEngine engine) {
+		return engine.connect();
+	}
+
+	/**
+	 * Returns the key idle engines are kept under. Engines with the same key
+	 * run the same process with the same parameters.
+	 */
+	protected String getKey(UCIEngine configuration) {
+		return configuration.getProcessPath() + " " + Arrays.toString(configuration.getParameters());
+	}
+
+	protected void quitEngine(UCIEngine engine) {
+		try {
+			engine.quit();
+		} catch (Throwable t) {
+			LOG.warn("Error quitting engine " + engine, t);
+		}
+	}
+
+	/**
+	 * Stops any search and sends ucinewgame so the next user starts with a
+	 * fresh engine. Returns false if the engine is no longer usable.
+	 */
+	protected boolean resetEngine(UCIEngine engine) {
+		try {
+			if (!engine.isConnected()) {
+				return false;
+			}
+			engine.newGame();
+			engine.isReady();
+			return engine.isConnected();
+		} catch (Throwable t) {
+			LOG.warn("Error resetting engine " + engine + ". It will not be reused.", t);
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the engine's Threads option, if it has one, to the number of
+	 * threads leased.
+	 */
+	protected void setThreads(UCIEngine engine, int threads) {
+		UCIOption option = engine.getOption("Threads");
+		if (option != null && !String.valueOf(threads).equals(option.getValue())) {
+			option.setValue(String.valueOf(threads));
+			engine.setOption(option);
+		}
+	}
+}
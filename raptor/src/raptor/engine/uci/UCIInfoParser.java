@@ -0,0 +1,375 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.engine.uci;
+
+import raptor.chess.GameConstants;
+import raptor.chess.util.GameUtils;
+
+/**
+ * Parses UCI info lines into UCIInfoSnapshots.
+ * 
+ * The line is scanned once, left to right. Each token is classified by a
+ * switch on its length followed by a case insensitive compare, and the values
+ * which follow it are parsed straight from the line into the snapshot. No
+ * tokens, boxed numbers or moves are created; only the text of an info string
+ * is copied out of the line.
+ * 
+ * Unknown keywords are skipped until a known one is found, as are values
+ * which can not be parsed. Snapshots are pooled, see acquire and
+ * UCIInfoSnapshot.release.
+ * 
+ * parse is not thread safe. Each engine has its own parser.
+ */
+public class UCIInfoParser {
+	protected static final int UNKNOWN = 0;
+	protected static final int DEPTH = 1;
+	protected static final int SELECTIVE_DEPTH = 2;
+	protected static final int TIME = 3;
+	protected static final int NODES = 4;
+	protected static final int PV = 5;
+	protected static final int MULTI_PV = 6;
+	protected static final int SCORE = 7;
+	protected static final int CURRENT_MOVE = 8;
+	protected static final int CURRENT_MOVE_NUMBER = 9;
+	protected static final int HASH_FULL = 10;
+	protected static final int NODES_PER_SECOND = 11;
+	protected static final int TABLE_BASE_HITS = 12;
+	protected static final int CPU_LOAD = 13;
+	protected static final int STRING = 14;
+	protected static final int REFUTATION = 15;
+	protected static final int CURRENT_LINE = 16;
+	protected static final int SHREDDER_BASE_HITS = 17;
+	protected static final int CENTIPAWNS = 18;
+	protected static final int MATE = 19;
+	protected static final int LOWER_BOUND = 20;
+	protected static final int UPPER_BOUND = 21;
+
+	protected static final String PROMOTED_PIECES = GameConstants.PIECE_TO_SAN.toLowerCase();
+
+	/**
+	 * The most released snapshots which are kept for reuse.
+	 */
+	protected static final int POOL_SIZE = 16;
+
+	protected String line;
+	protected int tokenStart;
+	protected int tokenEnd;
+	protected long number;
+	protected int moveStartSquare;
+	protected int moveEndSquare;
+	protected int movePromotedPiece;
+
+	protected UCIInfoSnapshot[] pool = new UCIInfoSnapshot[POOL_SIZE];
+	protected int pooled;
+
+	/**
+	 * Returns a cleared snapshot, reusing a released one if there is one.
+	 */
+	public UCIInfoSnapshot acquire() {
+		UCIInfoSnapshot result = null;
+		synchronized (pool) {
+			if (pooled > 0) {
+				result = pool[--pooled];
+				pool[pooled] = null;
+			}
+		}
+		if (result == null) {
+			result = new UCIInfoSnapshot();
+			result.owner = this;
+		} else {
+			result.clear();
+		}
+		return result;
+	}
+
+	/**
+	 * Clears the snapshot and fills it with the info line. The line starts
+	 * with the info keyword. Returns the snapshot.
+	 */
+	public UCIInfoSnapshot parse(String line, UCIInfoSnapshot snapshot) {
+		snapshot.clear();
+		this.line = line;
+		tokenEnd = 0;
+
+		try {
+			// Skips the info keyword.
+			if (!nextToken()) {
+				return snapshot;
+			}
+
+			int keyword = nextToken() ? keyword() : -1;
+			while (keyword != -1) {
+				int current = keyword;
+				keyword = -1;
+
+				switch (current) {
+				case DEPTH:
+					if (nextNumber()) {
+						snapshot.depth = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.DEPTH;
+					}
+					break;
+				case SELECTIVE_DEPTH:
+					if (nextNumber()) {
+						snapshot.selectiveDepth = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.SELECTIVE_DEPTH;
+					}
+					break;
+				case TIME:
+					if (nextNumber()) {
+						snapshot.timeMillis = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.TIME;
+					}
+					break;
+				case NODES:
+					if (nextNumber()) {
+						snapshot.nodes = number;
+						snapshot.flags |= UCIInfoSnapshot.NODES;
+					}
+					break;
+				case MULTI_PV:
+					if (nextNumber()) {
+						snapshot.multiPv = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.MULTI_PV;
+					}
+					break;
+				case CURRENT_MOVE_NUMBER:
+					if (nextNumber()) {
+						snapshot.currentMoveNumber = (int) number;
+					}
+					break;
+				case HASH_FULL:
+					if (nextNumber()) {
+						snapshot.hashFull = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.HASH_FULL;
+					}
+					break;
+				case NODES_PER_SECOND:
+					if (nextNumber()) {
+						snapshot.nodesPerSecond = number;
+						snapshot.flags |= UCIInfoSnapshot.NODES_PER_SECOND;
+					}
+					break;
+				case TABLE_BASE_HITS:
+					if (nextNumber()) {
+						snapshot.tableBaseHits = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.TABLE_BASE_HITS;
+					}
+					break;
+				case CPU_LOAD:
+					if (nextNumber()) {
+						snapshot.cpuLoad = (int) number;
+						snapshot.flags |= UCIInfoSnapshot.CPU_LOAD;
+					}
+					break;
+				case CURRENT_MOVE:
+					if (nextToken() && parseMove()) {
+						snapshot.currentMoveStartSquare = moveStartSquare;
+						snapshot.currentMoveEndSquare = moveEndSquare;
+						snapshot.currentMovePromotedPiece = movePromotedPiece;
+						snapshot.flags |= UCIInfoSnapshot.CURRENT_MOVE;
+					}
+					break;
+				case PV:
+					while (nextToken()) {
+						int next = keyword();
+						if (next != UNKNOWN && next < CENTIPAWNS) {
+							keyword = next;
+							break;
+						} else if (parseMove()) {
+							snapshot.addPvMove(moveStartSquare, moveEndSquare, movePromotedPiece);
+						}
+					}
+					break;
+				case SCORE:
+					snapshot.flags |= UCIInfoSnapshot.SCORE;
+					while (keyword == -1 && nextToken()) {
+						int next = keyword();
+						switch (next) {
+						case CENTIPAWNS:
+							if (nextNumber()) {
+								snapshot.valueInCentipawns = (int) number;
+							}
+							break;
+						case MATE:
+							if (nextNumber()) {
+								snapshot.mateInMoves = (int) number;
+							}
+							break;
+						case LOWER_BOUND:
+							snapshot.isLowerBoundScore = true;
+							break;
+						case UPPER_BOUND:
+							snapshot.isUpperBoundScore = true;
+							break;
+						default:
+							keyword = next;
+						}
+					}
+					break;
+				case STRING:
+					if (tokenEnd < line.length()) {
+						snapshot.string = line.substring(tokenEnd).trim();
+						snapshot.flags |= UCIInfoSnapshot.STRING;
+					}
+					return snapshot;
+				default:
+					// refutation, currline, sbhits and unknown keywords are
+					// skipped along with their values.
+					break;
+				}
+
+				if (keyword == -1 && nextToken()) {
+					keyword = keyword();
+				}
+			}
+			return snapshot;
+		} finally {
+			this.line = null;
+		}
+	}
+
+	/**
+	 * Returns a snapshot to the pool. Invoked by UCIInfoSnapshot.release.
+	 */
+	protected void release(UCIInfoSnapshot snapshot) {
+		synchronized (pool) {
+			if (pooled < POOL_SIZE) {
+				for (int i = 0; i < pooled; i++) {
+					if (pool[i] == snapshot) {
+						return;
+					}
+				}
+				pool[pooled++] = snapshot;
+			}
+		}
+	}
+
+	/**
+	 * Returns the keyword constant for the current token, or UNKNOWN.
+	 */
+	protected int keyword() {
+		switch (tokenEnd - tokenStart) {
+		case 2:
+			return matches("pv") ? PV : matches("cp") ? CENTIPAWNS : UNKNOWN;
+		case 3:
+			return matches("nps") ? NODES_PER_SECOND : UNKNOWN;
+		case 4:
+			return matches("time") ? TIME : matches("mate") ? MATE : UNKNOWN;
+		case 5:
+			return matches("depth") ? DEPTH : matches("nodes") ? NODES : matches("score") ? SCORE : UNKNOWN;
+		case 6:
+			return matches("string") ? STRING : matches("tbhits") ? TABLE_BASE_HITS : matches("sbhits")
+					? SHREDDER_BASE_HITS : UNKNOWN;
+		case 7:
+			return matches("multipv") ? MULTI_PV : matches("cpuload") ? CPU_LOAD : UNKNOWN;
+		case 8:
+			return matches("seldepth") ? SELECTIVE_DEPTH : matches("currmove") ? CURRENT_MOVE
+					: matches("hashfull") ? HASH_FULL : matches("currline") ? CURRENT_LINE : UNKNOWN;
+		case 10:
+			return matches("lowerbound") ? LOWER_BOUND : matches("upperbound") ? UPPER_BOUND
+					: matches("refutation") ? REFUTATION : UNKNOWN;
+		case 14:
+			return matches("currmovenumber") ? CURRENT_MOVE_NUMBER : UNKNOWN;
+		case 17:
+			return matches("currentmovenumber") ? CURRENT_MOVE_NUMBER : UNKNOWN;
+		default:
+			return UNKNOWN;
+		}
+	}
+
+	protected boolean matches(String keyword) {
+		return line.regionMatches(true, tokenStart, keyword, 0, keyword.length());
+	}
+
+	/**
+	 * Advances to the next token and parses it as a signed decimal number into
+	 * number. Returns false if there is no next token or it is not a number.
+	 */
+	protected boolean nextNumber() {
+		if (!nextToken()) {
+			return false;
+		}
+		int index = tokenStart;
+		boolean isNegative = false;
+		char first = line.charAt(index);
+		if (first == '-' || first == '+') {
+			isNegative = first == '-';
+			index++;
+		}
+		if (index == tokenEnd) {
+			return false;
+		}
+
+		long result = 0;
+		for (; index < tokenEnd; index++) {
+			int digit = line.charAt(index) - '0';
+			if (digit < 0 || digit > 9) {
+				return false;
+			}
+			result = result * 10 + digit;
+		}
+		number = isNegative ? -result : result;
+		return true;
+	}
+
+	/**
+	 * Advances tokenStart and tokenEnd to the next space delimited token.
+	 * Returns false if there are no more tokens.
+	 */
+	protected boolean nextToken() {
+		int length = line.length();
+		int index = tokenEnd;
+		while (index < length && line.charAt(index) == ' ') {
+			index++;
+		}
+		if (index == length) {
+			tokenStart = tokenEnd = length;
+			return false;
+		}
+		tokenStart = index;
+		while (index < length && line.charAt(index) != ' ') {
+			index++;
+		}
+		tokenEnd = index;
+		return true;
+	}
+
+	/**
+	 * Parses the current token as a move in UCI notation into the move fields.
+	 * Returns false if it is not a move.
+	 */
+	protected boolean parseMove() {
+		int length = tokenEnd - tokenStart;
+		if (length < 4 || length > 5) {
+			return false;
+		}
+		int startFile = line.charAt(tokenStart) - 'a';
+		int startRank = line.charAt(tokenStart + 1) - '1';
+		int endFile = line.charAt(tokenStart + 2) - 'a';
+		int endRank = line.charAt(tokenStart + 3) - '1';
+		if ((startFile | startRank | endFile | endRank) < 0 || startFile > 7 || startRank > 7 || endFile > 7
+				|| endRank > 7) {
+			return false;
+		}
+		moveStartSquare = GameUtils.getSquare(startRank, startFile);
+		moveEndSquare = GameUtils.getSquare(endRank, endFile);
+		movePromotedPiece = 0;
+		if (length == 5) {
+			int piece = PROMOTED_PIECES.indexOf(Character.toLowerCase(line.charAt(tokenStart + 4)));
+			movePromotedPiece = piece < 0 ? 0 : piece;
+		}
+		return true;
+	}
+}
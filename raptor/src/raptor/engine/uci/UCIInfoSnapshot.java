@@ -0,0 +1,424 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.engine.uci;
+
+import raptor.engine.uci.info.BestLineFoundInfo;
+import raptor.engine.uci.info.CPULoadInfo;
+import raptor.engine.uci.info.CurrentMoveInfo;
+import raptor.engine.uci.info.DepthInfo;
+import raptor.engine.uci.info.MultiPV;
+import raptor.engine.uci.info.NodesPerSecondInfo;
+import raptor.engine.uci.info.NodesSearchedInfo;
+import raptor.engine.uci.info.ScoreInfo;
+import raptor.engine.uci.info.SelectiveSearchDepthInfo;
+import raptor.engine.uci.info.StringInfo;
+import raptor.engine.uci.info.TableBaseHitsInfo;
+import raptor.engine.uci.info.TimeInfo;
+
+/**
+ * Everything an engine sent on one info line, held in primitive fields so the
+ * record can be reused. Which fields were sent is tracked with the has flags.
+ * The moves of the pv are stored as square and piece constants in
+ * GameConstants.
+ * 
+ * Snapshots are handed out by a UCIInfoParser. A listener which is done with
+ * one can release it so the parser reuses it for a later line.
+ */
+public class UCIInfoSnapshot {
+	public static final int DEPTH = 1;
+	public static final int SELECTIVE_DEPTH = 1 << 1;
+	public static final int TIME = 1 << 2;
+	public static final int NODES = 1 << 3;
+	public static final int PV = 1 << 4;
+	public static final int MULTI_PV = 1 << 5;
+	public static final int SCORE = 1 << 6;
+	public static final int CURRENT_MOVE = 1 << 7;
+	public static final int HASH_FULL = 1 << 8;
+	public static final int NODES_PER_SECOND = 1 << 9;
+	public static final int TABLE_BASE_HITS = 1 << 10;
+	public static final int CPU_LOAD = 1 << 11;
+	public static final int STRING = 1 << 12;
+
+	protected int flags;
+	protected int depth;
+	protected int selectiveDepth;
+	protected int timeMillis;
+	protected long nodes;
+	protected long nodesPerSecond;
+	protected int multiPv;
+	protected int valueInCentipawns;
+	protected int mateInMoves;
+	protected boolean isLowerBoundScore;
+	protected boolean isUpperBoundScore;
+	protected int currentMoveStartSquare;
+	protected int currentMoveEndSquare;
+	protected int currentMovePromotedPiece;
+	protected int currentMoveNumber;
+	protected int hashFull;
+	protected int tableBaseHits;
+	protected int cpuLoad;
+	protected String string;
+	protected int pvLength;
+	protected int[] pvStartSquares = new int[32];
+	protected int[] pvEndSquares = new int[32];
+	protected int[] pvPromotedPieces = new int[32];
+	protected UCIInfoParser owner;
+
+	/**
+	 * Adds a move to the end of the pv, growing the arrays if needed.
+	 */
+	public void addPvMove(int startSquare, int endSquare, int promotedPiece) {
+		if (pvLength == pvStartSquares.length) {
+			pvStartSquares = grow(pvStartSquares);
+			pvEndSquares = grow(pvEndSquares);
+			pvPromotedPieces = grow(pvPromotedPieces);
+		}
+		pvStartSquares[pvLength] = startSquare;
+		pvEndSquares[pvLength] = endSquare;
+		pvPromotedPieces[pvLength] = promotedPiece;
+		pvLength++;
+		flags |= PV;
+	}
+
+	/**
+	 * Clears every field so the record can be filled with a new line.
+	 */
+	public void clear() {
+		flags = 0;
+		depth = 0;
+		selectiveDepth = 0;
+		timeMillis = 0;
+		nodes = 0;
+		nodesPerSecond = 0;
+		multiPv = 0;
+		valueInCentipawns = 0;
+		mateInMoves = 0;
+		isLowerBoundScore = false;
+		isUpperBoundScore = false;
+		currentMoveStartSquare = 0;
+		currentMoveEndSquare = 0;
+		currentMovePromotedPiece = 0;
+		currentMoveNumber = 0;
+		hashFull = 0;
+		tableBaseHits = 0;
+		cpuLoad = 0;
+		string = null;
+		pvLength = 0;
+	}
+
+	/**
+	 * Copies every field of source into this snapshot. The pv arrays are
+	 * reused when they are large enough.
+	 */
+	public void copyFrom(UCIInfoSnapshot source) {
+		flags = source.flags;
+		depth = source.depth;
+		selectiveDepth = source.selectiveDepth;
+		timeMillis = source.timeMillis;
+		nodes = source.nodes;
+		nodesPerSecond = source.nodesPerSecond;
+		multiPv = source.multiPv;
+		valueInCentipawns = source.valueInCentipawns;
+		mateInMoves = source.mateInMoves;
+		isLowerBoundScore = source.isLowerBoundScore;
+		isUpperBoundScore = source.isUpperBoundScore;
+		currentMoveStartSquare = source.currentMoveStartSquare;
+		currentMoveEndSquare = source.currentMoveEndSquare;
+		currentMovePromotedPiece = source.currentMovePromotedPiece;
+		currentMoveNumber = source.currentMoveNumber;
+		hashFull = source.hashFull;
+		tableBaseHits = source.tableBaseHits;
+		cpuLoad = source.cpuLoad;
+		string = source.string;
+		if (pvStartSquares.length < source.pvLength) {
+			pvStartSquares = new int[source.pvStartSquares.length];
+			pvEndSquares = new int[source.pvStartSquares.length];
+			pvPromotedPieces = new int[source.pvStartSquares.length];
+		}
+		pvLength = source.pvLength;
+		System.arraycopy(source.pvStartSquares, 0, pvStartSquares, 0, pvLength);
+		System.arraycopy(source.pvEndSquares, 0, pvEndSquares, 0, pvLength);
+		System.arraycopy(source.pvPromotedPieces, 0, pvPromotedPieces, 0, pvLength);
+	}
+
+	/**
+	 * Copies only the fields source has into this snapshot, leaving the others
+	 * as they were. Used to accumulate the latest state from several lines.
+	 */
+	public void mergeFrom(UCIInfoSnapshot source) {
+		int sourceFlags = source.flags;
+		if ((sourceFlags & DEPTH) != 0) {
+			depth = source.depth;
+		}
+		if ((sourceFlags & SELECTIVE_DEPTH) != 0) {
+			selectiveDepth = source.selectiveDepth;
+		}
+		if ((sourceFlags & TIME) != 0) {
+			timeMillis = source.timeMillis;
+		}
+		if ((sourceFlags & NODES) != 0) {
+			nodes = source.nodes;
+		}
+		if ((sourceFlags & NODES_PER_SECOND) != 0) {
+			nodesPerSecond = source.nodesPerSecond;
+		}
+		if ((sourceFlags & MULTI_PV) != 0) {
+			multiPv = source.multiPv;
+		}
+		if ((sourceFlags & SCORE) != 0) {
+			valueInCentipawns = source.valueInCentipawns;
+			mateInMoves = source.mateInMoves;
+			isLowerBoundScore = source.isLowerBoundScore;
+			isUpperBoundScore = source.isUpperBoundScore;
+		}
+		if ((sourceFlags & CURRENT_MOVE) != 0) {
+			currentMoveStartSquare = source.currentMoveStartSquare;
+			currentMoveEndSquare = source.currentMoveEndSquare;
+			currentMovePromotedPiece = source.currentMovePromotedPiece;
+			currentMoveNumber = source.currentMoveNumber;
+		}
+		if ((sourceFlags & HASH_FULL) != 0) {
+			hashFull = source.hashFull;
+		}
+		if ((sourceFlags & TABLE_BASE_HITS) != 0) {
+			tableBaseHits = source.tableBaseHits;
+		}
+		if ((sourceFlags & CPU_LOAD) != 0) {
+			cpuLoad = source.cpuLoad;
+		}
+		if ((sourceFlags & STRING) != 0) {
+			string = source.string;
+		}
+		if ((sourceFlags & PV) != 0) {
+			pvLength = 0;
+			for (int i = 0; i < source.pvLength; i++) {
+				addPvMove(source.pvStartSquares[i], source.pvEndSquares[i], source.pvPromotedPieces[i]);
+			}
+		}
+		flags |= sourceFlags;
+	}
+
+	public int getCpuLoad() {
+		return cpuLoad;
+	}
+
+	public int getCurrentMoveEndSquare() {
+		return currentMoveEndSquare;
+	}
+
+	public int getCurrentMoveNumber() {
+		return currentMoveNumber;
+	}
+
+	public int getCurrentMovePromotedPiece() {
+		return currentMovePromotedPiece;
+	}
+
+	public int getCurrentMoveStartSquare() {
+		return currentMoveStartSquare;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getHashFull() {
+		return hashFull;
+	}
+
+	public int getMateInMoves() {
+		return mateInMoves;
+	}
+
+	public int getMultiPv() {
+		return multiPv;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getNodesPerSecond() {
+		return nodesPerSecond;
+	}
+
+	public int getPvEndSquare(int index) {
+		return pvEndSquares[index];
+	}
+
+	public int getPvLength() {
+		return pvLength;
+	}
+
+	public int getPvPromotedPiece(int index) {
+		return pvPromotedPieces[index];
+	}
+
+	public int getPvStartSquare(int index) {
+		return pvStartSquares[index];
+	}
+
+	public int getSelectiveDepth() {
+		return selectiveDepth;
+	}
+
+	public String getString() {
+		return string;
+	}
+
+	public int getTableBaseHits() {
+		return tableBaseHits;
+	}
+
+	public int getTimeMillis() {
+		return timeMillis;
+	}
+
+	public int getValueInCentipawns() {
+		return valueInCentipawns;
+	}
+
+	/**
+	 * Returns true if the engine sent the field. field is one of the flag
+	 * constants in this class.
+	 */
+	public boolean has(int field) {
+		return (flags & field) != 0;
+	}
+
+	public boolean isLowerBoundScore() {
+		return isLowerBoundScore;
+	}
+
+	public boolean isUpperBoundScore() {
+		return isUpperBoundScore;
+	}
+
+	/**
+	 * Returns the snapshot to the parser which handed it out. The snapshot
+	 * must not be used afterwards.
+	 */
+	public void release() {
+		if (owner != null) {
+			owner.release(this);
+		}
+	}
+
+	/**
+	 * Converts the snapshot into the UCIInfo objects UCIInfoListener expects.
+	 * Every call creates new objects.
+	 */
+	public UCIInfo[] toInfos() {
+		UCIInfo[] result = new UCIInfo[Integer.bitCount(flags)];
+		int index = 0;
+		if (has(DEPTH)) {
+			DepthInfo info = new DepthInfo();
+			info.setSearchDepthPlies(depth);
+			result[index++] = info;
+		}
+		if (has(SELECTIVE_DEPTH)) {
+			SelectiveSearchDepthInfo info = new SelectiveSearchDepthInfo();
+			info.setDepthInPlies(selectiveDepth);
+			result[index++] = info;
+		}
+		if (has(TIME)) {
+			TimeInfo info = new TimeInfo();
+			info.setTimeMillis(timeMillis);
+			result[index++] = info;
+		}
+		if (has(NODES)) {
+			NodesSearchedInfo info = new NodesSearchedInfo();
+			info.setNodesSearched(nodes);
+			result[index++] = info;
+		}
+		if (has(MULTI_PV)) {
+			MultiPV info = new MultiPV(String.valueOf(multiPv));
+			result[index++] = info;
+		}
+		if (has(SCORE)) {
+			ScoreInfo info = new ScoreInfo();
+			info.setValueInCentipawns(valueInCentipawns);
+			info.setMateInMoves(mateInMoves);
+			info.setLowerBoundScore(isLowerBoundScore);
+			info.setUpperBoundScore(isUpperBoundScore);
+			result[index++] = info;
+		}
+		if (has(PV)) {
+			BestLineFoundInfo info = new BestLineFoundInfo();
+			UCIMove[] moves = new UCIMove[pvLength];
+			for (int i = 0; i < pvLength; i++) {
+				moves[i] = new UCIMove(pvStartSquares[i], pvEndSquares[i], pvPromotedPieces[i]);
+			}
+			info.setMoves(moves);
+			result[index++] = info;
+		}
+		if (has(CURRENT_MOVE)) {
+			CurrentMoveInfo info = new CurrentMoveInfo();
+			info.setMove(new UCIMove(currentMoveStartSquare, currentMoveEndSquare, currentMovePromotedPiece));
+			info.setMoveNumber(currentMoveNumber);
+			result[index++] = info;
+		}
+		if (has(NODES_PER_SECOND)) {
+			NodesPerSecondInfo info = new NodesPerSecondInfo();
+			info.setNodesPerSecond(nodesPerSecond);
+			result[index++] = info;
+		}
+		if (has(TABLE_BASE_HITS)) {
+			TableBaseHitsInfo info = new TableBaseHitsInfo();
+			info.setNumberOfHits(tableBaseHits);
+			result[index++] = info;
+		}
+		if (has(CPU_LOAD)) {
+			CPULoadInfo info = new CPULoadInfo();
+			info.setCpuUsage(cpuLoad);
+			result[index++] = info;
+		}
+		if (has(STRING)) {
+			StringInfo info = new StringInfo();
+			info.setValue(string);
+			result[index++] = info;
+		}
+
+		if (index == result.length) {
+			return result;
+		}
+		// HASH_FULL has no UCIInfo and is left out.
+		UCIInfo[] trimmed = new UCIInfo[index];
+		System.arraycopy(result, 0, trimmed, 0, index);
+		return trimmed;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder(100);
+		result.append("UCIInfoSnapshot[depth=").append(depth).append(" multipv=").append(multiPv);
+		if (mateInMoves != 0) {
+			result.append(" mate=").append(mateInMoves);
+		} else {
+			result.append(" cp=").append(valueInCentipawns);
+		}
+		result.append(" pv=");
+		for (int i = 0; i < pvLength; i++) {
+			result.append(i == 0 ? "" : " ").append(
+					UCIMove.toUciString(pvStartSquares[i], pvEndSquares[i], pvPromotedPieces[i]));
+		}
+		return result.append(']').toString();
+	}
+
+	private static int[] grow(int[] array) {
+		int[] result = new int[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+}
@@ -18,6 +18,15 @@ import raptor.chess.Move;
 import raptor.chess.util.GameUtils;
 
 public class UCIMove {
+	/**
+	 * Returns the UCI notation for a move, e.g. e2e4 or e7e8q.
+	 */
+	public static String toUciString(int startSquare, int endSquare, int promotedPiece) {
+		String result = GameUtils.getSan(startSquare) + GameUtils.getSan(endSquare);
+		return promotedPiece == 0 ? result : result
+				+ Character.toLowerCase(GameConstants.PIECE_TO_SAN.charAt(promotedPiece));
+	}
+
 	protected String value;
 	protected int startSquare;
 	protected int endSquare;
@@ -35,6 +44,13 @@ public class UCIMove {
 		}
 	}
 
+	public UCIMove(int startSquare, int endSquare, int promotedPiece) {
+		this.startSquare = startSquare;
+		this.endSquare = endSquare;
+		this.promotedPiece = promotedPiece;
+		value = toUciString(startSquare, endSquare, promotedPiece);
+	}
+
 	public UCIMove(String uciString) {
 		value = uciString;
 		startSquare = GameUtils.getSquare(uciString.substring(0, 2));
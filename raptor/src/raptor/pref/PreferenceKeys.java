@@ -47,6 +47,7 @@ public interface PreferenceKeys {
 	public static final String LEFT_DOUBLE_CLICK_MOUSE_BUTTON_ACTION = "left-double-click-mouse-button-action";
 	public static final String REGULAR_EXPRESSIONS_TO_BLOCK = "regular-expressions-to-block";
 	public static final String REMOVE_BLANK_LINES = "remove-blank-lines";
+	public static final String SHARED_IO_THREAD = "shared-io-thread";
 
 	// The following are not preferences but prefixes of preference names.
 	public static final String PLAYING_CONTROLLER = "board-playing-";
@@ -89,6 +90,10 @@ public interface PreferenceKeys {
 	public static final String APP_SOUND_PACK = "app-sound-pack";
 	
 	public static final String STOCKFISH_MOVES_TO_SUGGEST = "stockfish-moves-to-suggest";
+	public static final String STOCKFISH_ANALYSIS_UPDATES_PER_SECOND = "stockfish-analysis-updates-per-second";
+	public static final String STOCKFISH_ANALYSIS_CACHE_SIZE = "stockfish-analysis-cache-size";
+	public static final String STOCKFISH_ANALYSIS_CACHE_DEPTH = "stockfish-analysis-cache-depth";
+	public static final String STOCKFISH_ANALYSIS_CACHE_PERSIST = "stockfish-analysis-cache-persist";
 
 	public static final String ACTION_SEPARATOR_SEQUENCE = "action-separator-sequence";
 
@@ -291,6 +296,7 @@ public interface PreferenceKeys {
 	public static final String FICS_REMOVE_BLANK_LINES = "fics-"
 			+ REMOVE_BLANK_LINES;
 	public static final String FICS_TIMESEAL_IS_TIMESEAL_2 = "fics-is-timeseal-2";
+	public static final String FICS_SHARED_IO_THREAD = "fics-" + SHARED_IO_THREAD;
 	public static final String FICS_PING_INTERVAL_SEC = "fics-ping-widget-interval-sec";
 	public static final String FICS_SHOW_PING_WIDGET = "fics-show-ping-widget";
 
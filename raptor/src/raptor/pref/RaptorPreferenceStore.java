@@ -435,6 +435,10 @@ public class RaptorPreferenceStore extends PreferenceStore implements Preference
 		
 		// Stockfish
 		setDefault(STOCKFISH_MOVES_TO_SUGGEST,3);
+		setDefault(STOCKFISH_ANALYSIS_UPDATES_PER_SECOND, 10);
+		setDefault(STOCKFISH_ANALYSIS_CACHE_SIZE, 32);
+		setDefault(STOCKFISH_ANALYSIS_CACHE_DEPTH, 30);
+		setDefault(STOCKFISH_ANALYSIS_CACHE_PERSIST, false);
 
 		// Board
 		setDefault(BOARD_ALLOW_MOUSE_WHEEL_NAVIGATION_WHEEL_PLAYING, false);
@@ -712,6 +716,7 @@ public class RaptorPreferenceStore extends PreferenceStore implements Preference
 		setDefault(FICS_TERTIARY_TIMESEAL_ENABLED, true);
 		setDefault(FICS_REMOVE_BLANK_LINES, false);
 		setDefault(FICS_TIMESEAL_IS_TIMESEAL_2, true);
+		setDefault(FICS_SHARED_IO_THREAD, true);
 
 		// Quadrant settings.
 		setDefault("fics-" + MAIN_TAB_QUADRANT, Quadrant.VI);
@@ -13,6 +13,7 @@
  */
 package raptor.pref.page;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.ComboFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 
@@ -27,6 +28,15 @@ public class StockfishPage extends FieldEditorPreferencePage {
 	public static final String[][] MOVES_TO_SUGGEST = { { "1", "1" }, { "2", "2" }, { "3", "3" }, { "4", "4" },
 			{ "5", "5" }, { "6", "6" }, { "7", "7" }, { "8", "8" }, };
 
+	public static final String[][] UPDATES_PER_SECOND = { { "2", "2" }, { "5", "5" }, { "10", "10" },
+			{ "20", "20" }, { "30", "30" }, };
+
+	public static final String[][] CACHE_SIZES = { { "8", "8" }, { "32", "32" }, { "128", "128" },
+			{ "512", "512" }, };
+
+	public static final String[][] CACHE_DEPTHS = { { local.getString("analysisCacheAlwaysSearch"), "0" },
+			{ "20", "20" }, { "25", "25" }, { "30", "30" }, { "35", "35" }, { "40", "40" }, };
+
 	public StockfishPage() {
 		super(FLAT);
 		setTitle(L10n.getInstance().getString("chessEngines"));
@@ -40,5 +50,25 @@ public class StockfishPage extends FieldEditorPreferencePage {
 				PreferenceKeys.STOCKFISH_MOVES_TO_SUGGEST,
 				local.getString("movesToSuggest"),
 				MOVES_TO_SUGGEST, getFieldEditorParent()));
+
+		addField(new ComboFieldEditor(
+				PreferenceKeys.STOCKFISH_ANALYSIS_UPDATES_PER_SECOND,
+				local.getString("analysisUpdatesPerSecond"),
+				UPDATES_PER_SECOND, getFieldEditorParent()));
+
+		addField(new ComboFieldEditor(
+				PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_SIZE,
+				local.getString("analysisCacheSize"),
+				CACHE_SIZES, getFieldEditorParent()));
+
+		addField(new ComboFieldEditor(
+				PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_DEPTH,
+				local.getString("analysisCacheDepth"),
+				CACHE_DEPTHS, getFieldEditorParent()));
+
+		addField(new BooleanFieldEditor(
+				PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_PERSIST,
+				local.getString("analysisCachePersist"),
+				getFieldEditorParent()));
 	}
 }
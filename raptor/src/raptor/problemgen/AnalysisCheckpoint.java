@@ -0,0 +1,109 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.problemgen;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.BitSet;
+
+import raptor.util.RaptorStringTokenizer;
+
+/**
+ * Records which games of a batch have been completed, one game index per line,
+ * so an interrupted batch can be resumed. Each index is flushed as soon as it
+ * is marked. A partly written last line, left by a crash, is discarded.
+ */
+public class AnalysisCheckpoint {
+	protected File file;
+	protected BitSet completed = new BitSet();
+	protected int completedCount;
+	protected Writer writer;
+
+	/**
+	 * Opens the checkpoint file, loading the indexes it already holds.
+	 */
+	public AnalysisCheckpoint(File file) throws IOException {
+		this.file = file;
+		if (file.exists()) {
+			String contents = readContents(file);
+			int end = contents.lastIndexOf('\n') + 1;
+			if (end < contents.length()) {
+				truncate(file, end);
+			}
+			RaptorStringTokenizer tok = new RaptorStringTokenizer(contents.substring(0, end), "\r\n", true);
+			while (tok.hasMoreTokens()) {
+				try {
+					int index = Integer.parseInt(tok.nextToken().trim());
+					if (index >= 0 && !completed.get(index)) {
+						completed.set(index);
+						completedCount++;
+					}
+				} catch (NumberFormatException nfe) {
+				}
+			}
+		}
+		writer = new FileWriter(file, true);
+	}
+
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	public synchronized int getCompletedCount() {
+		return completedCount;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public synchronized boolean isCompleted(int gameIndex) {
+		return completed.get(gameIndex);
+	}
+
+	/**
+	 * Marks the game completed and flushes it to the file.
+	 */
+	public synchronized void markCompleted(int gameIndex) throws IOException {
+		if (!completed.get(gameIndex)) {
+			writer.write(gameIndex + "\n");
+			writer.flush();
+			completed.set(gameIndex);
+			completedCount++;
+		}
+	}
+
+	private static String readContents(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) input.length()];
+			input.readFully(bytes);
+			return new String(bytes, "US-ASCII");
+		} finally {
+			input.close();
+		}
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		RandomAccessFile output = new RandomAccessFile(file, "rw");
+		try {
+			output.setLength(length);
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.problemgen;
+
+import raptor.chess.Game;
+import raptor.engine.uci.UCIBestMove;
+import raptor.engine.uci.UCIEngine;
+import raptor.engine.uci.UCIInfo;
+import raptor.engine.uci.UCIInfoSnapshot;
+import raptor.engine.uci.UCIInfoSnapshotListener;
+
+/**
+ * Evaluates every position of a game with one engine. Each search is bounded
+ * by the go options, e.g. "depth 18" or "movetime 1000", so the engine ends it
+ * with a bestmove and nothing has to be stopped from another thread. The
+ * calling thread blocks until the bestmove arrives, and only stops the engine
+ * itself if it does not arrive within the timeout.
+ */
+public class GameAnalyzer implements UCIInfoSnapshotListener {
+	protected UCIEngine engine;
+	protected String goOptions;
+	protected long timeoutMillis;
+	protected UCIInfoSnapshot current;
+	protected UCIBestMove bestMove;
+	protected Object lock = new Object();
+
+	/**
+	 * Returns the FEN of every position in the game, from the first position
+	 * through the one after the last move.
+	 */
+	public static String[] getFens(Game game) {
+		Game copy = game.deepCopy(false);
+		String[] result = new String[copy.getMoveList().getSize() + 1];
+		for (int i = result.length - 1; i >= 0; i--) {
+			result[i] = copy.toFen();
+			if (i > 0) {
+				copy.rollback();
+			}
+		}
+		return result;
+	}
+
+	public GameAnalyzer(UCIEngine engine, String goOptions, long timeoutMillis) {
+		this.engine = engine;
+		this.goOptions = goOptions;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Returns the evaluation of each position. A position in which the game
+	 * is over is not searched and its evaluation is null.
+	 */
+	public UCIInfoSnapshot[] analyze(String[] fens) throws InterruptedException {
+		UCIInfoSnapshot[] result = new UCIInfoSnapshot[fens.length];
+		engine.newGame();
+		for (int i = 0; i < fens.length; i++) {
+			if (i == fens.length - 1 && GameAnnotator.getTerminalScore(fens[i]) != GameAnnotator.NO_SCORE) {
+				break;
+			}
+			result[i] = analyze(fens[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Searches one position and returns the last exact evaluation of the
+	 * principal variation, null if the engine sent none.
+	 */
+	public UCIInfoSnapshot analyze(String fen) throws InterruptedException {
+		synchronized (lock) {
+			current = new UCIInfoSnapshot();
+			bestMove = null;
+		}
+
+		engine.setPosition(fen, null);
+		engine.isReady();
+		engine.go(goOptions, this);
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (lock) {
+			long remaining = timeoutMillis;
+			while (bestMove == null && remaining > 0) {
+				lock.wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+		}
+		if (bestMove == null) {
+			engine.stop();
+			if (engine.isProcessingGo()) {
+				throw new IllegalStateException("Engine " + engine + " did not stop searching " + fen);
+			}
+		}
+
+		synchronized (lock) {
+			UCIInfoSnapshot result = current;
+			current = null;
+			return result.has(UCIInfoSnapshot.SCORE) ? result : null;
+		}
+	}
+
+	public void engineSentBestMove(UCIBestMove bestMove) {
+		synchronized (lock) {
+			this.bestMove = bestMove;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Not used, the engine sends snapshots to this listener.
+	 */
+	public void engineSentInfo(UCIInfo[] infos) {
+	}
+
+	/**
+	 * Keeps the latest exact score and pv of the first line.
+	 */
+	public void engineSentInfo(UCIInfoSnapshot snapshot) {
+		try {
+			if (snapshot.has(UCIInfoSnapshot.MULTI_PV) && snapshot.getMultiPv() > 1
+					|| snapshot.isLowerBoundScore() || snapshot.isUpperBoundScore()) {
+				return;
+			}
+			synchronized (lock) {
+				if (current != null
+						&& (snapshot.has(UCIInfoSnapshot.SCORE) || snapshot.has(UCIInfoSnapshot.PV))) {
+					current.mergeFrom(snapshot);
+				}
+			}
+		} finally {
+			snapshot.release();
+		}
+	}
+
+	public UCIEngine getEngine() {
+		return engine;
+	}
+
+	public String getGoOptions() {
+		return goOptions;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+}
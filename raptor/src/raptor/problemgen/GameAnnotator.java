@@ -0,0 +1,311 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.problemgen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import raptor.chess.Game;
+import raptor.chess.GameFactory;
+import raptor.chess.Move;
+import raptor.chess.Variant;
+import raptor.chess.pgn.Comment;
+import raptor.chess.pgn.Nag;
+import raptor.chess.pgn.PgnHeader;
+import raptor.engine.uci.UCIInfoSnapshot;
+
+/**
+ * Turns the engine evaluation of every position in a game into move
+ * annotations and puzzles.
+ * 
+ * Scores are in centipawns from the point of view of the side to move, as UCI
+ * engines send them. A mate in n is scored MATE_VALUE - n, and being mated in
+ * n -(MATE_VALUE - n). The loss of a move is the score of the mover before it
+ * less the score of the mover after it, with both clamped to MAX_SCORE so a
+ * move which only turns a won position into a slightly less won one is not
+ * flagged.
+ * 
+ * Blunders, mistakes and inaccuracies get the standard $4 (??), $2 (?) and $6
+ * (?!) NAGs.
+ */
+public class GameAnnotator {
+	/**
+	 * The score of a mate on the board.
+	 */
+	public static final int MATE_VALUE = 100000;
+
+	/**
+	 * Scores are clamped to this before losses are computed.
+	 */
+	public static final int MAX_SCORE = 1000;
+
+	/**
+	 * Returned by getScore when a position has no evaluation.
+	 */
+	public static final int NO_SCORE = Integer.MIN_VALUE;
+
+	/**
+	 * The most moves of a best line written into a comment.
+	 */
+	public static final int MAX_LINE_PLIES = 8;
+
+	protected int blunderThreshold = 300;
+	protected int mistakeThreshold = 100;
+	protected int inaccuracyThreshold = 50;
+	protected int puzzleThreshold = 200;
+
+	/**
+	 * Returns the score of an evaluation for the side to move, NO_SCORE if it
+	 * is null or has no score.
+	 */
+	public static int getScore(UCIInfoSnapshot eval) {
+		if (eval == null || !eval.has(UCIInfoSnapshot.SCORE)) {
+			return NO_SCORE;
+		}
+		int mateInMoves = eval.getMateInMoves();
+		if (mateInMoves > 0) {
+			return MATE_VALUE - mateInMoves;
+		} else if (mateInMoves < 0) {
+			return -MATE_VALUE - mateInMoves;
+		}
+		return eval.getValueInCentipawns();
+	}
+
+	/**
+	 * Returns the score of the side to move if the game is over in the
+	 * position, NO_SCORE if it is not.
+	 */
+	public static int getTerminalScore(String fen) {
+		Game game = GameFactory.createFromFen(fen, Variant.classic);
+		if (game.isCheckmate()) {
+			return -MATE_VALUE;
+		} else if (game.isStalemate()) {
+			return 0;
+		}
+		return NO_SCORE;
+	}
+
+	/**
+	 * Returns the pv of an evaluation in SAN with move numbers, played from
+	 * fen. Returns null if the evaluation has no pv or one of its moves is
+	 * illegal.
+	 */
+	public static String getSanLine(String fen, UCIInfoSnapshot eval, int maxPlies) {
+		if (eval == null || eval.getPvLength() == 0) {
+			return null;
+		}
+
+		Game game = GameFactory.createFromFen(fen, Variant.classic);
+		game.addState(Game.UPDATING_SAN_STATE);
+		game.clearState(Game.UPDATING_ECO_HEADERS_STATE);
+
+		StringBuilder line = new StringBuilder(100);
+		int plies = Math.min(maxPlies, eval.getPvLength());
+		for (int i = 0; i < plies; i++) {
+			Move move = null;
+			try {
+				if (eval.getPvPromotedPiece(i) != 0) {
+					move = game.makeMove(eval.getPvStartSquare(i), eval.getPvEndSquare(i),
+							eval.getPvPromotedPiece(i));
+				} else {
+					move = game.makeMove(eval.getPvStartSquare(i), eval.getPvEndSquare(i));
+				}
+			} catch (IllegalArgumentException iae) {
+				return null;
+			}
+
+			if (i > 0) {
+				line.append(' ');
+			}
+			if (move.isWhitesMove()) {
+				line.append(move.getFullMoveCount()).append(". ");
+			} else if (i == 0) {
+				line.append(move.getFullMoveCount()).append("... ");
+			}
+			line.append(move.getSan()).append(game.isCheckmate() ? "#" : game.isInCheck() ? "+" : "");
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Returns the score of an evaluation from white's point of view formatted
+	 * as in "+0.35/18" or "#-3/22".
+	 */
+	public static String formatScore(UCIInfoSnapshot eval, boolean isWhiteToMove) {
+		StringBuilder result = new StringBuilder(12);
+		int sign = isWhiteToMove ? 1 : -1;
+		if (eval.getMateInMoves() != 0) {
+			result.append('#').append(sign * eval.getMateInMoves());
+		} else {
+			int centipawns = sign * eval.getValueInCentipawns();
+			result.append(centipawns < 0 ? '-' : '+').append(Math.abs(centipawns) / 100).append('.');
+			int fraction = Math.abs(centipawns) % 100;
+			result.append(fraction < 10 ? "0" : "").append(fraction);
+		}
+		if (eval.has(UCIInfoSnapshot.DEPTH)) {
+			result.append('/').append(eval.getDepth());
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the NAG for a move which lost the specified number of
+	 * centipawns, null if it did not lose enough to be annotated.
+	 */
+	public Nag getNag(int loss) {
+		if (loss >= blunderThreshold) {
+			return Nag.NAG_4;
+		} else if (loss >= mistakeThreshold) {
+			return Nag.NAG_2;
+		} else if (loss >= inaccuracyThreshold) {
+			return Nag.NAG_6;
+		}
+		return null;
+	}
+
+	/**
+	 * Annotates the moves of a game. fens[i] is the position before half move
+	 * i and evals[i] its evaluation, so both have one more element than the
+	 * game has half moves. Positions without an evaluation are null.
+	 * 
+	 * Every move gets a comment with the evaluation after it. Moves which lose
+	 * enough get a NAG and the best line. Returns the puzzles found as EPD
+	 * lines.
+	 */
+	public List<String> annotate(Game game, String[] fens, UCIInfoSnapshot[] evals) {
+		List<String> puzzles = new ArrayList<String>(2);
+		int last = fens.length - 1;
+		int[] scores = new int[fens.length];
+		for (int i = 0; i <= last; i++) {
+			scores[i] = getScore(evals[i]);
+		}
+		if (scores[last] == NO_SCORE) {
+			scores[last] = getTerminalScore(fens[last]);
+		}
+
+		for (int i = 0; i < last; i++) {
+			Move move = game.getMoveList().get(i);
+			UCIInfoSnapshot after = evals[i + 1];
+			boolean isWhiteToMoveAfter = !move.isWhitesMove();
+
+			StringBuilder comment = new StringBuilder(60);
+			if (after != null && after.has(UCIInfoSnapshot.SCORE)) {
+				comment.append(formatScore(after, isWhiteToMoveAfter));
+			}
+
+			if (scores[i] != NO_SCORE && scores[i + 1] != NO_SCORE) {
+				int loss = clamp(scores[i]) + clamp(scores[i + 1]);
+				Nag nag = getNag(loss);
+				if (nag != null) {
+					move.addAnnotation(nag);
+					String bestLine = getSanLine(fens[i], evals[i], MAX_LINE_PLIES);
+					if (bestLine != null) {
+						comment.append(comment.length() == 0 ? "" : " ").append("Best: ").append(bestLine);
+					}
+
+					if (nag == Nag.NAG_4 && scores[i] > -puzzleThreshold && scores[i + 1] >= puzzleThreshold) {
+						String puzzle = getPuzzle(game, move, fens[i + 1], after);
+						if (puzzle != null) {
+							puzzles.add(puzzle);
+						}
+					}
+				}
+			}
+
+			if (comment.length() > 0) {
+				move.addAnnotation(new Comment(comment.toString()));
+			}
+		}
+		return puzzles;
+	}
+
+	public int getBlunderThreshold() {
+		return blunderThreshold;
+	}
+
+	public int getInaccuracyThreshold() {
+		return inaccuracyThreshold;
+	}
+
+	public int getMistakeThreshold() {
+		return mistakeThreshold;
+	}
+
+	public int getPuzzleThreshold() {
+		return puzzleThreshold;
+	}
+
+	public void setBlunderThreshold(int blunderThreshold) {
+		this.blunderThreshold = blunderThreshold;
+	}
+
+	public void setInaccuracyThreshold(int inaccuracyThreshold) {
+		this.inaccuracyThreshold = inaccuracyThreshold;
+	}
+
+	public void setMistakeThreshold(int mistakeThreshold) {
+		this.mistakeThreshold = mistakeThreshold;
+	}
+
+	public void setPuzzleThreshold(int puzzleThreshold) {
+		this.puzzleThreshold = puzzleThreshold;
+	}
+
+	/**
+	 * Returns the position after a blunder as an EPD line with the refutation
+	 * as the best move, null if the evaluation has no legal pv.
+	 */
+	protected String getPuzzle(Game game, Move blunder, String fen, UCIInfoSnapshot eval) {
+		String line = getSanLine(fen, eval, MAX_LINE_PLIES);
+		if (line == null) {
+			return null;
+		}
+		String[] sans = line.split(" ");
+		String bestMove = null;
+		StringBuilder pv = new StringBuilder(line.length());
+		for (String san : sans) {
+			if (!Character.isDigit(san.charAt(0))) {
+				if (bestMove == null) {
+					bestMove = san;
+				}
+				pv.append(pv.length() == 0 ? "" : " ").append(san);
+			}
+		}
+
+		String[] fields = fen.split(" ");
+		StringBuilder result = new StringBuilder(150);
+		result.append(fields[0]).append(' ').append(fields[1]).append(' ').append(fields[2]).append(' ')
+				.append(fields[3]);
+		result.append(" bm ").append(bestMove).append(';');
+		result.append(" pv ").append(pv).append(';');
+		if (eval.getMateInMoves() != 0) {
+			result.append(" dm ").append(eval.getMateInMoves()).append(';');
+		} else {
+			result.append(" ce ").append(eval.getValueInCentipawns()).append(';');
+		}
+		result.append(" id \"").append(getPlayer(game, PgnHeader.White)).append(" - ")
+				.append(getPlayer(game, PgnHeader.Black)).append(", ").append(blunder.getFullMoveCount())
+				.append(blunder.isWhitesMove() ? ". " : "... ").append(blunder.getSan()).append("\";");
+		return result.toString();
+	}
+
+	private static String getPlayer(Game game, PgnHeader header) {
+		String result = game.getHeader(header);
+		return result == null ? "?" : result.replace('"', '\'');
+	}
+
+	private static int clamp(int score) {
+		return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+	}
+}
@@ -14,252 +14,297 @@
 package raptor.problemgen;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Date;
-
-import org.apache.commons.lang.StringUtils;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import raptor.chess.Game;
-import raptor.chess.Move;
-import raptor.chess.MoveList;
 import raptor.chess.Variant;
-import raptor.chess.pgn.LenientPgnParserListener;
-import raptor.chess.pgn.PgnHeader;
-import raptor.chess.pgn.PgnParserError;
-import raptor.chess.pgn.StreamingPgnParser;
-import raptor.engine.uci.UCIBestMove;
+import raptor.chess.pgn.PgnDatabase;
 import raptor.engine.uci.UCIEngine;
-import raptor.engine.uci.UCIInfo;
-import raptor.engine.uci.UCIInfoListener;
-import raptor.engine.uci.UCIMove;
-import raptor.engine.uci.info.BestLineFoundInfo;
-import raptor.engine.uci.info.ScoreInfo;
+import raptor.engine.uci.UCIInfoSnapshot;
+import raptor.service.UCIEngineService;
+import raptor.util.RaptorLogger;
 
+/**
+ * Analyzes every game of a PGN file with a number of engine processes in
+ * parallel. Each worker leases its own engine from the UCIEngineService pool
+ * and takes the next game which has not been analyzed.
+ * 
+ * Three files are written to the output directory, named after the PGN file:
+ * name-annotated.pgn holds the games with an evaluation comment on every move
+ * and NAGs on the bad ones, name-puzzles.epd the positions after blunders with
+ * their refutation, and name.progress the indexes of the completed games. A
+ * batch which is started again skips the games in the progress file, so it can
+ * be interrupted at any time. Games are written in the order they complete.
+ */
 public class ProblemGenerator {
-	protected class CandidateInfoListener implements UCIInfoListener {
-		protected UCIBestMove bestMove;
-		protected ScoreInfo score;
-		protected BestLineFoundInfo bestLineFound;
-		protected boolean hasIssuedStop = false;
+	private static final RaptorLogger LOG = RaptorLogger.getLog(ProblemGenerator.class);
 
-		public void engineSentBestMove(UCIBestMove uciBestMove) {
-			bestMove = uciBestMove;
-		}
+	public static final int DEFAULT_DEPTH = 18;
 
-		public void engineSentInfo(UCIInfo[] infos) {
-			for (UCIInfo info : infos) {
-				if (info instanceof ScoreInfo) {
-					score = (ScoreInfo) info;
-					if (!hasIssuedStop && score.getMateInMoves() != 0
-							|| !score.isLowerBoundScore() && !score.isUpperBoundScore()) {
-						hasIssuedStop = true;
-						new Thread(new Runnable() {
-							public void run() {
-								engine.stop();
-							}
-						}).start();
-					}
-				} else if (info instanceof BestLineFoundInfo) {
-					bestLineFound = (BestLineFoundInfo) info;
+	/**
+	 * How long a search may take beyond its movetime before it is stopped.
+	 */
+	public static final long SEARCH_TIMEOUT_MARGIN = 10000;
+
+	/**
+	 * How long a depth limited search may take before it is stopped.
+	 */
+	public static final long DEPTH_SEARCH_TIMEOUT = 120000;
+
+	/**
+	 * How often progress is reported, in games.
+	 */
+	public static final int PROGRESS_INTERVAL = 100;
+
+	public static void main(String[] args) throws Exception {
+		String pgnFile = null;
+		String outputDir = null;
+		String enginePath = null;
+		int engines = Runtime.getRuntime().availableProcessors();
+		String goOptions = "depth " + DEFAULT_DEPTH;
+		long timeoutMillis = DEPTH_SEARCH_TIMEOUT;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-engine")) {
+					enginePath = args[++i];
+				} else if (args[i].equals("-engines")) {
+					engines = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-depth")) {
+					goOptions = "depth " + Integer.parseInt(args[++i]);
+					timeoutMillis = DEPTH_SEARCH_TIMEOUT;
+				} else if (args[i].equals("-movetime")) {
+					long moveTime = Long.parseLong(args[++i]);
+					goOptions = "movetime " + moveTime;
+					timeoutMillis = moveTime + SEARCH_TIMEOUT_MARGIN;
+				} else if (pgnFile == null) {
+					pgnFile = args[i];
+				} else if (outputDir == null) {
+					outputDir = args[i];
+				} else {
+					throw new IllegalArgumentException(args[i]);
 				}
 			}
+		} catch (RuntimeException re) {
+			pgnFile = null;
 		}
 
-		public boolean isFinished() {
-			return bestMove != null;
+		if (pgnFile == null || outputDir == null || engines < 1) {
+			System.err.println("Usage: ProblemGenerator [-engine path] [-engines n] [-depth plies | -movetime ms]"
+					+ " pgnFile outputDir");
+			System.exit(1);
 		}
-	}
-
-	protected class ProblemInfoListener implements UCIInfoListener {
-		protected UCIBestMove bestMove;
-		protected ScoreInfo score;
-		protected BestLineFoundInfo bestLineFound;
-		protected double worstScore = .55599;
-		protected double bestScore = .55599;
-		protected boolean isWhitesMove;
 
-		public void engineSentBestMove(UCIBestMove uciBestMove) {
-			bestMove = uciBestMove;
+		int maxEngines = UCIEngineService.getInstance().getPool().getMaxThreads();
+		if (engines > maxEngines) {
+			System.err.println("Limiting engines to " + maxEngines + ", one per processor.");
+			engines = maxEngines;
 		}
 
-		public void engineSentInfo(UCIInfo[] infos) {
-			for (UCIInfo info : infos) {
-				if (info instanceof ScoreInfo) {
-					score = (ScoreInfo) info;
-					if (score.getMateInMoves() == 0) {
-						double scoreInPawns = getScoreInPawns(score, isWhitesMove);
-
-						if (bestScore == .55599) {
-							worstScore = bestScore = scoreInPawns;
-						}
-						if (scoreInPawns > bestScore) {
-							bestScore = scoreInPawns;
-						} else if (scoreInPawns < worstScore) {
-							worstScore = scoreInPawns;
-						}
-					}
-				} else if (info instanceof BestLineFoundInfo) {
-					bestLineFound = (BestLineFoundInfo) info;
-				}
-			}
+		UCIEngine configuration = null;
+		if (enginePath == null) {
+			configuration = UCIEngineService.getInstance().getEngine().getDeepCopy();
+		} else {
+			configuration = new UCIEngine();
+			configuration.setProcessPath(enginePath);
 		}
-
-		public boolean isFinished() {
-			return bestMove != null;
+		configuration.setUsingThreadService(false);
+
+		ProblemGenerator generator = new ProblemGenerator(configuration, new File(pgnFile), new File(outputDir),
+				engines, goOptions, timeoutMillis);
+		try {
+			generator.run();
+		} finally {
+			UCIEngineService.getInstance().dispose();
 		}
 	}
 
-	public static void main(String[] args) throws Exception {
-		UCIEngine engine = new UCIEngine();
-		engine.setUsingThreadService(false);
-		engine.setProcessPath("/Applications/HIARCS/Hiarcs12.1SPUCI");
-		new ProblemGenerator(engine, "/Users/mindspan/raptor/raptor/projectFiles/test/Alekhine4Pawns.pgn");
+	protected UCIEngine configuration;
+	protected File pgnFile;
+	protected File outputDir;
+	protected int engines;
+	protected String goOptions;
+	protected long timeoutMillis;
+	protected GameAnnotator annotator = new GameAnnotator();
+	protected PgnDatabase database;
+	protected AnalysisCheckpoint checkpoint;
+	protected Writer pgnWriter;
+	protected Writer puzzleWriter;
+	protected Object outputLock = new Object();
+	protected AtomicInteger nextGameIndex = new AtomicInteger();
+	protected AtomicInteger gamesAnalyzed = new AtomicInteger();
+	protected AtomicInteger puzzlesFound = new AtomicInteger();
+	protected long startTime;
+
+	/**
+	 * Creates a batch. goOptions bound each search, e.g. "depth 18" or
+	 * "movetime 1000", and a search still running after timeoutMillis is
+	 * stopped.
+	 */
+	public ProblemGenerator(UCIEngine configuration, File pgnFile, File outputDir, int engines, String goOptions,
+			long timeoutMillis) {
+		this.configuration = configuration;
+		this.pgnFile = pgnFile;
+		this.outputDir = outputDir;
+		this.engines = engines;
+		this.goOptions = goOptions;
+		this.timeoutMillis = timeoutMillis;
 	}
 
-	protected int numGames;
-	protected UCIEngine engine;
-	protected StreamingPgnParser parser;
-	protected String outputFile = "/Users/mindspan/problemGeneratorOutput.txt";
-
-	protected LenientPgnParserListener parserLisetener = new LenientPgnParserListener() {
-
-		@Override
-		public void errorEncountered(PgnParserError error) {
+	public GameAnnotator getAnnotator() {
+		return annotator;
+	}
 
+	/**
+	 * Analyzes the games which have not been completed and returns when all of
+	 * them are done.
+	 */
+	public void run() throws IOException, InterruptedException {
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new IOException("Could not create " + outputDir);
+		}
+		String name = pgnFile.getName();
+		if (name.toLowerCase().endsWith(".pgn")) {
+			name = name.substring(0, name.length() - 4);
 		}
 
-		@Override
-		public boolean gameParsed(Game game, int lineNumber) {
-			if (game.getVariant() == Variant.classic) {
-				checkGameForCandidates(game);
+		database = PgnDatabase.open(pgnFile);
+		checkpoint = new AnalysisCheckpoint(new File(outputDir, name + ".progress"));
+		pgnWriter = new FileWriter(new File(outputDir, name + "-annotated.pgn"), true);
+		puzzleWriter = new FileWriter(new File(outputDir, name + "-puzzles.epd"), true);
+		startTime = System.currentTimeMillis();
+		log("Analyzing " + (database.getGameCount() - checkpoint.getCompletedCount()) + " of "
+				+ database.getGameCount() + " games in " + pgnFile + " with " + engines + " engines, go "
+				+ goOptions);
+
+		ExecutorService executor = Executors.newFixedThreadPool(engines);
+		try {
+			for (int i = 0; i < engines; i++) {
+				executor.execute(new Runnable() {
+					public void run() {
+						runWorker();
+					}
+				});
 			}
-			return false;
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} finally {
+			executor.shutdownNow();
+			pgnWriter.close();
+			puzzleWriter.close();
+			checkpoint.close();
+			database.close();
 		}
-	};
-
-	public ProblemGenerator(UCIEngine engine, String pgnFile) throws Exception {
-		this.engine = engine;
-		parser = new StreamingPgnParser(new File(pgnFile), Integer.MAX_VALUE);
-		parser.addPgnParserListener(parserLisetener);
-		parser.parse();
+		log("Finished. " + gamesAnalyzed + " games analyzed, " + puzzlesFound + " puzzles found, "
+				+ checkpoint.getCompletedCount() + " of " + database.getGameCount() + " games completed.");
 	}
 
-	public void checkGameForCandidates(Game game) {
-		System.err.println(new Date() + " " + "Checking game: " + numGames++ + " " + game.getHeader(PgnHeader.Event)
-				+ " " + game.getHeader(PgnHeader.White) + "(" + game.getHeader(PgnHeader.WhiteElo) + ") vs "
-				+ game.getHeader(PgnHeader.Black) + "(" + game.getHeader(PgnHeader.BlackElo) + ")");
-
-		MoveList moveList = game.getMoveList().deepCopy();
-		if (moveList.getSize() > 20) {
-			while (game.getMoveList().getSize() > 10) {
-				game.rollback();
-			}
-			if (!engine.isConnected()) {
-				engine.connect();
-			}
-			engine.newGame();
-			engine.isReady();
+	/**
+	 * Analyzes the game and writes it and its puzzles out. Games which are not
+	 * classic or could not be parsed are written as they are.
+	 */
+	protected void analyzeGame(GameAnalyzer analyzer, int gameIndex) throws IOException, InterruptedException {
+		Game game = database.getGame(gameIndex);
+		if (game == null) {
+			LOG.warn("Skipping game " + gameIndex + " it could not be parsed.");
+			writeGame(gameIndex, null, null);
+			return;
+		}
 
-			while (moveList.getSize() > game.getHalfMoveCount()) {
-				engine.setPosition(game.toFen(), null);
-				if (isCandidate()) {
-					System.err.println("Found candidate. Testing to see if its a real problem.");
-					testForProblem(game, moveList);
-					break;
-				} else {
-					game.move(moveList.get(game.getHalfMoveCount()));
-				}
-			}
+		List<String> puzzles = null;
+		if (game.getVariant() == Variant.classic) {
+			String[] fens = GameAnalyzer.getFens(game);
+			UCIInfoSnapshot[] evals = analyzer.analyze(fens);
+			puzzles = annotator.annotate(game, fens, evals);
 		}
+		writeGame(gameIndex, game.toPgn(), puzzles);
 	}
 
-	public String getLine(Game game, BestLineFoundInfo info) {
-		BestLineFoundInfo bestLineFoundInfo = info;
-		StringBuilder line = new StringBuilder(100);
-		game.addState(Game.UPDATING_SAN_STATE);
-		game.clearState(Game.UPDATING_ECO_HEADERS_STATE);
-
-		boolean isFirstMove = true;
-
-		for (UCIMove move : bestLineFoundInfo.getMoves()) {
-			try {
-				Move gameMove = null;
-
-				if (move.isPromotion()) {
-					gameMove = game.makeMove(move.getStartSquare(), move.getEndSquare(), move.getPromotedPiece());
-				} else {
-					gameMove = game.makeMove(move.getStartSquare(), move.getEndSquare());
+	/**
+	 * Leases an engine and analyzes games until there are none left. If the
+	 * engine fails the game is left incomplete and the engine is replaced.
+	 */
+	protected void runWorker() {
+		UCIEngine engine = null;
+		try {
+			int gameIndex = -1;
+			while ((gameIndex = nextGameIndex()) != -1) {
+				if (engine == null) {
+					engine = UCIEngineService.getInstance().leaseEngine(configuration, 1,
+							UCIEngineService.LEASE_TIMEOUT);
+					if (engine == null) {
+						LOG.error("Could not lease an engine, stopping worker.");
+						return;
+					}
 				}
 
-				String san = gameMove.getSan();
-				String moveNumber = isFirstMove && !gameMove.isWhitesMove() ? gameMove.getFullMoveCount() + ") ... "
-						: gameMove.isWhitesMove() ? gameMove.getFullMoveCount() + ") " : "";
-				line.append(StringUtils.isBlank(line.toString()) ? "" : " ").append(moveNumber).append(san)
-						.append(game.isInCheck() ? "+" : "").append(game.isCheckmate() ? "#" : "");
-				isFirstMove = false;
-			} catch (Throwable t) {
-				t.printStackTrace();
-				return null;
+				try {
+					analyzeGame(new GameAnalyzer(engine, goOptions, timeoutMillis), gameIndex);
+				} catch (InterruptedException ie) {
+					return;
+				} catch (Throwable t) {
+					LOG.error("Error analyzing game " + gameIndex, t);
+					engine.quit();
+					UCIEngineService.getInstance().releaseEngine(engine);
+					engine = null;
+				}
 			}
+		} finally {
+			UCIEngineService.getInstance().releaseEngine(engine);
 		}
-		return line.toString();
-	}
-
-	protected double getScoreInPawns(ScoreInfo score, boolean isWhitesMove) {
-		return !isWhitesMove ? -1 * score.getValueInCentipawns() / 100.0 : score.getValueInCentipawns() / 100.0;
 	}
 
-	protected void handleNewProblem(Game game, BestLineFoundInfo bestLine) {
-		System.err.println("\nFound problem:\n" + game.toFen() + "\n" + getLine(game, bestLine) + "\n\n");
+	protected void log(String message) {
+		System.err.println(new Date() + " " + message);
 	}
 
-	protected boolean isCandidate() {
-		boolean result = false;
-
-		CandidateInfoListener listener = new CandidateInfoListener();
-		engine.go("infinite", listener);
-		while (!listener.isFinished()) {
-			try {
-				Thread.sleep(100);
-			} catch (Throwable t) {
+	/**
+	 * Returns the index of the next game which has not been completed, -1 if
+	 * there are none left.
+	 */
+	protected int nextGameIndex() {
+		int result = -1;
+		while ((result = nextGameIndex.getAndIncrement()) < database.getGameCount()) {
+			if (!checkpoint.isCompleted(result)) {
+				return result;
 			}
 		}
-
-		if (listener.score.getMateInMoves() > 0 || Math.abs(listener.score.getValueInCentipawns() / 100.0) > 3) {
-			result = true;
-		}
-		return result;
+		return -1;
 	}
 
-	protected void testForProblem(Game game, MoveList moveList) {
-		game.rollback();
-		game.rollback();
-		game.rollback();
-		game.rollback();
-		for (int i = 0; i < 4; i++) {
-			engine.newGame();
-			engine.setPosition(game.toFen(), null);
-			engine.isReady();
-			ProblemInfoListener listener = new ProblemInfoListener();
-			listener.isWhitesMove = game.isWhitesMove();
-			engine.go("infinite", listener);
-			try {
-				Thread.sleep(5000);
-			} catch (InterruptedException ie) {
-			}
-			engine.stop();
-			while (!listener.isFinished()) {
-				try {
-					Thread.sleep(100);
-				} catch (Throwable t) {
+	/**
+	 * Appends the game and its puzzles to the output files and then marks it
+	 * completed. The original PGN is written if pgn is null.
+	 */
+	protected void writeGame(int gameIndex, String pgn, List<String> puzzles) throws IOException {
+		synchronized (outputLock) {
+			pgnWriter.write(pgn != null ? pgn : database.getPgn(gameIndex).trim());
+			pgnWriter.write("\n\n");
+			pgnWriter.flush();
+			if (puzzles != null && !puzzles.isEmpty()) {
+				for (String puzzle : puzzles) {
+					puzzleWriter.write(puzzle);
+					puzzleWriter.write("\n");
 				}
+				puzzleWriter.flush();
+				puzzlesFound.addAndGet(puzzles.size());
 			}
-			double finalScore = getScoreInPawns(listener.score, game.isWhitesMove());
-			if (listener.score.getMateInMoves() != 0
-					|| Math.abs(listener.bestScore - listener.worstScore) >= 2.0 && Math.abs(finalScore) >= 2.0) {
-				handleNewProblem(game, listener.bestLineFound);
-				break;
-			}
-			game.move(moveList.get(game.getHalfMoveCount()));
+			checkpoint.markCompleted(gameIndex);
+		}
+
+		int analyzed = gamesAnalyzed.incrementAndGet();
+		if (analyzed % PROGRESS_INTERVAL == 0) {
+			long elapsed = System.currentTimeMillis() - startTime;
+			log(checkpoint.getCompletedCount() + " of " + database.getGameCount() + " games completed, "
+					+ elapsed / analyzed + "ms per game, " + puzzlesFound + " puzzles found.");
 		}
 	}
 }
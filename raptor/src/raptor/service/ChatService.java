@@ -21,6 +21,7 @@ import raptor.chat.ChatEvent;
 import raptor.chat.ChatLogger;
 import raptor.connector.Connector;
 import raptor.pref.PreferenceKeys;
+import raptor.service.ThreadService.Subsystem;
 
 /**
  * A service which invokes chatEventOccured on added ChatListeners when a
@@ -94,29 +95,48 @@ public class ChatService {
 	 * Chat events are published asynchronously.
 	 */
 	public void publishChatEvent(final ChatEvent event) {
-		ThreadService.getInstance().run(new Runnable() {
+		publishChatEvents(new ChatEvent[] { event });
+	}
+
+	/**
+	 * Publishes the events asynchronously, in order, with a single task. Used
+	 * to publish all of the events parsed from one message together.
+	 */
+	public void publishChatEvents(final ChatEvent[] events) {
+		if (events.length == 0) {
+			return;
+		}
+		ThreadService.getInstance().run(Subsystem.NETWORK, new Runnable() {
 			public void run() {
-				if (listeners == null) {
-					return;
-				}
-				boolean wasHandled = false;
-				for (ChatListener listener : listeners) {
-					if (listener.isHandling(event)) {
-						listener.chatEventOccured(event);
-						wasHandled = true;
+				for (ChatEvent event : events) {
+					if (listeners == null) {
+						return;
 					}
-				}
+					// Each event is isolated so one failing listener does not
+					// drop the rest of the batch.
+					try {
+						boolean wasHandled = false;
+						for (ChatListener listener : listeners) {
+							if (listener.isHandling(event)) {
+								listener.chatEventOccured(event);
+								wasHandled = true;
+							}
+						}
 
-				if (!wasHandled || !Raptor.getInstance().getPreferences()
-						.getBoolean(PreferenceKeys.CHAT_REMOVE_SUB_TAB_MESSAGES_FROM_MAIN_TAB)) {
-					for (ChatListener listener : mainConsoleListeners) {
-						if (listener.isHandling(event)) {
-							listener.chatEventOccured(event);
-							wasHandled = true;
+						if (!wasHandled || !Raptor.getInstance().getPreferences()
+								.getBoolean(PreferenceKeys.CHAT_REMOVE_SUB_TAB_MESSAGES_FROM_MAIN_TAB)) {
+							for (ChatListener listener : mainConsoleListeners) {
+								if (listener.isHandling(event)) {
+									listener.chatEventOccured(event);
+									wasHandled = true;
+								}
+							}
 						}
+						logger.write(event);
+					} catch (Throwable t) {
+						Raptor.getInstance().onError("Error publishing " + event, t);
 					}
 				}
-				logger.write(event);
 			}
 		});
 	}
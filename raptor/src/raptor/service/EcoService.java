@@ -13,28 +13,26 @@
  */
 package raptor.service;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
-import org.apache.commons.lang.StringUtils;
-
-import raptor.chess.EcoInfo;
 import raptor.chess.Game;
 import raptor.chess.GameConstants;
 import raptor.chess.Variant;
-import raptor.chess.util.GameUtils;
+import raptor.chess.util.EcoIndex;
+import raptor.chess.util.ZobristUtils;
 import raptor.util.RaptorLogger;
-import raptor.util.RaptorStringTokenizer;
 
 /**
  * A singleton service which can be used to lookup the opening description and
  * ECO code of the current position in a game.
  * 
+ * Positions are looked up by the games zobrist hash in an EcoIndex. The index
+ * is memory mapped from scidECO.bin. If that file is missing or out of date
+ * it is rebuilt from scidECO.txt.
+ * 
  * Currently this service only supports Classic but hopefully others will
  * contribute files to match other variants (bug,zh,suicide,losers,etc).
  */
@@ -54,7 +52,7 @@ public class EcoService {
 		return singletonInstance;
 	}
 
-	private Map<Variant, Map<String, EcoInfo>> typeToFenToEco = new HashMap<Variant, Map<String, EcoInfo>>();
+	private Map<Variant, EcoIndex> typeToEcoIndex = new HashMap<Variant, EcoIndex>();
 
 	private EcoService() {
 		initClassic();
@@ -65,7 +63,7 @@ public class EcoService {
 	 * Disposes the EcoService.
 	 */
 	public void dispose() {
-		typeToFenToEco.clear();
+		typeToEcoIndex.clear();
 	}
 
 	/**
@@ -75,12 +73,11 @@ public class EcoService {
 	public String getEco(Game game) {
 		// Don't add debug messages in here. It gets called so often they are
 		// annoying and really slow it down.
-		Map<String, EcoInfo> map = typeToFenToEco.get(getAdjustedVariant(game));
-		if (map == null) {
+		EcoIndex index = typeToEcoIndex.get(getAdjustedVariant(game));
+		if (index == null) {
 			return null;
 		} else {
-			EcoInfo info = map.get(getFenKey(game, true));
-			return info == null ? null : info.getEcoCode();
+			return index.getEco(game.getZobristGameHash());
 		}
 	}
 
@@ -91,12 +88,11 @@ public class EcoService {
 	public String getLongDescription(Game game) {
 		// Don't add debug messages in here. It gets called so often they are
 		// annoying and really slow it down.
-		Map<String, EcoInfo> map = typeToFenToEco.get(getAdjustedVariant(game));
-		if (map == null) {
+		EcoIndex index = typeToEcoIndex.get(getAdjustedVariant(game));
+		if (index == null) {
 			return null;
 		} else {
-			EcoInfo info = map.get(getFenKey(game, false));
-			return info == null ? null : info.getOpening();
+			return index.getOpening(getKeyWithoutEp(game));
 		}
 	}
 
@@ -108,87 +104,51 @@ public class EcoService {
 		}
 	}
 
-	protected String getFenKey(Game game, boolean includeEP) {
-		return game.toFenPosition()
-				+ " "
-				+ (game.isWhitesMove() ? 'w' : 'b')
-				+ " "
-				+ game.getFenCastle()
-				+ " "
-				+ (includeEP ? game.getEpSquare() == GameConstants.EMPTY_SQUARE ? "-"
-						: GameUtils.getSan(game.getEpSquare())
-						: "-");
+	/**
+	 * Returns the zobrist game hash of the game as if it had no ep square.
+	 * Opening descriptions are looked up without the ep square.
+	 */
+	protected long getKeyWithoutEp(Game game) {
+		return game.getZobristPositionHash()
+				^ ZobristUtils.zobrist(game.getColorToMove(),
+						GameConstants.EMPTY_SQUARE, game
+								.getCastling(GameConstants.WHITE), game
+								.getCastling(GameConstants.BLACK));
 	}
 
 	private void initClassic() {
-		File file = new File(raptor.Raptor.RESOURCES_DIR + "scidECO.txt");
-		typeToFenToEco.put(Variant.classic, parse(file));
+		File textFile = new File(raptor.Raptor.RESOURCES_DIR + "scidECO.txt");
+		File binaryFile = new File(raptor.Raptor.RESOURCES_DIR + "scidECO.bin");
+		typeToEcoIndex.put(Variant.classic, load(textFile, binaryFile));
 	}
 
 	/**
-	 * Parses information from an idx file. These files contain FEN on one line
-	 * followed by a string on another line. The string can be either eco or
-	 * description.
-	 * 
-	 * @param file
-	 *            File containing the ECO information.
-	 * @throws IOException
-	 *             If something goes wrong during reading.
+	 * Memory maps the binary index if it is current, otherwise parses the text
+	 * file and tries to write the binary index for the next start up.
 	 */
-	private Map<String, EcoInfo> parse(File file) {
-		if (LOG.isDebugEnabled()) {
-			LOG.info("parse(" + file.getAbsolutePath() + ")");
-		}
+	private EcoIndex load(File textFile, File binaryFile) {
 		long startTime = System.currentTimeMillis();
-		Map<String, EcoInfo> result = new TreeMap<String, EcoInfo>();
-
-		BufferedReader reader = null;
-
 		try {
-			reader = new BufferedReader(new FileReader(file));
-			String currentLine = null;
-			StringBuilder fen = new StringBuilder();
-			while ((currentLine = reader.readLine()) != null) {
-				if (StringUtils.isNotBlank(currentLine)) {
-
-					RaptorStringTokenizer tok = new RaptorStringTokenizer(
-							currentLine, " ", true);
-					String eco = tok.nextToken();
-					StringBuilder description = new StringBuilder(tok.nextToken());
-
-					String lastToken = null;
-					while (!(lastToken = tok.nextToken()).contains("/")) {
-						description.append(" ");
-						description.append(lastToken);
-					}
-					fen.setLength(0);
-					fen.append(lastToken);
-					fen.append(" ");
-					fen.append(tok.nextToken());
-					fen.append(" ");
-					fen.append(tok.nextToken());
-					fen.append(" ");
-					fen.append(tok.nextToken());
-
-					result.put(fen.toString(), new EcoInfo(fen.toString(), eco, description.toString()));
-				}
-
-			}
-		} catch (IOException ioe) {
-			throw new RuntimeException(ioe);
-		} finally {
-			if (reader != null) {
+			EcoIndex result = EcoIndex.load(binaryFile);
+			if (result == null
+					|| result.getSourceLength() != textFile.length()) {
+				LOG.info("Building " + binaryFile.getAbsolutePath());
+				result = EcoIndex.parse(textFile);
 				try {
-					reader.close();
+					result.write(binaryFile);
 				} catch (IOException ioe) {
+					LOG.warn("Could not write " + binaryFile.getAbsolutePath(),
+							ioe);
 				}
 			}
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("load(" + binaryFile.getAbsolutePath()
+						+ ") executed in "
+						+ (System.currentTimeMillis() - startTime) + "ms");
+			}
+			return result;
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
 		}
-		if (LOG.isDebugEnabled()) {
-			LOG.info("parse( " + file.getAbsolutePath() + ") executed in "
-					+ (System.currentTimeMillis() - startTime) + "ms");
-		}
-
-		return result;
 	}
 }
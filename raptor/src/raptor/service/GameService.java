@@ -20,6 +20,8 @@ import java.util.List;
 
 import raptor.chess.Game;
 
+import raptor.util.LatencyTracker;
+
 /**
  * A class which manages active games that belong to a connector.
  */
@@ -511,6 +513,7 @@ public class GameService {
 	public void fireGameStateChanged(String gameId, boolean isNewMove) {
 		Game game = getGame(gameId);
 		if (game != null) {
+			LatencyTracker.record(LatencyTracker.Stage.GAME_EVENT, LatencyTracker.getReceivedNanos());
 			synchronized (listeners) {
 				for (GameServiceListener listener : listeners) {
 					listener.gameStateChanged(game, isNewMove);
@@ -22,6 +22,7 @@ import java.util.List;
 import raptor.Raptor;
 import raptor.pref.PreferenceKeys;
 import raptor.pref.RaptorPreferenceStore;
+import raptor.service.ThreadService.Subsystem;
 import raptor.sound.SoundPlayer;
 import raptor.sound.SoundUtils;
 import raptor.speech.Speech;
@@ -133,7 +134,7 @@ public class SoundService {
 	 */
 	public void play(final String pathToSound) {
 		if (Raptor.getInstance().getPreferences().getBoolean(PreferenceKeys.APP_SOUND_ENABLED) && soundPlayer != null) {
-			ThreadService.getInstance().run(new Runnable() {
+			ThreadService.getInstance().run(Subsystem.SOUND, new Runnable() {
 				public void run() {
 					soundPlayer.play(pathToSound);
 				}
@@ -147,7 +148,7 @@ public class SoundService {
 	 */
 	public void playBughouseSound(final String sound) {
 		if (Raptor.getInstance().getPreferences().getBoolean(PreferenceKeys.APP_SOUND_ENABLED) && soundPlayer != null) {
-			ThreadService.getInstance().run(new Runnable() {
+			ThreadService.getInstance().run(Subsystem.SOUND, new Runnable() {
 				public void run() {
 					soundPlayer.play(deriveBughouseSoundPath(sound));
 				}
@@ -161,7 +162,7 @@ public class SoundService {
 	 */
 	public void playSound(final String sound) {
 		if (Raptor.getInstance().getPreferences().getBoolean(PreferenceKeys.APP_SOUND_ENABLED) && soundPlayer != null) {
-			ThreadService.getInstance().run(new Runnable() {
+			ThreadService.getInstance().run(Subsystem.SOUND, new Runnable() {
 				public void run() {
 					soundPlayer.play(deriveSoundPath(sound));
 				}
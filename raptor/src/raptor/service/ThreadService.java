@@ -20,10 +20,18 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import raptor.Raptor;
 import raptor.util.RaptorLogger;
@@ -33,22 +41,260 @@ import raptor.util.RaptorLogger;
  * use this service. It contains lots of features, like showing errors to the
  * user and providing a thread dump when the pool runs out of threads.
  * 
+ * Work is split by Subsystem. Each subsystem has its own bounded executor,
+ * with its own thread priority and a policy for when its queue is full, so a
+ * flood of chat logging can never delay a move from being shown. Runnables
+ * passed without a subsystem run on the GENERAL executor.
+ * 
+ * Setting the raptor.virtualThreads system property on a JDK with virtual
+ * threads runs the executors which block, like ENGINE and SOUND, on virtual
+ * threads with much higher limits.
+ * 
  * This service provides exception handling, and pooling
  */
 public class ThreadService {
+	/**
+	 * What an executor does with a runnable when all of its threads are busy
+	 * and its queue is full.
+	 */
+	public static enum RejectionPolicy {
+		/**
+		 * The runnable is run on the submitting thread, which slows the
+		 * producer down to the rate the executor can keep up with.
+		 */
+		CALLER_RUNS,
+		/**
+		 * The runnable is dropped and counted as shed. Used for work which is
+		 * not worth queuing behind, like sounds.
+		 */
+		DISCARD,
+		/**
+		 * A thread dump is written and the error is shown to the user.
+		 */
+		REPORT
+	}
+
+	/**
+	 * The subsystems which have their own executor.
+	 */
+	public static enum Subsystem {
+		/** Work which has not been assigned to a subsystem. */
+		GENERAL("General", 20, 256, 1000, Thread.NORM_PRIORITY, RejectionPolicy.REPORT),
+		/** Parsing and publishing of messages received from a connector. */
+		NETWORK("Network", 4, 0, 2000, Thread.NORM_PRIORITY + 2, RejectionPolicy.CALLER_RUNS),
+		/** Moves and game updates. */
+		GAME("Game", 4, 0, 1000, Thread.MAX_PRIORITY - 1, RejectionPolicy.CALLER_RUNS),
+		/** Engines reading their output and starting or stopping analysis. */
+		ENGINE("Engine", 8, 256, 100, Thread.NORM_PRIORITY, RejectionPolicy.REPORT),
+		/**
+		 * Chat logging and other file I/O. A single thread so writes stay in
+		 * order.
+		 */
+		LOGGING("Logging", 1, 1, 2000, Thread.MIN_PRIORITY, RejectionPolicy.DISCARD),
+		/** Sounds and speech. */
+		SOUND("Sound", 2, 16, 20, Thread.NORM_PRIORITY - 1, RejectionPolicy.DISCARD);
+
+		private final String name;
+		private final int threads;
+		private final int virtualThreads;
+		private final int queueCapacity;
+		private final int priority;
+		private final RejectionPolicy rejectionPolicy;
+
+		private Subsystem(String name, int threads, int virtualThreads, int queueCapacity, int priority,
+				RejectionPolicy rejectionPolicy) {
+			this.name = name;
+			this.threads = threads;
+			this.virtualThreads = virtualThreads;
+			this.queueCapacity = queueCapacity;
+			this.priority = priority;
+			this.rejectionPolicy = rejectionPolicy;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public RejectionPolicy getRejectionPolicy() {
+			return rejectionPolicy;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		/**
+		 * Returns the thread limit used in virtual thread mode. 0 if the
+		 * subsystem always uses platform threads, as the CPU bound NETWORK
+		 * and GAME executors do since virtual threads ignore priorities.
+		 */
+		public int getVirtualThreads() {
+			return virtualThreads;
+		}
+	}
+
+	/**
+	 * A bounded executor for one subsystem. It keeps the metrics shown in the
+	 * profile dialog: how many runnables were submitted, completed, shed or
+	 * run on the caller, and how long they waited in the queue.
+	 */
+	public static final class SubsystemExecutor extends ThreadPoolExecutor {
+		protected Subsystem subsystem;
+		protected AtomicLong submittedCount = new AtomicLong();
+		protected AtomicLong shedCount = new AtomicLong();
+		protected AtomicLong callerRunsCount = new AtomicLong();
+		protected AtomicLong startedCount = new AtomicLong();
+		protected AtomicLong totalQueueNanos = new AtomicLong();
+		protected AtomicLong maxQueueNanos = new AtomicLong();
+		protected AtomicLong totalRunNanos = new AtomicLong();
+
+		protected SubsystemExecutor(final Subsystem subsystem, boolean isUsingVirtualThreads) {
+			super(subsystem.getThreads(), subsystem.getThreads(), 300, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(subsystem.getQueueCapacity()));
+			this.subsystem = subsystem;
+			allowCoreThreadTimeOut(true);
+
+			ThreadFactory virtualThreadFactory = null;
+			if (isUsingVirtualThreads && subsystem.getVirtualThreads() > 0) {
+				virtualThreadFactory = createVirtualThreadFactory("ThreadService " + subsystem.getName() + " ");
+			}
+
+			if (virtualThreadFactory != null) {
+				// A blocked virtual thread does not hold on to a platform
+				// thread, so many more of them can run at once.
+				setMaximumPoolSize(Math.max(subsystem.getVirtualThreads(), subsystem.getThreads()));
+				setCorePoolSize(getMaximumPoolSize());
+				setThreadFactory(virtualThreadFactory);
+			} else {
+				setThreadFactory(new ThreadFactory() {
+					private AtomicInteger threadNumber = new AtomicInteger();
+
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "ThreadService " + subsystem.getName() + " "
+								+ threadNumber.incrementAndGet());
+						thread.setPriority(subsystem.getPriority());
+						return thread;
+					}
+				});
+			}
+
+			setRejectedExecutionHandler(new RejectedExecutionHandler() {
+				public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("ThreadService has been disposed.");
+					}
+					switch (subsystem.getRejectionPolicy()) {
+					case CALLER_RUNS:
+						callerRunsCount.incrementAndGet();
+						runnable.run();
+						break;
+					case DISCARD:
+						shedCount.incrementAndGet();
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("Shedding runnable, the " + subsystem.getName() + " executor is full.");
+						}
+						break;
+					default:
+						shedCount.incrementAndGet();
+						throw new RejectedExecutionException("The " + subsystem.getName() + " executor is full.");
+					}
+				}
+			});
+		}
+
+		public long getAverageQueueMillis() {
+			long started = startedCount.get();
+			return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueNanos.get() / started);
+		}
+
+		public long getAverageRunMillis() {
+			long started = startedCount.get();
+			return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / started);
+		}
+
+		public long getCallerRunsCount() {
+			return callerRunsCount.get();
+		}
+
+		public long getMaxQueueMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maxQueueNanos.get());
+		}
+
+		public int getQueueDepth() {
+			return getQueue().size();
+		}
+
+		public long getShedCount() {
+			return shedCount.get();
+		}
+
+		public long getSubmittedCount() {
+			return submittedCount.get();
+		}
+
+		public Subsystem getSubsystem() {
+			return subsystem;
+		}
+
+		/**
+		 * Returns a one line summary of the metrics.
+		 */
+		public String getSummary() {
+			return subsystem.getName() + ": threads " + getActiveCount() + "/" + getPoolSize() + "/"
+					+ getMaximumPoolSize() + " queued " + getQueueDepth() + "/" + subsystem.getQueueCapacity()
+					+ " submitted " + getSubmittedCount() + " completed " + getCompletedTaskCount() + " shed "
+					+ getShedCount() + " caller ran " + getCallerRunsCount() + " wait avg/max "
+					+ getAverageQueueMillis() + "/" + getMaxQueueMillis() + "ms run avg " + getAverageRunMillis()
+					+ "ms";
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+			submittedCount.incrementAndGet();
+			super.execute(runnable);
+		}
+
+		protected void recordRun(long queueNanos, long runNanos) {
+			startedCount.incrementAndGet();
+			totalQueueNanos.addAndGet(queueNanos);
+			totalRunNanos.addAndGet(runNanos);
+			long max = maxQueueNanos.get();
+			while (queueNanos > max && !maxQueueNanos.compareAndSet(max, queueNanos)) {
+				max = maxQueueNanos.get();
+			}
+		}
+	}
+
 	protected static final class RunnableExceptionDecorator implements Runnable {
 		protected Runnable runnable;
+		protected SubsystemExecutor executor;
+		protected long queuedNanos;
 
-		public RunnableExceptionDecorator(Runnable runnable) {
+		public RunnableExceptionDecorator(Runnable runnable, SubsystemExecutor executor) {
 			this.runnable = runnable;
+			this.executor = executor;
+			queuedNanos = System.nanoTime();
 		}
 
 		public void run() {
 			if (runnable != null) {
+				long startNanos = System.nanoTime();
 				try {
 					runnable.run();
 				} catch (Throwable t) {
 					Raptor.getInstance().onError("Error in ThreadService Runnable.", t);
+				} finally {
+					if (executor != null) {
+						executor.recordRun(startNanos - queuedNanos, System.nanoTime() - startNanos);
+					}
 				}
 			} else {
 				LOG.error(
@@ -59,12 +305,37 @@ public class ThreadService {
 
 	}
 
-	private static final ThreadService instance = new ThreadService();
 	private static final RaptorLogger LOG = RaptorLogger.getLog(ThreadService.class);
+	private static final ThreadService instance = new ThreadService();
 
 	public static final String THREAD_DUMP_FILE_PATH = Raptor.USER_RAPTOR_HOME_PATH + "/logs/threaddump_"
 			+ System.currentTimeMillis() + ".txt";
 
+	/**
+	 * The system property which turns on virtual thread mode. It only has an
+	 * effect on a JDK with virtual threads, see the virtualThreads property in
+	 * build.xml.
+	 */
+	public static final String VIRTUAL_THREADS_PROPERTY = "raptor.virtualThreads";
+
+	/**
+	 * Returns a factory which creates virtual threads named prefix followed by
+	 * a counter, or null if this JDK does not have virtual threads. The
+	 * factory is looked up reflectively so Raptor still builds and runs on
+	 * older JDKs.
+	 */
+	public static ThreadFactory createVirtualThreadFactory(String prefix) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Throwable t) {
+			LOG.info("Virtual threads are not available, using platform threads. " + t);
+			return null;
+		}
+	}
+
 	public static ThreadService getInstance() {
 		return instance;
 	}
@@ -105,24 +376,102 @@ public class ThreadService {
 		}
 	}
 
-	ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(20);
+	protected Map<Subsystem, SubsystemExecutor> executors = new EnumMap<Subsystem, SubsystemExecutor>(
+			Subsystem.class);
+
+	/**
+	 * Only waits for delays. When a scheduled runnable is due it is handed to
+	 * the executor of its subsystem.
+	 */
+	protected ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "ThreadService Scheduler");
+			thread.setPriority(Thread.MAX_PRIORITY - 1);
+			return thread;
+		}
+	});
+
+	/**
+	 * Creates the threads returned by newBlockingThread in virtual thread
+	 * mode.
+	 */
+	protected ThreadFactory blockingThreadFactory;
 
 	protected boolean isDisposed = false;
 
+	protected boolean isUsingVirtualThreads = false;
+
 	private ThreadService() {
-		executor.setCorePoolSize(25);
-		// executor.setMaximumPoolSize(50);
-		executor.setKeepAliveTime(300, TimeUnit.SECONDS);
-		executor.prestartAllCoreThreads();
+		if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+			blockingThreadFactory = createVirtualThreadFactory("ThreadService Blocking ");
+			isUsingVirtualThreads = blockingThreadFactory != null;
+			if (isUsingVirtualThreads) {
+				LOG.info("ThreadService is using virtual threads.");
+			}
+		}
+
+		for (Subsystem subsystem : Subsystem.values()) {
+			executors.put(subsystem, new SubsystemExecutor(subsystem, isUsingVirtualThreads));
+		}
+		scheduler.setKeepAliveTime(300, TimeUnit.SECONDS);
 	}
 
 	public void dispose() {
-		executor.shutdownNow();
 		isDisposed = true;
+		scheduler.shutdownNow();
+		for (SubsystemExecutor executor : executors.values()) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the executor used for runnables without a subsystem.
+	 */
+	public ThreadPoolExecutor getExecutor() {
+		return getExecutor(Subsystem.GENERAL);
+	}
+
+	public SubsystemExecutor getExecutor(Subsystem subsystem) {
+		return executors.get(subsystem);
 	}
 
-	public ScheduledThreadPoolExecutor getExecutor() {
-		return executor;
+	/**
+	 * Returns the metrics of every executor, one line each.
+	 */
+	public String getMetricsSummary() {
+		StringBuilder result = new StringBuilder(500);
+		for (SubsystemExecutor executor : executors.values()) {
+			if (result.length() > 0) {
+				result.append("\n");
+			}
+			result.append(executor.getSummary());
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns true if virtual thread mode was requested with
+	 * VIRTUAL_THREADS_PROPERTY and the JDK supports it.
+	 */
+	public boolean isUsingVirtualThreads() {
+		return isUsingVirtualThreads;
+	}
+
+	/**
+	 * Creates, but does not start, a thread for a runnable which blocks for
+	 * its whole lifetime, like a socket read loop. In virtual thread mode it
+	 * is a virtual thread, otherwise a daemon platform thread.
+	 */
+	public Thread newBlockingThread(String name, Runnable runnable) {
+		Thread thread = null;
+		if (blockingThreadFactory != null) {
+			thread = blockingThreadFactory.newThread(runnable);
+			thread.setName(name);
+		} else {
+			thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+		}
+		return thread;
 	}
 
 	/**
@@ -130,16 +479,25 @@ public class ThreadService {
 	 * and displayed if they occur.
 	 */
 	public void run(Runnable runnable) {
+		run(Subsystem.GENERAL, runnable);
+	}
+
+	/**
+	 * Executes a runnable asynch on the executor of the specified subsystem.
+	 * Exceptions are monitored and displayed if they occur. If the executor is
+	 * full its RejectionPolicy is applied.
+	 */
+	public void run(Subsystem subsystem, Runnable runnable) {
 		if (!Raptor.getInstance().isDisposed() && !isDisposed) {
+			SubsystemExecutor executor = executors.get(subsystem);
 			try {
-				executor.execute(new RunnableExceptionDecorator(runnable));
+				executor.execute(new RunnableExceptionDecorator(runnable, executor));
 			} catch (RejectedExecutionException rej) {
-				if (!Raptor.getInstance().isDisposed()) {
+				if (!Raptor.getInstance().isDisposed() && !isDisposed) {
 					LOG.error("Error executing runnable: ", rej);
 					threadDump();
-					Raptor.getInstance().onError(
-							"ThreadServie has no more threads. A thread dump can be found at " + THREAD_DUMP_FILE_PATH,
-							rej);
+					Raptor.getInstance().onError("ThreadServie has no more " + subsystem.getName()
+							+ " threads. A thread dump can be found at " + THREAD_DUMP_FILE_PATH, rej);
 				}
 			}
 		} else {
@@ -159,9 +517,31 @@ public class ThreadService {
 	 *         Runnable or if execution was vetoed.
 	 */
 	public Future<?> scheduleOneShot(long delay, Runnable runnable) {
+		return scheduleOneShot(Subsystem.GENERAL, delay, runnable);
+	}
+
+	/**
+	 * Runs the runnable one time after a delay on the executor of the
+	 * specified subsystem. Cancelling the returned Future before the delay
+	 * expires stops the runnable from being run.
+	 * 
+	 * @param subsystem
+	 *            The subsystem whose executor runs the runnable.
+	 * @param delay
+	 *            Delay in milliseconds
+	 * @param runnable
+	 *            The runnable.
+	 * @return The Future, may return null if there was an error scheduling the
+	 *         Runnable or if execution was vetoed.
+	 */
+	public Future<?> scheduleOneShot(final Subsystem subsystem, long delay, final Runnable runnable) {
 		if (!Raptor.getInstance().isDisposed() && !isDisposed) {
 			try {
-				return executor.schedule(new RunnableExceptionDecorator(runnable), delay, TimeUnit.MILLISECONDS);
+				return scheduler.schedule(new Runnable() {
+					public void run() {
+						ThreadService.this.run(subsystem, runnable);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
 			} catch (RejectedExecutionException rej) {
 				if (!Raptor.getInstance().isDisposed()) {
 					LOG.error("Error executing runnable in scheduleOneShot: ", rej);
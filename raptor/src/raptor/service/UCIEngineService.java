@@ -14,14 +14,40 @@
 package raptor.service;
 
 import java.io.File;
+import java.io.IOException;
 
+import raptor.Raptor;
+import raptor.engine.uci.UCIAnalysisCache;
 import raptor.engine.uci.UCIEngine;
+import raptor.engine.uci.UCIEnginePool;
+import raptor.pref.PreferenceKeys;
 import raptor.util.OSUtils;
 import raptor.util.RaptorLogger;
 
+/**
+ * Provides the configured UCI engine and leases running copies of it from a
+ * UCIEnginePool, so an engine process is started once and reused. Also holds
+ * the UCIAnalysisCache shared by every analysis widget.
+ */
 public class UCIEngineService {
-	@SuppressWarnings("unused")
 	private static final RaptorLogger LOG = RaptorLogger.getLog(UCIEngineService.class);
+
+	/**
+	 * The most engines kept running while nothing is using them.
+	 */
+	public static final int MAX_IDLE_ENGINES = 2;
+
+	/**
+	 * How long leaseEngine() waits for search threads to become available.
+	 */
+	public static final long LEASE_TIMEOUT = 10000;
+
+	/**
+	 * Where the analysis cache is saved when
+	 * STOCKFISH_ANALYSIS_CACHE_PERSIST is set.
+	 */
+	public static final String ANALYSIS_CACHE_FILE = Raptor.USER_RAPTOR_HOME_PATH + "/cache/analysis.cache";
+
 	public static boolean serviceCreated = false;
 	public static UCIEngineService singletonInstance;
 
@@ -30,17 +56,55 @@ public class UCIEngineService {
 			return singletonInstance;
 
 		singletonInstance = new UCIEngineService();
+		serviceCreated = true;
 		return singletonInstance;
 	}
 
-	protected UCIEngine engine;
+	protected volatile UCIEngine engine;
+	protected volatile UCIAnalysisCache analysisCache;
+	protected File analysisCacheFile;
+	protected UCIEnginePool pool = new UCIEnginePool(Runtime.getRuntime().availableProcessors(), MAX_IDLE_ENGINES);
 
 	private UCIEngineService() {
 	}
 
 	public void dispose() {
-		if (engine != null)
-			engine.quit();
+		pool.dispose();
+		if (analysisCache != null && analysisCacheFile != null) {
+			try {
+				analysisCache.save(analysisCacheFile);
+			} catch (IOException ioe) {
+				LOG.warn("Error saving analysis cache " + analysisCacheFile, ioe);
+			}
+		}
+	}
+
+	/**
+	 * Returns the analysis cache, creating it with the size in the
+	 * preferences. If STOCKFISH_ANALYSIS_CACHE_PERSIST is set the cache saved
+	 * by the last session is loaded, and the cache is saved on dispose.
+	 */
+	public UCIAnalysisCache getAnalysisCache() {
+		if (analysisCache == null)
+			synchronized (this) {
+				if (analysisCache == null) {
+					UCIAnalysisCache newCache = new UCIAnalysisCache(Raptor.getInstance().getPreferences()
+							.getInt(PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_SIZE) * 1024L * 1024L);
+					if (Raptor.getInstance().getPreferences().getBoolean(
+							PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_PERSIST)) {
+						analysisCacheFile = new File(ANALYSIS_CACHE_FILE);
+						if (analysisCacheFile.exists()) {
+							try {
+								newCache.load(analysisCacheFile);
+							} catch (IOException ioe) {
+								LOG.warn("Error loading analysis cache " + analysisCacheFile, ioe);
+							}
+						}
+					}
+					analysisCache = newCache;
+				}
+			}
+		return analysisCache;
 	}
 
 	public UCIEngine getEngine() {
@@ -48,18 +112,50 @@ public class UCIEngineService {
 			synchronized (this) {
 				if (engine == null) {
 
-					UCIEngine engine = new UCIEngine();
-					engine.setDefault(true);
-					engine.setUserName("Stockfish 7");
-					engine.setSupportsFischerRandom(true);
-					engine.setMultiplyBlackScoreByMinus1(true);
-					engine.setProcessPath(getProcessorPath());
-					return engine;
+					UCIEngine newEngine = new UCIEngine();
+					newEngine.setDefault(true);
+					newEngine.setUserName("Stockfish 7");
+					newEngine.setSupportsFischerRandom(true);
+					newEngine.setMultiplyBlackScoreByMinus1(true);
+					newEngine.setProcessPath(getProcessorPath());
+					engine = newEngine;
 				}
 			}
 		return engine;
 	}
 
+	public UCIEnginePool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Leases a connected copy of the default engine using one search thread.
+	 * Returns null if none could be leased within LEASE_TIMEOUT.
+	 */
+	public UCIEngine leaseEngine() {
+		return leaseEngine(getEngine(), 1, LEASE_TIMEOUT);
+	}
+
+	/**
+	 * Leases a connected engine. See UCIEnginePool.lease.
+	 */
+	public UCIEngine leaseEngine(UCIEngine configuration, int threads, long timeoutMillis) {
+		UCIEngine result = pool.lease(configuration, threads, timeoutMillis);
+		if (result == null) {
+			LOG.warn("Could not lease engine " + configuration + " " + pool.getSummary());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a leased engine to the pool.
+	 */
+	public void releaseEngine(UCIEngine engine) {
+		if (engine != null) {
+			pool.release(engine);
+		}
+	}
+
 	private String getProcessorPath() {
 		String result = null;
 
@@ -21,6 +21,7 @@ import org.apache.commons.lang.StringUtils;
 import raptor.Raptor;
 import raptor.pref.PreferenceKeys;
 import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
 
 public class ProcessSpeech implements Speech {
 	protected Queue<String> speakQueue;
@@ -43,7 +44,7 @@ public class ProcessSpeech implements Speech {
 			return;
 
 		speakQueue.add(text);
-		ThreadService.getInstance().run(new Runnable() {
+		ThreadService.getInstance().run(Subsystem.SOUND, new Runnable() {
 			public void run() {
 				synchronized (ProcessSpeech.this) {
 					try {
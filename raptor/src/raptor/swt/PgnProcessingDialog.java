@@ -15,6 +15,7 @@ package raptor.swt;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.swt.SWT;
@@ -33,7 +34,9 @@ import org.eclipse.swt.widgets.ProgressBar;
 import org.eclipse.swt.widgets.Shell;
 
 import raptor.Raptor;
-import raptor.chess.Game;
+import raptor.chess.Result;
+import raptor.chess.Variant;
+import raptor.chess.pgn.HeaderOnlyPgnParserListener;
 import raptor.chess.pgn.LenientPgnParserListener;
 import raptor.chess.pgn.PgnHeader;
 import raptor.chess.pgn.PgnParserError;
@@ -47,7 +50,11 @@ import raptor.util.RaptorLogger;
 import raptor.util.RaptorRunnable;
 
 public class PgnProcessingDialog extends Dialog {
-	public class ProfressPgnParserListener extends LenientPgnParserListener {
+	/**
+	 * Builds the rows of the games table from the headers of each game. The
+	 * moves are not replayed, so no parse errors are reported.
+	 */
+	public class ProfressPgnParserListener extends HeaderOnlyPgnParserListener {
 		private ArrayList<PgnParserError> errors = new ArrayList<PgnParserError>();
 
 		private ArrayList<PgnParseResultsRow> rows = new ArrayList<PgnParseResultsRow>();
@@ -57,33 +64,28 @@ public class PgnProcessingDialog extends Dialog {
 		}
 
 		@Override
-		public void errorEncountered(PgnParserError error) {
+		public boolean headersParsed(Map<String, String> headers, Result result, final int lineNumber) {
 			if (isClosed) {
 				throw new RuntimeException("Closed");
 			} else {
+				String variant = headers.get(PgnHeader.Variant.name());
+				if (variant == null && LenientPgnParserListener.getVariant(headers) != Variant.classic) {
+					variant = LenientPgnParserListener.getVariant(headers).toString();
+				}
 
-				errors.add(error);
-			}
-		}
-
-		@Override
-		public boolean gameParsed(Game game, final int lineNumber) {
-			if (isClosed) {
-				throw new RuntimeException("Closed");
-			} else {
 				PgnParseResultsRow row = new PgnParseResultsRow();
-				row.setVariant(StringUtils.defaultString(game.getHeader(PgnHeader.Variant), "?"));
-				row.setDate(StringUtils.defaultString(game.getHeader(PgnHeader.Date), "?"));
-				row.setEvent(StringUtils.defaultString(game.getHeader(PgnHeader.Event), "?"));
-				row.setWhite(StringUtils.defaultString(game.getHeader(PgnHeader.White), "?"));
-				row.setWhiteElo(StringUtils.defaultString(game.getHeader(PgnHeader.WhiteElo), "?"));
-				row.setBlack(StringUtils.defaultString(game.getHeader(PgnHeader.Black), "?"));
-				row.setBlackElo(StringUtils.defaultString(game.getHeader(PgnHeader.BlackElo), "?"));
-				row.setResultDescription(StringUtils.defaultString(game.getHeader(PgnHeader.Result), "?"));
-				row.setEco(StringUtils.defaultString(game.getHeader(PgnHeader.ECO), "?"));
-				row.setOpening(StringUtils.defaultString(game.getHeader(PgnHeader.Opening), "?"));
+				row.setVariant(StringUtils.defaultString(variant, "?"));
+				row.setDate(StringUtils.defaultString(headers.get(PgnHeader.Date.name()), "?"));
+				row.setEvent(StringUtils.defaultString(headers.get(PgnHeader.Event.name()), "?"));
+				row.setWhite(StringUtils.defaultString(headers.get(PgnHeader.White.name()), "?"));
+				row.setWhiteElo(StringUtils.defaultString(headers.get(PgnHeader.WhiteElo.name()), "?"));
+				row.setBlack(StringUtils.defaultString(headers.get(PgnHeader.Black.name()), "?"));
+				row.setBlackElo(StringUtils.defaultString(headers.get(PgnHeader.BlackElo.name()), "?"));
+				row.setResultDescription(result.getDescription());
+				row.setEco(StringUtils.defaultString(headers.get(PgnHeader.ECO.name()), "?"));
+				row.setOpening(StringUtils.defaultString(headers.get(PgnHeader.Opening.name()), "?"));
 				row.setLineNumber(lineNumber);
-				row.setResult(game.getResult());
+				row.setResult(result);
 				rows.add(row);
 
 				if (rows.size() % 20 == 0) {
@@ -152,12 +154,15 @@ public class PgnProcessingDialog extends Dialog {
 		ThreadService.getInstance().scheduleOneShot(250, new Runnable() {
 			public void run() {
 				// FileReader reader = null;
-				LenientPgnParserListener listener = null;
+				ProfressPgnParserListener listener = null;
 				StreamingPgnParser parser = null;
 				try {
 
 					// start work
+					// Only the headers are shown, so the moves are skipped
+					// which makes the listing I/O bound.
 					parser = new StreamingPgnParser(file, MAX_BYTES_IN_FILE);
+					parser.setHeaderOnly(true);
 					listener = new ProfressPgnParserListener();
 
 					parser.addPgnParserListener(listener);
@@ -177,8 +182,8 @@ public class PgnProcessingDialog extends Dialog {
 					});
 
 					PgnParseResultsWindowItem windowItem = new PgnParseResultsWindowItem(file.getName(),
-							((ProfressPgnParserListener) listener).getErrors(),
-							((ProfressPgnParserListener) listener).getGames(), file.getAbsolutePath());
+							listener.getErrors(),
+							listener.getGames(), file.getAbsolutePath());
 					Raptor.getInstance().getWindow().addRaptorWindowItem(windowItem);
 
 				} catch (Throwable t) {
@@ -33,6 +33,8 @@ import org.eclipse.swt.widgets.Shell;
 import raptor.Raptor;
 import raptor.international.L10n;
 import raptor.service.ThreadService;
+import raptor.service.UCIEngineService;
+import raptor.util.LatencyTracker;
 import raptor.util.RaptorStringUtils;
 
 /**
@@ -43,7 +45,7 @@ public class ProfileDialog extends Dialog {
 
 	private Label heapm, heap1, heap2, heap3, heap4, stackm, stack1, stack2,
 			stack3, stack4, threadsm, threads1, threads2, threads3, threads4,
-			threads5, image1;
+			threads5, threads6, latency1, engines1, image1;
 	protected static L10n local = L10n.getInstance();
 
 	public ProfileDialog() {
@@ -141,6 +143,16 @@ public class ProfileDialog extends Dialog {
 				+ "/"
 				+ ThreadService.getInstance().getExecutor()
 						.getCompletedTaskCount());
+		threads6 = new Label(composite, SWT.NONE);
+		threads6.setText(ThreadService.getInstance().getMetricsSummary());
+		if (LatencyTracker.isEnabled()) {
+			latency1 = new Label(composite, SWT.NONE);
+			latency1.setText(LatencyTracker.getSummary());
+		}
+		if (UCIEngineService.serviceCreated) {
+			engines1 = new Label(composite, SWT.NONE);
+			engines1.setText(UCIEngineService.getInstance().getPool().getSummary());
+		}
 
 		image1 = new Label(composite, SWT.NONE);
 		image1.setText(local.getString("profileDialog15")
@@ -220,6 +232,15 @@ public class ProfileDialog extends Dialog {
 								+ "/"
 								+ ThreadService.getInstance().getExecutor()
 										.getCompletedTaskCount());
+						threads6.setText(ThreadService.getInstance()
+								.getMetricsSummary());
+						if (latency1 != null) {
+							latency1.setText(LatencyTracker.getSummary());
+						}
+						if (engines1 != null) {
+							engines1.setText(UCIEngineService.getInstance()
+									.getPool().getSummary());
+						}
 						image1.setText(local.getString("profileDialog15")
 								+ Raptor.getInstance().getImageRegistry()
 										.getSize()
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -106,18 +107,40 @@ public abstract class ChatConsoleController implements PreferenceKeys {
 	protected ChatConsole chatConsole;
 	protected Queue<ChatEvent> chatEventQueue = new ConcurrentLinkedQueue<ChatEvent>();
 
+	/**
+	 * Events waiting to be shown. They are drained by a single asyncExec, so
+	 * a burst of events costs one runnable on the SWT queue rather than one
+	 * each.
+	 */
+	protected Queue<ChatEvent> pendingChatEvents = new ConcurrentLinkedQueue<ChatEvent>();
+	protected AtomicBoolean isPendingChatEventsScheduled = new AtomicBoolean(false);
+
 	protected ChatListener chatServiceListener = new ChatListener() {
 		public void chatEventOccured(final ChatEvent event) {
 			if (!isDisposed && chatConsole != null && !chatConsole.isDisposed()) {
 				if (event.getType() == ChatType.CHANNEL_TELL)
 					chatEventQueue.add(event);
 
-				chatConsole.getDisplay().asyncExec(new RaptorRunnable(getConnector()) {
-					@Override
-					public void execute() {
-						onChatEvent(event);
-					}
-				});
+				pendingChatEvents.add(event);
+				if (isPendingChatEventsScheduled.compareAndSet(false, true)) {
+					chatConsole.getDisplay().asyncExec(new RaptorRunnable(getConnector()) {
+						@Override
+						public void execute() {
+							// Cleared first so an event added while draining
+							// schedules another runnable instead of being
+							// stranded.
+							isPendingChatEventsScheduled.set(false);
+							ChatEvent pendingEvent = null;
+							while ((pendingEvent = pendingChatEvents.poll()) != null) {
+								try {
+									onChatEvent(pendingEvent);
+								} catch (Throwable t) {
+									getConnector().onError("Error in onChatEvent", t);
+								}
+							}
+						}
+					});
+				}
 			} else {
 				eventsWhileBeingReparented.add(event);
 			}
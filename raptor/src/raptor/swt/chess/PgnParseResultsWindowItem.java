@@ -45,6 +45,7 @@ import raptor.RaptorWindowItem;
 import raptor.chess.Game;
 import raptor.chess.Result;
 import raptor.chess.pgn.LenientPgnParserListener;
+import raptor.chess.pgn.PgnDatabase;
 import raptor.chess.pgn.PgnHeader;
 import raptor.chess.pgn.PgnParserError;
 import raptor.chess.pgn.StreamingPgnParser;
@@ -75,6 +76,7 @@ public class PgnParseResultsWindowItem implements RaptorWindowItem {
 	protected String title;
 	protected boolean isPassive;
 	protected String pathToFile;
+	protected PgnDatabase database;
 
 	protected static L10n local = L10n.getInstance();
 
@@ -108,6 +110,10 @@ public class PgnParseResultsWindowItem implements RaptorWindowItem {
 			gameRows.clear();
 			gameRows = null;
 		}
+		if (database != null) {
+			database.close();
+			database = null;
+		}
 		if (composite != null && !composite.isDisposed()) {
 			composite.dispose();
 		}
@@ -365,6 +371,20 @@ public class PgnParseResultsWindowItem implements RaptorWindowItem {
 	}
 
 	protected Game loadGame(int lineNumber) {
+		try {
+			if (database == null) {
+				database = PgnDatabase.open(new File(pathToFile));
+			}
+			int gameIndex = database.getGameIndexAtLine(lineNumber);
+			if (gameIndex != -1 && database.getLineNumber(gameIndex) == lineNumber) {
+				return database.getGame(gameIndex);
+			}
+		} catch (Throwable t) {
+			LOG.warn("Error loading game from the pgn index of " + pathToFile, t);
+		}
+
+		// The index did not find a game starting on the line, so fall back to
+		// reading up to it.
 		try {
 			StreamingPgnParser parser = new StreamingPgnParser(new File(pathToFile), Integer.MAX_VALUE);
 			parser.jumpToLine(lineNumber);
@@ -381,6 +401,7 @@ public class PgnParseResultsWindowItem implements RaptorWindowItem {
 				}
 			});
 			parser.parse();
+			parser.close();
 
 			return gameList.size() == 0 ? null : gameList.get(0);
 
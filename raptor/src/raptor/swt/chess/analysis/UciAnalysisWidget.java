@@ -46,21 +46,15 @@ import raptor.chess.Game;
 import raptor.chess.Move;
 import raptor.chess.Variant;
 import raptor.chess.util.GameUtils;
-import raptor.engine.uci.UCIBestMove;
+import raptor.engine.uci.UCIAnalysisAggregator;
+import raptor.engine.uci.UCIAnalysisCache;
 import raptor.engine.uci.UCIEngine;
-import raptor.engine.uci.UCIInfo;
-import raptor.engine.uci.UCIInfoListener;
-import raptor.engine.uci.UCIMove;
-import raptor.engine.uci.info.BestLineFoundInfo;
-import raptor.engine.uci.info.DepthInfo;
-import raptor.engine.uci.info.MultiPV;
-import raptor.engine.uci.info.NodesPerSecondInfo;
-import raptor.engine.uci.info.ScoreInfo;
-import raptor.engine.uci.info.TimeInfo;
+import raptor.engine.uci.UCIInfoSnapshot;
 import raptor.engine.uci.options.UCICheck;
 import raptor.international.L10n;
 import raptor.pref.PreferenceKeys;
 import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
 import raptor.service.UCIEngineService;
 import raptor.swt.RaptorTable;
 import raptor.swt.RaptorTable.RaptorTableAdapter;
@@ -76,6 +70,7 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 	protected ChessBoardController controller;
 	protected Composite composite, topLine;
 	protected UCIEngine engine;
+	protected UCIEngine leasedEngine;
 	protected Label depthHeaderLabel;
 	protected Label depthLabel;
 	protected Label timeHeaderLabel;
@@ -91,156 +86,44 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 	protected static L10n local = L10n.getInstance();
 	protected Object engineLock = new Object();
 
-	protected UCIInfoListener listener = new UCIInfoListener() {
-		public void engineSentBestMove(UCIBestMove uciBestMove) {
-		}
-
-		public void engineSentInfo(final UCIInfo[] infos) {
-			if (engine.isConnected() && !ignoreUciInfo) {
+	/**
+	 * The most MultiPV lines shown, the largest STOCKFISH_MOVES_TO_SUGGEST.
+	 */
+	protected static final int MAX_LINES = 8;
+
+	protected UCIInfoSnapshot[] lineRecords = new UCIInfoSnapshot[MAX_LINES];
+	protected boolean[] changedLines = new boolean[MAX_LINES];
+	protected UCIInfoSnapshot statusRecord = new UCIInfoSnapshot();
+
+	/**
+	 * The depth of the cached line shown in each row. A line from the engine
+	 * replaces it once it is at least as deep.
+	 */
+	protected int[] cachedDepths = new int[MAX_LINES];
+
+	/**
+	 * Collects the engine's info lines and invokes the updater at most
+	 * STOCKFISH_ANALYSIS_UPDATES_PER_SECOND times a second, so a fast engine
+	 * with several lines can not flood the display thread.
+	 */
+	protected UCIAnalysisAggregator aggregator = new UCIAnalysisAggregator(new Runnable() {
+		public void run() {
+			if (!ignoreUciInfo) {
 				Raptor.getInstance().getDisplay().asyncExec(new RaptorRunnable(controller.getConnector()) {
 					@Override
 					public void execute() {
-						int multiPv = -1;
-						String score = null;
-						String time = null;
-						String depth = null;
-						String nps = null;
-						String pv = null;
-						String bestMove = null;
-
-						for (UCIInfo info : infos) {
-							if (info instanceof ScoreInfo) {
-								ScoreInfo scoreInfo = (ScoreInfo) info;
-								if (((ScoreInfo) info).getMateInMoves() != 0) {
-									score = "Mate in " + scoreInfo.getMateInMoves();
-								} else if (scoreInfo.isLowerBoundScore()) {
-									score = "Calibrating";
-								} else if (scoreInfo.isUpperBoundScore()) {
-									score = "Calibrating";
-								} else {
-									double scoreAsDouble = controller.getGame().isWhitesMove()
-											|| !engine.isMultiplyBlackScoreByMinus1()
-													? scoreInfo.getValueInCentipawns() / 100.0
-													: -scoreInfo.getValueInCentipawns() / 100.0;
-
-									score = "" + new BigDecimal(scoreAsDouble).setScale(2, BigDecimal.ROUND_HALF_UP)
-											.toString();
-								}
-							} else if (info instanceof DepthInfo) {
-								DepthInfo depthInfo = (DepthInfo) info;
-								depth = "" + depthInfo.getSearchDepthPlies();
-							} else if (info instanceof NodesPerSecondInfo) {
-								NodesPerSecondInfo nodesPerSecInfo = (NodesPerSecondInfo) info;
-								nps = DECIMAL_FORMAT.format(nodesPerSecInfo.getNodesPerSecond());
-							} else if (info instanceof TimeInfo) {
-								TimeInfo timeInfo = (TimeInfo) info;
-								time = new BigDecimal(timeInfo.getTimeMillis() / 1000.0)
-										.setScale(1, BigDecimal.ROUND_HALF_UP).toString();
-							} else if (info instanceof BestLineFoundInfo) {
-								BestLineFoundInfo bestLineFoundInfo = (BestLineFoundInfo) info;
-								StringBuilder line = new StringBuilder(100);
-								Game gameClone = controller.getGame().deepCopy(true);
-								gameClone.addState(Game.UPDATING_SAN_STATE);
-								gameClone.clearState(Game.UPDATING_ECO_HEADERS_STATE);
-
-								boolean isFirstMove = true;
-
-								for (UCIMove move : bestLineFoundInfo.getMoves()) {
-									try {
-										Move gameMove = null;
-
-										if (move.isPromotion()) {
-											gameMove = gameClone.makeMove(move.getStartSquare(), move.getEndSquare(),
-													move.getPromotedPiece());
-										} else {
-											gameMove = gameClone.makeMove(move.getStartSquare(), move.getEndSquare());
-										}
-
-										String san = GameUtils.convertSanToUseUnicode(gameMove.getSan(),
-												gameMove.isWhitesMove());
-										String moveNumber = isFirstMove && !gameMove.isWhitesMove()
-												? gameMove.getFullMoveCount() + ") ... "
-												: gameMove.isWhitesMove() ? gameMove.getFullMoveCount() + ") " : "";
-										line.append((line.equals("") ? "" : " ") + moveNumber + san
-												+ (gameClone.isInCheck() ? "+" : "")
-												+ (gameClone.isCheckmate() ? "#" : ""));
-										if (isFirstMove) {
-											bestMove = moveNumber + san + (gameClone.isInCheck() ? "+" : "")
-													+ (gameClone.isCheckmate() ? "#" : "");
-										}
-										isFirstMove = false;
-									} catch (Throwable t) {
-										if (LOG.isInfoEnabled()) {
-											LOG.info(
-													"Illegal line found skipping line (This can occur if the position was "
-															+ "changing when the analysis line was being calculated).",
-													t);
-										}
-										break;
-									}
-								}
-								pv = line.toString();
-							} else if (info instanceof MultiPV) {
-								MultiPV multiPvInfo = (MultiPV) info;
-								multiPv = multiPvInfo.getId();
-							}
-						}
-
-						if (!ignoreUciInfo && score != null && multiPv != -1) {
-							final String finalScore = score;
-							final String finalTime = time;
-							final String finalDepth = depth;
-							final String finalNodes = nps;
-							final String finalPV = pv;
-							final String finalBestMove = bestMove;
-							final int finalMultiPv = multiPv;
-
-							Raptor.getInstance().getDisplay().asyncExec(new RaptorRunnable(controller.getConnector()) {
-								@Override
-								public void execute() {
-									if (composite.isDisposed()) {
-										return;
-									}
-
-									if (bestMoves.getRowCount() == 0) {
-										String[][] data = new String[Raptor.getInstance().getPreferences()
-												.getInt(PreferenceKeys.STOCKFISH_MOVES_TO_SUGGEST)][6];
-										for (int i = 0; i < data.length; i++)
-											for (int j = 0; j < data[i].length; j++)
-												data[i][j] = "";
-										bestMoves.refreshTable(data);
-									}
-
-									int row = finalMultiPv - 1;
-
-									if (StringUtils.isNotBlank(finalScore)) {
-										bestMoves.setText(row, 0, finalScore);
-									}
-									if (StringUtils.isNotBlank(finalPV)) {
-										bestMoves.setText(row, 1, finalPV);
-									}
-									if (StringUtils.isNotBlank(finalDepth)) {
-										depthLabel.setText(finalDepth);
-									}
-									if (StringUtils.isNotBlank(finalTime)) {
-										timeLabel.setText(finalTime);
-									}
-									if (StringUtils.isNotBlank(finalNodes)) {
-										nodesLabel.setText(finalNodes);
-									}
-									if (row == 0 && StringUtils.isNotBlank(finalBestMove)) {
-										bestMoveLabel.setText(finalBestMove);
-									}
-
-									topLine.layout();
-								}
-							});
-						}
+						showAnalysis();
 					}
 				});
 			}
 		}
-	};
+	}, Raptor.getInstance().getPreferences().getInt(PreferenceKeys.STOCKFISH_ANALYSIS_UPDATES_PER_SECOND), MAX_LINES);
+
+	{
+		for (int i = 0; i < MAX_LINES; i++) {
+			lineRecords[i] = new UCIInfoSnapshot();
+		}
+	}
 
 	public void clear() {
 		Raptor.getInstance().getDisplay().asyncExec(new RaptorRunnable(controller.getConnector()) {
@@ -257,10 +140,12 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 
 		composite.addDisposeListener(new DisposeListener() {
 			public void widgetDisposed(DisposeEvent e) {
-				if (engine != null) {
-					ignoreUciInfo = true;
-					engine.quit();
-				}
+				ignoreUciInfo = true;
+				ThreadService.getInstance().run(Subsystem.ENGINE, new Runnable() {
+					public void run() {
+						releaseEngine();
+					}
+				});
 			}
 		});
 
@@ -392,13 +277,11 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 				}
 			}
 		});
-		if (engine != null) {
-			ThreadService.getInstance().run(new Runnable() {
-				public void run() {
-					engine.quit();
-				}
-			});
-		}
+		ThreadService.getInstance().run(Subsystem.ENGINE, new Runnable() {
+			public void run() {
+				releaseEngine();
+			}
+		});
 	}
 
 	public void setController(ChessBoardController controller) {
@@ -408,12 +291,9 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 	public void stop() {
 		if (engine != null) {
 			ignoreUciInfo = true;
-			ThreadService.getInstance().run(new Runnable() {
+			ThreadService.getInstance().run(Subsystem.ENGINE, new Runnable() {
 				public void run() {
-					try {
-						engine.quit();
-					} catch (Throwable t) {
-					}
+					releaseEngine();
 					Raptor.getInstance().getDisplay().asyncExec(new RaptorRunnable() {
 						@Override
 						public void execute() {
@@ -426,6 +306,9 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 	}
 
 	public void updateFromPrefs() {
+		aggregator.setUpdatesPerSecond(Raptor.getInstance().getPreferences()
+				.getInt(PreferenceKeys.STOCKFISH_ANALYSIS_UPDATES_PER_SECOND));
+
 		Color background = Raptor.getInstance().getPreferences().getColor(PreferenceKeys.BOARD_BACKGROUND_COLOR);
 		Color labelForeground = Raptor.getInstance().getPreferences().getColor(PreferenceKeys.BOARD_CONTROL_COLOR);
 
@@ -449,43 +332,70 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 
 	public void start() {
 		if (composite.isVisible()) {
-			ThreadService.getInstance().run(new Runnable() {
+			ThreadService.getInstance().run(Subsystem.ENGINE, new Runnable() {
 				public void run() {
 					if (LOG.isDebugEnabled()) {
 						LOG.debug("In UciAnalysisWidget.start(" + engine.getUserName() + ")");
 					}
 					try {
 						synchronized (engineLock) {
-							try {
-								engine.stop();
-							} catch (Throwable t) {
-							}
-
-							if (!engine.isConnected()) {
-								engine.connect();
+							if (leasedEngine == null) {
+								leasedEngine = UCIEngineService.getInstance().leaseEngine(engine, 1,
+										UCIEngineService.LEASE_TIMEOUT);
+								if (leasedEngine == null) {
+									return;
+								}
+							} else {
+								try {
+									leasedEngine.stop();
+								} catch (Throwable t) {
+								}
 							}
 
 							if (controller.getGame().getVariant() == Variant.fischerRandom) {
-								UCICheck opt = (UCICheck) engine.getOption("UCI_Chess960");
+								UCICheck opt = (UCICheck) leasedEngine.getOption("UCI_Chess960");
 								opt.setValue("true");
-								engine.setOption(opt);
+								leasedEngine.setOption(opt);
 							} else {
-								UCICheck opt = (UCICheck) engine.getOption("UCI_Chess960");
+								UCICheck opt = (UCICheck) leasedEngine.getOption("UCI_Chess960");
 								opt.setValue("false");
-								engine.setOption(opt);
+								leasedEngine.setOption(opt);
 							}
 
-							engine.newGame();
-							engine.setPosition(controller.getGame().toFen(), null);
-							engine.isReady();
+							Game game = controller.getGame();
+							long positionKey = game.getZobristGameHash();
+							UCIAnalysisCache cache = null;
+							if (Variant.isClassic(game.getVariant()) || Variant.isFischerRandom(game.getVariant())) {
+								cache = UCIEngineService.getInstance().getAnalysisCache();
+								cache.setMaxBytes(Raptor.getInstance().getPreferences()
+										.getInt(PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_SIZE) * 1024L * 1024L);
+							}
+							final UCIInfoSnapshot[] cachedLines = new UCIInfoSnapshot[MAX_LINES];
+							for (int i = 0; i < MAX_LINES; i++) {
+								cachedLines[i] = new UCIInfoSnapshot();
+							}
+							final int cachedLineCount = cache == null ? 0 : cache.get(positionKey, cachedLines);
+							int cacheDepth = Raptor.getInstance().getPreferences()
+									.getInt(PreferenceKeys.STOCKFISH_ANALYSIS_CACHE_DEPTH);
+							boolean isSearching = cachedLineCount == 0 || cacheDepth == 0
+									|| cachedLines[0].getDepth() < cacheDepth;
+
+							leasedEngine.newGame();
+							leasedEngine.setPosition(game.toFen(), null);
+							leasedEngine.isReady();
 							ignoreUciInfo = false;
-							engine.go(engine.getGoAnalysisParameters(), listener);
+							aggregator.setCache(cache);
+							aggregator.clear(positionKey);
+							if (isSearching) {
+								leasedEngine.go(leasedEngine.getGoAnalysisParameters(), aggregator);
+							}
 							Raptor.getInstance().getDisplay().asyncExec(new RaptorRunnable() {
 								@Override
 								public void execute() {
 									if (composite.isVisible()) {
 										startStopButton.setText(local.getString("uciAnalW_54"));
 										bestMoves.clearTable();
+										showCachedAnalysis(cachedLines, cachedLineCount);
 									}
 								}
 							});
@@ -499,6 +409,19 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 		}
 	}
 
+	/**
+	 * Returns the leased engine to the pool. Resetting the engine waits for its
+	 * search to stop, so this is invoked on an ENGINE thread.
+	 */
+	protected void releaseEngine() {
+		UCIEngine releasedEngine = null;
+		synchronized (engineLock) {
+			releasedEngine = leasedEngine;
+			leasedEngine = null;
+		}
+		UCIEngineService.getInstance().releaseEngine(releasedEngine);
+	}
+
 	protected void createEnginesCombo() {
 
 		engineCombo.removeAll();
@@ -512,4 +435,153 @@ public class UciAnalysisWidget implements EngineAnalysisWidget {
 		topLine.pack(true);
 		topLine.layout(true, true);
 	}
+
+	/**
+	 * Returns the pv of the line in short algebraic notation, and its first
+	 * move with the move number, or null for both if the line is empty.
+	 */
+	protected String[] formatPv(UCIInfoSnapshot snapshot) {
+		StringBuilder line = new StringBuilder(100);
+		String bestMove = null;
+		Game gameClone = controller.getGame().deepCopy(true);
+		gameClone.addState(Game.UPDATING_SAN_STATE);
+		gameClone.clearState(Game.UPDATING_ECO_HEADERS_STATE);
+
+		boolean isFirstMove = true;
+
+		for (int i = 0; i < snapshot.getPvLength(); i++) {
+			try {
+				Move gameMove = null;
+
+				if (snapshot.getPvPromotedPiece(i) != 0) {
+					gameMove = gameClone.makeMove(snapshot.getPvStartSquare(i), snapshot.getPvEndSquare(i),
+							snapshot.getPvPromotedPiece(i));
+				} else {
+					gameMove = gameClone.makeMove(snapshot.getPvStartSquare(i), snapshot.getPvEndSquare(i));
+				}
+
+				String san = GameUtils.convertSanToUseUnicode(gameMove.getSan(), gameMove.isWhitesMove());
+				String moveNumber = isFirstMove && !gameMove.isWhitesMove() ? gameMove.getFullMoveCount() + ") ... "
+						: gameMove.isWhitesMove() ? gameMove.getFullMoveCount() + ") " : "";
+				line.append((line.length() == 0 ? "" : " ") + moveNumber + san + (gameClone.isInCheck() ? "+" : "")
+						+ (gameClone.isCheckmate() ? "#" : ""));
+				if (isFirstMove) {
+					bestMove = moveNumber + san + (gameClone.isInCheck() ? "+" : "")
+							+ (gameClone.isCheckmate() ? "#" : "");
+				}
+				isFirstMove = false;
+			} catch (Throwable t) {
+				if (LOG.isInfoEnabled()) {
+					LOG.info("Illegal line found skipping line (This can occur if the position was "
+							+ "changing when the analysis line was being calculated).", t);
+				}
+				break;
+			}
+		}
+		return new String[] { line.toString(), bestMove };
+	}
+
+	protected String formatScore(UCIInfoSnapshot snapshot) {
+		if (snapshot.getMateInMoves() != 0) {
+			return "Mate in " + snapshot.getMateInMoves();
+		} else if (snapshot.isLowerBoundScore() || snapshot.isUpperBoundScore()) {
+			return "Calibrating";
+		} else {
+			double scoreAsDouble = controller.getGame().isWhitesMove() || !engine.isMultiplyBlackScoreByMinus1()
+					? snapshot.getValueInCentipawns() / 100.0 : -snapshot.getValueInCentipawns() / 100.0;
+			return new BigDecimal(scoreAsDouble).setScale(2, BigDecimal.ROUND_HALF_UP).toString();
+		}
+	}
+
+	/**
+	 * Shows the analysis which changed since the last update. Invoked on the
+	 * display thread by the aggregator's updater, so at most one of these runs
+	 * per update interval however fast the engine sends info lines.
+	 */
+	protected void showAnalysis() {
+		if (composite.isDisposed()) {
+			return;
+		}
+
+		int lineCount = aggregator.drainTo(lineRecords, changedLines, statusRecord);
+		if (lineCount == -1 || ignoreUciInfo) {
+			return;
+		}
+
+		if (statusRecord.has(UCIInfoSnapshot.DEPTH)) {
+			depthLabel.setText("" + statusRecord.getDepth());
+		}
+		if (statusRecord.has(UCIInfoSnapshot.TIME)) {
+			timeLabel.setText(new BigDecimal(statusRecord.getTimeMillis() / 1000.0).setScale(1,
+					BigDecimal.ROUND_HALF_UP).toString());
+		}
+		if (statusRecord.has(UCIInfoSnapshot.NODES_PER_SECOND)) {
+			nodesLabel.setText(DECIMAL_FORMAT.format(statusRecord.getNodesPerSecond()));
+		}
+
+		if (lineCount > 0) {
+			createRows();
+		}
+
+		for (int row = 0; row < lineCount && row < bestMoves.getRowCount(); row++) {
+			if (!changedLines[row] || !lineRecords[row].has(UCIInfoSnapshot.SCORE)
+					|| lineRecords[row].getDepth() < cachedDepths[row]) {
+				continue;
+			}
+			showLine(row, lineRecords[row]);
+		}
+
+		topLine.layout();
+	}
+
+	/**
+	 * Shows the lines the cache had for the position when the engine was
+	 * started. They stay until the engine's lines are as deep.
+	 */
+	protected void showCachedAnalysis(UCIInfoSnapshot[] cachedLines, int lineCount) {
+		for (int row = 0; row < MAX_LINES; row++) {
+			cachedDepths[row] = row < lineCount && cachedLines[row].has(UCIInfoSnapshot.SCORE) ? cachedLines[row]
+					.getDepth() : 0;
+		}
+		if (lineCount == 0 || composite.isDisposed()) {
+			return;
+		}
+
+		createRows();
+		for (int row = 0; row < lineCount && row < bestMoves.getRowCount(); row++) {
+			if (cachedLines[row].has(UCIInfoSnapshot.SCORE)) {
+				showLine(row, cachedLines[row]);
+			}
+		}
+		depthLabel.setText("" + cachedLines[0].getDepth());
+		topLine.layout();
+	}
+
+	/**
+	 * Fills the table with a blank row for each line to suggest, if it is
+	 * empty.
+	 */
+	protected void createRows() {
+		if (bestMoves.getRowCount() == 0) {
+			String[][] data = new String[Raptor.getInstance().getPreferences()
+					.getInt(PreferenceKeys.STOCKFISH_MOVES_TO_SUGGEST)][6];
+			for (int i = 0; i < data.length; i++)
+				for (int j = 0; j < data[i].length; j++)
+					data[i][j] = "";
+			bestMoves.refreshTable(data);
+		}
+	}
+
+	protected void showLine(int row, UCIInfoSnapshot line) {
+		bestMoves.setText(row, 0, formatScore(line));
+		if (line.has(UCIInfoSnapshot.PV)) {
+			String[] pv = formatPv(line);
+			if (StringUtils.isNotBlank(pv[0])) {
+				bestMoves.setText(row, 1, pv[0]);
+			}
+			if (row == 0 && StringUtils.isNotBlank(pv[1])) {
+				bestMoveLabel.setText(pv[1]);
+			}
+		}
+	}
 }
\ No newline at end of file
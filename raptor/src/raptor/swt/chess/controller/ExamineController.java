@@ -32,6 +32,7 @@ import raptor.swt.SWTUtils;
 import raptor.swt.chess.ChessBoardController;
 import raptor.swt.chess.ChessBoardUtils;
 import raptor.swt.chess.MouseButtonAction;
+import raptor.util.LatencyTracker;
 import raptor.util.RaptorLogger;
 import raptor.util.RaptorRunnable;
 
@@ -135,6 +136,7 @@ public class ExamineController extends ChessBoardController {
 		@Override
 		public void gameStateChanged(final Game game, final boolean isNewMove) {
 			if (!isDisposed() && game.getId().equals(getGame().getId())) {
+				final long receivedNanos = LatencyTracker.getReceivedNanos();
 				board.getControl().getDisplay()
 						.asyncExec(new RaptorRunnable(getConnector()) {
 							@Override
@@ -144,6 +146,7 @@ public class ExamineController extends ChessBoardController {
 								}
 								setGame(game);
 								examinePositionUpdate();
+								LatencyTracker.record(LatencyTracker.Stage.BOARD_REFRESH, receivedNanos);
 							}
 						});
 			}
@@ -33,6 +33,7 @@ import raptor.swt.chat.ChatUtils;
 import raptor.swt.chess.ChessBoardController;
 import raptor.swt.chess.ChessBoardUtils;
 import raptor.swt.chess.MouseButtonAction;
+import raptor.util.LatencyTracker;
 import raptor.util.RaptorLogger;
 import raptor.util.RaptorRunnable;
 import raptor.util.RaptorStringUtils;
@@ -136,9 +137,8 @@ public class ObserveController extends ChessBoardController {
 		@Override
 		public void gameStateChanged(final Game game, final boolean isNewMove) {
 			if (!isDisposed() && game.getId().equals(getGame().getId())) {
-				//final long startTime = System.currentTimeMillis();
+				final long receivedNanos = LatencyTracker.getReceivedNanos();
 
-				
 				board.getControl().getDisplay()
 						.asyncExec(new RaptorRunnable(getConnector()) {
 							@Override
@@ -171,7 +171,7 @@ public class ObserveController extends ChessBoardController {
 										refresh();
 									}
 									
-									//System.err.println("Handled obs move in move in " + (System.currentTimeMillis() - startTime));
+									LatencyTracker.record(LatencyTracker.Stage.BOARD_REFRESH, receivedNanos);
 								}
 						});
 			}
@@ -61,6 +61,7 @@ import raptor.service.GameService.GameServiceListener;
 import raptor.service.PlayingStatisticsService;
 import raptor.service.SoundService;
 import raptor.service.ThreadService;
+import raptor.service.ThreadService.Subsystem;
 import raptor.swt.SWTUtils;
 import raptor.swt.chess.Arrow;
 import raptor.swt.chess.ChessBoardController;
@@ -68,6 +69,7 @@ import raptor.swt.chess.ChessBoardUtils;
 import raptor.swt.chess.ClockLabelUpdater;
 import raptor.swt.chess.Highlight;
 import raptor.swt.chess.MouseButtonAction;
+import raptor.util.LatencyTracker;
 import raptor.util.RaptorLogger;
 import raptor.util.RaptorRunnable;
 import raptor.util.RaptorStringUtils;
@@ -194,7 +196,7 @@ public class PlayingController extends ChessBoardController {
 		@Override
 		public void gameStateChanged(final Game game, final boolean isNewMove) {
 			if (!isDisposed() && game.getId().equals(getGame().getId())) {
-				// final long startTime = System.currentTimeMillis();
+				final long receivedNanos = LatencyTracker.getReceivedNanos();
 				board.getControl().getDisplay().asyncExec(new RaptorRunnable(getConnector()) {
 					@Override
 					public void execute() {
@@ -245,8 +247,7 @@ public class PlayingController extends ChessBoardController {
 							addDecorationsForLastMoveListMove();
 							refresh();
 						}
-						// System.err.println("Handled move in " +
-						// (System.currentTimeMillis() - startTime));
+						LatencyTracker.record(LatencyTracker.Stage.BOARD_REFRESH, receivedNanos);
 					}
 				});
 			}
@@ -542,7 +543,7 @@ public class PlayingController extends ChessBoardController {
 
 	@Override
 	public void onAutoDraw() {
-		ThreadService.getInstance().run(new Runnable() {
+		ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 			public void run() {
 				getConnector().onDraw(getGame());
 			}
@@ -748,7 +749,7 @@ public class PlayingController extends ChessBoardController {
 				if (game.move(move)) {
 					game.rollback();
 					final Move finalMove = move;
-					ThreadService.getInstance().run(new Runnable() {
+					ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 						public void run() {
 							connector.makeMove(game, finalMove);
 						}
@@ -1000,7 +1001,7 @@ public class PlayingController extends ChessBoardController {
 					}
 					game.rollback();
 					final Move finalMove = move;
-					ThreadService.getInstance().run(new Runnable() {
+					ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 						public void run() {
 							connector.makeMove(game, finalMove);
 						}
@@ -1084,7 +1085,7 @@ public class PlayingController extends ChessBoardController {
 					move = game.makeMove(info.fromSquare, info.toSquare);
 					game.rollback();
 					final Move finalMove = move;
-					ThreadService.getInstance().run(new Runnable() {
+					ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 						public void run() {
 							connector.makeMove(game, finalMove);
 						}
@@ -1372,7 +1373,7 @@ public class PlayingController extends ChessBoardController {
 					if (game.move(move)) {
 						game.rollback();
 						final Move finalMove = move;
-						ThreadService.getInstance().run(new Runnable() {
+						ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 							public void run() {
 								connector.makeMove(game, finalMove);
 							}
@@ -1427,7 +1428,7 @@ public class PlayingController extends ChessBoardController {
 					if (game.move(move)) {
 						game.rollback();
 						final Move finalMove = move;
-						ThreadService.getInstance().run(new Runnable() {
+						ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 							public void run() {
 								connector.makeMove(game, finalMove);
 							}
@@ -1475,7 +1476,7 @@ public class PlayingController extends ChessBoardController {
 					if (game.move(move)) {
 						game.rollback();
 						final Move finalMove = move;
-						ThreadService.getInstance().run(new Runnable() {
+						ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 							public void run() {
 								connector.makeMove(game, finalMove);
 							}
@@ -1521,7 +1522,7 @@ public class PlayingController extends ChessBoardController {
 						if (game.move(move)) {
 							game.rollback();
 							final Move finalMove = move;
-							ThreadService.getInstance().run(new Runnable() {
+							ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 								public void run() {
 									connector.makeMove(game, finalMove);
 								}
@@ -1544,7 +1545,7 @@ public class PlayingController extends ChessBoardController {
 					if (game.move(move)) {
 						game.rollback();
 						final Move finalMove = move;
-						ThreadService.getInstance().run(new Runnable() {
+						ThreadService.getInstance().run(Subsystem.GAME, new Runnable() {
 							public void run() {
 								connector.makeMove(game, finalMove);
 							}
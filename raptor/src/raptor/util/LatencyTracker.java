@@ -0,0 +1,187 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package raptor.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long it takes inbound ICS messages to reach each Stage, from
+ * the moment their bytes were read off the socket. Used to measure parser
+ * and board throughput with the replay server and load driver in the
+ * benchmark source set.
+ * 
+ * Tracking is off unless the raptor.latencyTracking system property is true
+ * or setEnabled is invoked, and costs a single boolean check when off.
+ * 
+ * The connector marks the time a read arrived with messageReceived. Stages
+ * reached on the same thread use getReceivedNanos, stages reached later on
+ * another thread capture it first and pass it to record.
+ */
+public class LatencyTracker {
+	public static enum Stage {
+		/** An inbound message has been parsed. */
+		MESSAGE_PARSED("Message parsed"),
+		/** GameService has fired a game state change. */
+		GAME_EVENT("Game event"),
+		/** A board has been refreshed for a game state change. */
+		BOARD_REFRESH("Board refresh");
+
+		private final String name;
+
+		private Stage(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static final String ENABLED_PROPERTY = "raptor.latencyTracking";
+
+	/**
+	 * Latencies are counted in buckets of powers of two microseconds.
+	 */
+	private static final int BUCKETS = 40;
+
+	private static final int STAGES = Stage.values().length;
+
+	private static final AtomicLongArray bucketCounts = new AtomicLongArray(STAGES * BUCKETS);
+
+	private static final AtomicLongArray counts = new AtomicLongArray(STAGES);
+
+	private static final AtomicLongArray maxNanos = new AtomicLongArray(STAGES);
+
+	private static final AtomicLongArray totalNanos = new AtomicLongArray(STAGES);
+
+	private static final ThreadLocal<long[]> receivedNanos = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	private static volatile boolean isEnabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+	public static long getAverageMicros(Stage stage) {
+		long count = counts.get(stage.ordinal());
+		return count == 0 ? 0 : totalNanos.get(stage.ordinal()) / count / 1000;
+	}
+
+	public static long getCount(Stage stage) {
+		return counts.get(stage.ordinal());
+	}
+
+	public static long getMaxMicros(Stage stage) {
+		return maxNanos.get(stage.ordinal()) / 1000;
+	}
+
+	/**
+	 * Returns the upper bound, in microseconds, of the bucket the specified
+	 * percentile falls in.
+	 */
+	public static long getPercentileMicros(Stage stage, double percentile) {
+		long count = counts.get(stage.ordinal());
+		if (count == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += bucketCounts.get(stage.ordinal() * BUCKETS + i);
+			if (seen >= target) {
+				return 1L << i;
+			}
+		}
+		return 1L << (BUCKETS - 1);
+	}
+
+	/**
+	 * Returns the time the last read on the current thread arrived, or 0 if
+	 * tracking is off.
+	 */
+	public static long getReceivedNanos() {
+		return isEnabled ? receivedNanos.get()[0] : 0;
+	}
+
+	/**
+	 * Returns a line per stage which has been reached.
+	 */
+	public static String getSummary() {
+		StringBuilder result = new StringBuilder(200);
+		for (Stage stage : Stage.values()) {
+			if (getCount(stage) > 0) {
+				if (result.length() > 0) {
+					result.append("\n");
+				}
+				result.append(stage.getName() + ": count " + getCount(stage) + " avg " + getAverageMicros(stage)
+						+ "us p50 <" + getPercentileMicros(stage, 50) + "us p99 <" + getPercentileMicros(stage, 99)
+						+ "us max " + getMaxMicros(stage) + "us");
+			}
+		}
+		return result.toString();
+	}
+
+	public static boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Marks the current time as the arrival of the read being processed on
+	 * this thread.
+	 */
+	public static void messageReceived() {
+		if (isEnabled) {
+			receivedNanos.get()[0] = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Records that a message which arrived at received has reached the stage.
+	 */
+	public static void record(Stage stage, long received) {
+		if (!isEnabled || received == 0) {
+			return;
+		}
+		long nanos = System.nanoTime() - received;
+		int index = stage.ordinal();
+		counts.incrementAndGet(index);
+		totalNanos.addAndGet(index, nanos);
+		long max = maxNanos.get(index);
+		while (nanos > max && !maxNanos.compareAndSet(index, max, nanos)) {
+			max = maxNanos.get(index);
+		}
+
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000));
+		bucketCounts.incrementAndGet(index * BUCKETS + bucket);
+	}
+
+	public static void reset() {
+		for (int i = 0; i < STAGES; i++) {
+			counts.set(i, 0);
+			maxNanos.set(i, 0);
+			totalNanos.set(i, 0);
+		}
+		for (int i = 0; i < bucketCounts.length(); i++) {
+			bucketCounts.set(i, 0);
+		}
+	}
+
+	public static void setEnabled(boolean isEnabled) {
+		LatencyTracker.isEnabled = isEnabled;
+	}
+
+	private LatencyTracker() {
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import raptor.chat.ChatEvent;
+import raptor.connector.ics.chat.AbortRequestedEventParser;
+import raptor.connector.ics.chat.BugWhoAllEventParser;
+import raptor.connector.ics.chat.CShoutEventParser;
+import raptor.connector.ics.chat.ChallengeEventParser;
+import raptor.connector.ics.chat.ChannelTellEventParser;
+import raptor.connector.ics.chat.ChatEventParser;
+import raptor.connector.ics.chat.ChatEventParserIndex;
+import raptor.connector.ics.chat.DrawOfferedEventParser;
+import raptor.connector.ics.chat.FingerEventParser;
+import raptor.connector.ics.chat.FollowingEventParser;
+import raptor.connector.ics.chat.HistoryEventParser;
+import raptor.connector.ics.chat.JournalEventParser;
+import raptor.connector.ics.chat.KibitzEventParser;
+import raptor.connector.ics.chat.NotificationEventParser;
+import raptor.connector.ics.chat.PartnerTellEventParser;
+import raptor.connector.ics.chat.PartnershipCreatedEventParser;
+import raptor.connector.ics.chat.PartnershipEndedEventParser;
+import raptor.connector.ics.chat.PingEventParser;
+import raptor.connector.ics.chat.QTellParser;
+import raptor.connector.ics.chat.ShoutEventParser;
+import raptor.connector.ics.chat.TellEventParser;
+import raptor.connector.ics.chat.ToldEventParser;
+import raptor.connector.ics.chat.VariablesEventParser;
+import raptor.connector.ics.chat.WhisperEventParser;
+
+public class TestChatEventParserIndex {
+	private static final String[] MESSAGES = {
+			"\nBugPartner (your partner) tells you: P@f7\n",
+			"(told CDay, who is playing)",
+			"\nraptor(TD)(49): hello everyone\n",
+			"\nCDay(1): hi",
+			"\nTheTactician c-shouts: anyone for blitz?",
+			"\n--> CDay waves",
+			"\nCDay shouts: hello",
+			"\nCDay(1500)[45] kibitzes: nice move",
+			"\nCDay tells you: hi there",
+			"\nCDay says: hi partner",
+			"\nCDay(1500)[45] whispers: good game",
+			":mamer tourney 12 starts soon",
+			"\nChallenge: CDay (1500) raptor (1600) rated blitz 5 0.",
+			"\nYou agree to be CDay's partner.",
+			"\nCDay agrees to be your partner.",
+			"\nYou no longer have a bughouse partner.",
+			"\nYou will now be following CDay's games.",
+			"\nYou will not follow any player's games.",
+			"\nCDay offers you a draw.",
+			"\nCDay would like to abort the game; type \"abort\" to accept.",
+			"\nHistory for CDay:\n     Opp  Rating",
+			"\nJournal for CDay:\n",
+			"\nFinger of CDay(TD):\n\nOn for: 1 hr",
+			"\nBughouse games in progress\n 0 games displayed.",
+			"\nNotification: CDay has arrived.",
+			"\nNotification: CDay has departed.",
+			"\nVariable settings of CDay:\n",
+			"Average ping time for CDay is 120ms.",
+			"\nSome unrecognized server output",
+			"\nété: says: ünicode",
+			"" };
+
+	private static List<ChatEventParser> createParsers() {
+		List<ChatEventParser> result = new ArrayList<ChatEventParser>();
+		result.add(new PartnerTellEventParser());
+		result.add(new ToldEventParser());
+		result.add(new ChannelTellEventParser());
+		result.add(new CShoutEventParser());
+		result.add(new ShoutEventParser());
+		result.add(new KibitzEventParser());
+		result.add(new TellEventParser());
+		result.add(new WhisperEventParser());
+		result.add(new QTellParser());
+		result.add(new ChallengeEventParser());
+		result.add(new PartnershipCreatedEventParser());
+		result.add(new PartnershipEndedEventParser());
+		result.add(new FollowingEventParser());
+		result.add(new DrawOfferedEventParser());
+		result.add(new AbortRequestedEventParser());
+		result.add(new HistoryEventParser());
+		result.add(new JournalEventParser());
+		result.add(new FingerEventParser());
+		result.add(new BugWhoAllEventParser());
+		result.add(new NotificationEventParser());
+		result.add(new VariablesEventParser());
+		result.add(new PingEventParser());
+		return result;
+	}
+
+	private static String toString(ChatEvent event) {
+		return event == null ? null : event.getType() + " " + event.getSource()
+				+ " " + event.getChannel() + " " + event.getMessage();
+	}
+
+	@Test
+	public void testMatchesSequentialParsing() {
+		List<ChatEventParser> parsers = createParsers();
+		ChatEventParserIndex index = new ChatEventParserIndex(parsers);
+
+		for (String message : MESSAGES) {
+			ChatEvent expected = null;
+			for (ChatEventParser parser : parsers) {
+				expected = parser.parse(message);
+				if (expected != null) {
+					break;
+				}
+			}
+			assertEquals(message, toString(expected), toString(index
+					.parse(message)));
+		}
+	}
+
+	@Test
+	public void testParsersWithoutKeywordsAreAlwaysTried() {
+		List<ChatEventParser> parsers = createParsers();
+		parsers.add(0, new ChatEventParser() {
+			@Override
+			public ChatEvent parse(String text) {
+				return null;
+			}
+		});
+		ChatEventParserIndex index = new ChatEventParserIndex(parsers);
+		assertEquals(1L, index.getCandidates("nothing to see"));
+		assertEquals(1L | 1L << 7, index.getCandidates("a tells b"));
+		assertNull(index.parse("nothing to see"));
+	}
+}
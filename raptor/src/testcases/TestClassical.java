@@ -28,6 +28,7 @@ import org.junit.Test;
 import raptor.chess.Game;
 import raptor.chess.GameConstants;
 import raptor.chess.Move;
+import raptor.chess.PackedMoveStack;
 import raptor.chess.Variant;
 import raptor.chess.util.GameUtils;
 
@@ -715,6 +716,44 @@ public class TestClassical implements GameConstants {
 		System.out.println(nodes);
 	}
 
+	@Test
+	public void testReplayState() {
+		Game game = createStartingPosition(Variant.classic);
+		game.addState(Game.UPDATING_SAN_STATE);
+		Game replay = createStartingPosition(Variant.classic);
+		replay.addState(Game.UPDATING_SAN_STATE);
+		replay.addState(Game.REPLAY_STATE);
+
+		Random random = new Random(7);
+		PackedMoveStack legals = new PackedMoveStack();
+		for (int i = 0; i < 120; i++) {
+			legals.pushPly();
+			game.generateLegalMoves(legals);
+			if (legals.getSize() == 0) {
+				legals.popPly();
+				break;
+			}
+			int move = legals.get(random.nextInt(legals.getSize()));
+			legals.popPly();
+
+			game.move(move);
+			replay.move(move);
+			if (i % 10 == 9) {
+				game.rollback();
+				replay.rollback();
+			}
+		}
+
+		asserts(game.toFen().equals(replay.toFen()), "Positions differ.");
+		Move[] moves = game.getMoveList().asArray();
+		Move[] replayedMoves = replay.getMoveList().asArray();
+		for (int i = 0; i < moves.length; i++) {
+			asserts(moves[i].getSan().equals(replayedMoves[i].getSan()),
+					"San differs " + moves[i].getSan() + " "
+							+ replayedMoves[i].getSan());
+		}
+	}
+
 	@Test
 	public void testStaleMate() throws Exception {
 		for (String element : STALEMATE_FEN_TESTS) {
@@ -35,6 +35,25 @@ public class TestCrazyhouse implements GameConstants {
 
 	}
 
+	@Test
+	public void testDropSan() {
+		Game game = GameFactory.createStartingPosition(Variant.crazyhouse);
+		game.addState(Game.UPDATING_SAN_STATE);
+		game.makeSanMove("e4");
+		game.makeSanMove("d5");
+		game.makeSanMove("exd5");
+		game.makeSanMove("Qxd5");
+
+		int drops = 0;
+		for (Move move : game.getLegalMoves().asArray()) {
+			if (move.isDrop()) {
+				drops++;
+				assertTrue(move.getSan(), move.getSan().startsWith("P@"));
+			}
+		}
+		assertTrue(drops > 0);
+	}
+
 	@Test
 	public void testInitial() {
 		Game game = GameFactory.createStartingPosition(Variant.crazyhouse);
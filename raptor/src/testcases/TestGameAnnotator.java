@@ -0,0 +1,145 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import raptor.chess.Game;
+import raptor.chess.GameFactory;
+import raptor.chess.Variant;
+import raptor.chess.pgn.Nag;
+import raptor.engine.uci.UCIInfoParser;
+import raptor.engine.uci.UCIInfoSnapshot;
+import raptor.problemgen.AnalysisCheckpoint;
+import raptor.problemgen.GameAnalyzer;
+import raptor.problemgen.GameAnnotator;
+
+public class TestGameAnnotator {
+	private static UCIInfoSnapshot eval(String line) {
+		return new UCIInfoParser().parse(line, new UCIInfoSnapshot());
+	}
+
+	private static Game foolsMate() {
+		Game game = GameFactory.createStartingPosition(Variant.classic);
+		game.addState(Game.UPDATING_SAN_STATE);
+		game.makeSanMove("f3");
+		game.makeSanMove("e5");
+		game.makeSanMove("g4");
+		game.makeSanMove("Qh4");
+		return game;
+	}
+
+	@Test
+	public void testAnnotate() {
+		Game game = foolsMate();
+		String[] fens = GameAnalyzer.getFens(game);
+		assertEquals(5, fens.length);
+		assertEquals(game.toFen(), fens[4]);
+		assertTrue(fens[0].startsWith("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w"));
+
+		UCIInfoSnapshot[] evals = { eval("info depth 18 score cp 20 pv e2e4 e7e5"),
+				eval("info depth 18 score cp 50 pv e7e5"), eval("info depth 18 score cp -60 pv b1c3"),
+				eval("info depth 18 score mate 1 pv d8h4"), null };
+		List<String> puzzles = new GameAnnotator().annotate(game, fens, evals);
+
+		// f3 lost 0.70, an inaccuracy.
+		assertSame(Nag.NAG_6, game.getMoveList().get(0).getNags()[0]);
+		assertEquals("-0.50/18 Best: 1. e4 e5", game.getMoveList().get(0).getComments()[0].getText());
+
+		// e5 gained for black.
+		assertEquals(0, game.getMoveList().get(1).getNags().length);
+		assertEquals("-0.60/18", game.getMoveList().get(1).getComments()[0].getText());
+
+		// g4 allowed mate.
+		assertSame(Nag.NAG_4, game.getMoveList().get(2).getNags()[0]);
+		assertEquals("#-1/18 Best: 2. Nc3", game.getMoveList().get(2).getComments()[0].getText());
+
+		// Mating is not a loss and the final position has no evaluation.
+		assertEquals(0, game.getMoveList().get(3).getNags().length);
+		assertEquals(0, game.getMoveList().get(3).getComments().length);
+
+		assertEquals(1, puzzles.size());
+		String puzzle = puzzles.get(0);
+		assertTrue(puzzle, puzzle.startsWith("rnbqkbnr/pppp1ppp/8/4p3/6P1/5P2/PPPPP2P/RNBQKBNR b KQkq "));
+		assertTrue(puzzle, puzzle.contains(" bm Qh4#; pv Qh4#; dm 1;"));
+		assertTrue(puzzle, puzzle.endsWith(", 2. g4\";"));
+		assertTrue(game.toPgn().contains("{#-1/18 Best: 2. Nc3} $4"));
+	}
+
+	@Test
+	public void testScores() {
+		assertEquals(35, GameAnnotator.getScore(eval("info depth 3 score cp 35")));
+		assertEquals(GameAnnotator.MATE_VALUE - 2, GameAnnotator.getScore(eval("info score mate 2")));
+		assertEquals(-GameAnnotator.MATE_VALUE + 2, GameAnnotator.getScore(eval("info score mate -2")));
+		assertEquals(GameAnnotator.NO_SCORE, GameAnnotator.getScore(eval("info depth 3 nodes 100")));
+		assertEquals(GameAnnotator.NO_SCORE, GameAnnotator.getScore(null));
+
+		assertEquals("+1.05/7", GameAnnotator.formatScore(eval("info depth 7 score cp 105"), true));
+		assertEquals("-0.08", GameAnnotator.formatScore(eval("info score cp 8"), false));
+		assertEquals("#3", GameAnnotator.formatScore(eval("info score mate -3"), false));
+
+		GameAnnotator annotator = new GameAnnotator();
+		assertNull(annotator.getNag(49));
+		assertSame(Nag.NAG_6, annotator.getNag(50));
+		assertSame(Nag.NAG_2, annotator.getNag(100));
+		assertSame(Nag.NAG_4, annotator.getNag(300));
+
+		assertEquals(-GameAnnotator.MATE_VALUE, GameAnnotator.getTerminalScore(foolsMate().toFen()));
+		assertEquals(0, GameAnnotator.getTerminalScore("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"));
+		assertEquals(GameAnnotator.NO_SCORE, GameAnnotator.getTerminalScore(GameAnalyzer.getFens(foolsMate())[0]));
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		File file = File.createTempFile("TestGameAnnotator", ".progress");
+		try {
+			AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(file);
+			checkpoint.markCompleted(3);
+			checkpoint.markCompleted(0);
+			checkpoint.markCompleted(3);
+			checkpoint.close();
+
+			// A crash in the middle of writing an index.
+			FileWriter writer = new FileWriter(file, true);
+			writer.write("1");
+			writer.close();
+
+			checkpoint = new AnalysisCheckpoint(file);
+			assertEquals(2, checkpoint.getCompletedCount());
+			assertTrue(checkpoint.isCompleted(0));
+			assertTrue(checkpoint.isCompleted(3));
+			assertFalse(checkpoint.isCompleted(1));
+			checkpoint.markCompleted(7);
+			checkpoint.close();
+
+			checkpoint = new AnalysisCheckpoint(file);
+			assertEquals(3, checkpoint.getCompletedCount());
+			assertTrue(checkpoint.isCompleted(7));
+			assertFalse(checkpoint.isCompleted(17));
+			checkpoint.close();
+		} finally {
+			file.delete();
+		}
+	}
+}
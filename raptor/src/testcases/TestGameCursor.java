@@ -0,0 +1,102 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import raptor.chess.Game;
+import raptor.chess.GameCursor;
+import raptor.chess.GameFactory;
+import raptor.chess.PackedMoveStack;
+import raptor.chess.Variant;
+
+public class TestGameCursor {
+
+	@Test
+	public void testSeek() {
+		Random random = new Random(11);
+		Game master = createRandomGame(random, 200);
+		GameCursor cursor = new GameCursor(master,
+				GameCursor.Mode.MakeMovesOnMaster);
+
+		for (int i = 0; i < 300; i++) {
+			int halfMoveIndex = random
+					.nextInt(master.getMoveList().getSize() + 1);
+			cursor.setCursor(halfMoveIndex);
+			assertEquals("Seek to " + halfMoveIndex, getFen(master,
+					halfMoveIndex), cursor.toFen());
+		}
+	}
+
+	@Test
+	public void testSeekAfterTakeBack() {
+		Random random = new Random(13);
+		Game master = createRandomGame(random, 100);
+		GameCursor cursor = new GameCursor(master,
+				GameCursor.Mode.MakeMovesOnMaster);
+		cursor.setCursor(90);
+		cursor.setCursor(10);
+
+		for (int i = 0; i < 40; i++) {
+			master.rollback();
+		}
+		makeRandomMoves(master, random, 40);
+
+		for (int halfMoveIndex = master.getMoveList().getSize(); halfMoveIndex >= 0; halfMoveIndex--) {
+			cursor.setCursor(halfMoveIndex);
+			assertEquals("Seek to " + halfMoveIndex, getFen(master,
+					halfMoveIndex), cursor.toFen());
+		}
+	}
+
+	private Game createRandomGame(Random random, int halfMoves) {
+		Game result = null;
+		while (result == null || result.getMoveList().getSize() < halfMoves) {
+			result = GameFactory.createStartingPosition(Variant.classic);
+			makeRandomMoves(result, random, halfMoves);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the fen after the half move index the old way, by rolling back a
+	 * copy of the game.
+	 */
+	private String getFen(Game game, int halfMoveIndex) {
+		Game copy = game.deepCopy(true);
+		while (copy.getMoveList().getSize() > halfMoveIndex) {
+			copy.rollback();
+		}
+		return copy.toFen();
+	}
+
+	private void makeRandomMoves(Game game, Random random, int halfMoves) {
+		PackedMoveStack legals = new PackedMoveStack();
+		for (int i = 0; i < halfMoves; i++) {
+			legals.pushPly();
+			game.generateLegalMoves(legals);
+			if (legals.getSize() == 0) {
+				legals.popPly();
+				return;
+			}
+			int move = legals.get(random.nextInt(legals.getSize()));
+			legals.popPly();
+			game.move(move);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import raptor.chess.Game;
+import raptor.chess.GameFactory;
+import raptor.chess.Move;
+import raptor.chess.Variant;
+
+/**
+ * Perft counts from http://chessprogramming.wikispaces.com/Perft+Results.
+ * They cover pins, checks, castling through check and en passant discovered
+ * checks.
+ */
+public class TestLegalMoves {
+
+	@Test
+	public void testDiscoveredEnPassant() {
+		assertEquals(43238, perft(
+				"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 4));
+	}
+
+	@Test
+	public void testKiwipete() {
+		assertEquals(97862, perft(
+				"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+				3));
+	}
+
+	@Test
+	public void testPromotionsAndChecks() {
+		assertEquals(9467, perft(
+				"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+				3));
+		assertEquals(62379, perft(
+				"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 3));
+	}
+
+	@Test
+	public void testStartingPosition() {
+		assertEquals(197281, perft(
+				"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 4));
+	}
+
+	private long perft(String fen, int depth) {
+		return perft(GameFactory.createFromFen(fen, Variant.classic), depth);
+	}
+
+	private long perft(Game game, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+		long result = 0;
+		for (Move move : game.getLegalMoves().asArray()) {
+			game.move(move);
+			result += perft(game, depth - 1);
+			game.rollback();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import raptor.chess.util.GameUtils;
+import raptor.chess.util.MagicBitboards;
+
+public class TestMagicBitboards {
+
+	@Test
+	public void testAgainstKoggeStone() {
+		Random random = new Random(0);
+
+		for (int i = 0; i < 20000; i++) {
+			// Sparse and dense occupancies.
+			long occupied = i % 2 == 0 ? random.nextLong() & random.nextLong()
+					: random.nextLong() | random.nextLong();
+
+			for (int square = 0; square < 64; square++) {
+				assertEquals("Bishop on " + GameUtils.getSan(square) + "\n"
+						+ GameUtils.getString(occupied), GameUtils
+						.diagonalMoveKoggeStone(square, ~occupied),
+						MagicBitboards.bishopAttacks(square, occupied));
+				assertEquals("Rook on " + GameUtils.getSan(square) + "\n"
+						+ GameUtils.getString(occupied), GameUtils
+						.orthogonalMoveKoggeStone(square, ~occupied),
+						MagicBitboards.rookAttacks(square, occupied));
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import raptor.connector.ics.OutboundMessageQueue;
+
+public class TestOutboundMessageQueue {
+	@Test
+	public void testPollingMessagesAreDeduplicated() {
+		OutboundMessageQueue queue = new OutboundMessageQueue(10, 1);
+		assertTrue(queue.add("tell 1 hi\n", false));
+		assertTrue(queue.add("$$games\n", false));
+		assertFalse(queue.add("$$games\n", false));
+		assertTrue(queue.add("$$sought\n", false));
+		assertEquals(3, queue.size());
+
+		assertEquals("tell 1 hi\n", queue.poll(0));
+		assertEquals("$$games\n", queue.poll(100));
+		// Sent, so it can be queued again.
+		assertTrue(queue.add("$$games\n", false));
+	}
+
+	@Test
+	public void testRateLimitAndPriority() {
+		OutboundMessageQueue queue = new OutboundMessageQueue(10, 2);
+		queue.add("a\n", false);
+		queue.add("b\n", false);
+		queue.add("c\n", false);
+		assertEquals("a\nb\n", queue.poll(0));
+		assertNull(queue.poll(0));
+		assertEquals(100, queue.getDelay(0));
+
+		queue.add("e2e4\n", true);
+		assertEquals(0, queue.getDelay(0));
+		assertEquals("e2e4\n", queue.poll(0));
+
+		queue.add("e7e5\n", true);
+		assertEquals("e7e5\nc\n", queue.poll(100));
+		assertTrue(queue.isEmpty());
+		assertEquals(-1, queue.getDelay(100));
+	}
+}
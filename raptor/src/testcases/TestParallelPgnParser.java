@@ -0,0 +1,106 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import raptor.chess.Game;
+import raptor.chess.pgn.LenientPgnParserListener;
+import raptor.chess.pgn.ParallelPgnParser;
+import raptor.chess.pgn.PgnParser;
+import raptor.chess.pgn.PgnParserError;
+import raptor.chess.pgn.StreamingPgnParser;
+
+public class TestParallelPgnParser {
+
+	protected static class RecordingListener extends LenientPgnParserListener {
+		List<String> results = new ArrayList<String>();
+
+		@Override
+		public void errorEncountered(PgnParserError error) {
+			results.add(error.getLineNumber() + " " + error.getType());
+		}
+
+		@Override
+		public boolean gameParsed(Game game, int lineNumber) {
+			results.add(lineNumber + " " + game.toPgn());
+			return false;
+		}
+	}
+
+	@Test
+	public void testOrdered() throws IOException {
+		File file = TestPgnDatabase.copy("projectFiles/test/50orsogames.pgn");
+		List<String> expected = parse(new StreamingPgnParser(file,
+				Integer.MAX_VALUE));
+
+		ParallelPgnParser parser = new ParallelPgnParser(file, Long.MAX_VALUE,
+				true);
+		parser.setThreads(4);
+		assertEquals(expected, parse(parser));
+	}
+
+	@Test
+	public void testUnordered() throws IOException {
+		File file = TestPgnDatabase.copy("projectFiles/test/test1.pgn");
+		List<String> expected = parse(new StreamingPgnParser(file,
+				Integer.MAX_VALUE));
+		Collections.sort(expected);
+
+		ParallelPgnParser parser = new ParallelPgnParser(file, Long.MAX_VALUE,
+				false);
+		parser.setThreads(4);
+		List<String> actual = parse(parser);
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testCancel() throws IOException {
+		File file = TestPgnDatabase.copy("projectFiles/test/50orsogames.pgn");
+		final List<Game> games = new ArrayList<Game>();
+		ParallelPgnParser parser = new ParallelPgnParser(file, Long.MAX_VALUE,
+				true);
+		parser.addPgnParserListener(new LenientPgnParserListener() {
+			@Override
+			public void errorEncountered(PgnParserError error) {
+			}
+
+			@Override
+			public boolean gameParsed(Game game, int lineNumber) {
+				games.add(game);
+				return games.size() == 5;
+			}
+		});
+		parser.parse();
+		assertEquals(5, games.size());
+		assertTrue(parser.isParseCancelled());
+	}
+
+	private List<String> parse(PgnParser parser) {
+		RecordingListener listener = new RecordingListener();
+		parser.addPgnParserListener(listener);
+		parser.parse();
+		return listener.results;
+	}
+}
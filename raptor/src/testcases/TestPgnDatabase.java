@@ -0,0 +1,125 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import raptor.chess.Game;
+import raptor.chess.pgn.LenientPgnParserListener;
+import raptor.chess.pgn.PgnDatabase;
+import raptor.chess.pgn.PgnHeader;
+import raptor.chess.pgn.PgnParserError;
+import raptor.chess.pgn.StreamingPgnParser;
+
+public class TestPgnDatabase {
+
+	@Test
+	public void testGamesMatchStreamingParser() throws IOException {
+		File file = copy("projectFiles/test/50orsogames.pgn");
+		final List<Integer> lineNumbers = new ArrayList<Integer>();
+		final List<String> pgns = new ArrayList<String>();
+		StreamingPgnParser parser = new StreamingPgnParser(file,
+				Integer.MAX_VALUE);
+		parser.addPgnParserListener(new LenientPgnParserListener() {
+			@Override
+			public void errorEncountered(PgnParserError error) {
+			}
+
+			@Override
+			public boolean gameParsed(Game game, int lineNumber) {
+				lineNumbers.add(lineNumber);
+				pgns.add(game.toPgn());
+				return false;
+			}
+		});
+		parser.parse();
+		parser.close();
+
+		PgnDatabase database = PgnDatabase.open(file);
+		assertEquals(pgns.size(), database.getGameCount());
+		for (int i = 0; i < pgns.size(); i++) {
+			int gameIndex = database.getGameIndexAtLine(lineNumbers.get(i));
+			assertEquals(i, gameIndex);
+			assertEquals((int) lineNumbers.get(i), database
+					.getLineNumber(gameIndex));
+			assertEquals(pgns.get(i), database.getGame(gameIndex).toPgn());
+		}
+		database.close();
+	}
+
+	@Test
+	public void testIndexFile() throws IOException {
+		File file = copy("projectFiles/test/test2.pgn");
+		File indexFile = PgnDatabase.getIndexFile(file);
+
+		PgnDatabase database = PgnDatabase.open(file);
+		assertTrue(indexFile.exists());
+		assertEquals(3, database.getGameCount());
+		assertEquals(19, database.getLineNumber(1));
+		assertEquals("cday", database.getHeader(1, PgnHeader.White));
+		assertEquals(null, database.getHeader(1, PgnHeader.WhiteElo));
+		assertEquals(-1, database.getGameIndexAtLine(0));
+		assertEquals(1, database.getGameIndexAtLine(25));
+		database.close();
+
+		// A second open maps the index written by the first.
+		database = PgnDatabase.open(file);
+		assertEquals(3, database.getGameCount());
+		assertEquals("C01", database.getHeader(2, PgnHeader.ECO));
+		database.close();
+
+		// Appending a game makes the index stale.
+		FileWriter writer = new FileWriter(file, true);
+		writer.write("\n[Event \"Appended\"]\n[White \"a\"]\n\n1. e4 e5 *\n");
+		writer.close();
+		file.setLastModified(file.lastModified() + 2000);
+
+		database = PgnDatabase.open(file);
+		assertEquals(4, database.getGameCount());
+		assertEquals("Appended", database.getHeader(3, PgnHeader.Event));
+		assertEquals("e4", database.getGame(3).getMoveList().get(0).getSan());
+		database.close();
+	}
+
+	static File copy(String path) throws IOException {
+		File result = File.createTempFile("TestPgnDatabase", ".pgn");
+		result.deleteOnExit();
+		PgnDatabase.getIndexFile(result).deleteOnExit();
+
+		FileInputStream in = new FileInputStream(path);
+		FileOutputStream out = new FileOutputStream(result);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+			out.close();
+		}
+		return result;
+	}
+}
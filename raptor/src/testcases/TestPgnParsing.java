@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -25,8 +26,10 @@ import junit.framework.Assert;
 import raptor.chess.Game;
 import raptor.chess.MoveList;
 import raptor.chess.Result;
+import raptor.chess.pgn.HeaderOnlyPgnParserListener;
 import raptor.chess.pgn.ListMaintainingPgnParserListener;
 import raptor.chess.pgn.Nag;
+import raptor.chess.pgn.PgnHeader;
 import raptor.chess.pgn.PgnParser;
 import raptor.chess.pgn.PgnParserError;
 import raptor.chess.pgn.PgnParserListener;
@@ -254,6 +257,41 @@ public class TestPgnParsing {
 		listener.getGames().get(0).makeSanMove("O-O-O");
 	}
 
+	@Test
+	public void testHeaderOnly() throws Exception {
+		StreamingPgnParser parser = new StreamingPgnParser(new File("projectFiles/test/Alekhine4Pawns.pgn"),
+				Integer.MAX_VALUE);
+		ListMaintainingPgnParserListener listener = new ListMaintainingPgnParserListener();
+		parser.addPgnParserListener(listener);
+		parser.parse();
+		parser.close();
+
+		final List<String> games = new ArrayList<String>();
+		parser = new StreamingPgnParser(new File("projectFiles/test/Alekhine4Pawns.pgn"), Integer.MAX_VALUE);
+		parser.setHeaderOnly(true);
+		parser.addPgnParserListener(new HeaderOnlyPgnParserListener() {
+			@Override
+			public boolean headersParsed(Map<String, String> headers, Result result, int lineNumber) {
+				games.add(headers.get("White") + " " + headers.get("Black") + " " + result);
+				return false;
+			}
+
+			@Override
+			public void onMoveWord(PgnParser parser, String word) {
+				Assert.fail("Move word in header only mode " + word);
+			}
+		});
+		parser.parse();
+		parser.close();
+
+		Assert.assertEquals(listener.getGames().size(), games.size());
+		for (int i = 0; i < games.size(); i++) {
+			Game game = listener.getGames().get(i);
+			Assert.assertEquals(game.getHeader(PgnHeader.White) + " " + game.getHeader(PgnHeader.Black) + " "
+					+ game.getResult(), games.get(i));
+		}
+	}
+
 	@Test
 	public void testLargeFile() throws Exception {
 		StreamingPgnParser parser = new StreamingPgnParser(new File("projectFiles/test/Alekhine4Pawns.pgn"),
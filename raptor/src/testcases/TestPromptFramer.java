@@ -0,0 +1,64 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import raptor.connector.ics.PromptFramer;
+
+public class TestPromptFramer {
+
+	private static List<String> frame(PromptFramer framer, StringBuilder buffer) {
+		List<String> result = new ArrayList<String>();
+		int start = 0;
+		int end = -1;
+		while ((end = framer.next(buffer)) != -1) {
+			result.add(buffer.substring(start, end));
+			start = end;
+		}
+		buffer.delete(0, start);
+		framer.consumed(start);
+		return result;
+	}
+
+	@Test
+	public void testPromptSplitAcrossReads() {
+		PromptFramer framer = new PromptFramer("\nfics% ");
+		StringBuilder buffer = new StringBuilder();
+
+		buffer.append("Game 1 started\n\nfi");
+		assertEquals(0, frame(framer, buffer).size());
+		buffer.append("cs% tell 1 hi\nfics");
+		assertEquals("[Game 1 started\n\nfics% ]", frame(framer, buffer).toString());
+		assertEquals("tell 1 hi\nfics", buffer.toString());
+
+		buffer.append("% \nfics% \nfics% ");
+		assertEquals("[tell 1 hi\nfics% , \nfics% , \nfics% ]", frame(framer, buffer).toString());
+		assertEquals(0, buffer.length());
+	}
+
+	@Test
+	public void testSelfOverlappingPrompt() {
+		PromptFramer framer = new PromptFramer("aab");
+		StringBuilder buffer = new StringBuilder("xaa");
+		assertEquals(0, frame(framer, buffer).size());
+		buffer.append("aabyaab");
+		assertEquals("[xaaaab, yaab]", frame(framer, buffer).toString());
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import raptor.chess.GameConstants;
+import raptor.connector.ics.Style12Parser;
+import raptor.connector.ics.game.message.Style12Message;
+
+public class TestStyle12Parser implements GameConstants {
+	private static final String E4 = "<12> rnbqkbnr pppppppp -------- -------- ----P--- -------- PPPP-PPP RNBQKBNR B 4 1 1 1 1 0 100 guestBLARG guestcday 1 10 0 39 39 600000 600000 1 P/e2-e4 (0:00.000) e4 1 1 0";
+	private static final String E5 = "<12> rnbqkbnr pppp-ppp -------- ----p--- ----P--- -------- PPPP-PPP RNBQKBNR W 4 1 1 1 1 0 100 guestBLARG guestcday -1 10 0 39 39 600000 598765 2 P/e7-e5 (0:01.235) e5 1 1 42";
+
+	@Test
+	public void testParse() {
+		Style12Message message = new Style12Parser().parse(E4);
+		assertFalse(message.isWhitesMoveAfterMoveIsMade);
+		assertEquals(4, message.doublePawnPushFile);
+		assertTrue(message.canWhiteCastleKSide && message.canWhiteCastleQSide
+				&& message.canBlackCastleKSide && message.canBlackCastleQSide);
+		assertEquals(0, message.numberOfMovesSinceLastIrreversible);
+		assertEquals("100", message.gameId);
+		assertEquals("guestBLARG", message.whiteName);
+		assertEquals("guestcday", message.blackName);
+		assertEquals(1, message.relation);
+		assertEquals(600000L, message.initialTimeMillis);
+		assertEquals(0L, message.initialIncMillis);
+		assertEquals(39, message.whiteStrength);
+		assertEquals(39, message.blackStrength);
+		assertEquals(600000L, message.whiteRemainingTimeMillis);
+		assertEquals(1, message.fullMoveNumber);
+		assertEquals("P/e2-e4", message.lan);
+		assertEquals(0L, message.timeTakenForLastMoveMillis);
+		assertEquals("e4", message.san);
+		assertTrue(message.isWhiteOnTop);
+		assertTrue(message.isClockTicking);
+		assertEquals(0, message.lagInMillis);
+
+		assertEquals(WR, message.position[0][0]);
+		assertEquals(WK, message.position[0][4]);
+		assertEquals(WP, message.position[3][4]);
+		assertEquals(EMPTY, message.position[1][4]);
+		assertEquals(BQ, message.position[7][3]);
+
+		assertNull(new Style12Parser().parse("<b1> game 100"));
+	}
+
+	@Test
+	public void testReusedMessage() {
+		Style12Parser parser = new Style12Parser();
+		Style12Message message = new Style12Message();
+		parser.parse(E4, message);
+		String whiteName = message.whiteName;
+		int[] rank5 = message.position[4];
+		Style12Message copy = message.copy();
+
+		assertSame(message, parser.parse(E5, message));
+		assertSame(whiteName, message.whiteName);
+		assertSame(rank5, message.position[4]);
+		assertEquals(BP, message.position[4][4]);
+		assertEquals(-1, message.relation);
+		assertEquals(598765L, message.blackRemainingTimeMillis);
+		assertEquals(1235L, message.timeTakenForLastMoveMillis);
+		assertEquals("e5", message.san);
+		assertEquals(42, message.lagInMillis);
+
+		assertEquals(EMPTY, copy.position[4][4]);
+		assertEquals("e4", copy.san);
+	}
+}
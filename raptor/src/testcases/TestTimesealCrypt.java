@@ -0,0 +1,110 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import raptor.connector.ics.timeseal.TimesealCrypt;
+
+public class TestTimesealCrypt {
+	private static final byte TIMESEAL_KEY[] = "Timestamp (FICS) v1.0 - programmed by Henrik Gram.".getBytes();
+
+	/**
+	 * The scalar implementation TimesealCrypt replaced, kept to check the
+	 * block implementation against.
+	 */
+	private static int referenceCrypt(byte stringToWriteBytes[], int length, long timestamp, byte buffer[]) {
+		int bytesInLength = length;
+		System.arraycopy(stringToWriteBytes, 0, buffer, 0, length);
+		buffer[bytesInLength++] = 24;
+		byte abyte1[] = Long.toString(timestamp).getBytes();
+		System.arraycopy(abyte1, 0, buffer, bytesInLength, abyte1.length);
+		bytesInLength += abyte1.length;
+		buffer[bytesInLength++] = 25;
+		int j = bytesInLength;
+		for (bytesInLength += 12 - bytesInLength % 12; j < bytesInLength;) {
+			buffer[j++] = 49;
+		}
+
+		for (int k = 0; k < bytesInLength; k++) {
+			buffer[k] |= 0x80;
+		}
+
+		for (int i1 = 0; i1 < bytesInLength; i1 += 12) {
+			byte byte0 = buffer[i1 + 11];
+			buffer[i1 + 11] = buffer[i1];
+			buffer[i1] = byte0;
+			byte0 = buffer[i1 + 9];
+			buffer[i1 + 9] = buffer[i1 + 2];
+			buffer[i1 + 2] = byte0;
+			byte0 = buffer[i1 + 7];
+			buffer[i1 + 7] = buffer[i1 + 4];
+			buffer[i1 + 4] = byte0;
+		}
+
+		int l1 = 0;
+		for (int j1 = 0; j1 < bytesInLength; j1++) {
+			buffer[j1] ^= TIMESEAL_KEY[l1];
+			l1 = (l1 + 1) % TIMESEAL_KEY.length;
+		}
+
+		for (int k1 = 0; k1 < bytesInLength; k1++) {
+			buffer[k1] -= 32;
+		}
+
+		buffer[bytesInLength++] = -128;
+		buffer[bytesInLength++] = 10;
+		return bytesInLength;
+	}
+
+	@Test
+	public void testMatchesReference() {
+		Random random = new Random(12);
+		long[] timestamps = { 0, 1, 9, 10, 99, 12345, 999999999L, 1234567890123L, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+		for (int length = 0; length < 300; length++) {
+			byte line[] = new byte[length];
+			random.nextBytes(line);
+			for (long timestamp : timestamps) {
+				assertCryptsLikeReference(line, timestamp);
+			}
+			assertCryptsLikeReference(line, random.nextLong() & Long.MAX_VALUE);
+		}
+	}
+
+	@Test
+	public void testOffset() {
+		byte line[] = "xxe2e4".getBytes();
+		byte expected[] = new byte[100];
+		byte actual[] = new byte[100];
+		int expectedLength = TimesealCrypt.crypt("e2e4".getBytes(), 4, 1500, expected);
+		assertEquals(expectedLength, TimesealCrypt.crypt(line, 2, 4, 1500, actual));
+		assertArrayEquals(expected, actual);
+	}
+
+	private void assertCryptsLikeReference(byte line[], long timestamp) {
+		byte expected[] = new byte[line.length + TimesealCrypt.MAX_OVERHEAD];
+		byte actual[] = new byte[line.length + TimesealCrypt.MAX_OVERHEAD];
+		Arrays.fill(actual, (byte) 7);
+		Arrays.fill(expected, (byte) 7);
+		int expectedLength = referenceCrypt(line, line.length, timestamp, expected);
+		assertEquals(expectedLength, TimesealCrypt.crypt(line, line.length, timestamp, actual));
+		assertArrayEquals(expected, actual);
+	}
+}
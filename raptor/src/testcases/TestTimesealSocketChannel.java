@@ -0,0 +1,132 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+import raptor.connector.ics.timeseal.MessageListener;
+import raptor.connector.ics.timeseal.TimesealSocketChannelMessageProducer;
+
+public class TestTimesealSocketChannel {
+
+	protected static class RecordingListener implements MessageListener {
+		StringBuilder received = new StringBuilder();
+
+		public synchronized void connectionClosed(StringBuilder inboundMessageBuffer) {
+		}
+
+		public synchronized void messageArrived(StringBuilder inboundMessageBuffer) {
+			received.append(inboundMessageBuffer);
+			inboundMessageBuffer.setLength(0);
+			notifyAll();
+		}
+
+		public void onError(String message, Throwable t) {
+			t.printStackTrace();
+		}
+
+		synchronized String waitFor(String text) throws InterruptedException {
+			long end = System.currentTimeMillis() + 10000;
+			while (received.indexOf(text) == -1 && System.currentTimeMillis() < end) {
+				wait(100);
+			}
+			return received.toString();
+		}
+	}
+
+	/**
+	 * Reads crypted lines until count of them have arrived. Each ends with
+	 * -128 followed by a line feed.
+	 */
+	private static void readCryptedLines(InputStream in, int count) throws Exception {
+		int previous = 0;
+		while (count > 0) {
+			int current = in.read();
+			assertTrue("Connection closed", current != -1);
+			if (current == 10 && previous == 0x80) {
+				count--;
+			}
+			previous = current;
+		}
+	}
+
+	@Test
+	public void testAckSplitAcrossReads() throws Exception {
+		ServerSocket server = new ServerSocket(0);
+		try {
+			RecordingListener listener = new RecordingListener();
+			TimesealSocketChannelMessageProducer producer = new TimesealSocketChannelMessageProducer("127.0.0.1",
+					server.getLocalPort(), "TIMESTAMP|test|", true, listener);
+			Socket socket = server.accept();
+			socket.setSoTimeout(10000);
+			InputStream in = socket.getInputStream();
+			OutputStream out = socket.getOutputStream();
+
+			// The initial timeseal string.
+			readCryptedLines(in, 1);
+
+			out.write("abc[G".getBytes());
+			out.flush();
+			assertEquals("abc", listener.waitFor("abc"));
+			Thread.sleep(100);
+			out.write(new byte[] { ']', 0, 'd', 'e', 'f', '[', 'G', ']', 0, '\r', '\n', '[', 'x' });
+			out.write("\r\nfics% ".getBytes());
+			out.flush();
+
+			// Both requests are acked.
+			readCryptedLines(in, 2);
+			assertEquals("abcdef\n[x\nfics% ", listener.waitFor("fics% "));
+
+			producer.close();
+			socket.close();
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testNoTimeseal() throws Exception {
+		ServerSocket server = new ServerSocket(0);
+		try {
+			RecordingListener listener = new RecordingListener();
+			TimesealSocketChannelMessageProducer producer = new TimesealSocketChannelMessageProducer("127.0.0.1",
+					server.getLocalPort(), "TIMESTAMP|test|", false, listener);
+			Socket socket = server.accept();
+			socket.setSoTimeout(10000);
+
+			producer.send("finger\n");
+			byte[] expected = "finger\n".getBytes();
+			for (byte b : expected) {
+				assertEquals(b, socket.getInputStream().read());
+			}
+
+			socket.getOutputStream().write("login: ".getBytes());
+			socket.getOutputStream().flush();
+			assertEquals("login: ", listener.waitFor("login: "));
+
+			producer.close();
+			socket.close();
+		} finally {
+			server.close();
+		}
+	}
+}
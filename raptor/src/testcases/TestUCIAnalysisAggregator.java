@@ -0,0 +1,92 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import raptor.engine.uci.UCIAnalysisAggregator;
+import raptor.engine.uci.UCIInfoParser;
+import raptor.engine.uci.UCIInfoSnapshot;
+
+public class TestUCIAnalysisAggregator {
+	private static class TestAggregator extends UCIAnalysisAggregator {
+		List<Long> delays = new ArrayList<Long>();
+
+		TestAggregator() {
+			super(null, 10, 4);
+		}
+
+		@Override
+		protected void scheduleUpdate(long delay) {
+			delays.add(delay);
+		}
+	}
+
+	private UCIInfoParser parser = new UCIInfoParser();
+
+	@Test
+	public void testCoalescing() {
+		TestAggregator aggregator = new TestAggregator();
+		UCIInfoSnapshot[] lines = new UCIInfoSnapshot[] { new UCIInfoSnapshot(), new UCIInfoSnapshot(),
+				new UCIInfoSnapshot(), new UCIInfoSnapshot() };
+		boolean[] changed = new boolean[4];
+		UCIInfoSnapshot status = new UCIInfoSnapshot();
+
+		send(aggregator, "info depth 10 multipv 1 score cp 20 pv e2e4 e7e5");
+		send(aggregator, "info depth 10 multipv 2 score cp 10 pv d2d4");
+		send(aggregator, "info depth 11 multipv 1 score cp 25 pv e2e4 c7c5");
+		send(aggregator, "info nps 5000 time 300");
+		assertEquals(1, aggregator.delays.size());
+		assertEquals(0L, aggregator.delays.get(0).longValue());
+
+		assertEquals(2, aggregator.drainTo(lines, changed, status));
+		assertTrue(changed[0] && changed[1]);
+		assertFalse(changed[2]);
+		assertEquals(25, lines[0].getValueInCentipawns());
+		assertEquals(2, lines[0].getPvLength());
+		assertEquals(10, lines[1].getValueInCentipawns());
+		assertEquals(11, status.getDepth());
+		assertEquals(5000L, status.getNodesPerSecond());
+		assertEquals(300, status.getTimeMillis());
+
+		// Nothing new has arrived.
+		assertEquals(-1, aggregator.drainTo(lines, changed, status));
+
+		// The next update waits for the rest of the interval.
+		send(aggregator, "info depth 12 multipv 2 score cp 12 pv d2d4 d7d5");
+		send(aggregator, "info depth 12 multipv 7 score cp 0 pv a2a3");
+		assertEquals(2, aggregator.delays.size());
+		assertTrue(aggregator.delays.get(1).longValue() > 50);
+
+		assertEquals(2, aggregator.drainTo(lines, changed, status));
+		assertFalse(changed[0]);
+		assertTrue(changed[1]);
+		assertEquals(12, lines[1].getValueInCentipawns());
+		assertEquals(25, lines[0].getValueInCentipawns());
+
+		aggregator.clear();
+		assertEquals(-1, aggregator.drainTo(lines, changed, status));
+	}
+
+	private void send(UCIAnalysisAggregator aggregator, String line) {
+		aggregator.engineSentInfo(parser.parse(line, parser.acquire()));
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import raptor.engine.uci.UCIAnalysisAggregator;
+import raptor.engine.uci.UCIAnalysisCache;
+import raptor.engine.uci.UCIInfoParser;
+import raptor.engine.uci.UCIInfoSnapshot;
+import raptor.engine.uci.UCIMove;
+
+public class TestUCIAnalysisCache {
+	private UCIInfoParser parser = new UCIInfoParser();
+
+	private UCIInfoSnapshot line(String line) {
+		return parser.parse(line, new UCIInfoSnapshot());
+	}
+
+	private static String pv(UCIInfoSnapshot snapshot) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < snapshot.getPvLength(); i++) {
+			result.append(i == 0 ? "" : " ").append(UCIMove.toUciString(snapshot.getPvStartSquare(i),
+					snapshot.getPvEndSquare(i), snapshot.getPvPromotedPiece(i)));
+		}
+		return result.toString();
+	}
+
+	private static UCIInfoSnapshot[] records(int count) {
+		UCIInfoSnapshot[] result = new UCIInfoSnapshot[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = new UCIInfoSnapshot();
+		}
+		return result;
+	}
+
+	@Test
+	public void testPutAndGet() {
+		UCIAnalysisCache cache = new UCIAnalysisCache(1024 * 1024);
+		UCIInfoSnapshot[] records = records(3);
+		assertEquals(0, cache.get(42L, records));
+		assertEquals(-1, cache.getDepth(42L));
+
+		assertTrue(cache.put(42L, 0, line("info depth 12 seldepth 20 score cp 31 nodes 100 pv e2e4 e7e5 g1f3")));
+		assertTrue(cache.put(42L, 1, line("info depth 12 score mate -4 pv a7a8q")));
+		// Bounds, missing pvs and shallower lines are not cached.
+		assertFalse(cache.put(42L, 0, line("info depth 14 score cp 50 lowerbound pv d2d4")));
+		assertFalse(cache.put(42L, 0, line("info depth 14 score cp 50")));
+		assertFalse(cache.put(42L, 0, line("info depth 11 score cp 50 pv d2d4")));
+
+		assertEquals(2, cache.get(42L, records));
+		assertEquals(12, cache.getDepth(42L));
+		assertEquals(12, records[0].getDepth());
+		assertEquals(20, records[0].getSelectiveDepth());
+		assertEquals(31, records[0].getValueInCentipawns());
+		assertEquals(1, records[0].getMultiPv());
+		assertFalse(records[0].has(UCIInfoSnapshot.NODES));
+		assertEquals("e2e4 e7e5 g1f3", pv(records[0]));
+		assertEquals(-4, records[1].getMateInMoves());
+		assertEquals(2, records[1].getMultiPv());
+		assertEquals("a7a8q", pv(records[1]));
+
+		assertTrue(cache.put(42L, 0, line("info depth 15 score cp -5 pv d2d4")));
+		cache.get(42L, records);
+		assertEquals(-5, records[0].getValueInCentipawns());
+		assertEquals("d2d4", pv(records[0]));
+	}
+
+	@Test
+	public void testEviction() {
+		UCIAnalysisCache cache = new UCIAnalysisCache(1024 * 1024);
+		for (long key = 0; key < 10; key++) {
+			cache.put(key, 0, line("info depth 10 score cp 1 pv e2e4 e7e5"));
+		}
+		long entryBytes = cache.getBytes() / 10;
+
+		// Using position 0 makes 1 the least recently used.
+		cache.getDepth(0L);
+		cache.setMaxBytes(entryBytes * 9);
+		assertEquals(9, cache.size());
+		assertEquals(10, cache.getDepth(0L));
+		assertEquals(-1, cache.getDepth(1L));
+		assertEquals(10, cache.getDepth(2L));
+
+		cache.put(10L, 0, line("info depth 10 score cp 1 pv e2e4 e7e5"));
+		assertEquals(9, cache.size());
+		assertEquals(-1, cache.getDepth(3L));
+		assertTrue(cache.getBytes() <= cache.getMaxBytes());
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		File file = File.createTempFile("TestUCIAnalysisCache", ".cache");
+		try {
+			UCIAnalysisCache cache = new UCIAnalysisCache(1024 * 1024);
+			cache.put(1L, 0, line("info depth 20 score cp 15 pv e2e4"));
+			cache.put(1L, 2, line("info depth 20 score cp 5 pv c2c4"));
+			cache.put(-7L, 0, line("info depth 9 score mate 2 pv d1h5 e8e7 h5e5"));
+			cache.save(file);
+
+			UCIAnalysisCache loaded = new UCIAnalysisCache(1024 * 1024);
+			loaded.put(-7L, 0, line("info depth 25 score cp 900 pv d1h5"));
+			loaded.load(file);
+			assertEquals(2, loaded.size());
+
+			UCIInfoSnapshot[] records = records(3);
+			assertEquals(3, loaded.get(1L, records));
+			assertEquals("e2e4", pv(records[0]));
+			assertFalse(records[1].has(UCIInfoSnapshot.SCORE));
+			assertEquals("c2c4", pv(records[2]));
+			assertEquals(3, records[2].getMultiPv());
+			// The deeper line which was already cached is kept.
+			loaded.get(-7L, records);
+			assertEquals(25, records[0].getDepth());
+
+			// A file cut off part way through still loads its whole entries.
+			RandomAccessFile output = new RandomAccessFile(file, "rw");
+			output.setLength(output.length() - 3);
+			output.close();
+			loaded = new UCIAnalysisCache(1024 * 1024);
+			loaded.load(file);
+			assertEquals(1, loaded.size());
+			assertEquals(20, loaded.getDepth(1L));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testAggregatorCaching() {
+		UCIAnalysisCache cache = new UCIAnalysisCache(1024 * 1024);
+		UCIAnalysisAggregator aggregator = new UCIAnalysisAggregator(null, 10, 4) {
+			@Override
+			protected void scheduleUpdate(long delay) {
+			}
+		};
+		aggregator.setCache(cache);
+
+		aggregator.clear(5L);
+		aggregator.engineSentInfo(parser.parse("info depth 8 multipv 1 score cp 20 pv e2e4 e7e5",
+				parser.acquire()));
+		aggregator.engineSentInfo(parser.parse("info depth 8 multipv 2 score cp 10 pv d2d4", parser.acquire()));
+		aggregator.engineSentInfo(parser.parse("info depth 9 currmove g1f3 currmovenumber 3", parser.acquire()));
+		assertEquals(8, cache.getDepth(5L));
+
+		// Without a key nothing is cached.
+		aggregator.clear();
+		aggregator.engineSentInfo(parser.parse("info depth 30 multipv 1 score cp 0 pv a2a3", parser.acquire()));
+		assertEquals(8, cache.getDepth(5L));
+
+		aggregator.clear(6L);
+		aggregator.engineSentInfo(parser.parse("info depth 3 multipv 1 score cp 0 pv a2a3", parser.acquire()));
+		UCIInfoSnapshot[] records = records(4);
+		assertEquals(2, cache.get(5L, records));
+		assertEquals("d2d4", pv(records[1]));
+		assertEquals(1, cache.get(6L, records));
+		assertEquals("a2a3", pv(records[0]));
+	}
+}
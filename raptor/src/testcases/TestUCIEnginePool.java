@@ -0,0 +1,139 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import raptor.engine.uci.UCIEngine;
+import raptor.engine.uci.UCIEnginePool;
+
+public class TestUCIEnginePool {
+	/**
+	 * An engine without a process which records what the pool did to it.
+	 */
+	private static class FakeEngine extends UCIEngine {
+		boolean isConnected;
+		int newGames;
+		boolean isQuit;
+
+		FakeEngine(String processPath) {
+			setProcessPath(processPath);
+		}
+
+		@Override
+		public boolean connect() {
+			isConnected = true;
+			return true;
+		}
+
+		@Override
+		public UCIEngine getDeepCopy() {
+			return new FakeEngine(getProcessPath());
+		}
+
+		@Override
+		public boolean isConnected() {
+			return isConnected;
+		}
+
+		@Override
+		public void isReady() {
+		}
+
+		@Override
+		public void newGame() {
+			newGames++;
+		}
+
+		@Override
+		public void quit() {
+			isQuit = true;
+			isConnected = false;
+		}
+	}
+
+	@Test
+	public void testLeaseAndReuse() {
+		UCIEnginePool pool = new UCIEnginePool(2, 1);
+		FakeEngine configuration = new FakeEngine("stockfish");
+
+		FakeEngine first = (FakeEngine) pool.lease(configuration, 1, 0);
+		FakeEngine second = (FakeEngine) pool.lease(configuration, 1, 0);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertTrue(first.isConnected() && second.isConnected());
+		assertFalse(configuration.isConnected());
+		assertEquals(2, pool.getLeasedThreads());
+
+		// Every thread is leased.
+		assertNull(pool.lease(configuration, 1, 50));
+
+		pool.release(first);
+		assertEquals(1, first.newGames);
+		assertEquals(1, pool.getIdleCount());
+		assertSame(first, pool.lease(configuration, 1, 0));
+		assertEquals(0, pool.getIdleCount());
+
+		// A different configuration does not get the idle engine.
+		pool.release(second);
+		FakeEngine other = (FakeEngine) pool.lease(new FakeEngine("other"), 1, 0);
+		assertTrue(other != second);
+		assertEquals("other", other.getProcessPath());
+
+		// Only one engine is kept idle.
+		pool.release(first);
+		pool.release(other);
+		assertEquals(1, pool.getIdleCount());
+		assertFalse(second.isQuit);
+		assertTrue(first.isQuit);
+		assertTrue(other.isQuit);
+		assertEquals(0, pool.getLeasedThreads());
+
+		pool.dispose();
+		assertTrue(second.isQuit);
+		assertNull(pool.lease(configuration, 1, 0));
+	}
+
+	@Test
+	public void testThreadsAreCapped() throws Exception {
+		final UCIEnginePool pool = new UCIEnginePool(4, 2);
+		final FakeEngine configuration = new FakeEngine("stockfish");
+
+		final UCIEngine wide = pool.lease(configuration, 16, 0);
+		assertEquals(4, pool.getLeasedThreads());
+
+		Thread releaser = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ie) {
+				}
+				pool.release(wide);
+			}
+		});
+		releaser.start();
+		UCIEngine waiting = pool.lease(configuration, 1, 5000);
+		assertSame(wide, waiting);
+		assertEquals(1, pool.getLeasedThreads());
+		releaser.join();
+		pool.dispose();
+	}
+}
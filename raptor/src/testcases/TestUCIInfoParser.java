@@ -0,0 +1,124 @@
+/**
+ * New BSD License
+ * http://www.opensource.org/licenses/bsd-license.php
+ * Copyright 2009-2016 RaptorProject (https://github.com/Raptor-Fics-Interface/Raptor)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the RaptorProject nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import raptor.chess.GameConstants;
+import raptor.engine.uci.UCIInfo;
+import raptor.engine.uci.UCIInfoParser;
+import raptor.engine.uci.UCIInfoSnapshot;
+import raptor.engine.uci.info.BestLineFoundInfo;
+import raptor.engine.uci.info.MultiPV;
+import raptor.engine.uci.info.ScoreInfo;
+
+public class TestUCIInfoParser implements GameConstants {
+	private static final String LINE = "info depth 22 seldepth 31 multipv 2 score cp -35 upperbound nodes 1234567 "
+			+ "nps 987654 hashfull 312 tbhits 0 time 1250 pv e2e4 e7e5 g1f3 b8c6";
+
+	@Test
+	public void testParse() {
+		UCIInfoParser parser = new UCIInfoParser();
+		UCIInfoSnapshot snapshot = parser.parse(LINE, parser.acquire());
+
+		assertEquals(22, snapshot.getDepth());
+		assertEquals(31, snapshot.getSelectiveDepth());
+		assertEquals(2, snapshot.getMultiPv());
+		assertTrue(snapshot.has(UCIInfoSnapshot.SCORE));
+		assertEquals(-35, snapshot.getValueInCentipawns());
+		assertTrue(snapshot.isUpperBoundScore());
+		assertFalse(snapshot.isLowerBoundScore());
+		assertEquals(1234567L, snapshot.getNodes());
+		assertEquals(987654L, snapshot.getNodesPerSecond());
+		assertEquals(312, snapshot.getHashFull());
+		assertEquals(1250, snapshot.getTimeMillis());
+		assertEquals(4, snapshot.getPvLength());
+		assertEquals(SQUARE_E2, snapshot.getPvStartSquare(0));
+		assertEquals(SQUARE_E4, snapshot.getPvEndSquare(0));
+		assertEquals(SQUARE_C6, snapshot.getPvEndSquare(3));
+		assertFalse(snapshot.has(UCIInfoSnapshot.CURRENT_MOVE));
+		assertFalse(snapshot.has(UCIInfoSnapshot.STRING));
+	}
+
+	@Test
+	public void testMatePromotionAndString() {
+		UCIInfoParser parser = new UCIInfoParser();
+		UCIInfoSnapshot snapshot = parser.parse("info  DEPTH 5 currmove a7a8q currmovenumber 3 "
+				+ "score mate -2 pv a7a8n refutation d1h5 string hello  world ", parser.acquire());
+
+		assertEquals(5, snapshot.getDepth());
+		assertTrue(snapshot.has(UCIInfoSnapshot.CURRENT_MOVE));
+		assertEquals(SQUARE_A7, snapshot.getCurrentMoveStartSquare());
+		assertEquals(SQUARE_A8, snapshot.getCurrentMoveEndSquare());
+		assertEquals(QUEEN, snapshot.getCurrentMovePromotedPiece());
+		assertEquals(3, snapshot.getCurrentMoveNumber());
+		assertEquals(-2, snapshot.getMateInMoves());
+		assertEquals(1, snapshot.getPvLength());
+		assertEquals(KNIGHT, snapshot.getPvPromotedPiece(0));
+		assertEquals("hello  world", snapshot.getString());
+	}
+
+	@Test
+	public void testMalformedValuesAreSkipped() {
+		UCIInfoParser parser = new UCIInfoParser();
+		UCIInfoSnapshot snapshot = parser.parse("info depth x nodes 12 time", parser.acquire());
+		assertFalse(snapshot.has(UCIInfoSnapshot.DEPTH));
+		assertEquals(12L, snapshot.getNodes());
+		assertFalse(snapshot.has(UCIInfoSnapshot.TIME));
+	}
+
+	@Test
+	public void testPooledSnapshotsAreReused() {
+		UCIInfoParser parser = new UCIInfoParser();
+		UCIInfoSnapshot first = parser.parse(LINE, parser.acquire());
+		first.release();
+
+		UCIInfoSnapshot second = parser.acquire();
+		assertSame(first, second);
+		assertEquals(0, second.getPvLength());
+		assertFalse(second.has(UCIInfoSnapshot.SCORE));
+
+		UCIInfoSnapshot copy = new UCIInfoSnapshot();
+		copy.copyFrom(parser.parse(LINE, second));
+		parser.parse("info depth 1", second);
+		assertEquals(22, copy.getDepth());
+		assertEquals(4, copy.getPvLength());
+		assertEquals(1, second.getDepth());
+	}
+
+	@Test
+	public void testToInfos() {
+		UCIInfoParser parser = new UCIInfoParser();
+		UCIInfo[] infos = parser.parse(LINE, parser.acquire()).toInfos();
+		int scores = 0;
+		for (UCIInfo info : infos) {
+			if (info instanceof ScoreInfo) {
+				scores++;
+				assertEquals(-35, ((ScoreInfo) info).getValueInCentipawns());
+			} else if (info instanceof MultiPV) {
+				assertEquals(2, ((MultiPV) info).getId());
+			} else if (info instanceof BestLineFoundInfo) {
+				assertEquals("g1f3", ((BestLineFoundInfo) info).getMoves()[2].getValue());
+			}
+		}
+		assertEquals(1, scores);
+		// Everything but hashfull.
+		assertEquals(9, infos.length);
+	}
+}